@@ -0,0 +1,160 @@
+package com.gateway.accesslog;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One JSON line per request, written off the request path. Request threads copy the
+ * record into a slot of a ring buffer; a background thread formats and writes batches
+ * to stdout or a file. Responses at or above always-log-status are always logged, the
+ * rest at sample-rate. A full buffer drops records (gateway.accesslog.dropped) rather
+ * than slowing requests down.
+ */
+@Slf4j
+@Component
+public class AccessLog {
+
+    // Records formatted per write; bounds the batch held in memory
+    private static final int BATCH_SIZE = 512;
+
+    @Value("${gateway.access-log.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gateway.access-log.output:stdout}")
+    private String output;
+
+    @Value("${gateway.access-log.sample-rate:1.0}")
+    private double sampleRate;
+
+    @Value("${gateway.access-log.always-log-status:400}")
+    private int alwaysLogStatus;
+
+    @Value("${gateway.access-log.buffer-size:8192}")
+    private int bufferSize;
+
+    @Value("${gateway.access-log.idle-wait:10ms}")
+    private Duration idleWait;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private AccessLogBuffer buffer;
+    private OutputStream out;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    private final AtomicLong written = new AtomicLong();
+    private final StringBuilder batch = new StringBuilder(64 * 1024);
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        buffer = new AccessLogBuffer(bufferSize);
+        out = "stdout".equals(output)
+                ? System.out
+                : Files.newOutputStream(Path.of(output), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        FunctionCounter.builder("gateway.accesslog.written", written, AtomicLong::get)
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.accesslog.dropped", buffer, AccessLogBuffer::getDropped)
+                .register(meterRegistry);
+
+        running = true;
+        writerThread = new Thread(this::writeLoop, "access-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Log a completed request, subject to sampling. upstreamNanos is -1 if no backend was called.
+     */
+    public void log(String requestId, String method, String path, String client, String route,
+                    int status, long durationNanos, long upstreamNanos) {
+        if (buffer == null || !isSampled(status)) {
+            return;
+        }
+        long position = buffer.claim();
+        if (position < 0) {
+            return;
+        }
+        buffer.entry(position).set(System.currentTimeMillis(), requestId, method, path, client,
+                route, status, durationNanos, upstreamNanos);
+        buffer.publish(position);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        writerThread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private boolean isSampled(int status) {
+        return status >= alwaysLogStatus || sampleRate >= 1.0
+                || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Drain and write until stopped, parking while the buffer is empty; the last
+     * records are written on the way out
+     */
+    private void writeLoop() {
+        while (running) {
+            if (writeBatch() == 0) {
+                LockSupport.parkNanos(idleWait.toNanos());
+            }
+        }
+        while (writeBatch() > 0) {
+            // Flush what was logged before shutdown
+        }
+        if (out == System.out) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.warn("Error closing access log: {}", e.getMessage());
+        }
+    }
+
+    private int writeBatch() {
+        int drained = buffer.drain(entry -> entry.appendJson(batch), BATCH_SIZE);
+        if (drained == 0) {
+            return 0;
+        }
+        try {
+            // One write per batch keeps lines whole when sharing stdout with the console log
+            out.write(batch.toString().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            written.addAndGet(drained);
+        } catch (IOException e) {
+            log.warn("Error writing access log: {}", e.getMessage());
+        } finally {
+            batch.setLength(0);
+        }
+        return drained;
+    }
+}
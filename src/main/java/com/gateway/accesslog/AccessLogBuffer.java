@@ -0,0 +1,103 @@
+package com.gateway.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free ring of preallocated entries for many producers and one consumer.
+ * Each slot carries a sequence number saying whose turn it is: a producer claims the
+ * next position with a CAS once the consumer has freed that slot, fills the entry and
+ * publishes it; the consumer takes published slots in order and hands them back. When
+ * the ring is full claims fail instead of waiting, so request threads never block.
+ */
+public class AccessLogBuffer {
+
+    private final AccessLogEntry[] entries;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Only the consumer thread moves the head
+    private long head;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public AccessLogBuffer(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.entries = new AccessLogEntry[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            entries[i] = new AccessLogEntry();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Claim the next slot, returning its position, or -1 (counted as dropped) if the ring
+     * is full. The claimed entry must be filled and then published.
+     */
+    public long claim() {
+        long position = tail.get();
+        while (true) {
+            long difference = sequences.get((int) (position & mask)) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                dropped.incrementAndGet();
+                return -1;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * The entry at a claimed position
+     */
+    public AccessLogEntry entry(long position) {
+        return entries[(int) (position & mask)];
+    }
+
+    /**
+     * Make a filled entry visible to the consumer
+     */
+    public void publish(long position) {
+        sequences.lazySet((int) (position & mask), position + 1);
+    }
+
+    /**
+     * Hand published entries to reader in order, at most max of them. Consumer thread only.
+     */
+    public int drain(Consumer<AccessLogEntry> reader, int max) {
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            AccessLogEntry entry = entries[index];
+            reader.accept(entry);
+            entry.clear();
+            sequences.lazySet(index, head + entries.length);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+}
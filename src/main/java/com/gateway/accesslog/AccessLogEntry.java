@@ -0,0 +1,97 @@
+package com.gateway.accesslog;
+
+/**
+ * One access log record. Entries are slots of the ring buffer, filled in place by
+ * request threads and formatted by the writer, so they are reused, never shared.
+ */
+public class AccessLogEntry {
+
+    long timestamp;
+    String requestId;
+    String method;
+    String path;
+    String client;
+    String route;
+    int status;
+    long durationNanos;
+    long upstreamNanos;
+
+    /**
+     * Fill the entry; upstreamNanos is -1 for requests that never reached a backend
+     */
+    public void set(long timestamp, String requestId, String method, String path, String client,
+                    String route, int status, long durationNanos, long upstreamNanos) {
+        this.timestamp = timestamp;
+        this.requestId = requestId;
+        this.method = method;
+        this.path = path;
+        this.client = client;
+        this.route = route;
+        this.status = status;
+        this.durationNanos = durationNanos;
+        this.upstreamNanos = upstreamNanos;
+    }
+
+    /**
+     * Append the entry as one JSON line
+     */
+    public void appendJson(StringBuilder out) {
+        out.append("{\"ts\":").append(timestamp);
+        appendString(out, "id", requestId);
+        appendString(out, "method", method);
+        appendString(out, "path", path);
+        out.append(",\"status\":").append(status);
+        appendString(out, "route", route);
+        appendString(out, "client", client);
+        appendMillis(out, "duration_ms", durationNanos);
+        if (upstreamNanos >= 0) {
+            appendMillis(out, "upstream_ms", upstreamNanos);
+        }
+        out.append("}\n");
+    }
+
+    /**
+     * Drop references so the slot does not keep request strings alive
+     */
+    void clear() {
+        requestId = null;
+        method = null;
+        path = null;
+        client = null;
+        route = null;
+    }
+
+    private static void appendString(StringBuilder out, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        out.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Milliseconds with microsecond precision, without going through floating point
+     */
+    private static void appendMillis(StringBuilder out, String name, long nanos) {
+        long micros = Math.max(0, nanos) / 1000;
+        long fraction = micros % 1000;
+        out.append(",\"").append(name).append("\":").append(micros / 1000).append('.');
+        if (fraction < 100) {
+            out.append('0');
+        }
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+}
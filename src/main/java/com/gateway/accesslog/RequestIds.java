@@ -0,0 +1,32 @@
+package com.gateway.accesslog;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request IDs: 16 hex characters, a random 24-bit prefix chosen per process followed
+ * by a 40-bit counter. Unique per instance and very unlikely to clash across
+ * instances, at the cost of one atomic increment per request.
+ */
+public final class RequestIds {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final long PREFIX = (long) new SecureRandom().nextInt(1 << 24) << 40;
+    private static final long COUNTER_MASK = (1L << 40) - 1;
+
+    private static final AtomicLong counter = new AtomicLong();
+
+    private RequestIds() {
+    }
+
+    public static String next() {
+        long id = PREFIX | (counter.getAndIncrement() & COUNTER_MASK);
+        char[] chars = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            chars[i] = HEX[(int) (id & 0xf)];
+            id >>>= 4;
+        }
+        return new String(chars);
+    }
+}
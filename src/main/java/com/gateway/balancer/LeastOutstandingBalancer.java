@@ -0,0 +1,25 @@
+package com.gateway.balancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the available instance with the fewest requests in flight; the scan
+ * starts at a rotating offset so ties spread evenly
+ */
+public class LeastOutstandingBalancer implements LoadBalancer {
+
+    private final AtomicInteger offset = new AtomicInteger();
+
+    @Override
+    public UpstreamInstance choose(UpstreamInstance[] instances, long now) {
+        int start = offset.getAndIncrement();
+        UpstreamInstance best = null;
+        for (int i = 0; i < instances.length; i++) {
+            UpstreamInstance instance = instances[Math.floorMod(start + i, instances.length)];
+            if (instance.isAvailable(now) && (best == null || instance.getOutstanding() < best.getOutstanding())) {
+                best = instance;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,10 @@
+package com.gateway.balancer;
+
+/**
+ * Picks an instance for the next request. Implementations must be lock-free
+ * and allocation-free; they return null if no instance is available.
+ */
+public interface LoadBalancer {
+
+    UpstreamInstance choose(UpstreamInstance[] instances, long now);
+}
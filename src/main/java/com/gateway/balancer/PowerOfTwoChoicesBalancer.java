@@ -0,0 +1,46 @@
+package com.gateway.balancer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Power of two choices: samples two random instances and takes the one with
+ * the lower peak-EWMA latency x (outstanding + 1). Close to least-loaded
+ * selection at O(1) cost, without herding onto a single "best" instance.
+ */
+public class PowerOfTwoChoicesBalancer implements LoadBalancer {
+
+    @Override
+    public UpstreamInstance choose(UpstreamInstance[] instances, long now) {
+        int n = instances.length;
+        if (n == 1) {
+            return instances[0].isAvailable(now) ? instances[0] : null;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(n);
+        int second = random.nextInt(n - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        UpstreamInstance a = instances[first];
+        UpstreamInstance b = instances[second];
+        boolean aAvailable = a.isAvailable(now);
+        boolean bAvailable = b.isAvailable(now);
+        if (aAvailable && bAvailable) {
+            return a.cost() <= b.cost() ? a : b;
+        }
+        if (aAvailable || bAvailable) {
+            return aAvailable ? a : b;
+        }
+
+        // Both samples unavailable: fall back to the first available one
+        for (int i = 1; i <= n; i++) {
+            UpstreamInstance instance = instances[(first + i) % n];
+            if (instance.isAvailable(now)) {
+                return instance;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,23 @@
+package com.gateway.balancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rotates through instances, skipping unavailable ones
+ */
+public class RoundRobinBalancer implements LoadBalancer {
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public UpstreamInstance choose(UpstreamInstance[] instances, long now) {
+        int start = next.getAndIncrement();
+        for (int i = 0; i < instances.length; i++) {
+            UpstreamInstance instance = instances[Math.floorMod(start + i, instances.length)];
+            if (instance.isAvailable(now)) {
+                return instance;
+            }
+        }
+        return null;
+    }
+}
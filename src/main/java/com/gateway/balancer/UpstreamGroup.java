@@ -0,0 +1,84 @@
+package com.gateway.balancer;
+
+import com.gateway.model.RouteDefinition;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The instances behind one route and the strategy that picks among them.
+ *
+ * Instances failing ejectAfterFailures requests in a row are ejected for
+ * the ejection time, as long as no more than maxEjectionPercent of the group
+ * is ejected. If nothing is available the group panics and balances over
+ * all instances, since sending traffic to a possibly-bad backend beats
+ * failing every request at the gateway.
+ */
+public class UpstreamGroup {
+
+    private final UpstreamInstance[] instances;
+    private final LoadBalancer balancer;
+    private final int ejectAfterFailures;
+    private final long ejectionNanos;
+    private final int maxEjected;
+    private final AtomicInteger panicIndex = new AtomicInteger();
+
+    public UpstreamGroup(List<String> uris, LoadBalancer balancer, RouteDefinition.LoadBalancerConfig config) {
+        this.instances = uris.stream().map(UpstreamInstance::new).toArray(UpstreamInstance[]::new);
+        this.balancer = balancer;
+        this.ejectAfterFailures = config.getEjectAfterFailures();
+        this.ejectionNanos = config.getEjectionTime().toNanos();
+        this.maxEjected = Math.max(0, instances.length * config.getMaxEjectionPercent() / 100);
+    }
+
+    /**
+     * Pick the instance for the next request
+     */
+    public UpstreamInstance choose() {
+        UpstreamInstance chosen = instances.length == 1 ? instances[0] : balancer.choose(instances, System.nanoTime());
+        if (chosen == null) {
+            chosen = instances[Math.floorMod(panicIndex.getAndIncrement(), instances.length)];
+        }
+        chosen.onStart();
+        return chosen;
+    }
+
+    /**
+     * Record a finished request on the instance chosen for it
+     */
+    public void onComplete(UpstreamInstance instance, long latencyNanos, boolean failure) {
+        int failures = instance.onComplete(latencyNanos, failure);
+        if (ejectAfterFailures > 0 && failures >= ejectAfterFailures) {
+            long now = System.nanoTime();
+            if (countEjected(now) < maxEjected) {
+                instance.eject(now + ejectionNanos);
+            }
+        }
+    }
+
+    /**
+     * Release a request that was never answered, or whose answer says nothing about the instance
+     * (a cancelled hedge, a client gone before the upstream replied): no latency, no verdict
+     */
+    public void onAbandoned(UpstreamInstance instance) {
+        instance.onAbandoned();
+    }
+
+    public UpstreamInstance[] getInstances() {
+        return instances;
+    }
+
+    public boolean isEjected(UpstreamInstance instance) {
+        return instance.isEjected(System.nanoTime());
+    }
+
+    private int countEjected(long now) {
+        int ejected = 0;
+        for (UpstreamInstance instance : instances) {
+            if (instance.isEjected(now)) {
+                ejected++;
+            }
+        }
+        return ejected;
+    }
+}
@@ -0,0 +1,181 @@
+package com.gateway.balancer;
+
+import com.gateway.metrics.RouteMeters;
+import com.gateway.model.RouteDefinition;
+import com.gateway.routing.RouteChangeListener;
+import com.gateway.routing.RouteStates;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the upstream instances of every route and runs active health checks
+ * for routes that enable them. Instance state (health, ejections, latency)
+ * survives route reloads that leave the route's upstreams and balancing alone.
+ */
+@Slf4j
+@Component
+public class UpstreamGroupRegistry implements RouteChangeListener {
+
+    @Autowired
+    private RouteDefinition routeDefinition;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final RouteStates<UpstreamGroup> groups = new RouteStates<>(
+            () -> routeDefinition.getRoutes(), UpstreamGroupRegistry::sameSettings, this::createGroup, this::discardGroup);
+    private final Map<String, ScheduledFuture<?>> healthChecks = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService healthCheckScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "upstream-health-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Checks are sent asynchronously, so one scheduler thread serves every instance
+    private final HttpClient healthCheckClient = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    @PostConstruct
+    public void initialize() {
+        routeDefinition.getRoutes().forEach(this::getGroup);
+    }
+
+    /**
+     * Get (or lazily create) the instance group for a route
+     */
+    public UpstreamGroup getGroup(RouteDefinition.Route route) {
+        UpstreamGroup group = groups.get(route);
+        // The route was removed while this request was on its way: balance it without health checks
+        return group != null ? group : new UpstreamGroup(uris(route), createBalancer(route.getLoadBalancer()),
+                route.getLoadBalancer());
+    }
+
+    @Override
+    public void onRouteChanged(RouteDefinition.Route previous, RouteDefinition.Route current) {
+        if (current != null && sameSettings(previous, current)) {
+            return;
+        }
+        groups.remove(previous.getId());
+        RouteMeters.remove(meterRegistry, previous.getId(), "gateway.upstream");
+        if (current != null) {
+            getGroup(current);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        healthCheckScheduler.shutdownNow();
+    }
+
+    private static boolean sameSettings(RouteDefinition.Route a, RouteDefinition.Route b) {
+        return Objects.equals(a.getUri(), b.getUri())
+                && a.getInstances().equals(b.getInstances())
+                && a.getLoadBalancer().equals(b.getLoadBalancer());
+    }
+
+    private static List<String> uris(RouteDefinition.Route route) {
+        return route.getInstances().isEmpty() ? List.of(route.getUri()) : route.getInstances();
+    }
+
+    private UpstreamGroup createGroup(RouteDefinition.Route route) {
+        RouteDefinition.LoadBalancerConfig config = route.getLoadBalancer();
+        List<String> uris = uris(route);
+        UpstreamGroup group = new UpstreamGroup(uris, createBalancer(config), config);
+
+        for (UpstreamInstance instance : group.getInstances()) {
+            Gauge.builder("gateway.upstream.available", instance,
+                            i -> i.isHealthy() && !group.isEjected(i) ? 1 : 0)
+                    .tag("route", route.getId())
+                    .tag("instance", instance.getUri())
+                    .register(meterRegistry);
+            Gauge.builder("gateway.upstream.outstanding", instance, UpstreamInstance::getOutstanding)
+                    .tag("route", route.getId())
+                    .tag("instance", instance.getUri())
+                    .register(meterRegistry);
+            Gauge.builder("gateway.upstream.latency.ewma", instance, UpstreamInstance::getEwmaMillis)
+                    .tag("route", route.getId())
+                    .tag("instance", instance.getUri())
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+
+        RouteDefinition.HealthCheckConfig healthCheck = config.getHealthCheck();
+        if (healthCheck.isEnabled()) {
+            long interval = healthCheck.getInterval().toMillis();
+            healthChecks.put(route.getId(), healthCheckScheduler.scheduleWithFixedDelay(
+                    () -> checkHealth(route.getId(), group, healthCheck), 0, interval, TimeUnit.MILLISECONDS));
+        }
+
+        log.info("Route {} balances over {} instance(s) with {}", route.getId(), uris.size(), config.getStrategy());
+        return group;
+    }
+
+    private void discardGroup(String routeId, UpstreamGroup group) {
+        ScheduledFuture<?> healthCheck = healthChecks.remove(routeId);
+        if (healthCheck != null) {
+            healthCheck.cancel(false);
+        }
+        RouteMeters.remove(meterRegistry, routeId, "gateway.upstream");
+    }
+
+    private LoadBalancer createBalancer(RouteDefinition.LoadBalancerConfig config) {
+        return switch (config.getStrategy()) {
+            case ROUND_ROBIN -> new RoundRobinBalancer();
+            case LEAST_OUTSTANDING -> new LeastOutstandingBalancer();
+            case POWER_OF_TWO_CHOICES -> new PowerOfTwoChoicesBalancer();
+        };
+    }
+
+    private void checkHealth(String routeId, UpstreamGroup group, RouteDefinition.HealthCheckConfig config) {
+        for (UpstreamInstance instance : group.getInstances()) {
+            HttpRequest request;
+            try {
+                request = HttpRequest.newBuilder(URI.create(instance.getUri() + config.getPath()))
+                        .timeout(config.getTimeout())
+                        .GET()
+                        .build();
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid health check URL for {}: {}", instance.getUri(), e.getMessage());
+                continue;
+            }
+
+            healthCheckClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        boolean passed = error == null && response.statusCode() / 100 == 2;
+                        boolean wasHealthy = instance.isHealthy();
+                        instance.onHealthCheck(passed, config.getHealthyThreshold(), config.getUnhealthyThreshold());
+                        if (wasHealthy != instance.isHealthy()) {
+                            log.warn("Instance {} of route {} is now {}", instance.getUri(), routeId,
+                                    instance.isHealthy() ? "healthy" : "unhealthy");
+                            Counter.builder("gateway.upstream.health.changes")
+                                    .tag("route", routeId)
+                                    .tag("instance", instance.getUri())
+                                    .tag("healthy", String.valueOf(instance.isHealthy()))
+                                    .register(meterRegistry)
+                                    .increment();
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.gateway.balancer;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One backend instance of a route, with the load and health state the
+ * balancer needs. All fields are atomics or volatiles; nothing locks.
+ */
+public class UpstreamInstance {
+
+    // Weight of a new sample below the current average
+    private static final double DECAY = 0.2;
+
+    @Getter
+    private final String uri;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong ewmaNanos = new AtomicLong();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    // Active health checks
+    private volatile boolean healthy = true;
+    private final AtomicInteger checkStreak = new AtomicInteger();
+
+    // Passive ejection
+    private volatile boolean ejected;
+    private volatile long ejectedUntil;
+
+    public UpstreamInstance(String uri) {
+        this.uri = uri;
+    }
+
+    /**
+     * Usable for new requests: passing health checks and not ejected
+     */
+    public boolean isAvailable(long now) {
+        return healthy && (!ejected || now - ejectedUntil >= 0);
+    }
+
+    public void onStart() {
+        outstanding.incrementAndGet();
+    }
+
+    /**
+     * Record a finished request; returns the number of consecutive failures so far
+     */
+    int onComplete(long latencyNanos, boolean failure) {
+        outstanding.decrementAndGet();
+        updateEwma(latencyNanos);
+        if (failure) {
+            return consecutiveFailures.incrementAndGet();
+        }
+        consecutiveFailures.set(0);
+        return 0;
+    }
+
+    /**
+     * Record a request that ended without telling anything about the instance
+     */
+    void onAbandoned() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * Expected cost of sending one more request here: latency scaled by queue depth
+     */
+    double cost() {
+        long ewma = ewmaNanos.get();
+        return (ewma == 0 ? 1 : ewma) * (outstanding.get() + 1.0);
+    }
+
+    void eject(long until) {
+        ejectedUntil = until;
+        ejected = true;
+        consecutiveFailures.set(0);
+    }
+
+    boolean isEjected(long now) {
+        return ejected && now - ejectedUntil < 0;
+    }
+
+    /**
+     * Apply a health check result; the state flips after the given number of consecutive results
+     */
+    void onHealthCheck(boolean passed, int healthyThreshold, int unhealthyThreshold) {
+        if (passed == healthy) {
+            checkStreak.set(0);
+            return;
+        }
+        if (checkStreak.incrementAndGet() >= (passed ? healthyThreshold : unhealthyThreshold)) {
+            healthy = passed;
+            checkStreak.set(0);
+        }
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public double getEwmaMillis() {
+        return ewmaNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Peak-sensitive EWMA: jumps up to slower samples at once, decays slowly on faster ones
+     */
+    private void updateEwma(long sample) {
+        long current;
+        long next;
+        do {
+            current = ewmaNanos.get();
+            next = current == 0 || sample > current
+                    ? sample
+                    : (long) (current + (sample - current) * DECAY);
+        } while (!ewmaNanos.compareAndSet(current, next));
+    }
+}
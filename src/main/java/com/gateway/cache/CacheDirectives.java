@@ -0,0 +1,64 @@
+package com.gateway.cache;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Cache-Control directives that matter to a shared cache
+ */
+@Getter
+public class CacheDirectives {
+
+    private boolean noStore;
+    private boolean noCache;
+    private boolean privateResponse;
+    private boolean publicResponse;
+    private long maxAge = -1;                 // seconds, -1 if absent
+    private long sharedMaxAge = -1;           // s-maxage
+    private long staleWhileRevalidate = -1;
+
+    /**
+     * Parse every Cache-Control header value, e.g. "public, max-age=60, stale-while-revalidate=30"
+     */
+    public static CacheDirectives parse(List<String> values) {
+        CacheDirectives directives = new CacheDirectives();
+        if (values == null) {
+            return directives;
+        }
+        for (String value : values) {
+            for (String directive : value.split(",")) {
+                directives.apply(directive.trim());
+            }
+        }
+        return directives;
+    }
+
+    private void apply(String directive) {
+        int eq = directive.indexOf('=');
+        String name = (eq < 0 ? directive : directive.substring(0, eq)).trim().toLowerCase(Locale.ROOT);
+        String argument = eq < 0 ? null : directive.substring(eq + 1).trim().replace("\"", "");
+
+        switch (name) {
+            case "no-store" -> noStore = true;
+            case "no-cache" -> noCache = true;
+            case "private" -> privateResponse = true;
+            case "public" -> publicResponse = true;
+            case "max-age" -> maxAge = seconds(argument);
+            case "s-maxage" -> sharedMaxAge = seconds(argument);
+            case "stale-while-revalidate" -> staleWhileRevalidate = seconds(argument);
+            default -> {
+            }
+        }
+    }
+
+    private static long seconds(String argument) {
+        try {
+            return argument != null ? Math.max(0, Long.parseLong(argument)) : -1;
+        } catch (NumberFormatException e) {
+            // Invalid values are treated as stale (RFC 9111 section 4.2.1)
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.gateway.cache;
+
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * An immutable upstream response held in the response cache, with its freshness
+ * and the request header values it was selected by (Vary)
+ */
+@Getter
+public class CachedResponse {
+
+    private final int status;
+    private final HttpHeaders headers;
+    private final byte[] body;
+    private final List<String> varyNames;
+    private final List<String> varyValues;
+    private final String etag;
+    private final long storedAt;       // epoch millis
+    private final long initialAge;     // seconds, from the upstream Age header
+    private final long freshUntil;     // epoch millis
+    private final long staleUntil;     // epoch millis, end of stale-while-revalidate
+    private final boolean shared;      // marked public or s-maxage: may go to callers with credentials
+
+    public CachedResponse(int status, HttpHeaders headers, byte[] body,
+                          List<String> varyNames, List<String> varyValues,
+                          long storedAt, long initialAge, long freshUntil, long staleUntil) {
+        this.status = status;
+        this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+        this.body = body;
+        this.varyNames = varyNames;
+        this.varyValues = varyValues;
+        this.etag = headers.getETag();
+        this.storedAt = storedAt;
+        this.initialAge = initialAge;
+        this.freshUntil = freshUntil;
+        this.staleUntil = staleUntil;
+        CacheDirectives directives = CacheDirectives.parse(headers.get(HttpHeaders.CACHE_CONTROL));
+        this.shared = directives.isPublicResponse() || directives.getSharedMaxAge() >= 0;
+    }
+
+    public boolean isFresh(long now) {
+        return now < freshUntil;
+    }
+
+    /**
+     * Stale, but still inside the stale-while-revalidate window
+     */
+    public boolean isServableStale(long now) {
+        return now < staleUntil;
+    }
+
+    /**
+     * Value for the Age header
+     */
+    public long getAgeSeconds(long now) {
+        return initialAge + Math.max(0, now - storedAt) / 1000;
+    }
+
+    /**
+     * Check whether this variant was stored for the same values of the Vary headers
+     */
+    public boolean matches(Function<String, String> requestHeaders) {
+        for (int i = 0; i < varyNames.size(); i++) {
+            if (!Objects.equals(varyValues.get(i), requestHeaders.apply(varyNames.get(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check an If-None-Match request header against this response's ETag (weak comparison)
+     */
+    public boolean matchesEtag(String ifNoneMatch) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        String own = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || stripWeak(tag).equals(own)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Approximate heap footprint, used to bound the cache in bytes
+     */
+    public int weight() {
+        int weight = 128 + body.length;
+        for (var header : headers.entrySet()) {
+            weight += 2 * header.getKey().length();
+            for (String value : header.getValue()) {
+                weight += 2 * value.length();
+            }
+        }
+        return weight;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
@@ -0,0 +1,57 @@
+package com.gateway.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Passes bytes through to the client while keeping a copy for the cache,
+ * giving up on the copy once it grows past the entry size limit
+ */
+public class CaptureOutputStream extends OutputStream {
+
+    private final OutputStream delegate;
+    private final long maxBytes;
+    private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+    public CaptureOutputStream(OutputStream delegate, long maxBytes) {
+        this.delegate = delegate;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        delegate.write(b);
+        if (copy != null && reserve(1)) {
+            copy.write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        delegate.write(b, off, len);
+        if (copy != null && reserve(len)) {
+            copy.write(b, off, len);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    /**
+     * The captured body, or null if it was too large to cache
+     */
+    public byte[] getCaptured() {
+        return copy != null ? copy.toByteArray() : null;
+    }
+
+    private boolean reserve(int len) {
+        if (copy.size() + (long) len > maxBytes) {
+            copy = null;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,280 @@
+package com.gateway.cache;
+
+import com.gateway.model.RouteDefinition;
+import com.gateway.proxy.ProxyHeaders;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Shared HTTP cache for one route's GET responses.
+ *
+ * Bounded by total bytes with Caffeine's W-TinyLFU eviction. Entries follow
+ * the upstream's Cache-Control / Expires / Vary headers (falling back to the
+ * route's default TTL for public 200s without any), and may be served stale while
+ * a single background request per key revalidates them. The key is the URL only,
+ * so requests with credentials (Authorization, Cookie, X-API-Key) store and get
+ * only responses the upstream marked as shared (public or s-maxage).
+ */
+public class ResponseCache {
+
+    private static final int MAX_VARIANTS = 8;
+    private static final Set<Integer> CACHEABLE_STATUSES = Set.of(200, 203, 204, 300, 301, 404, 410);
+
+    private final RouteDefinition.CacheConfig config;
+    private final Cache<String, List<CachedResponse>> cache;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    public ResponseCache(RouteDefinition.CacheConfig config) {
+        this.config = config;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(config.getMaxSize().toBytes())
+                .weigher((String key, List<CachedResponse> variants) -> weigh(key, variants))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Cache key for a request: path and query string
+     */
+    public static String key(HttpServletRequest request) {
+        String query = request.getQueryString();
+        return query == null ? request.getRequestURI() : request.getRequestURI() + "?" + query;
+    }
+
+    /**
+     * Only GETs without Cache-Control: no-store take part in caching
+     */
+    public boolean isCacheableRequest(HttpServletRequest request) {
+        return "GET".equals(request.getMethod())
+                && !CacheDirectives.parse(headerValues(request, HttpHeaders.CACHE_CONTROL)).isNoStore();
+    }
+
+    /**
+     * The client asked for an end-to-end reload (no-cache, max-age=0), so skip the lookup
+     */
+    public boolean isReloadRequested(HttpServletRequest request) {
+        CacheDirectives directives = CacheDirectives.parse(headerValues(request, HttpHeaders.CACHE_CONTROL));
+        return directives.isNoCache() || directives.getMaxAge() == 0
+                || "no-cache".equalsIgnoreCase(request.getHeader(HttpHeaders.PRAGMA));
+    }
+
+    /**
+     * Find the stored variant matching the request's Vary header values
+     */
+    public CachedResponse lookup(String key, Function<String, String> requestHeaders) {
+        List<CachedResponse> variants = cache.getIfPresent(key);
+        if (variants == null) {
+            return null;
+        }
+        boolean credentials = hasCredentials(requestHeaders);
+        for (CachedResponse variant : variants) {
+            if (variant.matches(requestHeaders) && (!credentials || variant.isShared())) {
+                return variant;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check whether a response may be stored, before its body is read
+     */
+    public boolean isCacheable(int status, HttpHeaders headers, Function<String, String> requestHeaders) {
+        if (!CACHEABLE_STATUSES.contains(status) || headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return false;
+        }
+        if (headers.getContentLength() > config.getMaxEntrySize().toBytes()) {
+            return false;
+        }
+        for (String vary : headers.getVary()) {
+            if (vary.equals("*")) {
+                return false;
+            }
+        }
+
+        CacheDirectives directives = CacheDirectives.parse(headers.get(HttpHeaders.CACHE_CONTROL));
+        if (directives.isNoStore() || directives.isNoCache() || directives.isPrivateResponse()) {
+            return false;
+        }
+        // Responses to callers with credentials are only shared when the upstream says so (RFC 9111 section 3.5)
+        if (hasCredentials(requestHeaders) && !directives.isPublicResponse() && directives.getSharedMaxAge() < 0) {
+            return false;
+        }
+        return freshnessLifetime(status, headers, directives, System.currentTimeMillis()) > 0
+                || directives.getStaleWhileRevalidate() > 0;
+    }
+
+    /**
+     * Store a response if it is cacheable; returns the stored entry or null
+     */
+    public CachedResponse store(String key, Function<String, String> requestHeaders,
+                                int status, HttpHeaders upstreamHeaders, byte[] body) {
+        if (body.length > config.getMaxEntrySize().toBytes()
+                || !isCacheable(status, upstreamHeaders, requestHeaders)) {
+            return null;
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        upstreamHeaders.forEach((name, values) -> {
+            if (isStoredHeader(name)) {
+                headers.addAll(name, values);
+            }
+        });
+
+        List<String> varyNames = new ArrayList<>();
+        List<String> varyValues = new ArrayList<>();
+        for (String vary : upstreamHeaders.getVary()) {
+            String name = vary.trim().toLowerCase(Locale.ROOT);
+            varyNames.add(name);
+            varyValues.add(requestHeaders.apply(name));
+        }
+
+        CachedResponse entry = withFreshness(status, headers, body, varyNames, varyValues, System.currentTimeMillis());
+        cache.asMap().compute(key, (k, variants) -> replaceVariant(variants, entry));
+        return entry;
+    }
+
+    /**
+     * Extend a stored entry after the upstream answered a revalidation with 304
+     */
+    public void refresh(String key, CachedResponse stale, HttpHeaders notModifiedHeaders) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.addAll(stale.getHeaders());
+        notModifiedHeaders.forEach((name, values) -> {
+            if (isStoredHeader(name) && !name.equalsIgnoreCase(HttpHeaders.CONTENT_TYPE)) {
+                headers.put(name, values);
+            }
+        });
+
+        CachedResponse entry = withFreshness(stale.getStatus(), headers, stale.getBody(),
+                stale.getVaryNames(), stale.getVaryValues(), System.currentTimeMillis());
+        cache.asMap().compute(key, (k, variants) -> replaceVariant(variants, entry));
+    }
+
+    /**
+     * Claim the background revalidation of a stale entry; false if one is already running
+     */
+    public boolean startRefresh(String key, CachedResponse stale) {
+        return refreshing.add(key + stale.getVaryValues());
+    }
+
+    public void finishRefresh(String key, CachedResponse stale) {
+        refreshing.remove(key + stale.getVaryValues());
+    }
+
+    public long getMaxEntrySize() {
+        return config.getMaxEntrySize().toBytes();
+    }
+
+    public Cache<String, List<CachedResponse>> getCache() {
+        return cache;
+    }
+
+    /**
+     * Total weight of the stored responses in bytes
+     */
+    public long getWeightedSize() {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    private CachedResponse withFreshness(int status, HttpHeaders headers, byte[] body,
+                                         List<String> varyNames, List<String> varyValues, long now) {
+        CacheDirectives directives = CacheDirectives.parse(headers.get(HttpHeaders.CACHE_CONTROL));
+        long lifetime = freshnessLifetime(status, headers, directives, now);
+        long age = parseAge(headers.getFirst(HttpHeaders.AGE));
+        long staleWindow = directives.getStaleWhileRevalidate() >= 0
+                ? directives.getStaleWhileRevalidate() * 1000
+                : config.getStaleWhileRevalidate().toMillis();
+
+        // The upstream's Age is replaced by our own on every hit
+        headers.remove(HttpHeaders.AGE);
+        long freshUntil = now + lifetime - age * 1000;
+        return new CachedResponse(status, headers, body, varyNames, varyValues,
+                now, age, freshUntil, freshUntil + staleWindow);
+    }
+
+    /**
+     * Freshness lifetime in millis: s-maxage, max-age, Expires, then the route default for public responses
+     */
+    private long freshnessLifetime(int status, HttpHeaders headers, CacheDirectives directives, long now) {
+        if (directives.getSharedMaxAge() >= 0) {
+            return directives.getSharedMaxAge() * 1000;
+        }
+        if (directives.getMaxAge() >= 0) {
+            return directives.getMaxAge() * 1000;
+        }
+        if (headers.containsKey(HttpHeaders.EXPIRES)) {
+            long expires = headers.getExpires();
+            long date = headers.getDate();
+            return expires < 0 ? 0 : expires - (date > 0 ? date : now);
+        }
+        return (status == 200 || status == 203) && directives.isPublicResponse()
+                ? config.getDefaultTtl().toMillis() : 0;
+    }
+
+    private static boolean hasCredentials(Function<String, String> requestHeaders) {
+        for (String name : ProxyHeaders.CREDENTIALS) {
+            if (requestHeaders.apply(name) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long parseAge(String age) {
+        try {
+            return age != null ? Math.max(0, Long.parseLong(age.trim())) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static List<CachedResponse> replaceVariant(List<CachedResponse> variants, CachedResponse entry) {
+        List<CachedResponse> updated = new ArrayList<>(MAX_VARIANTS);
+        updated.add(entry);
+        if (variants != null) {
+            for (CachedResponse variant : variants) {
+                if (updated.size() < MAX_VARIANTS && !variant.getVaryValues().equals(entry.getVaryValues())) {
+                    updated.add(variant);
+                }
+            }
+        }
+        return List.copyOf(updated);
+    }
+
+    private static int weigh(String key, List<CachedResponse> variants) {
+        long weight = 2L * key.length();
+        for (CachedResponse variant : variants) {
+            weight += variant.weight();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+
+    /**
+     * Connection-level and per-client headers are not stored
+     */
+    private static boolean isStoredHeader(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return !(lower.equals("connection") ||
+                lower.equals("keep-alive") ||
+                lower.equals("transfer-encoding") ||
+                lower.equals("content-length") ||
+                lower.equals("set-cookie") ||
+                lower.equals("proxy-authenticate") ||
+                lower.equals("trailers") ||
+                lower.equals("upgrade"));
+    }
+
+    private static List<String> headerValues(HttpServletRequest request, String name) {
+        String value = request.getHeader(name);
+        return value != null ? List.of(value) : null;
+    }
+}
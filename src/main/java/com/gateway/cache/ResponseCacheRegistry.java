@@ -0,0 +1,99 @@
+package com.gateway.cache;
+
+import com.gateway.metrics.RouteMeters;
+import com.gateway.model.RouteDefinition;
+import com.gateway.routing.RouteChangeListener;
+import com.gateway.routing.RouteStates;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds one response cache per route that enables caching, with its metrics
+ * and the executor that revalidates stale entries in the background
+ */
+@Component
+public class ResponseCacheRegistry implements RouteChangeListener {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RouteDefinition routeDefinition;
+
+    // Cached responses can depend on anything about the route (upstream, path rewriting)
+    private final RouteStates<ResponseCache> caches = new RouteStates<>(
+            () -> routeDefinition.getRoutes(), RouteDefinition.Route::equals, this::createCache, this::discardCache);
+    private final Map<String, Counter> results = new ConcurrentHashMap<>();
+
+    // Revalidation is blocking I/O, at most one request per stale key
+    private final ExecutorService refreshExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("cache-refresh-", 0).factory());
+
+    /**
+     * Get the response cache for a route, or null if caching is not enabled for it
+     */
+    public ResponseCache getCache(RouteDefinition.Route route) {
+        if (!route.getCache().isEnabled()) {
+            return null;
+        }
+        return caches.get(route);
+    }
+
+    /**
+     * Count a cache outcome for a route: hit, stale, miss, not_modified or bypass
+     */
+    public void recordResult(RouteDefinition.Route route, String result) {
+        results.computeIfAbsent(route.getId() + ":" + result, k -> Counter.builder("gateway.cache.requests")
+                .tag("route", route.getId())
+                .tag("result", result)
+                .register(meterRegistry)).increment();
+    }
+
+    public ExecutorService getRefreshExecutor() {
+        return refreshExecutor;
+    }
+
+    /**
+     * Any change to a route starts an empty cache
+     */
+    @Override
+    public void onRouteChanged(RouteDefinition.Route previous, RouteDefinition.Route current) {
+        caches.remove(previous.getId());
+        results.keySet().removeIf(key -> key.startsWith(previous.getId() + ":"));
+        RouteMeters.remove(meterRegistry, previous.getId(), "cache.", "gateway.cache");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private ResponseCache createCache(RouteDefinition.Route route) {
+        String routeId = route.getId();
+        ResponseCache cache = new ResponseCache(route.getCache());
+
+        // cache.gets{result=hit|miss}, cache.evictions, cache.eviction.weight, cache.size
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.getCache(), "response-cache", Tags.of("route", routeId));
+        Gauge.builder("gateway.cache.bytes", cache, ResponseCache::getWeightedSize)
+                .tag("route", routeId)
+                .register(meterRegistry);
+
+        return cache;
+    }
+
+    private void discardCache(String routeId, ResponseCache cache) {
+        cache.getCache().invalidateAll();
+        RouteMeters.remove(meterRegistry, routeId, "cache.", "gateway.cache.bytes");
+    }
+}
@@ -1,14 +1,21 @@
 package com.gateway.config;
 
+import com.gateway.model.RateLimitAlgorithm;
+import com.gateway.ratelimit.RedisShards;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.time.Duration;
+import java.util.List;
+
 @Slf4j
 @Configuration
 @ConditionalOnProperty(name = "gateway.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
@@ -29,32 +36,30 @@ public class RedisConfig {
         return template;
     }
 
+    /**
+     * Standalone nodes to spread rate-limit keys over instead of the one Redis above.
+     * For Redis Cluster leave this out and set spring.data.redis.cluster.nodes: the
+     * keys carry hash tags, so each script's keys share one slot.
+     */
     @Bean
-    public DefaultRedisScript<Long> rateLimitScript() {
-        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
-
-        // Lua script for atomic rate limiting
-        String luaScript = """
-            local key = KEYS[1]
-            local limit = tonumber(ARGV[1])
-            local window = tonumber(ARGV[2])
-            
-            local current = redis.call('incr', key)
-            
-            if current == 1 then
-                redis.call('expire', key, window)
-            end
-            
-            if current > limit then
-                return 0
-            else
-                return limit - current
-            end
-            """;
-
-        script.setScriptText(luaScript);
-        script.setResultType(Long.class);
+    @ConditionalOnProperty(name = "gateway.rate-limit.redis.nodes")
+    public RedisShards redisShards(@Value("${gateway.rate-limit.redis.nodes}") List<String> nodes,
+                                   @Value("${spring.data.redis.timeout:2s}") Duration timeout) {
+        log.info("Rate limit keys sharded over {} Redis nodes: {}", nodes.size(), nodes);
+        return new RedisShards(nodes, timeout);
+    }
+
+    @Bean
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public DefaultRedisScript<List<Long>> rateLimitScript(
+            @Value("${gateway.rate-limit.algorithm:SLIDING_WINDOW}") RateLimitAlgorithm algorithm) {
+        log.info("Rate limit algorithm: {}", algorithm);
+
+        // Lua script for atomic rate limiting, one round trip per decision
+        DefaultRedisScript<List<Long>> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(algorithm.getScriptPath()));
+        script.setResultType((Class) List.class);
 
         return script;
     }
-}
\ No newline at end of file
+}
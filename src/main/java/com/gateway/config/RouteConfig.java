@@ -19,7 +19,8 @@ public class RouteConfig {
         log.info("========================================");
         log.info("Configured Routes:");
         routeDefinition.getRoutes().forEach(route ->
-                log.info("  {} -> {} ({})", route.getPath(), route.getUri(), route.getId())
+                log.info("  {} -> {} ({})", route.getPath(),
+                        route.getInstances().isEmpty() ? route.getUri() : route.getInstances(), route.getId())
         );
         log.info("========================================");
     }
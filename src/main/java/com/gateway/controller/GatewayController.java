@@ -1,28 +1,63 @@
 package com.gateway.controller;
 
+import com.gateway.model.RateLimitWindow;
+import com.gateway.model.RouteDefinition;
+import com.gateway.model.UserTier;
+import com.gateway.proxy.CircuitBreaker;
+import com.gateway.proxy.CircuitBreakerRegistry;
+import com.gateway.ratelimit.HeavyHitters;
+import com.gateway.ratelimit.SpaceSaving;
+import com.gateway.routing.CompiledRoute;
+import com.gateway.routing.RouteLoader;
+import com.gateway.routing.RouteLocator;
+import com.gateway.routing.RouteUpdate;
+import com.gateway.routing.RouteValidator;
 import com.gateway.service.ProxyService;
 import com.gateway.service.RateLimiterService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 @Slf4j
 @RestController
 public class GatewayController {
 
+    private static final String API_KEY_PREFIX = "apikey:";
+
     @Autowired
     private ProxyService proxyService;
 
     @Autowired
     private RateLimiterService rateLimiterService;
 
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakers;
+
+    @Autowired
+    private HeavyHitters heavyHitters;
+
+    @Autowired
+    private RouteLocator routeLocator;
+
+    @Value("${gateway.admin.route-updates.enabled:false}")
+    private boolean routeUpdatesEnabled;
+
     /**
      * Main gateway endpoint - forwards all API requests
      */
@@ -33,13 +68,10 @@ public class GatewayController {
             RequestMethod.DELETE,
             RequestMethod.PATCH
     })
-    public ResponseEntity<String> gateway(HttpServletRequest request) {
-
-        // Read request body
-        String body = readBody(request);
+    public void gateway(HttpServletRequest request, HttpServletResponse response) throws IOException {
 
-        // Forward to backend service
-        return proxyService.forwardRequest(request, body);
+        // Forward to backend service; the response is written directly
+        proxyService.proxy(request, response);
     }
 
     /**
@@ -69,36 +101,193 @@ public class GatewayController {
     }
 
     /**
-     * Admin endpoint - Check rate limit status
+     * Admin endpoint - Check rate limit status: usage of every window the identifier
+     * is limited by (its API key's tier, or the anonymous limit), and its recent counts.
+     * Usage leaves out the tokens leased to this node and not spent yet (leased_tokens);
+     * unspent leases of other nodes still count, at most (nodes - 1) x lease max-size.
      */
     @GetMapping("/admin/rate-limit/status")
     public ResponseEntity<Map<String, Object>> getRateLimitStatus(@RequestParam String identifier) {
-        long usage = rateLimiterService.getCurrentUsage(identifier);
+        UserTier tier = identifier.startsWith(API_KEY_PREFIX)
+                ? rateLimiterService.resolveTier(identifier.substring(API_KEY_PREFIX.length()))
+                : null;
+
+        List<Map<String, Object>> windows = new ArrayList<>();
+        boolean limited = false;
+        long leased = rateLimiterService.getLeasedTokens(identifier);
+        for (RateLimitWindow window : rateLimiterService.getWindows(tier)) {
+            long usage = Math.max(0, rateLimiterService.getCurrentUsage(identifier, window) - leased);
+            long remaining = Math.max(0, window.getLimit() - usage);
+            limited |= remaining == 0;
 
-        Map<String, Object> response = new HashMap<>();
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("window_seconds", window.getWindow().toSeconds());
+            status.put("limit", window.getLimit());
+            status.put("current_usage", usage);
+            status.put("remaining", remaining);
+            windows.add(status);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
         response.put("identifier", identifier);
-        response.put("current_usage", usage);
-        response.put("limit", 100);
-        response.put("remaining", Math.max(0, 100 - usage));
+        response.put("tier", tier != null ? tier.name() : "ANONYMOUS");
+        response.put("limited", limited);
+        response.put("leased_tokens", leased);
+        response.put("windows", windows);
+        if (heavyHitters.isEnabled()) {
+            HeavyHitters.Period period = heavyHitters.getCurrent();
+            response.put("recent_requests", period.getRequests().estimate(identifier));
+            response.put("recent_rejections", period.getRejections().estimate(identifier));
+        }
 
         return ResponseEntity.ok(response);
     }
 
     /**
-     * Read request body
+     * Admin endpoint - Identifiers sending the most requests and getting the most rejections,
+     * in the current and the last complete interval. Counts are upper bounds, off by at most error.
      */
-    private String readBody(HttpServletRequest request) {
+    @GetMapping("/admin/rate-limit/top")
+    public ResponseEntity<Map<String, Object>> getTopIdentifiers(@RequestParam(defaultValue = "10") int n) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("enabled", heavyHitters.isEnabled());
+        response.put("interval_seconds", heavyHitters.getInterval().toSeconds());
+        response.put("current", describe(heavyHitters.getCurrent(), n, System.currentTimeMillis()));
+        HeavyHitters.Period previous = heavyHitters.getPrevious();
+        response.put("previous", previous != null ? describe(previous, n, previous.getEnd()) : null);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Admin endpoint - Circuit breaker state per route
+     */
+    @GetMapping("/admin/circuit-breakers")
+    public ResponseEntity<Map<String, Object>> getCircuitBreakers() {
+        Map<String, Object> response = new TreeMap<>();
+        circuitBreakers.getCircuitBreakers().forEach((routeId, breaker) -> {
+            Map<String, Object> status = new HashMap<>();
+            status.put("state", breaker.getState());
+            status.put("calls", breaker.getCalls());
+            status.put("failure_rate", breaker.getFailureRate());
+            status.put("slow_call_rate", breaker.getSlowCallRate());
+            status.put("retry_after_ms", breaker.getRetryAfterMillis());
+            response.put(routeId, status);
+        });
+
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Admin endpoint - Close a route's circuit breaker
+     */
+    @PostMapping("/admin/circuit-breakers/reset")
+    public ResponseEntity<Map<String, String>> resetCircuitBreaker(@RequestParam String route) {
+        CircuitBreaker breaker = circuitBreakers.getCircuitBreakers().get(route);
+
+        Map<String, String> response = new HashMap<>();
+        response.put("route", route);
+        if (breaker == null) {
+            response.put("message", "No circuit breaker for route");
+            return ResponseEntity.status(404).body(response);
+        }
+
+        breaker.reset();
+        response.put("message", "Circuit breaker reset successfully");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Admin endpoint - Live routes with the version and diff of the last update
+     */
+    @GetMapping("/admin/routes")
+    public ResponseEntity<Map<String, Object>> getRoutes() {
+        Map<String, Object> response = describe(routeLocator.getLastUpdate());
+        response.put("routes", routeLocator.getRouteTable().getRoutes().stream()
+                .map(CompiledRoute::getRoute)
+                .map(route -> {
+                    Map<String, Object> summary = new LinkedHashMap<>();
+                    summary.put("id", route.getId());
+                    summary.put("path", route.getPath());
+                    summary.put("methods", route.getMethods());
+                    summary.put("upstreams", route.getInstances().isEmpty()
+                            ? List.of(route.getUri()) : route.getInstances());
+                    summary.put("mode", routeLocator.getMode(route));
+                    return summary;
+                })
+                .toList());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Admin endpoint - Replace the route set (YAML or JSON with a top-level "routes" list).
+     * With dryRun the set is only validated. The admin API is unauthenticated, so this is
+     * refused unless gateway.admin.route-updates.enabled is set.
+     */
+    @PutMapping("/admin/routes")
+    public ResponseEntity<Map<String, Object>> updateRoutes(@RequestBody String body,
+                                                            @RequestParam(defaultValue = "false") boolean dryRun) {
+        if (!routeUpdatesEnabled) {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("errors", List.of("route updates are disabled (gateway.admin.route-updates.enabled)"));
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+
+        List<RouteDefinition.Route> routes;
         try {
-            BufferedReader reader = request.getReader();
-            StringBuilder body = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                body.append(line);
-            }
-            return body.toString();
-        } catch (IOException e) {
-            log.error("Error reading request body: {}", e.getMessage());
-            return "";
+            routes = RouteLoader.load(new ByteArrayResource(body.getBytes(StandardCharsets.UTF_8), "routes.yml"));
+        } catch (IOException | RuntimeException e) {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("errors", List.of("unreadable: " + e.getMessage()));
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        List<String> errors = dryRun ? RouteValidator.validate(routes) : routeLocator.update(routes, "admin");
+        if (!errors.isEmpty()) {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("errors", errors);
+            return ResponseEntity.badRequest().body(response);
+        }
+        if (dryRun) {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("valid", true);
+            response.put("routes", routes.size());
+            return ResponseEntity.ok(response);
         }
+        return ResponseEntity.ok(describe(routeLocator.getLastUpdate()));
+    }
+
+    private static Map<String, Object> describe(HeavyHitters.Period period, int n, long until) {
+        double seconds = Math.max(1, until - period.getStart()) / 1000.0;
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("from", Instant.ofEpochMilli(period.getStart()).toString());
+        response.put("total_requests", period.getRequests().getTotal());
+        response.put("total_rejections", period.getRejections().getTotal());
+        response.put("by_requests", describe(period.getRequests().top(n), seconds));
+        response.put("by_rejections", describe(period.getRejections().top(n), seconds));
+        return response;
+    }
+
+    private static List<Map<String, Object>> describe(List<SpaceSaving.Entry> entries, double seconds) {
+        return entries.stream()
+                .map(entry -> {
+                    Map<String, Object> summary = new LinkedHashMap<>();
+                    summary.put("identifier", entry.getItem());
+                    summary.put("count", entry.getCount());
+                    summary.put("error", entry.getError());
+                    summary.put("per_second", Math.round(entry.getCount() / seconds * 100) / 100.0);
+                    return summary;
+                })
+                .toList();
+    }
+
+    private static Map<String, Object> describe(RouteUpdate update) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("version", update.getVersion());
+        response.put("source", update.getSource());
+        response.put("applied_at", update.getAppliedAt().toString());
+        response.put("added", update.getAdded());
+        response.put("removed", update.getRemoved());
+        response.put("changed", update.getChanged());
+        return response;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package com.gateway.exception;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Responses the gateway answers with itself. Bodies are encoded once, up front:
+ * they carry no request data, so an error spike costs no string building and
+ * nothing from the request or an exception message ends up in the JSON.
+ */
+public enum GatewayError {
+
+    NO_ROUTE(HttpStatus.NOT_FOUND, "Not Found", "No route found"),
+    BAD_REQUEST(HttpStatus.BAD_REQUEST, "Bad Request", "Invalid request"),
+    CIRCUIT_OPEN(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", "Upstream circuit is open"),
+    BULKHEAD_FULL(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", "Too many concurrent requests"),
+    OVERLOADED(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", "Upstream is at its concurrency limit"),
+    UPSTREAM_UNAVAILABLE(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable",
+            "Backend service is currently unavailable"),
+    FORWARD_FAILED(HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error", "The upstream request failed"),
+    UNEXPECTED(HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error", "An unexpected error occurred");
+
+    private final HttpStatus status;
+    private final byte[] body;
+
+    GatewayError(HttpStatus status, String error, String message) {
+        this.status = status;
+        this.body = ("{\"error\": \"" + error + "\", \"message\": \"" + message + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * As an entity, for paths that relay buffered responses; the body array is shared, do not modify it
+     */
+    public ResponseEntity<byte[]> toResponseEntity() {
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    /**
+     * As an entity telling the client when to try again
+     */
+    public ResponseEntity<byte[]> toResponseEntity(long retryAfterSeconds) {
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    /**
+     * Write directly to the servlet response
+     */
+    public void write(HttpServletResponse response) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        response.flushBuffer();
+    }
+}
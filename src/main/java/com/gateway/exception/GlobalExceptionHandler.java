@@ -1,15 +1,14 @@
 package com.gateway.exception;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.client.ResourceAccessException;
 
-import java.util.HashMap;
-import java.util.Map;
-
+/**
+ * Maps exceptions escaping controllers to the gateway's precomputed error responses
+ */
 @Slf4j
 @RestControllerAdvice
 public class GlobalExceptionHandler {
@@ -18,48 +17,26 @@ public class GlobalExceptionHandler {
      * Handle service unavailable exceptions
      */
     @ExceptionHandler(ResourceAccessException.class)
-    public ResponseEntity<Map<String, String>> handleServiceUnavailable(ResourceAccessException e) {
-        log.error("Service unavailable: {}", e.getMessage());
-
-        Map<String, String> error = new HashMap<>();
-        error.put("error", "Service Unavailable");
-        error.put("message", "Backend service is currently unavailable");
-        error.put("details", e.getMessage());
-
-        return ResponseEntity
-                .status(HttpStatus.SERVICE_UNAVAILABLE)
-                .body(error);
+    public ResponseEntity<byte[]> handleServiceUnavailable(ResourceAccessException e) {
+        log.warn("Service unavailable: {}", e.getMessage());
+        return GatewayError.UPSTREAM_UNAVAILABLE.toResponseEntity();
     }
 
     /**
      * Handle illegal arguments
      */
     @ExceptionHandler(IllegalArgumentException.class)
-    public ResponseEntity<Map<String, String>> handleIllegalArgument(IllegalArgumentException e) {
-        log.error("Invalid argument: {}", e.getMessage());
-
-        Map<String, String> error = new HashMap<>();
-        error.put("error", "Bad Request");
-        error.put("message", e.getMessage());
-
-        return ResponseEntity
-                .status(HttpStatus.BAD_REQUEST)
-                .body(error);
+    public ResponseEntity<byte[]> handleIllegalArgument(IllegalArgumentException e) {
+        log.warn("Invalid argument: {}", e.getMessage());
+        return GatewayError.BAD_REQUEST.toResponseEntity();
     }
 
     /**
      * Handle all other exceptions
      */
     @ExceptionHandler(Exception.class)
-    public ResponseEntity<Map<String, String>> handleGenericException(Exception e) {
+    public ResponseEntity<byte[]> handleGenericException(Exception e) {
         log.error("Unexpected error: {}", e.getMessage(), e);
-
-        Map<String, String> error = new HashMap<>();
-        error.put("error", "Internal Server Error");
-        error.put("message", "An unexpected error occurred");
-
-        return ResponseEntity
-                .status(HttpStatus.INTERNAL_SERVER_ERROR)
-                .body(error);
+        return GatewayError.UNEXPECTED.toResponseEntity();
     }
-}
\ No newline at end of file
+}
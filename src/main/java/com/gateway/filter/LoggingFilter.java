@@ -1,21 +1,31 @@
 package com.gateway.filter;
 
+import com.gateway.accesslog.AccessLog;
+import com.gateway.accesslog.RequestIds;
+import com.gateway.metrics.Phase;
+import com.gateway.metrics.RequestMetrics;
+import com.gateway.metrics.RequestTimings;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.time.Instant;
-import java.util.UUID;
 
 @Slf4j
 @Component
 @Order(1)
 public class LoggingFilter implements Filter {
 
+    @Autowired
+    private RequestMetrics requestMetrics;
+
+    @Autowired
+    private AccessLog accessLog;
+
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException {
@@ -24,27 +34,75 @@ public class LoggingFilter implements Filter {
         HttpServletResponse httpResponse = (HttpServletResponse) response;
 
         // Generate request ID
-        String requestId = UUID.randomUUID().toString().substring(0, 8);
+        String requestId = RequestIds.next();
         httpRequest.setAttribute("requestId", requestId);
         httpResponse.addHeader("X-Request-ID", requestId);
 
-        // Log request
-        long startTime = Instant.now().toEpochMilli();
-        log.info("[{}] --> {} {} from {}",
-                requestId,
-                httpRequest.getMethod(),
-                httpRequest.getRequestURI(),
-                httpRequest.getRemoteAddr());
+        RequestTimings timings = RequestTimings.start(httpRequest);
+        log.debug("[{}] --> {} {}", requestId, httpRequest.getMethod(), httpRequest.getRequestURI());
 
         try {
             chain.doFilter(request, response);
         } finally {
-            // Log response
-            long duration = Instant.now().toEpochMilli() - startTime;
-            log.info("[{}] <-- {} in {}ms",
-                    requestId,
-                    httpResponse.getStatus(),
-                    duration);
+            RequestTimings.unbind();
+            // Async requests finish when their async context completes
+            if (httpRequest.isAsyncStarted()) {
+                httpRequest.getAsyncContext().addListener(
+                        new CompletionListener(requestId, timings, httpRequest, httpResponse));
+            } else {
+                complete(requestId, timings, httpRequest, httpResponse.getStatus());
+            }
+        }
+    }
+
+    /**
+     * Record the request's timings and write its access log record
+     */
+    private void complete(String requestId, RequestTimings timings, HttpServletRequest request, int status) {
+        long duration = System.nanoTime() - timings.getStart();
+        requestMetrics.record(timings, status);
+
+        long firstByte = timings.get(Phase.FIRST_BYTE);
+        long upstream = firstByte < 0 ? -1 : firstByte + Math.max(0, timings.get(Phase.TRANSFER));
+        accessLog.log(requestId, request.getMethod(), request.getRequestURI(), request.getRemoteAddr(),
+                timings.getRoute(), status, duration, upstream);
+    }
+
+    /**
+     * Completes an async request, following it through further async cycles
+     */
+    private class CompletionListener implements AsyncListener {
+
+        private final String requestId;
+        private final RequestTimings timings;
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+
+        CompletionListener(String requestId, RequestTimings timings, HttpServletRequest request,
+                           HttpServletResponse response) {
+            this.requestId = requestId;
+            this.timings = timings;
+            this.request = request;
+            this.response = response;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            complete(requestId, timings, request, response.getStatus());
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Listeners are dropped when a dispatched request starts async again
+            event.getAsyncContext().addListener(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
         }
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,16 @@
 package com.gateway.filter;
 
+import com.gateway.exception.GatewayError;
+import com.gateway.metrics.Phase;
+import com.gateway.metrics.RequestTimings;
+import com.gateway.model.ProxyMode;
 import com.gateway.model.RateLimitResult;
+import com.gateway.model.RateLimitWindow;
+import com.gateway.model.UserTier;
+import com.gateway.proxy.ProxyHeaders;
+import com.gateway.ratelimit.HeavyHitters;
+import com.gateway.routing.CompiledRoute;
+import com.gateway.routing.RouteLocator;
 import com.gateway.service.RateLimiterService;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,15 +21,28 @@ import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Component
 @Order(2)
 public class RateLimitFilter implements Filter {
 
+    /**
+     * Request attribute holding the resolved UserTier of the request's API key, if any
+     */
+    public static final String TIER_ATTRIBUTE = RateLimitFilter.class.getName() + ".tier";
+
     @Autowired
     private RateLimiterService rateLimiterService;
 
+    @Autowired
+    private RouteLocator routeLocator;
+
+    @Autowired
+    private HeavyHitters heavyHitters;
+
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException {
@@ -27,44 +50,131 @@ public class RateLimitFilter implements Filter {
         HttpServletRequest httpRequest = (HttpServletRequest) request;
         HttpServletResponse httpResponse = (HttpServletResponse) response;
 
-        // Skip rate limiting for actuator endpoints
+        // Skip rate limiting for actuator endpoints. Filter beans only see REQUEST dispatches,
+        // so the async dispatch below goes straight to the servlet.
         if (httpRequest.getRequestURI().startsWith("/actuator")) {
             chain.doFilter(request, response);
             return;
         }
 
-        // Get identifier (API key or IP address)
-        String identifier = getIdentifier(httpRequest);
+        // Get identifier (API key or IP address) and the API key's tier
+        String apiKey = httpRequest.getHeader(ProxyHeaders.API_KEY);
+        boolean hasApiKey = apiKey != null && !apiKey.isEmpty();
+        String identifier = getIdentifier(httpRequest, apiKey);
 
-        // Check rate limit
-        RateLimitResult result = rateLimiterService.checkRateLimit(identifier);
+        // Async routes check without holding this thread, then continue in an async dispatch
+        RequestTimings timings = RequestTimings.of(httpRequest);
+        long start = System.nanoTime();
+        CompiledRoute route = routeLocator.locate(httpRequest.getMethod(), httpRequest.getRequestURI());
+        if (route != null && routeLocator.getMode(route.getRoute()) == ProxyMode.ASYNC
+                && request.isAsyncSupported()) {
+            AsyncContext async = request.startAsync();
+            async.setTimeout(0);
+            CompletableFuture<UserTier> tier = hasApiKey
+                    ? rateLimiterService.resolveTierAsync(apiKey)
+                    : CompletableFuture.completedFuture(null);
+            tier.thenCompose(t -> rateLimiterService.checkRateLimitAsync(identifier, t))
+                    .whenComplete((result, error) -> {
+                        if (timings != null) {
+                            timings.addSince(Phase.RATE_LIMIT, start);
+                        }
+                        boolean dispatched = false;
+                        try {
+                            if (error != null || applyResult(httpRequest, httpResponse, identifier, result)) {
+                                async.dispatch();
+                                dispatched = true;
+                            }
+                        } catch (Exception e) {
+                            log.warn("Error applying rate limit result: {}", e.getMessage());
+                            writeError(httpResponse);
+                        } finally {
+                            // Nothing else would end the request, and the async timeout is off
+                            if (!dispatched) {
+                                async.complete();
+                            }
+                        }
+                    });
+            return;
+        }
+
+        // Check rate limit against every window of the tier
+        UserTier tier = hasApiKey ? rateLimiterService.resolveTier(apiKey) : null;
+        RateLimitResult result = rateLimiterService.checkRateLimit(identifier, tier);
+        if (timings != null) {
+            timings.addSince(Phase.RATE_LIMIT, start);
+        }
+
+        if (applyResult(httpRequest, httpResponse, identifier, result)) {
+            chain.doFilter(request, response);
+        }
+    }
+
+    /**
+     * Add the rate limit headers; if the request is over the limit write the 429 and return false
+     */
+    private boolean applyResult(HttpServletRequest httpRequest, HttpServletResponse httpResponse, String identifier,
+                                RateLimitResult result) throws IOException {
+        heavyHitters.record(identifier, !result.isAllowed());
+
+        UserTier tier = result.getTier();
+        if (tier != null) {
+            httpRequest.setAttribute(TIER_ATTRIBUTE, tier);
+        }
 
         // Add rate limit headers
-        httpResponse.addHeader("X-RateLimit-Limit", "100");
+        List<RateLimitWindow> windows = rateLimiterService.getWindows(tier);
+        long limit = result.getLimit() > 0 ? result.getLimit() : windows.get(windows.size() - 1).getLimit();
+        httpResponse.addHeader("X-RateLimit-Limit", String.valueOf(limit));
         httpResponse.addHeader("X-RateLimit-Remaining", String.valueOf(result.getRemaining()));
+        if (tier != null) {
+            httpResponse.addHeader("X-RateLimit-Tier", tier.name());
+        }
+        if (result.getResetAt() > 0) {
+            // Epoch seconds, rounded up so clients never retry early
+            httpResponse.addHeader("X-RateLimit-Reset", String.valueOf((result.getResetAt() + 999) / 1000));
+        }
 
         if (!result.isAllowed()) {
-            log.warn("Rate limit exceeded for: {}", identifier);
+            long retryAfterSeconds = Math.max(1, (result.getRetryAfter() + 999) / 1000);
+            long windowSeconds = result.getWindow() > 0
+                    ? result.getWindow() / 1000
+                    : rateLimiterService.getWindow().toSeconds();
+            log.debug("Rate limit exceeded for: {}", identifier);
             httpResponse.setStatus(429);
+            httpResponse.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
             httpResponse.setContentType("application/json");
             httpResponse.getWriter().write(
                     "{\"error\": \"Rate limit exceeded\", " +
                             "\"message\": \"" + result.getReason() + "\", " +
-                            "\"limit\": 100, " +
-                            "\"window\": \"1 minute\"}"
+                            "\"limit\": " + limit + ", " +
+                            "\"window\": \"" + windowSeconds + " seconds\", " +
+                            "\"retry_after\": " + retryAfterSeconds + "}"
             );
-            return;
+            return false;
         }
+        return true;
+    }
 
-        chain.doFilter(request, response);
+    /**
+     * Answer with a 500 unless part of the response already went out
+     */
+    private static void writeError(HttpServletResponse response) {
+        if (response.isCommitted()) {
+            return;
+        }
+        try {
+            response.reset();
+            GatewayError.UNEXPECTED.write(response);
+        } catch (Exception e) {
+            log.debug("Error writing error response: {}", e.getMessage());
+        }
     }
 
     /**
      * Get identifier from API key or IP address
      */
-    private String getIdentifier(HttpServletRequest request) {
+    public static String getIdentifier(HttpServletRequest request, String apiKey) {
         // Try API key first
-        String apiKey = request.getHeader("X-API-Key");
         if (apiKey != null && !apiKey.isEmpty()) {
             return "apikey:" + apiKey;
         }
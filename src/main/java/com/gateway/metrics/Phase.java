@@ -0,0 +1,34 @@
+package com.gateway.metrics;
+
+/**
+ * Parts of a request's time in the gateway. FIRST_BYTE runs from sending the upstream
+ * request to its response headers and so includes CONNECT; FIRST_BYTE plus TRANSFER is
+ * the backend's share, and GATEWAY is whatever is left of the total.
+ */
+public enum Phase {
+    RATE_LIMIT("rate_limit"),   // tier lookup and rate limit check
+    ROUTE("route"),             // route resolution
+    CONNECT("connect"),         // waiting for a pooled upstream connection or opening one
+    FIRST_BYTE("first_byte"),   // upstream request sent until response headers arrive
+    TRANSFER("transfer"),       // response body relayed or read
+    GATEWAY("gateway");         // total minus upstream time
+
+    private static final Phase[] VALUES = values();
+
+    private final String tag;
+
+    Phase(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Metric tag value, also the Server-Timing metric name
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    static Phase[] all() {
+        return VALUES;
+    }
+}
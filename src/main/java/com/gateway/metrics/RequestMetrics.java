@@ -0,0 +1,81 @@
+package com.gateway.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records finished requests as histograms tagged by route and status class:
+ * gateway.request.duration for the total and gateway.request.phase{phase} per phase.
+ * Timers are looked up by index once created, so recording does not allocate.
+ */
+@Component
+public class RequestMetrics {
+
+    // Requests that matched no route
+    private static final String NO_ROUTE = "none";
+
+    private static final String[] STATUS_CLASSES = {"unknown", "1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    // Slot of the total in a route's timers; phases use their ordinal
+    private static final int TOTAL = Phase.all().length;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Timer[]> timers = new ConcurrentHashMap<>();
+
+    /**
+     * Record a request that has completed with the given status
+     */
+    public void record(RequestTimings timings, int status) {
+        long total = System.nanoTime() - timings.getStart();
+        String route = timings.getRoute() != null ? timings.getRoute() : NO_ROUTE;
+        int statusClass = status >= 100 && status < 600 ? status / 100 : 0;
+        Timer[] routeTimers = timers.computeIfAbsent(route,
+                r -> new Timer[(TOTAL + 1) * STATUS_CLASSES.length]);
+
+        long upstream = 0;
+        if (timings.get(Phase.FIRST_BYTE) >= 0) {
+            upstream += timings.get(Phase.FIRST_BYTE);
+        }
+        if (timings.get(Phase.TRANSFER) >= 0) {
+            upstream += timings.get(Phase.TRANSFER);
+        }
+        timings.add(Phase.GATEWAY, Math.max(0, total - upstream));
+
+        timer(routeTimers, route, TOTAL, statusClass).record(total, TimeUnit.NANOSECONDS);
+        for (Phase phase : Phase.all()) {
+            long nanos = timings.get(phase);
+            if (nanos >= 0) {
+                timer(routeTimers, route, phase.ordinal(), statusClass).record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private Timer timer(Timer[] routeTimers, String route, int slot, int statusClass) {
+        int index = slot * STATUS_CLASSES.length + statusClass;
+        Timer timer = routeTimers[index];
+        if (timer == null) {
+            // Racing threads get the same meter back from the registry
+            Timer.Builder builder = slot == TOTAL
+                    ? Timer.builder("gateway.request.duration")
+                    : Timer.builder("gateway.request.phase").tag("phase", Phase.all()[slot].getTag());
+            timer = builder
+                    .tag("route", route)
+                    .tag("status", STATUS_CLASSES[statusClass])
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(10_000))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(meterRegistry);
+            routeTimers[index] = timer;
+        }
+        return timer;
+    }
+}
@@ -0,0 +1,102 @@
+package com.gateway.metrics;
+
+import jakarta.servlet.ServletRequest;
+
+import java.util.Arrays;
+
+/**
+ * Phase durations of one request in nanoseconds, from System.nanoTime. Created by
+ * LoggingFilter and kept as a request attribute; the thread serving the request also
+ * finds it through current(), which is how upstream client hooks reach it. Phases
+ * measured more than once, such as retried attempts, add up; unmeasured ones stay -1.
+ */
+public class RequestTimings {
+
+    private static final String ATTRIBUTE = RequestTimings.class.getName();
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+
+    private final long start = System.nanoTime();
+    private final long[] phases = new long[Phase.all().length];
+    private String route;
+
+    private RequestTimings() {
+        Arrays.fill(phases, -1);
+    }
+
+    /**
+     * Start timing a request and bind it to the calling thread until unbind()
+     */
+    public static RequestTimings start(ServletRequest request) {
+        RequestTimings timings = new RequestTimings();
+        request.setAttribute(ATTRIBUTE, timings);
+        CURRENT.set(timings);
+        return timings;
+    }
+
+    /**
+     * Timings of a request, or null if it is not being timed
+     */
+    public static RequestTimings of(ServletRequest request) {
+        return (RequestTimings) request.getAttribute(ATTRIBUTE);
+    }
+
+    /**
+     * Timings of the request the calling thread is serving, or null
+     */
+    public static RequestTimings current() {
+        return CURRENT.get();
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Add the time since startNanos to a phase
+     */
+    public void addSince(Phase phase, long startNanos) {
+        add(phase, System.nanoTime() - startNanos);
+    }
+
+    public void add(Phase phase, long nanos) {
+        long current = phases[phase.ordinal()];
+        phases[phase.ordinal()] = current < 0 ? nanos : current + nanos;
+    }
+
+    /**
+     * Duration of a phase, or -1 if it was not measured
+     */
+    public long get(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public void setRoute(String route) {
+        this.route = route;
+    }
+
+    /**
+     * Server-Timing header value with the phases measured so far, in milliseconds
+     */
+    public String toServerTiming() {
+        StringBuilder header = new StringBuilder(96);
+        for (Phase phase : Phase.all()) {
+            long nanos = phases[phase.ordinal()];
+            if (nanos < 0) {
+                continue;
+            }
+            if (!header.isEmpty()) {
+                header.append(", ");
+            }
+            header.append(phase.getTag()).append(";dur=").append(Math.round(nanos / 1000.0) / 1000.0);
+        }
+        return header.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package com.gateway.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Removes a route's meters when its per-route state is dropped, so a route that
+ * comes back with new settings registers fresh meters instead of getting the old
+ * ones (which would keep reporting the discarded object)
+ */
+public final class RouteMeters {
+
+    private RouteMeters() {
+    }
+
+    /**
+     * Remove every meter tagged with the route whose name starts with one of the prefixes
+     */
+    public static void remove(MeterRegistry meterRegistry, String routeId, String... prefixes) {
+        for (Meter meter : meterRegistry.getMeters()) {
+            Meter.Id id = meter.getId();
+            if (!routeId.equals(id.getTag("route"))) {
+                continue;
+            }
+            for (String prefix : prefixes) {
+                if (id.getName().startsWith(prefix)) {
+                    meterRegistry.remove(meter);
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.gateway.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * W3C Trace Context traceparent values: "00-{trace-id}-{parent-id}-{flags}". The gateway
+ * is one span of the caller's trace: backends get the caller's trace id and flags with
+ * a fresh span id as parent. Callers without a valid traceparent start a new, sampled trace.
+ */
+public final class TraceParent {
+
+    public static final String HEADER = "traceparent";
+
+    private static final int LENGTH = 55;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private TraceParent() {
+    }
+
+    /**
+     * The traceparent to send upstream for a request that carried the given one (or null)
+     */
+    public static String next(String incoming) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] value = new char[LENGTH];
+        value[0] = '0';
+        value[1] = '0';
+        value[2] = '-';
+        if (isValid(incoming)) {
+            incoming.getChars(3, 35, value, 3);
+            incoming.getChars(53, 55, value, 53);
+        } else {
+            writeHex(value, 3, nonZero(random.nextLong()));
+            writeHex(value, 19, random.nextLong());
+            value[53] = '0';
+            value[54] = '1';
+        }
+        value[35] = '-';
+        writeHex(value, 36, nonZero(random.nextLong()));
+        value[52] = '-';
+        return new String(value);
+    }
+
+    /**
+     * Whether a header value is a traceparent this gateway can continue. Versions
+     * after 00 may append fields, which are dropped.
+     */
+    static boolean isValid(String value) {
+        if (value == null || value.length() < LENGTH) {
+            return false;
+        }
+        if (value.charAt(2) != '-' || value.charAt(35) != '-' || value.charAt(52) != '-'
+                || !isHex(value, 0, 2) || !isHex(value, 3, 35) || !isHex(value, 36, 52) || !isHex(value, 53, 55)) {
+            return false;
+        }
+        if (value.startsWith("ff") || (value.startsWith("00") && value.length() != LENGTH)) {
+            return false;
+        }
+        return !isZero(value, 3, 35) && !isZero(value, 36, 52);
+    }
+
+    private static boolean isHex(String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZero(String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (value.charAt(i) != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long nonZero(long id) {
+        return id != 0 ? id : 1;
+    }
+
+    private static void writeHex(char[] out, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            out[offset + i] = HEX[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.gateway.model;
+
+public enum ConcurrencyLimitAlgorithm {
+    GRADIENT,   // shrink as short-term latency rises above the long-term baseline
+    AIMD        // +1 while healthy, multiplicative decrease on overload or slow calls
+}
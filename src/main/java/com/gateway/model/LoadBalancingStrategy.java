@@ -0,0 +1,7 @@
+package com.gateway.model;
+
+public enum LoadBalancingStrategy {
+    ROUND_ROBIN,            // rotate through available instances
+    LEAST_OUTSTANDING,      // fewest requests in flight
+    POWER_OF_TWO_CHOICES    // better of two random instances by peak-EWMA latency x load
+}
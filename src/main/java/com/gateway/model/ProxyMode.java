@@ -0,0 +1,7 @@
+package com.gateway.model;
+
+public enum ProxyMode {
+    BUFFERED,   // read whole body into memory, then forward
+    STREAMING,  // pipe bodies through pooled buffers
+    ASYNC       // servlet async with non-blocking upstream and Redis calls; no thread waits on I/O
+}
@@ -0,0 +1,18 @@
+package com.gateway.model;
+
+import lombok.Getter;
+
+@Getter
+public enum RateLimitAlgorithm {
+    FIXED_WINDOW("lua/fixed_window.lua", "fw"),       // one counter per window, bursts up to 2x at boundaries
+    SLIDING_WINDOW("lua/sliding_window.lua", "sw"),   // weighted current + previous window
+    GCRA("lua/gcra.lua", "gcra");                     // evenly spaced requests with burst tolerance
+
+    private final String scriptPath;
+    private final String keyTag;
+
+    RateLimitAlgorithm(String scriptPath, String keyTag) {
+        this.scriptPath = scriptPath;
+        this.keyTag = keyTag;
+    }
+}
@@ -12,8 +12,12 @@ import lombok.NoArgsConstructor;
 public class RateLimitResult {
 
     private boolean allowed;
+    private long limit;
+    private long window;         // millis of the window the limit applies to
+    private UserTier tier;       // null for anonymous callers
     private long remaining;
-    private long resetAt;
+    private long resetAt;        // epoch millis when the quota resets
+    private long retryAfter;     // millis until a retry can succeed (when not allowed)
     private String reason;
 
     public static RateLimitResult allowed(long remaining) {
@@ -23,6 +27,16 @@ public class RateLimitResult {
                 .build();
     }
 
+    public static RateLimitResult allowed(RateLimitWindow limit, long remaining, long resetAt) {
+        return RateLimitResult.builder()
+                .allowed(true)
+                .limit(limit.getLimit())
+                .window(limit.getWindow().toMillis())
+                .remaining(remaining)
+                .resetAt(resetAt)
+                .build();
+    }
+
     public static RateLimitResult exceeded(String reason) {
         return RateLimitResult.builder()
                 .allowed(false)
@@ -31,6 +45,18 @@ public class RateLimitResult {
                 .build();
     }
 
+    public static RateLimitResult exceeded(RateLimitWindow limit, long resetAt, long retryAfter) {
+        return RateLimitResult.builder()
+                .allowed(false)
+                .limit(limit.getLimit())
+                .window(limit.getWindow().toMillis())
+                .remaining(0)
+                .resetAt(resetAt)
+                .retryAfter(retryAfter)
+                .reason("Rate limit exceeded")
+                .build();
+    }
+
     public static RateLimitResult failOpen() {
         return RateLimitResult.builder()
                 .allowed(true)
@@ -38,4 +64,4 @@ public class RateLimitResult {
                 .reason("Redis unavailable - failing open")
                 .build();
     }
-}
\ No newline at end of file
+}
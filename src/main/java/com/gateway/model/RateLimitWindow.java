@@ -0,0 +1,18 @@
+package com.gateway.model;
+
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * A quota of requests over one window, e.g. 100 per minute
+ */
+@Value
+public class RateLimitWindow {
+    long limit;
+    Duration window;
+
+    public static RateLimitWindow of(long limit, Duration window) {
+        return new RateLimitWindow(limit, window);
+    }
+}
@@ -3,7 +3,9 @@ package com.gateway.model;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,18 +14,166 @@ import java.util.List;
 @ConfigurationProperties(prefix = "gateway")
 public class RouteDefinition {
 
-    private List<Route> routes = new ArrayList<>();
+    // Replaced wholesale by route reloads; per-route registries read it to tell live routes from stale ones
+    private volatile List<Route> routes = new ArrayList<>();
 
     @Data
     public static class Route {
         private String id;
         private String path;
         private String uri;
+        private List<String> instances = new ArrayList<>();     // replaces uri when set
         private int stripPrefix = 0;
+        private List<String> methods = new ArrayList<>();
+        private ProxyMode mode;                                 // gateway.proxy.mode when unset
+        private PoolConfig pool = new PoolConfig();
+        private BulkheadConfig bulkhead = new BulkheadConfig();
+        private CacheConfig cache = new CacheConfig();
+        private CoalesceConfig coalesce = new CoalesceConfig();
+        private CircuitBreakerConfig circuitBreaker = new CircuitBreakerConfig();
+        private ConcurrencyLimitConfig concurrencyLimit = new ConcurrencyLimitConfig();
+        private LoadBalancerConfig loadBalancer = new LoadBalancerConfig();
+        private RetryConfig retry = new RetryConfig();
+        private CompressionConfig compression = new CompressionConfig();
+    }
+
+    /**
+     * Upstream connection pool settings for a route
+     */
+    @Data
+    public static class PoolConfig {
+        private UpstreamProtocol protocol = UpstreamProtocol.HTTP_1_1;
+        private int maxConnections = 50;
+        private Duration idleTimeout = Duration.ofSeconds(30);
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration responseTimeout = Duration.ofSeconds(5);
+    }
 
-        public boolean matches(String requestPath) {
-            String pattern = path.replace("/**", "");
-            return requestPath.startsWith(pattern);
-        }
+    /**
+     * Concurrency bulkhead for a route; maxConcurrent 0 disables it
+     */
+    @Data
+    public static class BulkheadConfig {
+        private int maxConcurrent = 0;
+        private int maxQueued = 0;
+        private Duration maxWait = Duration.ofMillis(50);
+    }
+
+    /**
+     * Response cache for a route's GETs; off unless enabled
+     */
+    @Data
+    public static class CacheConfig {
+        private boolean enabled = false;
+        private DataSize maxSize = DataSize.ofMegabytes(64);
+        private DataSize maxEntrySize = DataSize.ofMegabytes(1);
+        private Duration defaultTtl = Duration.ZERO;              // for public 200s without max-age/Expires
+        private Duration staleWhileRevalidate = Duration.ZERO;    // unless the upstream sends its own
+    }
+
+    /**
+     * Single-flight coalescing of identical concurrent GET/HEAD requests; off unless enabled.
+     * Authorization and Cookie are always part of the key, varyHeaders are added to it.
+     */
+    @Data
+    public static class CoalesceConfig {
+        private boolean enabled = false;
+        private List<String> varyHeaders = new ArrayList<>(List.of("Accept", "Accept-Encoding", "Accept-Language"));
+        private int maxWaiters = 1000;
+        private Duration maxWait = Duration.ofSeconds(10);
+    }
+
+    /**
+     * Circuit breaker for a route; off unless enabled. Rates are percentages over the window.
+     */
+    @Data
+    public static class CircuitBreakerConfig {
+        private boolean enabled = false;
+        private int failureRateThreshold = 50;            // 5xx responses and I/O errors
+        private int slowCallRateThreshold = 80;
+        private Duration slowCallDuration = Duration.ofSeconds(2);
+        private int minimumCalls = 20;
+        private Duration window = Duration.ofSeconds(10);
+        private Duration waitInOpen = Duration.ofSeconds(5);
+        private int halfOpenCalls = 5;
+    }
+
+    /**
+     * Adaptive in-flight limit for a route, learned from upstream latency; off unless enabled.
+     * Requests over the limit are shed with 503, low-priority ones first.
+     */
+    @Data
+    public static class ConcurrencyLimitConfig {
+        private boolean enabled = false;
+        private ConcurrencyLimitAlgorithm algorithm = ConcurrencyLimitAlgorithm.GRADIENT;
+        private int initialLimit = 20;
+        private int minLimit = 5;
+        private int maxLimit = 500;
+        private double tolerance = 2.0;                          // GRADIENT: latency growth accepted before shrinking
+        private double smoothing = 0.2;                          // GRADIENT: weight of each new estimate
+        private Duration latencyThreshold = Duration.ofSeconds(1);   // AIMD: slower calls count as overload
+        private double backoffRatio = 0.9;                       // decrease on 429/5xx (and slow calls for AIMD)
+        private double priorityReserve = 0.2;                    // share of the limit low priority can't use
+        private String priorityHeader = "X-Priority";            // "low" marks a request low priority
+        private List<UserTier> lowPriorityTiers = new ArrayList<>(List.of(UserTier.FREE));
+    }
+
+    /**
+     * How requests are spread over a route's instances, and when instances are taken out
+     */
+    @Data
+    public static class LoadBalancerConfig {
+        private LoadBalancingStrategy strategy = LoadBalancingStrategy.ROUND_ROBIN;
+        private int ejectAfterFailures = 5;           // consecutive 5xx/I-O errors; 0 disables ejection
+        private Duration ejectionTime = Duration.ofSeconds(30);
+        private int maxEjectionPercent = 50;
+        private HealthCheckConfig healthCheck = new HealthCheckConfig();
+    }
+
+    /**
+     * Active health checks: GET uri + path, healthy on 2xx
+     */
+    @Data
+    public static class HealthCheckConfig {
+        private boolean enabled = false;
+        private String path = "/health";
+        private Duration interval = Duration.ofSeconds(10);
+        private Duration timeout = Duration.ofSeconds(2);
+        private int healthyThreshold = 2;
+        private int unhealthyThreshold = 2;
+    }
+
+    /**
+     * Gateway-side gzip/deflate of uncompressed upstream responses; off unless enabled.
+     * Bodies the upstream already encoded are relayed as they are either way.
+     */
+    @Data
+    public static class CompressionConfig {
+        private boolean enabled = false;
+        private DataSize minSize = DataSize.ofKilobytes(1);      // when the upstream sends Content-Length
+        private List<String> contentTypes = new ArrayList<>(List.of(
+                "text/*", "application/json", "application/*+json", "application/javascript",
+                "application/xml", "application/*+xml", "image/svg+xml"));
+        private int level = 6;                                   // 1 (fastest) to 9 (smallest)
+    }
+
+    /**
+     * Retries (idempotent methods) and hedging (GET/HEAD) for a route; off unless enabled.
+     * Both are paid for from a retry budget of budgetRatio extra attempts per request.
+     */
+    @Data
+    public static class RetryConfig {
+        private boolean enabled = false;
+        private int maxAttempts = 2;                                // including the first
+        private Duration initialBackoff = Duration.ofMillis(25);
+        private Duration maxBackoff = Duration.ofMillis(500);
+        private double backoffMultiplier = 2.0;
+        private List<Integer> retryOn = new ArrayList<>(List.of(502, 503, 504));   // plus I/O errors
+        private boolean hedge = false;
+        private double hedgePercentile = 95;
+        private Duration minHedgeDelay = Duration.ofMillis(10);
+        private Duration latencyWindow = Duration.ofSeconds(30);
+        private double budgetRatio = 0.1;
+        private int minRetriesPerSecond = 10;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,6 @@
+package com.gateway.model;
+
+public enum UpstreamProtocol {
+    HTTP_1_1,   // pooled keep-alive connections (Apache HttpClient)
+    HTTP_2      // multiplexed connections (JDK HttpClient)
+}
@@ -2,16 +2,32 @@ package com.gateway.model;
 
 import lombok.Getter;
 
+import java.time.Duration;
+import java.util.List;
+
 @Getter
 public enum UserTier {
-    FREE(100),      // 100 requests per hour
-    BASIC(1000),    // 1000 requests per hour
-    PRO(10000),     // 10,000 requests per hour
-    ENTERPRISE(100000); // 100,000 requests per hour
+    FREE(5, 50, 100),                   // 100 requests per hour
+    BASIC(10, 200, 1000),               // 1000 requests per hour
+    PRO(50, 1000, 10000),               // 10,000 requests per hour
+    ENTERPRISE(200, 10000, 100000);     // 100,000 requests per hour
 
+    private final int requestsPerSecond;
+    private final int requestsPerMinute;
     private final int requestsPerHour;
 
-    UserTier(int requestsPerHour) {
+    /**
+     * Burst, per-minute and hourly windows, all enforced together
+     */
+    private final List<RateLimitWindow> windows;
+
+    UserTier(int requestsPerSecond, int requestsPerMinute, int requestsPerHour) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.requestsPerMinute = requestsPerMinute;
         this.requestsPerHour = requestsPerHour;
+        this.windows = List.of(
+                RateLimitWindow.of(requestsPerSecond, Duration.ofSeconds(1)),
+                RateLimitWindow.of(requestsPerMinute, Duration.ofMinutes(1)),
+                RateLimitWindow.of(requestsPerHour, Duration.ofHours(1)));
     }
-}
\ No newline at end of file
+}
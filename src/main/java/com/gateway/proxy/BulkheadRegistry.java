@@ -0,0 +1,78 @@
+package com.gateway.proxy;
+
+import com.gateway.metrics.RouteMeters;
+import com.gateway.model.RouteDefinition;
+import com.gateway.routing.RouteChangeListener;
+import com.gateway.routing.RouteStates;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds one bulkhead per route, with in-flight/queued gauges and a rejection counter
+ */
+@Component
+public class BulkheadRegistry implements RouteChangeListener {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RouteDefinition routeDefinition;
+
+    private final RouteStates<Bulkhead> bulkheads = new RouteStates<>(
+            () -> routeDefinition.getRoutes(), BulkheadRegistry::sameSettings, this::createBulkhead,
+            (id, bulkhead) -> RouteMeters.remove(meterRegistry, id, "gateway.bulkhead"));
+    private final Map<String, Counter> rejections = new ConcurrentHashMap<>();
+
+    /**
+     * Get the bulkhead for a route, or null if the route has none configured
+     */
+    public Bulkhead getBulkhead(RouteDefinition.Route route) {
+        if (route.getBulkhead().getMaxConcurrent() <= 0) {
+            return null;
+        }
+        return bulkheads.get(route);
+    }
+
+    public void recordRejection(RouteDefinition.Route route) {
+        rejections.computeIfAbsent(route.getId(), id -> Counter.builder("gateway.bulkhead.rejected")
+                .tag("route", id)
+                .register(meterRegistry)).increment();
+    }
+
+    @Override
+    public void onRouteChanged(RouteDefinition.Route previous, RouteDefinition.Route current) {
+        if (current != null && sameSettings(previous, current)) {
+            return;
+        }
+        // Requests holding a permit release it to the old bulkhead
+        bulkheads.remove(previous.getId());
+        rejections.remove(previous.getId());
+        RouteMeters.remove(meterRegistry, previous.getId(), "gateway.bulkhead");
+    }
+
+    private static boolean sameSettings(RouteDefinition.Route a, RouteDefinition.Route b) {
+        return a.getBulkhead().equals(b.getBulkhead());
+    }
+
+    private Bulkhead createBulkhead(RouteDefinition.Route route) {
+        String routeId = route.getId();
+        RouteDefinition.BulkheadConfig config = route.getBulkhead();
+        Bulkhead bulkhead = new Bulkhead(config.getMaxConcurrent(), config.getMaxQueued(), config.getMaxWait());
+
+        Gauge.builder("gateway.bulkhead.in.flight", bulkhead, Bulkhead::getInFlight)
+                .tag("route", routeId)
+                .register(meterRegistry);
+        Gauge.builder("gateway.bulkhead.queued", bulkhead, Bulkhead::getQueued)
+                .tag("route", routeId)
+                .register(meterRegistry);
+
+        return bulkhead;
+    }
+}
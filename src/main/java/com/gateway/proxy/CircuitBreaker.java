@@ -0,0 +1,247 @@
+package com.gateway.proxy;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free circuit breaker over a time-based sliding window.
+ *
+ * Calls are counted in a ring of buckets (calls, failures, slow calls). While
+ * CLOSED, the breaker opens once the window holds at least minimumCalls and
+ * the failure or slow-call rate reaches its threshold. OPEN rejects calls
+ * until the wait has passed, then HALF_OPEN lets a few trial calls through:
+ * any failed or slow trial reopens it, enough successful ones close it.
+ *
+ * Everything is CAS and plain atomics; a bucket rolling over concurrently
+ * with a record may lose or misplace that one call, which is acceptable for
+ * rate estimates.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Notified after every state change
+     */
+    public interface TransitionListener {
+        void onTransition(State from, State to);
+    }
+
+    private static final int BUCKETS = 10;
+
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final long bucketNanos;
+    private final Bucket[] buckets = new Bucket[BUCKETS];
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger halfOpenPermits = new AtomicInteger();
+    private final AtomicInteger halfOpenSuccesses = new AtomicInteger();
+    private volatile long openUntil;
+    private volatile TransitionListener listener = (from, to) -> { };
+
+    public CircuitBreaker(int failureRateThreshold, int slowCallRateThreshold, Duration slowCallDuration,
+                          int minimumCalls, Duration window, Duration waitInOpen, int halfOpenCalls) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.minimumCalls = minimumCalls;
+        this.openNanos = waitInOpen.toNanos();
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.bucketNanos = Math.max(1, window.toNanos() / BUCKETS);
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    public void setListener(TransitionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Ask to make a call. Every permitted call must end in onResult() or releasePermission().
+     */
+    public boolean tryAcquirePermission() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.nanoTime() - openUntil < 0) {
+                return false;
+            }
+            if (transition(State.OPEN, State.HALF_OPEN)) {
+                halfOpenSuccesses.set(0);
+                halfOpenPermits.set(halfOpenCalls);
+            }
+        }
+        return tryTakeTrialPermit();
+    }
+
+    /**
+     * Give back a permission for a call that was never made
+     */
+    public void releasePermission() {
+        if (state.get() == State.HALF_OPEN) {
+            halfOpenPermits.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record the outcome of a permitted call
+     */
+    public void onResult(boolean failure, long durationNanos) {
+        boolean slow = durationNanos >= slowCallNanos;
+        State current = state.get();
+
+        if (current == State.HALF_OPEN) {
+            if (failure || slow) {
+                open(State.HALF_OPEN);
+            } else if (halfOpenSuccesses.incrementAndGet() >= halfOpenCalls && transition(State.HALF_OPEN, State.CLOSED)) {
+                resetWindow();
+            }
+            return;
+        }
+        if (current != State.CLOSED) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        Bucket bucket = bucketFor(now);
+        bucket.calls.incrementAndGet();
+        if (failure) {
+            bucket.failures.incrementAndGet();
+        }
+        if (slow) {
+            bucket.slowCalls.incrementAndGet();
+        }
+
+        if (failure || slow) {
+            long[] totals = totals(now);
+            if (totals[0] >= minimumCalls
+                    && (totals[1] * 100 >= totals[0] * failureRateThreshold
+                    || totals[2] * 100 >= totals[0] * slowCallRateThreshold)) {
+                open(State.CLOSED);
+            }
+        }
+    }
+
+    /**
+     * Force the breaker closed with an empty window (admin reset)
+     */
+    public void reset() {
+        State previous = state.getAndSet(State.CLOSED);
+        resetWindow();
+        if (previous != State.CLOSED) {
+            listener.onTransition(previous, State.CLOSED);
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * Millis until an open breaker lets trial calls through (0 if not open)
+     */
+    public long getRetryAfterMillis() {
+        if (state.get() != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, (openUntil - System.nanoTime()) / 1_000_000L);
+    }
+
+    public long getCalls() {
+        return totals(System.nanoTime())[0];
+    }
+
+    /**
+     * Failure rate in percent over the window
+     */
+    public double getFailureRate() {
+        long[] totals = totals(System.nanoTime());
+        return totals[0] == 0 ? 0 : totals[1] * 100.0 / totals[0];
+    }
+
+    /**
+     * Slow-call rate in percent over the window
+     */
+    public double getSlowCallRate() {
+        long[] totals = totals(System.nanoTime());
+        return totals[0] == 0 ? 0 : totals[2] * 100.0 / totals[0];
+    }
+
+    private boolean tryTakeTrialPermit() {
+        int permits;
+        do {
+            if (state.get() != State.HALF_OPEN) {
+                return state.get() == State.CLOSED;
+            }
+            permits = halfOpenPermits.get();
+            if (permits <= 0) {
+                return false;
+            }
+        } while (!halfOpenPermits.compareAndSet(permits, permits - 1));
+        return true;
+    }
+
+    private void open(State from) {
+        openUntil = System.nanoTime() + openNanos;
+        transition(from, State.OPEN);
+    }
+
+    private boolean transition(State from, State to) {
+        if (state.compareAndSet(from, to)) {
+            listener.onTransition(from, to);
+            return true;
+        }
+        return false;
+    }
+
+    private Bucket bucketFor(long now) {
+        long slot = now / bucketNanos;
+        Bucket bucket = buckets[(int) Math.floorMod(slot, BUCKETS)];
+        long seen = bucket.slot.get();
+        if (seen != slot && bucket.slot.compareAndSet(seen, slot)) {
+            bucket.calls.set(0);
+            bucket.failures.set(0);
+            bucket.slowCalls.set(0);
+        }
+        return bucket;
+    }
+
+    /**
+     * {calls, failures, slow calls} over the buckets still inside the window
+     */
+    private long[] totals(long now) {
+        long oldest = now / bucketNanos - BUCKETS + 1;
+        long[] totals = new long[3];
+        for (Bucket bucket : buckets) {
+            if (bucket.slot.get() >= oldest) {
+                totals[0] += bucket.calls.get();
+                totals[1] += bucket.failures.get();
+                totals[2] += bucket.slowCalls.get();
+            }
+        }
+        return totals;
+    }
+
+    private void resetWindow() {
+        for (Bucket bucket : buckets) {
+            bucket.slot.set(Long.MIN_VALUE);
+        }
+    }
+
+    private static final class Bucket {
+        private final AtomicLong slot = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger slowCalls = new AtomicInteger();
+    }
+}
@@ -0,0 +1,124 @@
+package com.gateway.proxy;
+
+import com.gateway.metrics.RouteMeters;
+import com.gateway.model.RouteDefinition;
+import com.gateway.routing.RouteChangeListener;
+import com.gateway.routing.RouteStates;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds one circuit breaker per route that enables it, with state gauges,
+ * transition and rejection counters
+ */
+@Slf4j
+@Component
+public class CircuitBreakerRegistry implements RouteChangeListener {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RouteDefinition routeDefinition;
+
+    private final RouteStates<CircuitBreaker> breakers = new RouteStates<>(
+            () -> routeDefinition.getRoutes(), CircuitBreakerRegistry::sameSettings, this::createCircuitBreaker,
+            (id, breaker) -> RouteMeters.remove(meterRegistry, id, "gateway.circuit"));
+    private final Map<String, Counter> rejections = new ConcurrentHashMap<>();
+
+    /**
+     * Create breakers for all configured routes up front so their state is
+     * visible in metrics and the admin endpoint before the first request
+     */
+    @PostConstruct
+    public void initialize() {
+        routeDefinition.getRoutes().forEach(this::getCircuitBreaker);
+    }
+
+    /**
+     * Get the circuit breaker for a route, or null if the route has none configured
+     */
+    public CircuitBreaker getCircuitBreaker(RouteDefinition.Route route) {
+        if (!route.getCircuitBreaker().isEnabled()) {
+            return null;
+        }
+        return breakers.get(route);
+    }
+
+    /**
+     * Circuit breakers created so far, by route id
+     */
+    public Map<String, CircuitBreaker> getCircuitBreakers() {
+        return breakers.asMap();
+    }
+
+    public void recordRejection(RouteDefinition.Route route) {
+        rejections.computeIfAbsent(route.getId(), id -> Counter.builder("gateway.circuit.rejected")
+                .tag("route", id)
+                .register(meterRegistry)).increment();
+    }
+
+    /**
+     * A breaker whose settings did not change keeps its state across a reload
+     */
+    @Override
+    public void onRouteChanged(RouteDefinition.Route previous, RouteDefinition.Route current) {
+        if (current != null && sameSettings(previous, current)) {
+            return;
+        }
+        breakers.remove(previous.getId());
+        rejections.remove(previous.getId());
+        RouteMeters.remove(meterRegistry, previous.getId(), "gateway.circuit");
+        if (current != null) {
+            getCircuitBreaker(current);
+        }
+    }
+
+    private static boolean sameSettings(RouteDefinition.Route a, RouteDefinition.Route b) {
+        return a.getCircuitBreaker().equals(b.getCircuitBreaker());
+    }
+
+    private CircuitBreaker createCircuitBreaker(RouteDefinition.Route route) {
+        String routeId = route.getId();
+        RouteDefinition.CircuitBreakerConfig config = route.getCircuitBreaker();
+        CircuitBreaker breaker = new CircuitBreaker(
+                config.getFailureRateThreshold(),
+                config.getSlowCallRateThreshold(),
+                config.getSlowCallDuration(),
+                config.getMinimumCalls(),
+                config.getWindow(),
+                config.getWaitInOpen(),
+                config.getHalfOpenCalls());
+
+        breaker.setListener((from, to) -> {
+            log.warn("Circuit breaker for route {} changed from {} to {}", routeId, from, to);
+            Counter.builder("gateway.circuit.transitions")
+                    .tag("route", routeId)
+                    .tag("from", from.name())
+                    .tag("to", to.name())
+                    .register(meterRegistry)
+                    .increment();
+        });
+
+        // 0 = closed, 1 = open, 2 = half-open
+        Gauge.builder("gateway.circuit.state", breaker, b -> b.getState().ordinal())
+                .tag("route", routeId)
+                .register(meterRegistry);
+        Gauge.builder("gateway.circuit.failure.rate", breaker, CircuitBreaker::getFailureRate)
+                .tag("route", routeId)
+                .register(meterRegistry);
+        Gauge.builder("gateway.circuit.slow.rate", breaker, CircuitBreaker::getSlowCallRate)
+                .tag("route", routeId)
+                .register(meterRegistry);
+
+        return breaker;
+    }
+}
@@ -0,0 +1,155 @@
+package com.gateway.proxy;
+
+import com.gateway.model.ConcurrencyLimitAlgorithm;
+import com.gateway.model.RouteDefinition;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive cap on concurrent upstream calls for one route.
+ *
+ * Unlike a bulkhead the limit is not configured but learned from each call's
+ * latency and outcome, so it follows what the backend can take right now:
+ *
+ * GRADIENT compares a short-term latency average with a long-term baseline;
+ * while calls queue up (short above tolerance x long) the limit shrinks by that
+ * ratio, otherwise it grows by about sqrt(limit) per update. AIMD adds one while
+ * calls are fast and the limit is in use, and multiplies by backoffRatio when a
+ * call is slower than latencyThreshold.
+ *
+ * For both, 429 and 5xx count as overload and back the limit off, at most once
+ * per window of calls: the calls in flight at a backoff were sent under the old
+ * limit, so their failures do not shrink it again. Requests over
+ * the limit are rejected at once, never queued. Low-priority requests may only
+ * use (1 - priorityReserve) of the limit, so they are shed first.
+ */
+public class ConcurrencyLimiter {
+
+    public enum Priority { NORMAL, LOW }
+
+    // Sample windows of the latency averages (as in Netflix's Gradient2)
+    private static final double SHORT_ALPHA = 2.0 / (10 + 1);
+    private static final double LONG_ALPHA = 2.0 / (600 + 1);
+
+    private final ConcurrencyLimitAlgorithm algorithm;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final double priorityReserve;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    // Guarded by this
+    private double shortRtt;
+    private double longRtt;
+    // Samples still due from calls that were in flight at the last backoff
+    private int backoffWindow;
+
+    public ConcurrencyLimiter(RouteDefinition.ConcurrencyLimitConfig config) {
+        this.algorithm = config.getAlgorithm();
+        this.minLimit = config.getMinLimit();
+        this.maxLimit = config.getMaxLimit();
+        this.tolerance = config.getTolerance();
+        this.smoothing = config.getSmoothing();
+        this.latencyThresholdNanos = config.getLatencyThreshold().toNanos();
+        this.backoffRatio = config.getBackoffRatio();
+        this.priorityReserve = config.getPriorityReserve();
+        this.limit = Math.max(minLimit, Math.min(maxLimit, config.getInitialLimit()));
+    }
+
+    /**
+     * Take a slot if the request's priority still has room; every successful call must be
+     * paired with release() or ignore()
+     */
+    public boolean tryAcquire(Priority priority) {
+        int max = (int) limit;
+        if (priority == Priority.LOW) {
+            max = Math.max(1, (int) (max * (1 - priorityReserve)));
+        }
+        while (true) {
+            int current = inFlight.get();
+            if (current >= max) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Give the slot back and learn from the call
+     */
+    public void release(long rttNanos, boolean overloaded) {
+        int observedInFlight = inFlight.getAndDecrement();
+        update(rttNanos, observedInFlight, overloaded);
+    }
+
+    /**
+     * Give the slot back without a sample (the call never reached the upstream)
+     */
+    public void ignore() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void update(long rttNanos, int observedInFlight, boolean overloaded) {
+        double current = limit;
+        double next;
+
+        boolean inBackoffWindow = backoffWindow > 0;
+        if (inBackoffWindow) {
+            backoffWindow--;
+        }
+
+        if (overloaded || (algorithm == ConcurrencyLimitAlgorithm.AIMD && rttNanos > latencyThresholdNanos)) {
+            if (inBackoffWindow) {
+                return;
+            }
+            next = current * backoffRatio;
+            backoffWindow = observedInFlight - 1;
+        } else if (algorithm == ConcurrencyLimitAlgorithm.AIMD) {
+            // Only grow while the limit is actually what holds requests back
+            next = observedInFlight * 2 >= current ? current + 1 : current;
+        } else {
+            next = gradient(rttNanos, observedInFlight, current);
+        }
+
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    private double gradient(long rttNanos, int observedInFlight, double current) {
+        if (shortRtt == 0) {
+            shortRtt = rttNanos;
+            longRtt = rttNanos;
+        } else {
+            shortRtt += SHORT_ALPHA * (rttNanos - shortRtt);
+            longRtt += LONG_ALPHA * (rttNanos - longRtt);
+        }
+
+        // After a lasting latency drop, let the baseline catch up faster
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+
+        // Too little traffic to say anything about the limit
+        if (observedInFlight < current / 2) {
+            return current;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double estimate = current * gradient + Math.sqrt(current);
+        return current * (1 - smoothing) + estimate * smoothing;
+    }
+}
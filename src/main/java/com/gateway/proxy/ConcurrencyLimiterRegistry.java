@@ -0,0 +1,82 @@
+package com.gateway.proxy;
+
+import com.gateway.metrics.RouteMeters;
+import com.gateway.model.RouteDefinition;
+import com.gateway.routing.RouteChangeListener;
+import com.gateway.routing.RouteStates;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds one adaptive concurrency limiter per route that enables it, with
+ * limit/in-flight gauges and a shed counter per priority
+ */
+@Component
+public class ConcurrencyLimiterRegistry implements RouteChangeListener {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RouteDefinition routeDefinition;
+
+    private final RouteStates<ConcurrencyLimiter> limiters = new RouteStates<>(
+            () -> routeDefinition.getRoutes(), ConcurrencyLimiterRegistry::sameSettings, this::createLimiter,
+            (id, limiter) -> RouteMeters.remove(meterRegistry, id, "gateway.concurrency"));
+    private final Map<String, Counter> shed = new ConcurrentHashMap<>();
+
+    /**
+     * Get the concurrency limiter for a route, or null if the route has none configured
+     */
+    public ConcurrencyLimiter getLimiter(RouteDefinition.Route route) {
+        if (!route.getConcurrencyLimit().isEnabled()) {
+            return null;
+        }
+        return limiters.get(route);
+    }
+
+    public void recordShed(RouteDefinition.Route route, ConcurrencyLimiter.Priority priority) {
+        shed.computeIfAbsent(route.getId() + ":" + priority, k -> Counter.builder("gateway.concurrency.shed")
+                .tag("route", route.getId())
+                .tag("priority", priority.name().toLowerCase())
+                .register(meterRegistry)).increment();
+    }
+
+    /**
+     * A limiter whose settings did not change keeps what it learned across a reload
+     */
+    @Override
+    public void onRouteChanged(RouteDefinition.Route previous, RouteDefinition.Route current) {
+        if (current != null && sameSettings(previous, current)) {
+            return;
+        }
+        // Requests holding a slot release it to the old limiter
+        limiters.remove(previous.getId());
+        shed.keySet().removeIf(key -> key.startsWith(previous.getId() + ":"));
+        RouteMeters.remove(meterRegistry, previous.getId(), "gateway.concurrency");
+    }
+
+    private static boolean sameSettings(RouteDefinition.Route a, RouteDefinition.Route b) {
+        return a.getConcurrencyLimit().equals(b.getConcurrencyLimit());
+    }
+
+    private ConcurrencyLimiter createLimiter(RouteDefinition.Route route) {
+        String routeId = route.getId();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(route.getConcurrencyLimit());
+
+        Gauge.builder("gateway.concurrency.limit", limiter, ConcurrencyLimiter::getLimit)
+                .tag("route", routeId)
+                .register(meterRegistry);
+        Gauge.builder("gateway.concurrency.in.flight", limiter, ConcurrencyLimiter::getInFlight)
+                .tag("route", routeId)
+                .register(meterRegistry);
+
+        return limiter;
+    }
+}
@@ -0,0 +1,108 @@
+package com.gateway.proxy;
+
+import com.gateway.metrics.Phase;
+import com.gateway.metrics.RequestTimings;
+import com.gateway.model.RouteDefinition;
+import com.gateway.model.UpstreamProtocol;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.classic.ExecChain;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.ChainElement;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * HTTP/1.1 keep-alive client backed by a per-route Apache connection pool.
+ * Pool state (leased/available/pending) is exported to Micrometer tagged by route.
+ * Time spent getting a connection, leased or newly opened, counts as the request's
+ * connect phase.
+ */
+@Component
+public class HttpComponentsClientFactory implements UpstreamClientFactory {
+
+    private static final String CONNECT_START = "gateway.connect-start";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    public boolean supports(UpstreamProtocol protocol) {
+        return protocol == UpstreamProtocol.HTTP_1_1;
+    }
+
+    @Override
+    public ClientHttpRequestFactory create(RouteDefinition.Route route) {
+        RouteDefinition.PoolConfig pool = route.getPool();
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(pool.getMaxConnections())
+                .setMaxConnPerRoute(pool.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(pool.getConnectTimeout()))
+                        .setSocketTimeout(Timeout.of(pool.getResponseTimeout()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        // The gateway relays bodies, redirects and cookies untouched and
+        // decides about retries itself
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(pool.getConnectTimeout()))
+                        .setResponseTimeout(Timeout.of(pool.getResponseTimeout()))
+                        .build())
+                .evictIdleConnections(TimeValue.of(pool.getIdleTimeout()))
+                .evictExpiredConnections()
+                .disableContentCompression()
+                .disableRedirectHandling()
+                .disableCookieManagement()
+                .disableAutomaticRetries()
+                .addExecInterceptorBefore(ChainElement.CONNECT.name(), "connect-start",
+                        HttpComponentsClientFactory::startConnect)
+                .addExecInterceptorAfter(ChainElement.CONNECT.name(), "connect-end",
+                        HttpComponentsClientFactory::endConnect)
+                .build();
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "upstream",
+                Tags.of("route", route.getId())).bindTo(meterRegistry);
+
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    private static ClassicHttpResponse startConnect(ClassicHttpRequest request, ExecChain.Scope scope,
+                                                    ExecChain chain) throws IOException, HttpException {
+        if (RequestTimings.current() != null) {
+            scope.clientContext.setAttribute(CONNECT_START, System.nanoTime());
+        }
+        return chain.proceed(request, scope);
+    }
+
+    /**
+     * Runs once the connect step holds a connected endpoint
+     */
+    private static ClassicHttpResponse endConnect(ClassicHttpRequest request, ExecChain.Scope scope,
+                                                  ExecChain chain) throws IOException, HttpException {
+        RequestTimings timings = RequestTimings.current();
+        if (timings != null && scope.clientContext.getAttribute(CONNECT_START) instanceof Long start) {
+            timings.addSince(Phase.CONNECT, start);
+        }
+        return chain.proceed(request, scope);
+    }
+}
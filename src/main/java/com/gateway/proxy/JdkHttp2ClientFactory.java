@@ -0,0 +1,65 @@
+package com.gateway.proxy;
+
+import com.gateway.model.RouteDefinition;
+import com.gateway.model.UpstreamProtocol;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP/2 client for routes whose backends support it. Requests are multiplexed
+ * over a few connections, so maxConnections does not apply here.
+ */
+@Component
+public class JdkHttp2ClientFactory implements UpstreamClientFactory {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Override
+    public boolean supports(UpstreamProtocol protocol) {
+        return protocol == UpstreamProtocol.HTTP_2;
+    }
+
+    @Override
+    public ClientHttpRequestFactory create(RouteDefinition.Route route) {
+        RouteDefinition.PoolConfig pool = route.getPool();
+
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(pool.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NEVER);
+
+        // Run the client's internal tasks on virtual threads too
+        if (virtualThreads) {
+            builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+
+        HttpClient httpClient = builder.build();
+
+        ClosingJdkClientHttpRequestFactory factory = new ClosingJdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(pool.getResponseTimeout());
+        return factory;
+    }
+
+    private static class ClosingJdkClientHttpRequestFactory extends JdkClientHttpRequestFactory
+            implements DisposableBean {
+
+        private final HttpClient httpClient;
+
+        ClosingJdkClientHttpRequestFactory(HttpClient httpClient) {
+            super(httpClient);
+            this.httpClient = httpClient;
+        }
+
+        @Override
+        public void destroy() {
+            httpClient.close();
+        }
+    }
+}
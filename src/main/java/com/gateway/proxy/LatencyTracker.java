@@ -0,0 +1,95 @@
+package com.gateway.proxy;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rolling latency histogram used to pick a route's hedge delay.
+ *
+ * Samples land in log-spaced buckets (four per power of two, so about 19%
+ * apart, from 1us to ~16s) counted over the current and the previous window.
+ * Recording is one atomic increment; only rotating to a new window allocates.
+ */
+public class LatencyTracker {
+
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 24 * SUB_BUCKETS;
+
+    private final long windowNanos;
+    private final AtomicReference<Window> current;
+    private volatile Window previous;
+
+    public LatencyTracker(long windowNanos) {
+        this.windowNanos = windowNanos;
+        this.current = new AtomicReference<>(new Window(System.nanoTime()));
+    }
+
+    public void record(long latencyNanos) {
+        window(System.nanoTime()).counts.incrementAndGet(bucket(latencyNanos));
+    }
+
+    /**
+     * Latency at the given quantile (0..1) over the last one to two windows,
+     * or -1 if fewer than minSamples were recorded
+     */
+    public long percentile(double quantile, long minSamples) {
+        long now = System.nanoTime();
+        Window cur = window(now);
+        Window prev = previous;
+        if (prev != null && now - prev.start >= 2 * windowNanos) {
+            prev = null;
+        }
+
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += count(cur, prev, i);
+        }
+        if (total == 0 || total < minSamples) {
+            return -1;
+        }
+
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += count(cur, prev, i);
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    private Window window(long now) {
+        Window w = current.get();
+        if (now - w.start < windowNanos) {
+            return w;
+        }
+        if (current.compareAndSet(w, new Window(now))) {
+            previous = w;
+        }
+        return current.get();
+    }
+
+    private static long count(Window cur, Window prev, int bucket) {
+        return cur.counts.get(bucket) + (prev != null ? prev.counts.get(bucket) : 0);
+    }
+
+    private static int bucket(long nanos) {
+        long micros = Math.max(1, nanos / 1000);
+        int index = (int) (Math.log(micros) / Math.log(2) * SUB_BUCKETS);
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    private static long upperBound(int bucket) {
+        return (long) (Math.pow(2, (bucket + 1) / (double) SUB_BUCKETS) * 1000);
+    }
+
+    private static final class Window {
+        final long start;
+        final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        Window(long start) {
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.gateway.proxy;
+
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseErrorHandler;
+
+/**
+ * Treats every upstream status as a normal response so it can be relayed
+ */
+public class PassThroughErrorHandler implements ResponseErrorHandler {
+
+    @Override
+    public boolean hasError(ClientHttpResponse response) {
+        return false;
+    }
+
+    @Override
+    public void handleError(ClientHttpResponse response) {
+    }
+}
@@ -0,0 +1,95 @@
+package com.gateway.proxy;
+
+import com.gateway.metrics.TraceParent;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Which headers cross the gateway: the upstream request's headers built from the
+ * client's, and the hop-by-hop headers dropped in both directions. Runs for every
+ * request, so header names are compared without lower-casing copies.
+ */
+public final class ProxyHeaders {
+
+    /**
+     * The gateway's own credential: the API key callers are rate limited and tiered by
+     */
+    public static final String API_KEY = "X-API-Key";
+
+    /**
+     * Headers that identify the caller; a response fetched with them is never shared with another caller
+     */
+    public static final List<String> CREDENTIALS = List.of(HttpHeaders.AUTHORIZATION, HttpHeaders.COOKIE, API_KEY);
+
+    private ProxyHeaders() {
+    }
+
+    /**
+     * Build headers from original request
+     */
+    public static HttpHeaders build(HttpServletRequest request, boolean propagateTrace) {
+        HttpHeaders headers = new HttpHeaders();
+
+        // Copy headers from original request
+        Enumeration<String> headerNames = request.getHeaderNames();
+        if (headerNames != null) {
+            while (headerNames.hasMoreElements()) {
+                String headerName = headerNames.nextElement();
+
+                // Skip hop-by-hop headers, and those the upstream client sets itself
+                if (isHopByHop(headerName) || isClientManaged(headerName)) {
+                    continue;
+                }
+
+                // Replaced below with the gateway's own span
+                if (propagateTrace && headerName.equalsIgnoreCase(TraceParent.HEADER)) {
+                    continue;
+                }
+
+                Enumeration<String> headerValues = request.getHeaders(headerName);
+                while (headerValues.hasMoreElements()) {
+                    headers.add(headerName, headerValues.nextElement());
+                }
+            }
+        }
+
+        // Add forwarding headers
+        headers.add("X-Forwarded-For", request.getRemoteAddr());
+        headers.add("X-Forwarded-Proto", request.getScheme());
+        headers.add("X-Forwarded-Host", request.getServerName());
+
+        // Continue the caller's W3C trace, or start one
+        if (propagateTrace) {
+            headers.set(TraceParent.HEADER, TraceParent.next(request.getHeader(TraceParent.HEADER)));
+        }
+
+        return headers;
+    }
+
+    /**
+     * Check if header is owned by the upstream connection (target host, 100-continue)
+     */
+    public static boolean isClientManaged(String headerName) {
+        return headerName.equalsIgnoreCase("host") || headerName.equalsIgnoreCase("expect");
+    }
+
+    /**
+     * Check if header is hop-by-hop (should not be forwarded)
+     */
+    public static boolean isHopByHop(String headerName) {
+        // Dispatch on length first; most headers match none of the lengths below
+        return switch (headerName.length()) {
+            case 2 -> headerName.equalsIgnoreCase("te");
+            case 7 -> headerName.equalsIgnoreCase("upgrade");
+            case 8 -> headerName.equalsIgnoreCase("trailers");
+            case 10 -> headerName.equalsIgnoreCase("connection") || headerName.equalsIgnoreCase("keep-alive");
+            case 17 -> headerName.equalsIgnoreCase("transfer-encoding");
+            case 18 -> headerName.equalsIgnoreCase("proxy-authenticate");
+            case 19 -> headerName.equalsIgnoreCase("proxy-authorization");
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,162 @@
+package com.gateway.proxy;
+
+import com.gateway.model.RouteDefinition;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides per response how its body crosses the gateway.
+ *
+ * Bodies the upstream encoded (Accept-Encoding is forwarded, and the upstream
+ * clients never decompress) are relayed byte for byte when the client accepts
+ * the coding, and decoded on the fly when it does not. Routes that enable
+ * compression get uncompressed 200s of the configured types gzipped (or
+ * deflated) while streaming. gateway.compression.bytes{stage=in|out} gives the
+ * ratio achieved.
+ */
+@Component
+public class ResponseCompression {
+
+    private static final MediaType EVENT_STREAM = MediaType.TEXT_EVENT_STREAM;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public ResponseEncoding negotiate(RouteDefinition.Route route, HttpServletRequest request, int status,
+                                      HttpHeaders headers) {
+        if (!hasBody(request, status)) {
+            return ResponseEncoding.IDENTITY;
+        }
+
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        String upstreamCoding = headers.getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (upstreamCoding != null && !upstreamCoding.equalsIgnoreCase("identity")) {
+            String coding = decodable(upstreamCoding.trim());
+            if (coding == null || quality(acceptEncoding, coding) > 0) {
+                return ResponseEncoding.IDENTITY;
+            }
+            count(route, "responses", "action", "decoded").increment();
+            return new ResponseEncoding(ResponseEncoding.Action.DECODE, coding, 0, true, null, null);
+        }
+
+        RouteDefinition.CompressionConfig config = route.getCompression();
+        if (!config.isEnabled() || !isCompressible(config, status, headers)) {
+            return ResponseEncoding.IDENTITY;
+        }
+
+        double gzip = quality(acceptEncoding, "gzip");
+        double deflate = quality(acceptEncoding, "deflate");
+        if (gzip <= 0 && deflate <= 0) {
+            return ResponseEncoding.IDENTITY_VARY;
+        }
+        String coding = gzip >= deflate ? "gzip" : "deflate";
+        count(route, "responses", "action", "compressed").increment();
+        return new ResponseEncoding(ResponseEncoding.Action.COMPRESS, coding, config.getLevel(), true,
+                count(route, "bytes", "stage", "in"), count(route, "bytes", "stage", "out"));
+    }
+
+    /**
+     * Weight of a content coding in an Accept-Encoding header; 0 if it is not acceptable.
+     * A missing header accepts nothing here: clients that can decode say so.
+     */
+    static double quality(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return 0;
+        }
+        double wildcard = 0;
+        for (String element : acceptEncoding.split(",")) {
+            int semicolon = element.indexOf(';');
+            String name = (semicolon < 0 ? element : element.substring(0, semicolon)).trim();
+            double q = semicolon < 0 ? 1 : parseQuality(element.substring(semicolon + 1));
+            if (name.equalsIgnoreCase(coding) || (coding.equals("gzip") && name.equalsIgnoreCase("x-gzip"))) {
+                return q;
+            }
+            if (name.equals("*")) {
+                wildcard = q;
+            }
+        }
+        return wildcard;
+    }
+
+    private static double parseQuality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.length() > 2 && (trimmed.charAt(0) == 'q' || trimmed.charAt(0) == 'Q')
+                    && trimmed.charAt(1) == '=') {
+                try {
+                    return Double.parseDouble(trimmed.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * The single coding the gateway can decode, or null (br, zstd, stacked codings)
+     */
+    private static String decodable(String coding) {
+        if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip")) {
+            return "gzip";
+        }
+        if (coding.equalsIgnoreCase("deflate")) {
+            return "deflate";
+        }
+        return null;
+    }
+
+    private static boolean hasBody(HttpServletRequest request, int status) {
+        return !request.getMethod().equals("HEAD") && status >= 200 && status != 204 && status != 304;
+    }
+
+    private static boolean isCompressible(RouteDefinition.CompressionConfig config, int status, HttpHeaders headers) {
+        if (status != 200 || headers.containsKey(HttpHeaders.CONTENT_RANGE)) {
+            return false;
+        }
+        long length = headers.getContentLength();
+        if (length >= 0 && length < config.getMinSize().toBytes()) {
+            return false;
+        }
+        String cacheControl = headers.getCacheControl();
+        if (cacheControl != null && cacheControl.contains("no-transform")) {
+            return false;
+        }
+
+        MediaType contentType;
+        try {
+            contentType = headers.getContentType();
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        // Events must reach the client as they are written, not when a deflate block fills
+        if (contentType == null || EVENT_STREAM.includes(contentType)) {
+            return false;
+        }
+        for (String type : config.getContentTypes()) {
+            if (MediaType.parseMediaType(type).includes(contentType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Counter count(RouteDefinition.Route route, String name, String tag, String value) {
+        return counters.computeIfAbsent(route.getId() + ":" + name + ":" + value,
+                k -> Counter.builder("gateway.compression." + name)
+                        .tag("route", route.getId())
+                        .tag(tag, value)
+                        .register(meterRegistry));
+    }
+}
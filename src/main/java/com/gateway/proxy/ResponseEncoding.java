@@ -0,0 +1,173 @@
+package com.gateway.proxy;
+
+import io.micrometer.core.instrument.Counter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * What the gateway does to one response body on its way to the client: relay it
+ * as the upstream sent it, compress it, or decode an encoding the client did not
+ * ask for. Obtained from {@link ResponseCompression#negotiate}.
+ */
+public final class ResponseEncoding {
+
+    /**
+     * Relay the body and headers untouched
+     */
+    public static final ResponseEncoding IDENTITY = new ResponseEncoding(Action.RELAY, null, 0, false, null, null);
+
+    /**
+     * Relay untouched, but announce that the representation depends on Accept-Encoding
+     */
+    static final ResponseEncoding IDENTITY_VARY = new ResponseEncoding(Action.RELAY, null, 0, true, null, null);
+
+    private static final int BUFFER_SIZE = 8192;
+
+    enum Action { RELAY, COMPRESS, DECODE }
+
+    private final Action action;
+    private final String coding;
+    private final int level;
+    private final boolean vary;
+    private final Counter bytesIn;
+    private final Counter bytesOut;
+
+    ResponseEncoding(Action action, String coding, int level, boolean vary, Counter bytesIn, Counter bytesOut) {
+        this.action = action;
+        this.coding = coding;
+        this.level = level;
+        this.vary = vary;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+    }
+
+    /**
+     * True when the body is relayed byte for byte
+     */
+    public boolean isIdentity() {
+        return action == Action.RELAY;
+    }
+
+    /**
+     * True when an upstream encoding is removed, so the bytes sent are not the upstream's
+     */
+    public boolean isDecoding() {
+        return action == Action.DECODE;
+    }
+
+    /**
+     * Upstream headers that no longer describe the body and must not be copied
+     */
+    public boolean replacesHeader(String name) {
+        if (action == Action.RELAY) {
+            return false;
+        }
+        return name.equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)
+                || name.equalsIgnoreCase(HttpHeaders.ETAG)
+                || name.equalsIgnoreCase(HttpHeaders.CONTENT_ENCODING);
+    }
+
+    /**
+     * Set the headers describing the body as it is sent; call after copying the upstream ones
+     */
+    public void addHeaders(HttpHeaders upstreamHeaders, HttpServletResponse response) {
+        if (vary && !variesOnAcceptEncoding(upstreamHeaders.getVary())) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (action == Action.RELAY) {
+            return;
+        }
+        if (action == Action.COMPRESS) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, coding);
+        }
+
+        // Different bytes than the upstream's representation, so no longer a strong validator
+        String etag = upstreamHeaders.getETag();
+        if (etag != null) {
+            response.setHeader(HttpHeaders.ETAG, etag.startsWith("W/") ? etag : "W/" + etag);
+        }
+    }
+
+    /**
+     * The upstream body as it should reach {@link #encode}: decoded when decoding, else as is
+     */
+    public InputStream decode(InputStream in) throws IOException {
+        if (action != Action.DECODE) {
+            return in;
+        }
+        return coding.equals("deflate") ? new InflaterInputStream(in) : new GZIPInputStream(in, BUFFER_SIZE);
+    }
+
+    /**
+     * Wrap the client stream in a compressor when compressing; pass the result to {@link #finish}
+     */
+    public OutputStream encode(OutputStream out) throws IOException {
+        if (action != Action.COMPRESS) {
+            return out;
+        }
+        return coding.equals("deflate")
+                ? new Compressor(out, new Deflater(level))
+                : new GzipCompressor(out, level);
+    }
+
+    /**
+     * Write what the compressor still holds and release it, leaving the client stream open
+     */
+    public void finish(OutputStream body) throws IOException {
+        Deflater deflater;
+        if (body instanceof GzipCompressor gzip) {
+            gzip.finish();
+            deflater = gzip.deflater();
+        } else if (body instanceof Compressor compressor) {
+            compressor.finish();
+            deflater = compressor.deflater();
+        } else {
+            return;
+        }
+        bytesIn.increment(deflater.getBytesRead());
+        bytesOut.increment(deflater.getBytesWritten());
+        deflater.end();
+    }
+
+    private static boolean variesOnAcceptEncoding(List<String> vary) {
+        for (String name : vary) {
+            if (name.equals("*") || name.equalsIgnoreCase(HttpHeaders.ACCEPT_ENCODING)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Compressor extends DeflaterOutputStream {
+
+        Compressor(OutputStream out, Deflater deflater) {
+            super(out, deflater, BUFFER_SIZE);
+        }
+
+        Deflater deflater() {
+            return def;
+        }
+    }
+
+    private static final class GzipCompressor extends GZIPOutputStream {
+
+        GzipCompressor(OutputStream out, int level) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+
+        Deflater deflater() {
+            return def;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.gateway.proxy;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps a route's retries and hedges at a share of its traffic.
+ *
+ * Every request deposits ratio of a token and every extra attempt withdraws
+ * a whole one, so with ratio 0.1 extra attempts add at most 10% load and
+ * cannot amplify an outage. The balance saves up at most ratio x 1000
+ * requests' worth. A small per-second allowance keeps retries possible on
+ * quiet routes.
+ */
+public class RetryBudget {
+
+    private static final long SCALE = 1000;
+    private static final int USED_BITS = 16;
+    private static final long USED_MASK = (1L << USED_BITS) - 1;
+
+    private final long deposit;
+    private final long maxBalance;
+    private final int minPerSecond;
+
+    private final AtomicLong balance = new AtomicLong();
+
+    // epoch second << USED_BITS | allowance used in that second
+    private final AtomicLong allowance = new AtomicLong();
+
+    public RetryBudget(double ratio, int minPerSecond) {
+        this.deposit = Math.round(ratio * SCALE);
+        this.maxBalance = deposit * 1000;
+        this.minPerSecond = (int) Math.min(minPerSecond, USED_MASK);
+    }
+
+    /**
+     * Credit one request
+     */
+    public void deposit() {
+        if (balance.get() < maxBalance) {
+            balance.accumulateAndGet(deposit, (current, add) -> Math.min(maxBalance, current + add));
+        }
+    }
+
+    /**
+     * Take one extra attempt from the budget; false if it is spent
+     */
+    public boolean tryWithdraw() {
+        long current;
+        while ((current = balance.get()) >= SCALE) {
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+        return tryAllowance();
+    }
+
+    /**
+     * Extra attempts currently affordable from deposits
+     */
+    public double getBalance() {
+        return balance.get() / (double) SCALE;
+    }
+
+    private boolean tryAllowance() {
+        long second = System.currentTimeMillis() / 1000;
+        while (true) {
+            long current = allowance.get();
+            long used = (current >>> USED_BITS) == second ? current & USED_MASK : 0;
+            if (used >= minPerSecond) {
+                return false;
+            }
+            if (allowance.compareAndSet(current, second << USED_BITS | (used + 1))) {
+                return true;
+            }
+        }
+    }
+}
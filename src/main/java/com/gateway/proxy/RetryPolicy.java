@@ -0,0 +1,239 @@
+package com.gateway.proxy;
+
+import com.gateway.model.RouteDefinition;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Retries and hedging for one route's idempotent requests.
+ *
+ * Failed attempts (exceptions or a retryOn status) are retried up to
+ * maxAttempts with exponential backoff and full jitter. Hedged calls send a
+ * second attempt once the first has taken longer than the route's observed
+ * hedge percentile, answer with whichever succeeds first and cancel the
+ * other. Every extra attempt, retry or hedge, is paid for from the route's
+ * retry budget; when it is spent the current outcome stands.
+ */
+public class RetryPolicy {
+
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE", "TRACE");
+
+    // Samples needed in the latency window before hedging starts
+    private static final long MIN_HEDGE_SAMPLES = 20;
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final double backoffMultiplier;
+    private final Set<Integer> retryOn;
+    private final boolean hedge;
+    private final double hedgeQuantile;
+    private final long minHedgeDelayNanos;
+
+    private final RetryBudget budget;
+    private final LatencyTracker latency;
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder primaryWins = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder retriesDenied = new LongAdder();
+    private final LongAdder hedgesDenied = new LongAdder();
+
+    public RetryPolicy(RouteDefinition.RetryConfig config) {
+        this.maxAttempts = Math.max(1, config.getMaxAttempts());
+        this.initialBackoffNanos = config.getInitialBackoff().toNanos();
+        this.maxBackoffNanos = config.getMaxBackoff().toNanos();
+        this.backoffMultiplier = config.getBackoffMultiplier();
+        this.retryOn = Set.copyOf(config.getRetryOn());
+        this.hedge = config.isHedge();
+        this.hedgeQuantile = config.getHedgePercentile() / 100.0;
+        this.minHedgeDelayNanos = config.getMinHedgeDelay().toNanos();
+        this.budget = new RetryBudget(config.getBudgetRatio(), config.getMinRetriesPerSecond());
+        this.latency = new LatencyTracker(config.getLatencyWindow().toNanos());
+    }
+
+    /**
+     * Whether requests with this method may be sent more than once
+     */
+    public boolean appliesTo(String method) {
+        return IDEMPOTENT_METHODS.contains(method);
+    }
+
+    /**
+     * Whether requests with this method are hedged
+     */
+    public boolean isHedged(String method) {
+        return hedge && ("GET".equals(method) || "HEAD".equals(method));
+    }
+
+    public boolean isRetryableStatus(int status) {
+        return retryOn.contains(status);
+    }
+
+    /**
+     * Run the call with retries, hedging each attempt on the executor if asked to.
+     * An outcome is a failure if the call throws or failed matches its result.
+     * An interrupted thread gets an InterruptedException instead of another attempt.
+     */
+    public <T> T execute(Callable<T> call, Predicate<T> failed, boolean hedged,
+                         ExecutorService executor) throws Exception {
+        budget.deposit();
+
+        for (int attempt = 1; ; attempt++) {
+            T result = null;
+            Exception error = null;
+            try {
+                long delay = hedged ? getHedgeDelayNanos() : -1;
+                result = delay >= 0 ? hedge(call, failed, delay, executor) : timed(call);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                error = e;
+            }
+
+            if ((error == null && !failed.test(result)) || attempt >= maxAttempts) {
+                return outcome(result, error);
+            }
+            // The client often reports an interrupt as an I/O error; abort rather than retry
+            if (Thread.interrupted()) {
+                InterruptedException interrupted = new InterruptedException("Interrupted after attempt " + attempt);
+                if (error != null) {
+                    interrupted.addSuppressed(error);
+                }
+                throw interrupted;
+            }
+            if (!budget.tryWithdraw()) {
+                retriesDenied.increment();
+                return outcome(result, error);
+            }
+            retries.increment();
+            TimeUnit.NANOSECONDS.sleep(backoffNanos(attempt));
+        }
+    }
+
+    /**
+     * Current hedge delay: the route's latency at the hedge percentile, at least
+     * minHedgeDelay; -1 until enough latencies have been seen
+     */
+    public long getHedgeDelayNanos() {
+        long delay = latency.percentile(hedgeQuantile, MIN_HEDGE_SAMPLES);
+        return delay < 0 ? -1 : Math.max(delay, minHedgeDelayNanos);
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    public long getPrimaryWins() {
+        return primaryWins.sum();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    public long getRetriesDenied() {
+        return retriesDenied.sum();
+    }
+
+    public long getHedgesDenied() {
+        return hedgesDenied.sum();
+    }
+
+    private <T> T hedge(Callable<T> call, Predicate<T> failed, long delayNanos,
+                        ExecutorService executor) throws Exception {
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        Future<T> primary = completion.submit(() -> timed(call));
+        Future<T> hedge = null;
+        try {
+            Future<T> first = completion.poll(delayNanos, TimeUnit.NANOSECONDS);
+            if (first != null) {
+                return get(first);
+            }
+            if (!budget.tryWithdraw()) {
+                hedgesDenied.increment();
+                return get(primary);
+            }
+
+            hedges.increment();
+            hedge = completion.submit(() -> timed(call));
+            first = completion.take();
+            Future<T> winner = first;
+            if (isFailure(first, failed)) {
+                // The other attempt may still succeed
+                winner = completion.take();
+                if (isFailure(winner, failed)) {
+                    winner = first;
+                }
+            }
+            (winner == hedge ? hedgeWins : primaryWins).increment();
+            return get(winner);
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    private <T> T timed(Callable<T> call) throws Exception {
+        long start = System.nanoTime();
+        T result = call.call();
+        // A cancelled attempt's latency says nothing about the route
+        if (!Thread.currentThread().isInterrupted()) {
+            latency.record(System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    /**
+     * Full jitter: uniform between zero and the exponential backoff for the attempt
+     */
+    private long backoffNanos(int attempt) {
+        double backoff = initialBackoffNanos * Math.pow(backoffMultiplier, attempt - 1);
+        long cap = (long) Math.min(maxBackoffNanos, backoff);
+        return cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+    }
+
+    private static <T> boolean isFailure(Future<T> future, Predicate<T> failed) throws InterruptedException {
+        try {
+            return failed.test(future.get());
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private static <T> T outcome(T result, Exception error) throws Exception {
+        if (error != null) {
+            throw error;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,109 @@
+package com.gateway.proxy;
+
+import com.gateway.metrics.RouteMeters;
+import com.gateway.model.RouteDefinition;
+import com.gateway.routing.RouteChangeListener;
+import com.gateway.routing.RouteStates;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds one retry policy per route that enables retries, with its metrics and
+ * the executor hedged attempts run on. The hedge win rate is
+ * winner=hedge / (winner=primary + winner=hedge) of gateway.hedge.requests.
+ */
+@Component
+public class RetryPolicyRegistry implements RouteChangeListener {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RouteDefinition routeDefinition;
+
+    private final RouteStates<RetryPolicy> policies = new RouteStates<>(
+            () -> routeDefinition.getRoutes(), RetryPolicyRegistry::sameSettings, this::createPolicy,
+            (id, policy) -> RouteMeters.remove(meterRegistry, id, "gateway.retry", "gateway.hedge"));
+
+    // Attempts are blocking I/O; the request thread only waits for the first answer
+    private final ExecutorService hedgeExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("hedge-", 0).factory());
+
+    /**
+     * Get the retry policy for a route, or null if retries are not enabled for it
+     */
+    public RetryPolicy getPolicy(RouteDefinition.Route route) {
+        if (!route.getRetry().isEnabled()) {
+            return null;
+        }
+        return policies.get(route);
+    }
+
+    public ExecutorService getHedgeExecutor() {
+        return hedgeExecutor;
+    }
+
+    @Override
+    public void onRouteChanged(RouteDefinition.Route previous, RouteDefinition.Route current) {
+        if (current != null && sameSettings(previous, current)) {
+            return;
+        }
+        policies.remove(previous.getId());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    private static boolean sameSettings(RouteDefinition.Route a, RouteDefinition.Route b) {
+        return a.getRetry().equals(b.getRetry());
+    }
+
+    private RetryPolicy createPolicy(RouteDefinition.Route route) {
+        String routeId = route.getId();
+        RetryPolicy policy = new RetryPolicy(route.getRetry());
+
+        FunctionCounter.builder("gateway.retry.attempts", policy, RetryPolicy::getRetries)
+                .tag("route", routeId)
+                .tag("type", "retry")
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.retry.attempts", policy, RetryPolicy::getHedges)
+                .tag("route", routeId)
+                .tag("type", "hedge")
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.retry.budget.exhausted", policy, RetryPolicy::getRetriesDenied)
+                .tag("route", routeId)
+                .tag("type", "retry")
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.retry.budget.exhausted", policy, RetryPolicy::getHedgesDenied)
+                .tag("route", routeId)
+                .tag("type", "hedge")
+                .register(meterRegistry);
+        Gauge.builder("gateway.retry.budget.balance", policy, p -> p.getBudget().getBalance())
+                .tag("route", routeId)
+                .register(meterRegistry);
+
+        FunctionCounter.builder("gateway.hedge.requests", policy, RetryPolicy::getPrimaryWins)
+                .tag("route", routeId)
+                .tag("winner", "primary")
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.hedge.requests", policy, RetryPolicy::getHedgeWins)
+                .tag("route", routeId)
+                .tag("winner", "hedge")
+                .register(meterRegistry);
+        Gauge.builder("gateway.hedge.delay", policy, p -> Math.max(0, p.getHedgeDelayNanos()) / 1_000_000.0)
+                .tag("route", routeId)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+
+        return policy;
+    }
+}
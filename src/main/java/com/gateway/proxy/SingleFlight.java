@@ -0,0 +1,99 @@
+package com.gateway.proxy;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collapses concurrent identical calls into one.
+ *
+ * The first caller for a key (the leader) runs the call; callers arriving
+ * while it is in flight wait for and share its result. A flight accepts at
+ * most maxWaiters followers, and followers wait at most maxWait; beyond
+ * either they make their own call. Finished flights are removed at once, so
+ * nothing is cached beyond the call itself.
+ */
+public class SingleFlight<V> {
+
+    private final int maxWaiters;
+    private final long maxWaitNanos;
+    private final Map<String, Flight<V>> flights = new ConcurrentHashMap<>();
+
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder followers = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+
+    public SingleFlight(int maxWaiters, long maxWaitNanos) {
+        this.maxWaiters = maxWaiters;
+        this.maxWaitNanos = maxWaitNanos;
+    }
+
+    /**
+     * Run the call for the key, or join the identical call already in flight
+     */
+    public V execute(String key, Callable<V> call) throws Exception {
+        Flight<V> mine = new Flight<>();
+        Flight<V> existing = flights.putIfAbsent(key, mine);
+
+        if (existing == null) {
+            leaders.increment();
+            try {
+                V result = call.call();
+                mine.result.complete(result);
+                return result;
+            } catch (Exception e) {
+                mine.result.completeExceptionally(e);
+                throw e;
+            } finally {
+                flights.remove(key, mine);
+            }
+        }
+
+        if (existing.waiters.incrementAndGet() > maxWaiters) {
+            existing.waiters.decrementAndGet();
+            overflows.increment();
+            return call.call();
+        }
+
+        try {
+            V result = existing.result.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+            followers.increment();
+            return result;
+        } catch (TimeoutException e) {
+            overflows.increment();
+            return call.call();
+        } catch (ExecutionException e) {
+            followers.increment();
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } finally {
+            existing.waiters.decrementAndGet();
+        }
+    }
+
+    public long getLeaders() {
+        return leaders.sum();
+    }
+
+    public long getFollowers() {
+        return followers.sum();
+    }
+
+    public long getOverflows() {
+        return overflows.sum();
+    }
+
+    public int getInFlight() {
+        return flights.size();
+    }
+
+    private static final class Flight<V> {
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private final AtomicInteger waiters = new AtomicInteger();
+    }
+}
@@ -0,0 +1,82 @@
+package com.gateway.proxy;
+
+import com.gateway.metrics.RouteMeters;
+import com.gateway.model.RouteDefinition;
+import com.gateway.routing.RouteChangeListener;
+import com.gateway.routing.RouteStates;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Holds one single-flight group per route that enables request coalescing.
+ * The collapse ratio is followers / (leaders + followers + overflows) of
+ * gateway.coalesce.requests.
+ */
+@Component
+public class SingleFlightRegistry implements RouteChangeListener {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RouteDefinition routeDefinition;
+
+    private final RouteStates<SingleFlight<ResponseEntity<byte[]>>> groups = new RouteStates<>(
+            () -> routeDefinition.getRoutes(), SingleFlightRegistry::sameSettings, this::createSingleFlight,
+            (id, singleFlight) -> RouteMeters.remove(meterRegistry, id, "gateway.coalesce"));
+
+    /**
+     * Get the single-flight group for a route, or null if coalescing is not enabled for it
+     */
+    public SingleFlight<ResponseEntity<byte[]>> getSingleFlight(RouteDefinition.Route route) {
+        if (!route.getCoalesce().isEnabled()) {
+            return null;
+        }
+        return groups.get(route);
+    }
+
+    /**
+     * Calls already in flight still complete their followers through the old group
+     */
+    @Override
+    public void onRouteChanged(RouteDefinition.Route previous, RouteDefinition.Route current) {
+        if (current != null && sameSettings(previous, current)) {
+            return;
+        }
+        groups.remove(previous.getId());
+    }
+
+    private static boolean sameSettings(RouteDefinition.Route a, RouteDefinition.Route b) {
+        return a.getCoalesce().equals(b.getCoalesce());
+    }
+
+    private SingleFlight<ResponseEntity<byte[]>> createSingleFlight(RouteDefinition.Route route) {
+        String routeId = route.getId();
+        RouteDefinition.CoalesceConfig config = route.getCoalesce();
+        SingleFlight<ResponseEntity<byte[]>> singleFlight =
+                new SingleFlight<>(config.getMaxWaiters(), config.getMaxWait().toNanos());
+
+        FunctionCounter.builder("gateway.coalesce.requests", singleFlight, SingleFlight::getLeaders)
+                .tag("route", routeId)
+                .tag("role", "leader")
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.coalesce.requests", singleFlight, SingleFlight::getFollowers)
+                .tag("route", routeId)
+                .tag("role", "follower")
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.coalesce.requests", singleFlight, SingleFlight::getOverflows)
+                .tag("route", routeId)
+                .tag("role", "overflow")
+                .register(meterRegistry);
+        Gauge.builder("gateway.coalesce.in.flight", singleFlight, SingleFlight::getInFlight)
+                .tag("route", routeId)
+                .register(meterRegistry);
+
+        return singleFlight;
+    }
+}
@@ -0,0 +1,20 @@
+package com.gateway.proxy;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Connection pool and templates for one route's upstream
+ */
+@Getter
+@RequiredArgsConstructor
+public class UpstreamClient {
+
+    private final String routeId;
+    private final ClientHttpRequestFactory requestFactory;
+
+    // Relays every status with its headers and body instead of throwing
+    private final RestTemplate restTemplate;
+}
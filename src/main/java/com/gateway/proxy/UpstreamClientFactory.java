@@ -0,0 +1,17 @@
+package com.gateway.proxy;
+
+import com.gateway.model.RouteDefinition;
+import com.gateway.model.UpstreamProtocol;
+import org.springframework.http.client.ClientHttpRequestFactory;
+
+/**
+ * Creates the HTTP client used to reach a route's upstream. Each call returns
+ * a factory with its own connection pool sized from the route's pool settings.
+ * Factories that hold connections should implement DisposableBean.
+ */
+public interface UpstreamClientFactory {
+
+    boolean supports(UpstreamProtocol protocol);
+
+    ClientHttpRequestFactory create(RouteDefinition.Route route);
+}
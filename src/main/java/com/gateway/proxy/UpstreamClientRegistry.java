@@ -0,0 +1,210 @@
+package com.gateway.proxy;
+
+import com.gateway.metrics.RouteMeters;
+import com.gateway.model.RouteDefinition;
+import com.gateway.model.UpstreamProtocol;
+import com.gateway.routing.RouteChangeListener;
+import com.gateway.routing.RouteStates;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Holds one pooled upstream client per route. A route reload only replaces the
+ * clients of routes whose pool settings changed (or that were removed); the old
+ * pool is closed after gateway.route-reload.drain-time so in-flight requests finish,
+ * and requests still holding a removed route use it until then.
+ */
+@Slf4j
+@Component
+public class UpstreamClientRegistry implements RouteChangeListener {
+
+    @Autowired
+    private List<UpstreamClientFactory> factories;
+
+    @Autowired
+    private RouteDefinition routeDefinition;
+
+    @Autowired
+    private RestTemplateBuilder restTemplateBuilder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${gateway.route-reload.drain-time:30s}")
+    private Duration drainTime;
+
+    // Replaced or removed clients until they are closed
+    private final Map<String, UpstreamClient> drainingClients = new ConcurrentHashMap<>();
+    private final Map<String, HttpClient> drainingAsyncClients = new ConcurrentHashMap<>();
+
+    private final RouteStates<UpstreamClient> clients = new RouteStates<>(
+            () -> routeDefinition.getRoutes(), UpstreamClientRegistry::sameSettings, this::createClient,
+            (id, client) -> {
+                RouteMeters.remove(meterRegistry, id, "httpcomponents.httpclient.pool");
+                retire(id, client, drainingClients, this::closeClient);
+            });
+    private final RouteStates<HttpClient> asyncClients = new RouteStates<>(
+            () -> routeDefinition.getRoutes(), UpstreamClientRegistry::sameSettings, this::createAsyncClient,
+            (id, client) -> retire(id, client, drainingAsyncClients, HttpClient::close));
+
+    /**
+     * Create pools for all configured routes up front so the first request
+     * doesn't pay for it and pool metrics are visible immediately
+     */
+    @PostConstruct
+    public void initialize() {
+        routeDefinition.getRoutes().forEach(this::getClient);
+    }
+
+    /**
+     * Get (or lazily create) the client for a route
+     */
+    public UpstreamClient getClient(RouteDefinition.Route route) {
+        UpstreamClient client = clients.get(route);
+        return client != null ? client
+                : drainingClient(route, drainingClients, this::createClient, this::closeClient);
+    }
+
+    /**
+     * Get (or lazily create) the non-blocking client for a route in async mode
+     */
+    public HttpClient getAsyncClient(RouteDefinition.Route route) {
+        HttpClient client = asyncClients.get(route);
+        return client != null ? client
+                : drainingClient(route, drainingAsyncClients, this::createAsyncClient, HttpClient::close);
+    }
+
+    @Override
+    public void onRouteChanged(RouteDefinition.Route previous, RouteDefinition.Route current) {
+        if (current != null && sameSettings(previous, current)) {
+            return;
+        }
+        clients.remove(previous.getId());
+        asyncClients.remove(previous.getId());
+    }
+
+    @PreDestroy
+    public void close() {
+        clients.asMap().values().forEach(this::closeClient);
+        drainingClients.values().forEach(this::closeClient);
+        asyncClients.asMap().values().forEach(HttpClient::close);
+        drainingAsyncClients.values().forEach(HttpClient::close);
+    }
+
+    private static boolean sameSettings(RouteDefinition.Route a, RouteDefinition.Route b) {
+        return a.getPool().equals(b.getPool());
+    }
+
+    /**
+     * A removed route's client for the requests still holding it: the retired one, or
+     * (if the route never had one) a new client that is retired right away
+     */
+    private <T> T drainingClient(RouteDefinition.Route route, Map<String, T> draining,
+                                 Function<RouteDefinition.Route, T> create, Consumer<T> close) {
+        T client = draining.get(route.getId());
+        if (client != null) {
+            return client;
+        }
+        T created = create.apply(route);
+        removeMetersUnlessLive(route.getId());
+        retire(route.getId(), created, draining, close);
+        return created;
+    }
+
+    /**
+     * Close a replaced or removed client once the requests using it had drainTime to finish
+     */
+    private <T> void retire(String routeId, T client, Map<String, T> draining, Consumer<T> close) {
+        draining.put(routeId, client);
+        log.info("Closing upstream client for {} in {}", routeId, drainTime);
+        Thread.ofVirtual().name("upstream-drain-" + routeId).start(() -> {
+            try {
+                Thread.sleep(drainTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            draining.remove(routeId, client);
+            close.accept(client);
+        });
+    }
+
+    /**
+     * Pool meters are tagged by route only: keep them if the route is back with a live client
+     */
+    private void removeMetersUnlessLive(String routeId) {
+        if (clients.find(routeId) == null) {
+            RouteMeters.remove(meterRegistry, routeId, "httpcomponents.httpclient.pool");
+        }
+    }
+
+    private UpstreamClient createClient(RouteDefinition.Route route) {
+        UpstreamClientFactory factory = factories.stream()
+                .filter(f -> f.supports(route.getPool().getProtocol()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "No upstream client for protocol " + route.getPool().getProtocol()));
+
+        ClientHttpRequestFactory requestFactory = factory.create(route);
+
+        log.info("Upstream client for {}: {} (max {} connections)",
+                route.getId(), route.getPool().getProtocol(), route.getPool().getMaxConnections());
+
+        return new UpstreamClient(
+                route.getId(),
+                requestFactory,
+                restTemplateBuilder.requestFactory(() -> requestFactory)
+                        .errorHandler(new PassThroughErrorHandler())
+                        .build()
+        );
+    }
+
+    /**
+     * JDK client: sendAsync parks no thread while waiting; its executor only runs completions
+     */
+    private HttpClient createAsyncClient(RouteDefinition.Route route) {
+        RouteDefinition.PoolConfig pool = route.getPool();
+
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(pool.getProtocol() == UpstreamProtocol.HTTP_2
+                        ? HttpClient.Version.HTTP_2
+                        : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(pool.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NEVER);
+        if (virtualThreads) {
+            builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+
+        log.info("Async upstream client for {}: {}", route.getId(), pool.getProtocol());
+        return builder.build();
+    }
+
+    private void closeClient(UpstreamClient client) {
+        if (client.getRequestFactory() instanceof DisposableBean disposable) {
+            try {
+                disposable.destroy();
+            } catch (Exception e) {
+                log.warn("Error closing upstream client for {}: {}", client.getRouteId(), e.getMessage());
+            }
+        }
+    }
+}
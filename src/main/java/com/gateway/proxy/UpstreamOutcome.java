@@ -0,0 +1,120 @@
+package com.gateway.proxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The upstream's part of one proxied exchange, as the circuit breaker, concurrency
+ * limiter and load balancer judge it: the status it answered with and its time to
+ * first byte. Relaying the body to the client is not the upstream's doing, so a slow
+ * client, a large body or a client hanging up changes neither. The client streams
+ * handed out here remember failing, which tells those failures apart from the upstream's.
+ */
+public class UpstreamOutcome {
+
+    /**
+     * Status of an exchange that says nothing about the upstream
+     */
+    public static final int NONE = -1;
+
+    private static final int FAILED = 500;
+
+    private int status = NONE;
+    private long latencyNanos;
+    private boolean clientFailed;
+
+    /**
+     * The upstream answered with a status, its first byte latencyNanos after the request was sent
+     */
+    public void respond(int status, long latencyNanos) {
+        this.status = status;
+        this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * The upstream could not be reached or its response not read; counts as a 500
+     */
+    public void fail(long latencyNanos) {
+        respond(FAILED, latencyNanos);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * Whether reading from or writing to the client failed
+     */
+    public boolean isClientFailed() {
+        return clientFailed;
+    }
+
+    /**
+     * The client's request body, remembering read failures
+     */
+    public InputStream fromClient(InputStream in) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                try {
+                    return in.read();
+                } catch (IOException e) {
+                    clientFailed = true;
+                    throw e;
+                }
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                try {
+                    return in.read(b, off, len);
+                } catch (IOException e) {
+                    clientFailed = true;
+                    throw e;
+                }
+            }
+        };
+    }
+
+    /**
+     * The stream to the client, remembering write failures
+     */
+    public OutputStream toClient(OutputStream out) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                try {
+                    out.write(b);
+                } catch (IOException e) {
+                    clientFailed = true;
+                    throw e;
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    out.write(b, off, len);
+                } catch (IOException e) {
+                    clientFailed = true;
+                    throw e;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    clientFailed = true;
+                    throw e;
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,93 @@
+package com.gateway.ratelimit;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Maps keys to nodes with a consistent hash ring (ketama style).
+ *
+ * Every node is placed at virtualNodes points derived from its name alone, and a
+ * key belongs to the first point at or after its hash. Adding or removing one of
+ * N nodes therefore moves only about 1/N of the keys, and only to or from that
+ * node. Keys are hashed by their Redis Cluster hash tag, so keys sharing a tag
+ * (e.g. all windows of one identifier) always land on the same node.
+ */
+public class ConsistentHashRing<T> {
+
+    // Looked up on every rate-limit check; MessageDigest.getInstance goes through the provider list
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final NavigableMap<Long, T> ring = new TreeMap<>();
+    private final List<T> nodes;
+
+    public ConsistentHashRing(List<T> nodes, Function<T, String> name, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A hash ring needs at least one node");
+        }
+        this.nodes = List.copyOf(nodes);
+        for (T node : nodes) {
+            // Four 32-bit points per MD5 digest
+            for (int i = 0; i < (virtualNodes + 3) / 4; i++) {
+                byte[] digest = md5(name.apply(node) + "-" + i);
+                for (int part = 0; part < 4; part++) {
+                    ring.put(point(digest, part), node);
+                }
+            }
+        }
+    }
+
+    /**
+     * The node owning a key
+     */
+    public T get(String key) {
+        if (nodes.size() == 1) {
+            return nodes.get(0);
+        }
+        Map.Entry<Long, T> entry = ring.ceilingEntry(point(md5(hashTag(key)), 0));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public List<T> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * The part of a key Redis Cluster hashes: the content of the first {...} if it is
+     * not empty, otherwise the whole key
+     */
+    public static String hashTag(String key) {
+        int open = key.indexOf('{');
+        if (open >= 0) {
+            int close = key.indexOf('}', open + 1);
+            if (close > open + 1) {
+                return key.substring(open + 1, close);
+            }
+        }
+        return key;
+    }
+
+    private static long point(byte[] digest, int part) {
+        int offset = part * 4;
+        return ((long) (digest[offset + 3] & 0xFF) << 24)
+                | ((long) (digest[offset + 2] & 0xFF) << 16)
+                | ((long) (digest[offset + 1] & 0xFF) << 8)
+                | (digest[offset] & 0xFF);
+    }
+
+    private static byte[] md5(String value) {
+        // digest() resets the instance for the next call
+        return MD5.get().digest(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
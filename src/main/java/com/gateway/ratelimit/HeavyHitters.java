@@ -0,0 +1,119 @@
+package com.gateway.ratelimit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Top identifiers by requests and by rate-limit rejections, counted in process.
+ *
+ * Every rate-limit decision is added to two Space-Saving sketches for the current
+ * interval (aligned to the clock, e.g. each minute); the last complete interval is
+ * kept for reporting. Memory is fixed by capacity, and the request path costs two
+ * short in-memory updates, no Redis calls.
+ */
+@Component
+public class HeavyHitters {
+
+    @Value("${gateway.rate-limit.heavy-hitters.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gateway.rate-limit.heavy-hitters.capacity:1024}")
+    private int capacity;
+
+    @Value("${gateway.rate-limit.heavy-hitters.interval:1m}")
+    private Duration interval;
+
+    private volatile Period current;
+    private volatile Period previous;
+
+    /**
+     * Counts of one interval
+     */
+    public static final class Period {
+
+        private final long start;
+        private final long end;
+        private final SpaceSaving requests;
+        private final SpaceSaving rejections;
+
+        private Period(long start, long end, int capacity) {
+            this.start = start;
+            this.end = end;
+            this.requests = new SpaceSaving(capacity);
+            this.rejections = new SpaceSaving(capacity);
+        }
+
+        /**
+         * Epoch millis the interval began
+         */
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public SpaceSaving getRequests() {
+            return requests;
+        }
+
+        public SpaceSaving getRejections() {
+            return rejections;
+        }
+    }
+
+    public void record(String identifier, boolean rejected) {
+        if (!enabled) {
+            return;
+        }
+        Period period = period(System.currentTimeMillis());
+        period.requests.add(identifier);
+        if (rejected) {
+            period.rejections.add(identifier);
+        }
+    }
+
+    /**
+     * The interval in progress
+     */
+    public Period getCurrent() {
+        return period(System.currentTimeMillis());
+    }
+
+    /**
+     * The last complete interval, or null if it saw no traffic
+     */
+    public Period getPrevious() {
+        period(System.currentTimeMillis());
+        return previous;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private Period period(long now) {
+        Period period = current;
+        if (period != null && now < period.end) {
+            return period;
+        }
+        synchronized (this) {
+            period = current;
+            if (period == null || now >= period.end) {
+                long millis = interval.toMillis();
+                long start = now / millis * millis;
+                previous = period != null && period.end == start ? period : null;
+                period = new Period(start, start + millis, capacity);
+                current = period;
+            }
+            return period;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.gateway.ratelimit;
+
+import lombok.Value;
+
+/**
+ * Result of taking tokens from the shared store
+ */
+@Value
+public class LeaseGrant {
+    long granted;      // tokens reserved for this node (0 = limit reached)
+    long remaining;    // tokens left globally after the grant, in the tightest window
+    long resetAt;      // epoch millis when that window resets (a lease never outlives it)
+    long retryAfter;   // millis until tokens are available again (when none granted)
+    int window;        // index of the window the figures above belong to
+}
@@ -0,0 +1,22 @@
+package com.gateway.ratelimit;
+
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * How many tokens a node may reserve from Redis at once.
+ *
+ * A lease requests fraction x (last known global remaining), clamped to
+ * [1, maxSize]. Leased tokens are already counted in Redis, so a window never
+ * admits more than its limit; the cost is that up to (nodes - 1) x maxSize
+ * tokens can sit unused in other nodes' leases, and a single node may admit
+ * up to maxSize requests within ttl before Redis sees further traffic.
+ * maxSize bounds the error.
+ */
+@Value
+public class LeasePolicy {
+    double fraction;
+    int maxSize;
+    Duration ttl;
+}
@@ -0,0 +1,30 @@
+package com.gateway.ratelimit;
+
+import com.gateway.model.RateLimitWindow;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shared store that tokens are taken from (Redis in production)
+ */
+public interface LeaseSource {
+
+    /**
+     * Atomically return unused tokens from an expired lease on the same key
+     * and take up to the requested number of new ones from every window
+     */
+    LeaseGrant lease(String key, List<RateLimitWindow> windows, long requested, long returned);
+
+    /**
+     * Same as lease without blocking the caller; by default it calls lease in place
+     */
+    default CompletableFuture<LeaseGrant> leaseAsync(String key, List<RateLimitWindow> windows,
+                                                     long requested, long returned) {
+        try {
+            return CompletableFuture.completedFuture(lease(key, windows, requested, returned));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.gateway.ratelimit;
+
+import com.gateway.model.RateLimitWindow;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * In-process stand-in for Redis while it is unavailable.
+ *
+ * Each node enforces its share of every window (limit x share, at least 1) with
+ * fixed-window counters, so a cluster of evenly loaded nodes stays near the
+ * global limit without talking to each other. Admissions are remembered per
+ * window so they can be charged to Redis once it is back (see drain).
+ */
+public class LocalRateLimiter implements LeaseSource {
+
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    private final double share;
+    private final Map<String, Usage> usage = new ConcurrentHashMap<>();
+    private final LongAdder decisions = new LongAdder();
+
+    /**
+     * Receives the tokens admitted locally in a window that has not ended yet
+     */
+    @FunctionalInterface
+    public interface UsageConsumer {
+        void accept(String key, RateLimitWindow window, long admitted);
+    }
+
+    public LocalRateLimiter(double share) {
+        this.share = share;
+    }
+
+    @Override
+    public LeaseGrant lease(String key, List<RateLimitWindow> windows, long requested, long returned) {
+        decisions.increment();
+        long now = System.currentTimeMillis();
+        Usage entry = usage.computeIfAbsent(key, k -> new Usage());
+
+        LeaseGrant grant;
+        synchronized (entry) {
+            entry.roll(windows, now, returned);
+
+            int tightest = 0;
+            long[] available = new long[windows.size()];
+            for (int i = 0; i < windows.size(); i++) {
+                available[i] = Math.max(0, localLimit(windows.get(i)) - entry.counts[i]);
+                if (available[i] < available[tightest]) {
+                    tightest = i;
+                }
+            }
+
+            long windowMillis = windows.get(tightest).getWindow().toMillis();
+            long resetAt = (entry.indexes[tightest] + 1) * windowMillis;
+            long granted = Math.min(requested, available[tightest]);
+            if (granted <= 0) {
+                grant = new LeaseGrant(0, 0, resetAt, Math.max(1, resetAt - now), tightest);
+            } else {
+                for (int i = 0; i < windows.size(); i++) {
+                    entry.counts[i] += granted;
+                }
+                grant = new LeaseGrant(granted, available[tightest] - granted, resetAt, 0, tightest);
+            }
+        }
+
+        if (usage.size() > SWEEP_THRESHOLD) {
+            usage.values().removeIf(u -> u.isStale(now));
+        }
+        return grant;
+    }
+
+    /**
+     * Hand over and forget everything admitted locally in windows that are still current
+     */
+    public void drain(UsageConsumer consumer) {
+        drain(key -> true, consumer);
+    }
+
+    /**
+     * Same as drain for the keys matching a filter only (e.g. those of one Redis shard)
+     */
+    public void drain(Predicate<String> keys, UsageConsumer consumer) {
+        long now = System.currentTimeMillis();
+        for (String key : usage.keySet()) {
+            if (!keys.test(key)) {
+                continue;
+            }
+            Usage entry = usage.remove(key);
+            if (entry == null) {
+                continue;
+            }
+            synchronized (entry) {
+                for (int i = 0; i < entry.windows.size(); i++) {
+                    RateLimitWindow window = entry.windows.get(i);
+                    if (entry.counts[i] > 0 && entry.indexes[i] == now / window.getWindow().toMillis()) {
+                        consumer.accept(key, window, entry.counts[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    public long getDecisions() {
+        return decisions.sum();
+    }
+
+    public int getKeyCount() {
+        return usage.size();
+    }
+
+    private long localLimit(RateLimitWindow window) {
+        return Math.max(1, (long) Math.ceil(window.getLimit() * share));
+    }
+
+    private static final class Usage {
+
+        private List<RateLimitWindow> windows = List.of();
+        private long[] indexes = new long[0];
+        private long[] counts = new long[0];
+
+        /**
+         * Start a fresh count for windows that have ended (or changed), and take back returned tokens
+         */
+        void roll(List<RateLimitWindow> current, long now, long returned) {
+            if (!current.equals(windows)) {
+                windows = current;
+                indexes = new long[current.size()];
+                counts = new long[current.size()];
+                for (int i = 0; i < current.size(); i++) {
+                    indexes[i] = now / current.get(i).getWindow().toMillis();
+                }
+                return;
+            }
+            for (int i = 0; i < windows.size(); i++) {
+                long index = now / windows.get(i).getWindow().toMillis();
+                if (index != indexes[i]) {
+                    indexes[i] = index;
+                    counts[i] = 0;
+                } else if (returned > 0) {
+                    counts[i] = Math.max(0, counts[i] - returned);
+                }
+            }
+        }
+
+        synchronized boolean isStale(long now) {
+            for (int i = 0; i < windows.size(); i++) {
+                if (indexes[i] == now / windows.get(i).getWindow().toMillis()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
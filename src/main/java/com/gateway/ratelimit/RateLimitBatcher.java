@@ -0,0 +1,197 @@
+package com.gateway.ratelimit;
+
+import com.gateway.model.RateLimitWindow;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent rate-limit script calls into pipelined batches.
+ *
+ * Callers queue a call and get a future. A single sender thread takes what is
+ * queued, waiting up to maxDelay after the first call for up to maxBatchSize,
+ * and hands the batch to the executor as one round trip on one connection.
+ * While a batch is in flight the next one fills up, so batches grow with load
+ * and an idle gateway pays at most maxDelay. A full queue fails the call at once.
+ */
+public class RateLimitBatcher implements LeaseSource, AutoCloseable {
+
+    private final BatchExecutor executor;
+    private final BatchListener listener;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Call> queue;
+    private final Thread sender;
+    private volatile boolean running = true;
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Sends a batch of calls in one round trip, completing or failing each of them.
+     * Calls left incomplete when it returns or throws are failed.
+     */
+    @FunctionalInterface
+    public interface BatchExecutor {
+        void execute(List<Call> calls);
+    }
+
+    /**
+     * Told the size and round-trip time of every batch sent
+     */
+    @FunctionalInterface
+    public interface BatchListener {
+        void onBatch(int size, long nanos);
+    }
+
+    public RateLimitBatcher(BatchExecutor executor, BatchListener listener, int maxBatchSize,
+                            Duration maxDelay, int maxQueued) {
+        this.executor = executor;
+        this.listener = listener;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.queue = new LinkedBlockingQueue<>(maxQueued);
+        this.sender = new Thread(this::sendLoop, "ratelimit-batcher");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @Override
+    public LeaseGrant lease(String key, List<RateLimitWindow> windows, long requested, long returned) {
+        try {
+            return leaseAsync(key, windows, requested, returned).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<LeaseGrant> leaseAsync(String key, List<RateLimitWindow> windows,
+                                                    long requested, long returned) {
+        Call call = new Call(key, windows, requested, returned);
+        if (!running || !queue.offer(call)) {
+            rejected.increment();
+            call.fail(new RejectedExecutionException("Rate limit batch queue is full"));
+        }
+        return call.future;
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        sender.interrupt();
+        try {
+            sender.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Call call;
+        while ((call = queue.poll()) != null) {
+            call.fail(new RejectedExecutionException("Rate limit batcher stopped"));
+        }
+    }
+
+    private void sendLoop() {
+        List<Call> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                batch.forEach(call -> call.fail(new RejectedExecutionException("Rate limit batcher stopped")));
+                return;
+            }
+            send(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Block for the first call, then gather more until the batch is full or maxDelay has passed
+     */
+    private void collect(List<Call> batch) throws InterruptedException {
+        batch.add(queue.take());
+        queue.drainTo(batch, maxBatchSize - batch.size());
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatchSize) {
+            long wait = deadline - System.nanoTime();
+            if (wait <= 0) {
+                return;
+            }
+            Call call = queue.poll(wait, TimeUnit.NANOSECONDS);
+            if (call == null) {
+                return;
+            }
+            batch.add(call);
+            queue.drainTo(batch, maxBatchSize - batch.size());
+        }
+    }
+
+    private void send(List<Call> batch) {
+        long start = System.nanoTime();
+        try {
+            executor.execute(batch);
+        } catch (RuntimeException e) {
+            batch.forEach(call -> call.fail(e));
+        }
+        listener.onBatch(batch.size(), System.nanoTime() - start);
+        batch.forEach(call -> call.fail(new IllegalStateException("No reply for rate limit call")));
+    }
+
+    /**
+     * One script call waiting in a batch
+     */
+    public static final class Call {
+
+        private final String key;
+        private final List<RateLimitWindow> windows;
+        private final long requested;
+        private final long returned;
+        private final CompletableFuture<LeaseGrant> future = new CompletableFuture<>();
+
+        private Call(String key, List<RateLimitWindow> windows, long requested, long returned) {
+            this.key = key;
+            this.windows = windows;
+            this.requested = requested;
+            this.returned = returned;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public List<RateLimitWindow> getWindows() {
+            return windows;
+        }
+
+        public long getRequested() {
+            return requested;
+        }
+
+        public long getReturned() {
+            return returned;
+        }
+
+        public void complete(LeaseGrant grant) {
+            future.complete(grant);
+        }
+
+        public void fail(Throwable error) {
+            future.completeExceptionally(error);
+        }
+    }
+}
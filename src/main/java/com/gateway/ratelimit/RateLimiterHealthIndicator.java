@@ -0,0 +1,26 @@
+package com.gateway.ratelimit;
+
+import com.gateway.service.RateLimiterService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * "rateLimiter" health: whether limits are enforced through Redis or by the local
+ * fallback. Always UP, since the gateway keeps limiting either way; a Redis outage
+ * shows as mode "local" rather than taking the whole node out of rotation.
+ */
+@Component
+public class RateLimiterHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private RateLimiterService rateLimiterService;
+
+    @Override
+    public Health health() {
+        return Health.up()
+                .withDetails(rateLimiterService.getFallbackDetails())
+                .build();
+    }
+}
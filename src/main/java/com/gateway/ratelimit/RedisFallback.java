@@ -0,0 +1,209 @@
+package com.gateway.ratelimit;
+
+import com.gateway.model.RateLimitWindow;
+import com.gateway.proxy.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Rate limiting while Redis shards are unavailable.
+ *
+ * Each shard has a breaker in front of it. While a shard's breaker is open (or
+ * a call to it fails) its keys are limited by a LocalRateLimiter with this
+ * node's share of every limit; once the breaker closes, what was admitted
+ * locally is charged to the shard. A call the gateway refused itself (full
+ * batch queue) falls back too, but says nothing about Redis and is not
+ * recorded by the breaker.
+ */
+@Slf4j
+public class RedisFallback {
+
+    /**
+     * The shards the fallback stands in for
+     */
+    public interface Store {
+
+        /**
+         * Name of the shard holding a key
+         */
+        String shardOf(String key);
+
+        /**
+         * Charge tokens to one window of a key on its shard; returns the tokens charged
+         */
+        long charge(String key, RateLimitWindow window, long tokens);
+    }
+
+    private final Store store;
+    private final int nodes;
+    private final MeterRegistry meterRegistry;
+    private final LocalRateLimiter localLimiter;
+    private final Map<String, CircuitBreaker> breakers = new LinkedHashMap<>();
+    private final Counter reconciled;
+
+    /**
+     * @param shards   names of the shards, one breaker each
+     * @param breakers builds a breaker with the configured thresholds
+     * @param nodes    gateway nodes sharing the limits while they limit locally
+     */
+    public RedisFallback(List<String> shards, Supplier<CircuitBreaker> breakers, int nodes, Store store,
+                         MeterRegistry meterRegistry) {
+        this.store = store;
+        this.nodes = Math.max(1, nodes);
+        this.meterRegistry = meterRegistry;
+        this.localLimiter = new LocalRateLimiter(1.0 / this.nodes);
+
+        for (String shard : shards) {
+            CircuitBreaker breaker = breakers.get();
+            breaker.setListener((from, to) -> onTransition(shard, from, to));
+            this.breakers.put(shard, breaker);
+
+            Gauge.builder("gateway.ratelimit.redis.state", breaker, b -> b.getState().ordinal())
+                    .description("0 = closed (Redis), 1 = open (local fallback), 2 = half-open")
+                    .tag("shard", shard)
+                    .register(meterRegistry);
+        }
+        FunctionCounter.builder("gateway.ratelimit.decisions", localLimiter, LocalRateLimiter::getDecisions)
+                .tag("source", "fallback")
+                .register(meterRegistry);
+        reconciled = Counter.builder("gateway.ratelimit.fallback.reconciled")
+                .description("Locally admitted requests charged to Redis after it recovered")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Take tokens from the shard through redis while its breaker lets calls through,
+     * from the local limiter otherwise or when the call fails
+     */
+    public LeaseGrant lease(String shard, String key, List<RateLimitWindow> windows, long requested,
+                            long returned, Supplier<LeaseGrant> redis) {
+        CircuitBreaker breaker = breakers.get(shard);
+        if (!breaker.tryAcquirePermission()) {
+            return localLimiter.lease(key, windows, requested, returned);
+        }
+        long start = System.nanoTime();
+        try {
+            LeaseGrant grant = redis.get();
+            breaker.onResult(false, System.nanoTime() - start);
+            return grant;
+        } catch (RuntimeException e) {
+            record(breaker, e, start);
+            log.debug("Rate limit check for {} failed over to the local limiter: {}", key, e.getMessage());
+            return localLimiter.lease(key, windows, requested, returned);
+        }
+    }
+
+    /**
+     * Same as lease without blocking the caller
+     */
+    public CompletableFuture<LeaseGrant> leaseAsync(String shard, String key, List<RateLimitWindow> windows,
+                                                    long requested, long returned,
+                                                    Supplier<CompletableFuture<LeaseGrant>> redis) {
+        CircuitBreaker breaker = breakers.get(shard);
+        if (!breaker.tryAcquirePermission()) {
+            return CompletableFuture.completedFuture(localLimiter.lease(key, windows, requested, returned));
+        }
+        long start = System.nanoTime();
+        CompletableFuture<LeaseGrant> grant;
+        try {
+            grant = redis.get();
+        } catch (RuntimeException e) {
+            grant = CompletableFuture.failedFuture(e);
+        }
+        return grant.handle((g, error) -> {
+            if (error == null) {
+                breaker.onResult(false, System.nanoTime() - start);
+                return g;
+            }
+            record(breaker, error, start);
+            log.debug("Rate limit check for {} failed over to the local limiter: {}", key, error.getMessage());
+            return localLimiter.lease(key, windows, requested, returned);
+        });
+    }
+
+    /**
+     * Breaker state of each shard and local usage for the health endpoint. Mode is "redis"
+     * or "local" when all shards agree, "partial" while only some of them are limited locally.
+     */
+    public Map<String, Object> getDetails() {
+        Map<String, Object> shards = new LinkedHashMap<>();
+        int closed = 0;
+        for (Map.Entry<String, CircuitBreaker> entry : breakers.entrySet()) {
+            CircuitBreaker breaker = entry.getValue();
+            if (breaker.getState() == CircuitBreaker.State.CLOSED) {
+                closed++;
+            }
+            shards.put(entry.getKey(), Map.of(
+                    "breaker", breaker.getState().name(),
+                    "failureRate", breaker.getFailureRate(),
+                    "slowCallRate", breaker.getSlowCallRate()));
+        }
+        String mode = closed == shards.size() ? "redis" : closed == 0 ? "local" : "partial";
+        return Map.of(
+                "mode", mode,
+                "shards", shards,
+                "localKeys", localLimiter.getKeyCount());
+    }
+
+    /**
+     * A refused call never reached Redis: give the permission back instead of counting a failure
+     */
+    private static void record(CircuitBreaker breaker, Throwable error, long start) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof RejectedExecutionException) {
+            breaker.releasePermission();
+        } else {
+            breaker.onResult(true, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Log and count every change of a shard's breaker; once it closes, charge the shard
+     * with what was admitted locally so the rest of the current windows accounts for it
+     */
+    private void onTransition(String shard, CircuitBreaker.State from, CircuitBreaker.State to) {
+        if (to == CircuitBreaker.State.OPEN && from == CircuitBreaker.State.CLOSED) {
+            log.warn("Redis {} unavailable for rate limiting, limiting its keys locally with 1/{} of each limit",
+                    shard, nodes);
+        } else {
+            log.warn("Rate limit Redis {} breaker changed from {} to {}", shard, from, to);
+        }
+        Counter.builder("gateway.ratelimit.redis.transitions")
+                .tag("shard", shard)
+                .tag("from", from.name())
+                .tag("to", to.name())
+                .register(meterRegistry)
+                .increment();
+
+        if (to == CircuitBreaker.State.CLOSED) {
+            Thread.ofVirtual().name("ratelimit-reconcile").start(() -> reconcile(shard));
+        }
+    }
+
+    /**
+     * Charge each window on the shard with the tokens admitted locally in it; the script
+     * caps the charge at what the window has left
+     */
+    private void reconcile(String shard) {
+        long[] total = new long[1];
+        try {
+            localLimiter.drain(key -> store.shardOf(key).equals(shard),
+                    (key, limit, admitted) -> total[0] += store.charge(key, limit, admitted));
+            reconciled.increment(total[0]);
+            log.info("Rate limiting back on Redis {}, charged {} locally admitted requests", shard, total[0]);
+        } catch (RuntimeException e) {
+            log.warn("Reconciling local rate limit usage with Redis {} failed: {}", shard, e.getMessage());
+        }
+    }
+}
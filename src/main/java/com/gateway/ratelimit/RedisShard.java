@@ -0,0 +1,39 @@
+package com.gateway.ratelimit;
+
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * One Redis node holding a share of the rate-limit keys
+ */
+public class RedisShard {
+
+    private final String name;
+    private final RedisTemplate<String, String> template;
+    private final ReactiveStringRedisTemplate reactiveTemplate;
+
+    public RedisShard(String name, RedisTemplate<String, String> template,
+                      ReactiveStringRedisTemplate reactiveTemplate) {
+        this.name = name;
+        this.template = template;
+        this.reactiveTemplate = reactiveTemplate;
+    }
+
+    /**
+     * Stable name of the node (host:port); its position on the hash ring derives from it
+     */
+    public String getName() {
+        return name;
+    }
+
+    public RedisTemplate<String, String> getTemplate() {
+        return template;
+    }
+
+    /**
+     * Non-blocking client for the async pipeline, or null
+     */
+    public ReactiveStringRedisTemplate getReactiveTemplate() {
+        return reactiveTemplate;
+    }
+}
@@ -0,0 +1,60 @@
+package com.gateway.ratelimit;
+
+import io.lettuce.core.RedisURI;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Standalone Redis nodes the rate-limit keys are spread over by consistent hashing.
+ * Each node gets its own connection; closing this closes them all.
+ */
+public class RedisShards implements AutoCloseable {
+
+    private final List<RedisShard> shards = new ArrayList<>();
+    private final List<LettuceConnectionFactory> factories = new ArrayList<>();
+
+    /**
+     * Connect to each node, given as host:port or a redis:// URI (with password and database)
+     */
+    public RedisShards(List<String> nodes, Duration timeout) {
+        for (String node : nodes) {
+            RedisURI uri = RedisURI.create(node.contains("://") ? node : "redis://" + node);
+            RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(uri.getHost(), uri.getPort());
+            configuration.setDatabase(uri.getDatabase());
+            if (uri.getUsername() != null) {
+                configuration.setUsername(uri.getUsername());
+            }
+            if (uri.getPassword() != null) {
+                configuration.setPassword(uri.getPassword());
+            }
+            LettuceClientConfiguration.LettuceClientConfigurationBuilder client = LettuceClientConfiguration.builder()
+                    .commandTimeout(timeout);
+            if (uri.isSsl()) {
+                client.useSsl();
+            }
+
+            LettuceConnectionFactory factory = new LettuceConnectionFactory(configuration, client.build());
+            factory.afterPropertiesSet();
+            factory.start();
+            factories.add(factory);
+            shards.add(new RedisShard(uri.getHost() + ":" + uri.getPort(), new StringRedisTemplate(factory),
+                    new ReactiveStringRedisTemplate(factory)));
+        }
+    }
+
+    public List<RedisShard> getShards() {
+        return shards;
+    }
+
+    @Override
+    public void close() {
+        factories.forEach(LettuceConnectionFactory::destroy);
+    }
+}
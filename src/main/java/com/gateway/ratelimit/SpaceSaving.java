@@ -0,0 +1,125 @@
+package com.gateway.ratelimit;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Approximate top-K counter in fixed memory (Space-Saving, Metwally et al.).
+ *
+ * At most capacity items are counted. An untracked item takes over the slot of
+ * the smallest counter and inherits its count, so counts are overestimated by at
+ * most that inherited error, and an item that is a large enough share of the
+ * traffic (about 1 / capacity) is never dropped. Items are striped by hash over
+ * independently locked parts, so concurrent callers rarely contend and each item
+ * is counted in one place.
+ */
+public class SpaceSaving {
+
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * One tracked item: count may be too high by at most error
+     */
+    @Value
+    public static class Entry {
+        String item;
+        long count;
+        long error;
+    }
+
+    public SpaceSaving(int capacity) {
+        int perStripe = Math.max(1, (capacity + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    public void add(String item) {
+        total.increment();
+        stripe(item).add(item);
+    }
+
+    /**
+     * Estimated count of an item (an upper bound), 0 if it is not tracked
+     */
+    public long estimate(String item) {
+        return stripe(item).estimate(item);
+    }
+
+    /**
+     * The n items with the highest counts, highest first
+     */
+    public List<Entry> top(int n) {
+        List<Entry> entries = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.copyTo(entries);
+        }
+        entries.sort(Comparator.comparingLong(Entry::getCount).reversed());
+        return entries.size() > n ? new ArrayList<>(entries.subList(0, n)) : entries;
+    }
+
+    /**
+     * Items added, tracked or not
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    private Stripe stripe(String item) {
+        int hash = item.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static final class Stripe {
+
+        private final int capacity;
+        private final Map<String, long[]> counters;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+            this.counters = new HashMap<>(capacity * 2);
+        }
+
+        synchronized void add(String item) {
+            long[] counter = counters.get(item);
+            if (counter != null) {
+                counter[0]++;
+                return;
+            }
+            if (counters.size() < capacity) {
+                counters.put(item, new long[]{1, 0});
+                return;
+            }
+
+            // Replace the smallest counter; a scan is cheap at the few dozen slots per stripe
+            String minItem = null;
+            long[] min = null;
+            for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+                if (min == null || entry.getValue()[0] < min[0]) {
+                    minItem = entry.getKey();
+                    min = entry.getValue();
+                }
+            }
+            counters.remove(minItem);
+            counters.put(item, new long[]{min[0] + 1, min[0]});
+        }
+
+        synchronized long estimate(String item) {
+            long[] counter = counters.get(item);
+            return counter != null ? counter[0] : 0;
+        }
+
+        synchronized void copyTo(List<Entry> entries) {
+            counters.forEach((item, counter) -> entries.add(new Entry(item, counter[0], counter[1])));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.gateway.ratelimit;
+
+import com.gateway.model.UserTier;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Resolves API keys to tiers through a bounded in-memory cache.
+ *
+ * Entries are refreshed in the background once they are older than the
+ * refresh interval, while the cached tier keeps being served, so only the
+ * first request for a key (or one idle past the TTL) waits on the source.
+ * Unknown keys are cached as the default tier; a failing source keeps the
+ * last known tier, or the default tier if there is none.
+ */
+@Slf4j
+public class TierResolver {
+
+    private final TierSource source;
+    private final UserTier defaultTier;
+    private final LoadingCache<String, UserTier> cache;
+
+    public TierResolver(TierSource source, UserTier defaultTier,
+                        long maxSize, Duration ttl, Duration refreshAfter) {
+        this.source = source;
+        this.defaultTier = defaultTier;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .refreshAfterWrite(refreshAfter)
+                .recordStats()
+                .build(this::load);
+    }
+
+    /**
+     * Tier for the API key
+     */
+    public UserTier resolve(String apiKey) {
+        try {
+            return cache.get(apiKey);
+        } catch (RuntimeException e) {
+            log.warn("Could not resolve tier for API key: {}. Using {}.", e.getMessage(), defaultTier);
+            return defaultTier;
+        }
+    }
+
+    /**
+     * Tier for the API key without blocking: cached tiers complete at once,
+     * misses are read with the source's async lookup and then cached
+     */
+    public CompletableFuture<UserTier> resolveAsync(String apiKey) {
+        UserTier cached = cache.getIfPresent(apiKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return source.lookupAsync(apiKey).handle((tier, error) -> {
+            if (error != null) {
+                log.warn("Could not resolve tier for API key: {}. Using {}.", error.getMessage(), defaultTier);
+                return defaultTier;
+            }
+            UserTier resolved = tier != null ? tier : defaultTier;
+            cache.put(apiKey, resolved);
+            return resolved;
+        });
+    }
+
+    /**
+     * Drop a cached tier so the next request reads it from the source
+     */
+    public void invalidate(String apiKey) {
+        cache.invalidate(apiKey);
+    }
+
+    public LoadingCache<String, UserTier> getCache() {
+        return cache;
+    }
+
+    private UserTier load(String apiKey) {
+        UserTier tier = source.lookup(apiKey);
+        return tier != null ? tier : defaultTier;
+    }
+}
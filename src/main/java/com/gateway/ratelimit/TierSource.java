@@ -0,0 +1,27 @@
+package com.gateway.ratelimit;
+
+import com.gateway.model.UserTier;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where API key tiers are stored (a Redis hash in production)
+ */
+public interface TierSource {
+
+    /**
+     * Look up the tier for an API key, or null if the key is unknown
+     */
+    UserTier lookup(String apiKey);
+
+    /**
+     * Same as lookup without blocking the caller; by default it calls lookup in place
+     */
+    default CompletableFuture<UserTier> lookupAsync(String apiKey) {
+        try {
+            return CompletableFuture.completedFuture(lookup(apiKey));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
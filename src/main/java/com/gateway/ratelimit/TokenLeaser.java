@@ -0,0 +1,265 @@
+package com.gateway.ratelimit;
+
+import com.gateway.model.RateLimitResult;
+import com.gateway.model.RateLimitWindow;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves rate-limit decisions from locally leased token batches.
+ *
+ * The hot path is a CAS decrement on the key's lease. Only when the lease is
+ * exhausted or expired does one thread go back to the LeaseSource, returning
+ * any leftover tokens and reserving a new batch; other threads for the same
+ * key wait for that refresh instead of stampeding the store. Once the store
+ * reports the limit reached, requests are denied locally until the lease TTL
+ * or the window ends.
+ */
+public class TokenLeaser {
+
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    private final LeaseSource source;
+    private final LeasePolicy policy;
+    private final long ttlNanos;
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    private final LongAdder localDecisions = new LongAdder();
+    private final LongAdder remoteDecisions = new LongAdder();
+
+    public TokenLeaser(LeaseSource source, LeasePolicy policy) {
+        this.source = source;
+        this.policy = policy;
+        this.ttlNanos = policy.getTtl().toNanos();
+    }
+
+    /**
+     * Take one token for the key from all of its windows
+     */
+    public RateLimitResult acquire(String key, List<RateLimitWindow> windows) {
+        long now = System.nanoTime();
+        Lease lease = leases.computeIfAbsent(key, k -> new Lease());
+
+        RateLimitResult local = tryLocal(lease, windows, now);
+        if (local != null) {
+            return local;
+        }
+
+        synchronized (lease) {
+            // Another thread may have refreshed while we waited
+            now = System.nanoTime();
+            local = tryLocal(lease, windows, now);
+            if (local != null) {
+                return local;
+            }
+
+            remoteDecisions.increment();
+            long requested = requestSize(lease, windows);
+            LeaseGrant grant = source.lease(key, windows, requested, lease.drain());
+            return apply(lease, windows, grant, now);
+        }
+    }
+
+    /**
+     * Take one token for the key without blocking: local decisions complete at once,
+     * refills use the source's async call. Callers for a key whose lease is being
+     * refilled continue once the refill lands.
+     */
+    public CompletableFuture<RateLimitResult> acquireAsync(String key, List<RateLimitWindow> windows) {
+        Lease lease = leases.computeIfAbsent(key, k -> new Lease());
+
+        RateLimitResult local = tryLocal(lease, windows, System.nanoTime());
+        if (local != null) {
+            return CompletableFuture.completedFuture(local);
+        }
+
+        CompletableFuture<Void> refill = new CompletableFuture<>();
+        CompletableFuture<Void> inFlight = lease.refill.compareAndExchange(null, refill);
+        if (inFlight != null) {
+            return inFlight.thenCompose(ignored -> acquireAsync(key, windows));
+        }
+
+        // Another caller may have refilled between our local check and taking the refill
+        local = tryLocal(lease, windows, System.nanoTime());
+        if (local != null) {
+            lease.refill.set(null);
+            refill.complete(null);
+            return CompletableFuture.completedFuture(local);
+        }
+
+        remoteDecisions.increment();
+        CompletableFuture<LeaseGrant> grant;
+        try {
+            grant = source.leaseAsync(key, windows, requestSize(lease, windows), lease.drain());
+        } catch (RuntimeException e) {
+            grant = CompletableFuture.failedFuture(e);
+        }
+        return grant
+                .thenApply(g -> {
+                    synchronized (lease) {
+                        return apply(lease, windows, g, System.nanoTime());
+                    }
+                })
+                .whenComplete((result, error) -> {
+                    lease.refill.set(null);
+                    refill.complete(null);
+                });
+    }
+
+    private long requestSize(Lease lease, List<RateLimitWindow> windows) {
+        return Math.max(1, Math.min(policy.getMaxSize(),
+                (long) (lease.lastRemaining(windows) * policy.getFraction())));
+    }
+
+    /**
+     * Store a grant from the source in the lease and take this request's token from it
+     */
+    private RateLimitResult apply(Lease lease, List<RateLimitWindow> windows, LeaseGrant grant, long now) {
+        RateLimitWindow tightest = windows.get(grant.getWindow());
+        long untilReset = Math.max(0, grant.getResetAt() - System.currentTimeMillis()) * 1_000_000L;
+
+        if (grant.getGranted() <= 0) {
+            long denyFor = Math.min(ttlNanos, grant.getRetryAfter() * 1_000_000L);
+            lease.deny(now + denyFor, grant.getWindow(), grant.getResetAt(),
+                    now + grant.getRetryAfter() * 1_000_000L);
+            sweepIfLarge(now);
+            return RateLimitResult.exceeded(tightest, grant.getResetAt(), grant.getRetryAfter());
+        }
+
+        lease.refill(grant.getGranted() - 1, grant.getRemaining(), grant.getWindow(), grant.getResetAt(),
+                now + Math.min(ttlNanos, untilReset));
+        sweepIfLarge(now);
+        return RateLimitResult.allowed(tightest, lease.remaining(), grant.getResetAt());
+    }
+
+    /**
+     * Decide from the local lease alone, or return null if Redis is needed
+     */
+    private RateLimitResult tryLocal(Lease lease, List<RateLimitWindow> windows, long now) {
+        if (lease.tryTake(now)) {
+            localDecisions.increment();
+            return RateLimitResult.allowed(lease.window(windows), lease.remaining(), lease.resetAt);
+        }
+        if (lease.isDenied(now)) {
+            localDecisions.increment();
+            long retryAfter = Math.max(1, (lease.retryAt - now) / 1_000_000L);
+            return RateLimitResult.exceeded(lease.window(windows), lease.resetAt, retryAfter);
+        }
+        return null;
+    }
+
+    public long getLocalDecisions() {
+        return localDecisions.sum();
+    }
+
+    public long getRemoteDecisions() {
+        return remoteDecisions.sum();
+    }
+
+    public int getLeaseCount() {
+        return leases.size();
+    }
+
+    /**
+     * Tokens of the key leased to this node and not spent yet; the store counts them as used
+     */
+    public long getLeasedTokens(String key) {
+        Lease lease = leases.get(key);
+        return lease != null ? Math.max(0, lease.tokens.get()) : 0;
+    }
+
+    /**
+     * Drop leases that can no longer serve or deny anything
+     */
+    private void sweepIfLarge(long now) {
+        if (leases.size() > SWEEP_THRESHOLD) {
+            leases.values().removeIf(lease -> lease.isStale(now));
+        }
+    }
+
+    private static final class Lease {
+
+        private final AtomicLong tokens = new AtomicLong();
+        private final AtomicReference<CompletableFuture<Void>> refill = new AtomicReference<>();
+        private volatile long expiresAt;
+        private volatile long deniedUntil;
+        private volatile long globalRemaining = -1;
+        private volatile int window;
+        private volatile long resetAt;
+        private volatile long retryAt;
+        private volatile boolean denied;
+
+        boolean tryTake(long now) {
+            if (now - expiresAt >= 0) {
+                return false;
+            }
+            long current;
+            do {
+                current = tokens.get();
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!tokens.compareAndSet(current, current - 1));
+            return true;
+        }
+
+        boolean isDenied(long now) {
+            return denied && now - deniedUntil < 0;
+        }
+
+        boolean isStale(long now) {
+            return now - expiresAt >= 0 && now - deniedUntil >= 0;
+        }
+
+        long remaining() {
+            return Math.max(0, globalRemaining) + Math.max(0, tokens.get());
+        }
+
+        long lastRemaining(List<RateLimitWindow> windows) {
+            if (globalRemaining >= 0) {
+                return globalRemaining;
+            }
+            long tightest = Long.MAX_VALUE;
+            for (RateLimitWindow window : windows) {
+                tightest = Math.min(tightest, window.getLimit());
+            }
+            return tightest;
+        }
+
+        /**
+         * The window last reported as tightest (the windows may have changed since)
+         */
+        RateLimitWindow window(List<RateLimitWindow> windows) {
+            return windows.get(Math.min(window, windows.size() - 1));
+        }
+
+        long drain() {
+            return Math.max(0, tokens.getAndSet(0));
+        }
+
+        void refill(long granted, long remaining, int window, long resetAt, long expiresAt) {
+            this.denied = false;
+            this.globalRemaining = remaining;
+            this.window = window;
+            this.resetAt = resetAt;
+            this.expiresAt = expiresAt;
+            this.tokens.set(granted);
+        }
+
+        void deny(long until, int window, long resetAt, long retryAt) {
+            this.globalRemaining = 0;
+            this.window = window;
+            this.resetAt = resetAt;
+            this.retryAt = retryAt;
+            this.deniedUntil = until;
+            this.expiresAt = until;
+            this.denied = true;
+        }
+    }
+}
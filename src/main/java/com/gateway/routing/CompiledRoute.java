@@ -0,0 +1,146 @@
+package com.gateway.routing;
+
+import com.gateway.model.RouteDefinition;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A route prepared for the hot path: parsed pattern segments, allowed methods
+ * and, where possible, the number of leading characters to strip so that the
+ * target URL is a single substring + concat.
+ */
+@Getter
+public class CompiledRoute {
+
+    private final RouteDefinition.Route route;
+    private final String[] segments;
+    private final boolean prefix;
+    private final String[] methods;
+
+    // Characters removed by strip-prefix, or -1 when a stripped segment is a parameter
+    private final int stripLength;
+
+    CompiledRoute(RouteDefinition.Route route) {
+        this.route = route;
+
+        String pattern = route.getPath();
+        if (pattern == null || !pattern.startsWith("/")) {
+            throw new IllegalArgumentException("Route " + route.getId() + " path must start with '/': " + pattern);
+        }
+        this.prefix = pattern.endsWith("/**");
+        String body = prefix ? pattern.substring(0, pattern.length() - 3) : pattern;
+        this.segments = body.length() <= 1 ? new String[0] : body.substring(1).split("/", -1);
+
+        this.methods = route.getMethods().stream()
+                .map(m -> m.toUpperCase(Locale.ROOT))
+                .toArray(String[]::new);
+
+        this.stripLength = computeStripLength(route.getStripPrefix());
+    }
+
+    public String getId() {
+        return route.getId();
+    }
+
+    /**
+     * Check if the route accepts the HTTP method (no methods configured = all)
+     */
+    public boolean allowsMethod(String method) {
+        if (methods.length == 0) {
+            return true;
+        }
+        for (String allowed : methods) {
+            if (allowed.equals(method)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Build target URL from request path and query string
+     */
+    public String buildTargetUrl(String path, String queryString) {
+        return buildTargetUrl(route.getUri(), path, queryString);
+    }
+
+    /**
+     * Build target URL on a specific upstream instance
+     */
+    public String buildTargetUrl(String uri, String path, String queryString) {
+        int offset = stripOffset(path);
+        boolean hasQuery = queryString != null && !queryString.isEmpty();
+
+        if (offset >= path.length()) {
+            return hasQuery ? uri + "/?" + queryString : uri + "/";
+        }
+        return hasQuery
+                ? uri + path.substring(offset) + "?" + queryString
+                : uri + path.substring(offset);
+    }
+
+    /**
+     * Extract {name} path variables for a path this route matched.
+     * Only allocates when called; lookups never need it.
+     */
+    public Map<String, String> extractVariables(String path) {
+        Map<String, String> variables = null;
+        int pos = 0;
+        for (String segment : segments) {
+            int end = path.indexOf('/', pos + 1);
+            if (end == -1) {
+                end = path.length();
+            }
+            if (RouteTable.isVariable(segment)) {
+                if (variables == null) {
+                    variables = new LinkedHashMap<>();
+                }
+                variables.put(segment.substring(1, segment.length() - 1), path.substring(pos + 1, end));
+            }
+            pos = end;
+        }
+        return variables != null ? variables : Collections.emptyMap();
+    }
+
+    /**
+     * Index of the first character kept after stripping the configured number of segments
+     */
+    private int stripOffset(String path) {
+        int strip = route.getStripPrefix();
+        if (strip <= 0) {
+            return 0;
+        }
+        if (stripLength >= 0) {
+            return stripLength;
+        }
+        int pos = 0;
+        for (int i = 0; i < strip; i++) {
+            pos = path.indexOf('/', pos + 1);
+            if (pos == -1) {
+                return path.length();
+            }
+        }
+        return pos;
+    }
+
+    private int computeStripLength(int strip) {
+        if (strip <= 0) {
+            return 0;
+        }
+        if (strip > segments.length) {
+            return -1;
+        }
+        int length = 0;
+        for (int i = 0; i < strip; i++) {
+            if (RouteTable.isWildcard(segments[i])) {
+                return -1;
+            }
+            length += 1 + segments[i].length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,14 @@
+package com.gateway.routing;
+
+import com.gateway.model.RouteDefinition;
+
+/**
+ * Told about every route a reload changed or removed, once the new table is live
+ */
+public interface RouteChangeListener {
+
+    /**
+     * current is null when the route was removed
+     */
+    void onRouteChanged(RouteDefinition.Route previous, RouteDefinition.Route current);
+}
@@ -0,0 +1,128 @@
+package com.gateway.routing;
+
+import com.gateway.model.RouteDefinition;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route source backed by a YAML/JSON file (gateway.route-file, same shape as
+ * gateway.routes under a top-level "routes" key). The file replaces the
+ * configured routes at startup and is re-applied whenever it changes; a set
+ * that does not parse or validate is logged and the live routes are kept.
+ */
+@Slf4j
+@Component
+public class RouteFileWatcher {
+
+    @Autowired
+    private RouteLocator routeLocator;
+
+    @Value("${gateway.route-file:}")
+    private String routeFile;
+
+    // Editors often write a file in several steps; wait for them to settle
+    @Value("${gateway.route-reload.debounce:500ms}")
+    private Duration debounce;
+
+    private WatchService watchService;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (routeFile == null || routeFile.isBlank()) {
+            return;
+        }
+        Path path = Path.of(routeFile).toAbsolutePath();
+        if (Files.exists(path)) {
+            List<String> errors = reload(path);
+            if (!errors.isEmpty()) {
+                throw new IllegalStateException("Invalid route file " + path + ": " + errors);
+            }
+        } else {
+            log.warn("Route file {} does not exist yet, using configured routes", path);
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+        path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread watcher = new Thread(() -> watch(path), "route-file-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("Watching route file {}", path);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Load and apply the file; returns the reasons it was rejected, if it was
+     */
+    List<String> reload(Path path) {
+        List<RouteDefinition.Route> routes;
+        try {
+            routes = RouteLoader.load(new FileSystemResource(path));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read route file {}: {}", path, e.getMessage());
+            return List.of("unreadable: " + e.getMessage());
+        }
+        return routeLocator.update(routes, "file:" + path.getFileName());
+    }
+
+    private void watch(Path path) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = containsFile(key, path);
+                key.reset();
+                if (!changed) {
+                    continue;
+                }
+
+                // Swallow the rest of the burst before reading
+                WatchKey more;
+                while ((more = watchService.poll(debounce.toMillis(), TimeUnit.MILLISECONDS)) != null) {
+                    more.pollEvents();
+                    more.reset();
+                }
+                if (Files.exists(path)) {
+                    reload(path);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    private static boolean containsFile(WatchKey key, Path path) {
+        boolean found = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path name && name.equals(path.getFileName())) {
+                found = true;
+            }
+        }
+        return found;
+    }
+}
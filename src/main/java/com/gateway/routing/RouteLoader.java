@@ -0,0 +1,37 @@
+package com.gateway.routing;
+
+import com.gateway.model.RouteDefinition;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a route set from YAML or JSON with a top-level "routes" list, in the same
+ * shape and with the same relaxed binding as gateway.routes in application.yml
+ * (strip-prefix or stripPrefix, durations like 5s, sizes like 32MB)
+ */
+public final class RouteLoader {
+
+    private RouteLoader() {
+    }
+
+    public static List<RouteDefinition.Route> load(Resource resource) throws IOException {
+        // YAML is a superset of JSON, so one loader reads both
+        List<PropertySource<?>> sources = new YamlPropertySourceLoader().load(String.valueOf(resource.getFilename()),
+                resource);
+        if (sources.isEmpty()) {
+            return List.of();
+        }
+        return new Binder(ConfigurationPropertySources.from(sources))
+                .bind("routes", Bindable.listOf(RouteDefinition.Route.class))
+                .map(routes -> (List<RouteDefinition.Route>) new ArrayList<>(routes))
+                .orElseGet(List::of);
+    }
+}
@@ -0,0 +1,186 @@
+package com.gateway.routing;
+
+import com.gateway.model.ProxyMode;
+import com.gateway.model.RouteDefinition;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Resolves requests to routes using the current compiled route table.
+ *
+ * The table starts from gateway.routes and can be replaced at runtime (admin
+ * API, watched route file). A new route set is validated and compiled first,
+ * then published with a single volatile write, so lookups never lock and see
+ * either the old or the new table. Routes that did not change keep their
+ * definition objects, and with them their connection pools and other per-route
+ * state; listeners drop the state of changed and removed routes.
+ */
+@Slf4j
+@Component
+public class RouteLocator {
+
+    @Autowired
+    private RouteDefinition routeDefinition;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private List<RouteChangeListener> listeners = List.of();
+
+    @Value("${gateway.proxy.mode:STREAMING}")
+    private ProxyMode defaultMode;
+
+    private volatile RouteTable routeTable;
+    private volatile RouteUpdate lastUpdate;
+
+    @PostConstruct
+    public void compile() {
+        routeTable = RouteTable.compile(routeDefinition.getRoutes());
+        lastUpdate = new RouteUpdate(1, "configuration", Instant.now(),
+                routeDefinition.getRoutes().stream().map(RouteDefinition.Route::getId).toList(), List.of(), List.of());
+        log.info("Compiled route table with {} routes", routeTable.size());
+
+        if (meterRegistry != null) {
+            Gauge.builder("gateway.routes.version", this, RouteLocator::getVersion)
+                    .register(meterRegistry);
+            Gauge.builder("gateway.routes.count", this, locator -> locator.getRouteTable().size())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Find the most specific route for the method and path, or null
+     */
+    public CompiledRoute locate(String method, String path) {
+        return routeTable.lookup(method, path);
+    }
+
+    /**
+     * Proxy mode of a route: its own, or gateway.proxy.mode
+     */
+    public ProxyMode getMode(RouteDefinition.Route route) {
+        return route.getMode() != null ? route.getMode() : defaultMode;
+    }
+
+    public RouteTable getRouteTable() {
+        return routeTable;
+    }
+
+    public long getVersion() {
+        return lastUpdate.getVersion();
+    }
+
+    public RouteUpdate getLastUpdate() {
+        return lastUpdate;
+    }
+
+    /**
+     * Validate a route set and, if valid, make it the live one. Returns the errors
+     * (nothing changes) or an empty list. A set equal to the live one is not a new version.
+     */
+    public synchronized List<String> update(List<RouteDefinition.Route> routes, String source) {
+        List<String> errors = RouteValidator.validate(routes);
+        if (!errors.isEmpty()) {
+            log.warn("Rejected routes from {}: {}", source, errors);
+            count("rejected");
+            return errors;
+        }
+
+        Map<String, RouteDefinition.Route> previous = new LinkedHashMap<>();
+        for (CompiledRoute route : routeTable.getRoutes()) {
+            previous.put(route.getId(), route.getRoute());
+        }
+
+        // Unchanged routes keep the live definition object
+        List<RouteDefinition.Route> next = new ArrayList<>(routes.size());
+        List<String> added = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        for (RouteDefinition.Route route : routes) {
+            RouteDefinition.Route current = previous.get(route.getId());
+            if (current == null) {
+                added.add(route.getId());
+                next.add(route);
+            } else if (current.equals(route)) {
+                next.add(current);
+            } else {
+                changed.add(route.getId());
+                next.add(route);
+            }
+        }
+        List<String> removed = previous.keySet().stream()
+                .filter(id -> routes.stream().noneMatch(route -> Objects.equals(route.getId(), id)))
+                .toList();
+
+        RouteTable table = RouteTable.compile(next);
+        RouteUpdate update = new RouteUpdate(lastUpdate.getVersion() + 1, source, Instant.now(),
+                List.copyOf(added), List.copyOf(removed), List.copyOf(changed));
+        if (update.isEmpty() && next.size() == previous.size() && orderUnchanged(next)) {
+            count("unchanged");
+            return List.of();
+        }
+
+        // Live for the registries before any request can be matched to the new routes
+        routeDefinition.setRoutes(new ArrayList<>(next));
+        routeTable = table;
+        lastUpdate = update;
+        count("applied");
+        log.info("Routes v{} from {}: added {}, removed {}, changed {}",
+                update.getVersion(), source, added, removed, changed);
+
+        for (String id : changed) {
+            RouteDefinition.Route route = next.stream().filter(r -> r.getId().equals(id)).findFirst().orElseThrow();
+            notifyListeners(previous.get(id), route);
+        }
+        for (String id : removed) {
+            notifyListeners(previous.get(id), null);
+        }
+        return List.of();
+    }
+
+    /**
+     * Declaration order breaks ties between equally specific routes, so a reorder is a change too
+     */
+    private boolean orderUnchanged(List<RouteDefinition.Route> next) {
+        List<CompiledRoute> live = routeTable.getRoutes();
+        for (int i = 0; i < next.size(); i++) {
+            if (live.get(i).getRoute() != next.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void notifyListeners(RouteDefinition.Route previous, RouteDefinition.Route current) {
+        for (RouteChangeListener listener : listeners) {
+            try {
+                listener.onRouteChanged(previous, current);
+            } catch (RuntimeException e) {
+                log.warn("Route change listener {} failed for {}: {}",
+                        listener.getClass().getSimpleName(), previous.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private void count(String result) {
+        if (meterRegistry != null) {
+            Counter.builder("gateway.routes.updates")
+                    .tag("result", result)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.gateway.routing;
+
+import com.gateway.model.RouteDefinition;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The per-route state of a registry (pools, breakers, caches...), by route id,
+ * each entry remembering the route it was built for.
+ *
+ * A request keeps the route it was matched to while a reload replaces or
+ * removes it, so a lookup can come after the registry's listener dropped the
+ * state. Entries are only built for live routes: a stale route gets the state
+ * of the live route with its id (or null once the route is gone) instead of
+ * putting its old settings back.
+ */
+public final class RouteStates<V> {
+
+    private record Entry<V>(RouteDefinition.Route route, V value) {
+    }
+
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Supplier<List<RouteDefinition.Route>> liveRoutes;
+    private final BiPredicate<RouteDefinition.Route, RouteDefinition.Route> sameSettings;
+    private final Function<RouteDefinition.Route, V> create;
+    private final BiConsumer<String, V> discard;
+
+    /**
+     * @param liveRoutes   the current route set
+     * @param sameSettings whether two versions of a route can share one state
+     * @param create       builds the state for a route
+     * @param discard      releases a state that is dropped or replaced
+     */
+    public RouteStates(Supplier<List<RouteDefinition.Route>> liveRoutes,
+                       BiPredicate<RouteDefinition.Route, RouteDefinition.Route> sameSettings,
+                       Function<RouteDefinition.Route, V> create,
+                       BiConsumer<String, V> discard) {
+        this.liveRoutes = liveRoutes;
+        this.sameSettings = sameSettings;
+        this.create = create;
+        this.discard = discard;
+    }
+
+    /**
+     * Get (or create) the state for a route; null only for a route that was removed
+     */
+    public V get(RouteDefinition.Route route) {
+        Entry<V> entry = entries.get(route.getId());
+        if (entry != null && (entry.route() == route || sameSettings.test(entry.route(), route))) {
+            return entry.value();
+        }
+
+        // Under the map's lock, so a listener removing the entry runs entirely before or after
+        entry = entries.compute(route.getId(), (id, current) -> {
+            if (current != null && sameSettings.test(current.route(), route)) {
+                return current;
+            }
+            RouteDefinition.Route live = liveRoute(id);
+            if (live == null) {
+                return current;
+            }
+            if (current != null && sameSettings.test(current.route(), live)) {
+                return current;
+            }
+            if (current != null) {
+                discard.accept(id, current.value());
+            }
+            return new Entry<>(live, create.apply(live));
+        });
+        return entry != null ? entry.value() : null;
+    }
+
+    /**
+     * The state of a route id, without creating it
+     */
+    public V find(String routeId) {
+        Entry<V> entry = entries.get(routeId);
+        return entry != null ? entry.value() : null;
+    }
+
+    /**
+     * Drop and discard the state of a route id
+     */
+    public void remove(String routeId) {
+        entries.computeIfPresent(routeId, (id, entry) -> {
+            discard.accept(id, entry.value());
+            return null;
+        });
+    }
+
+    /**
+     * Snapshot of the states by route id
+     */
+    public Map<String, V> asMap() {
+        Map<String, V> states = new LinkedHashMap<>();
+        entries.forEach((id, entry) -> states.put(id, entry.value()));
+        return states;
+    }
+
+    private RouteDefinition.Route liveRoute(String routeId) {
+        for (RouteDefinition.Route route : liveRoutes.get()) {
+            if (route.getId().equals(routeId)) {
+                return route;
+            }
+        }
+        return null;
+    }
+}
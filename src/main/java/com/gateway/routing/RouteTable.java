@@ -0,0 +1,218 @@
+package com.gateway.routing;
+
+import com.gateway.model.RouteDefinition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable path-segment trie over the configured routes.
+ *
+ * Lookups walk the request path segment by segment without splitting or
+ * allocating, and return the most specific route: deeper matches win over
+ * shallower /** prefixes, literal segments win over {variables}, and exact
+ * patterns win over prefixes at the same depth. Routes that don't accept the
+ * request method are skipped.
+ */
+public final class RouteTable {
+
+    private final Node root;
+    private final List<CompiledRoute> routes;
+
+    private RouteTable(Node root, List<CompiledRoute> routes) {
+        this.root = root;
+        this.routes = routes;
+    }
+
+    /**
+     * Compile routes into a trie; routes declared earlier win ties
+     */
+    public static RouteTable compile(List<RouteDefinition.Route> definitions) {
+        Node root = new Node();
+        List<CompiledRoute> compiled = new ArrayList<>(definitions.size());
+
+        for (RouteDefinition.Route definition : definitions) {
+            CompiledRoute route = new CompiledRoute(definition);
+            compiled.add(route);
+
+            Node node = root;
+            for (String segment : route.getSegments()) {
+                node = isWildcard(segment) ? node.wildcardChild() : node.literalChild(segment);
+            }
+            if (route.isPrefix()) {
+                node.prefixRoutes = append(node.prefixRoutes, route);
+            } else {
+                node.exactRoutes = append(node.exactRoutes, route);
+            }
+        }
+
+        root.freeze();
+        return new RouteTable(root, List.copyOf(compiled));
+    }
+
+    /**
+     * Find the most specific route for the method and path, or null
+     */
+    public CompiledRoute lookup(String method, String path) {
+        if (path == null || path.isEmpty() || path.charAt(0) != '/') {
+            return null;
+        }
+        return match(root, method, path, 0);
+    }
+
+    public List<CompiledRoute> getRoutes() {
+        return routes;
+    }
+
+    public int size() {
+        return routes.size();
+    }
+
+    /**
+     * pos is the index of the '/' before the next segment, or path.length() at the end
+     */
+    private static CompiledRoute match(Node node, String method, String path, int pos) {
+        int length = path.length();
+
+        // End of path (a trailing slash counts as the end)
+        if (pos >= length - 1) {
+            CompiledRoute exact = select(node.exactRoutes, method);
+            return exact != null ? exact : select(node.prefixRoutes, method);
+        }
+
+        int start = pos + 1;
+        int end = path.indexOf('/', start);
+        if (end == -1) {
+            end = length;
+        }
+
+        Node literal = node.findLiteral(path, start, end);
+        if (literal != null) {
+            CompiledRoute match = match(literal, method, path, end);
+            if (match != null) {
+                return match;
+            }
+        }
+
+        if (node.wildcard != null && end > start) {
+            CompiledRoute match = match(node.wildcard, method, path, end);
+            if (match != null) {
+                return match;
+            }
+        }
+
+        return select(node.prefixRoutes, method);
+    }
+
+    private static CompiledRoute select(CompiledRoute[] candidates, String method) {
+        if (candidates == null) {
+            return null;
+        }
+        for (CompiledRoute candidate : candidates) {
+            if (candidate.allowsMethod(method)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    static boolean isVariable(String segment) {
+        return segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}';
+    }
+
+    static boolean isWildcard(String segment) {
+        return segment.equals("*") || isVariable(segment);
+    }
+
+    private static CompiledRoute[] append(CompiledRoute[] routes, CompiledRoute route) {
+        if (routes == null) {
+            return new CompiledRoute[]{route};
+        }
+        CompiledRoute[] copy = Arrays.copyOf(routes, routes.length + 1);
+        copy[routes.length] = route;
+        return copy;
+    }
+
+    /**
+     * Trie node. Literal children live in an open-addressing table keyed by
+     * the segment's String hash, so a lookup can hash a region of the request
+     * path in place instead of taking a substring.
+     */
+    private static final class Node {
+
+        private List<String> pendingKeys = new ArrayList<>();
+        private List<Node> pendingChildren = new ArrayList<>();
+
+        private String[] keys;
+        private Node[] children;
+        private int mask;
+
+        private Node wildcard;
+        private CompiledRoute[] exactRoutes;
+        private CompiledRoute[] prefixRoutes;
+
+        Node literalChild(String segment) {
+            int index = pendingKeys.indexOf(segment);
+            if (index >= 0) {
+                return pendingChildren.get(index);
+            }
+            Node child = new Node();
+            pendingKeys.add(segment);
+            pendingChildren.add(child);
+            return child;
+        }
+
+        Node wildcardChild() {
+            if (wildcard == null) {
+                wildcard = new Node();
+            }
+            return wildcard;
+        }
+
+        void freeze() {
+            int capacity = Integer.highestOneBit(Math.max(2, pendingKeys.size() * 2 - 1)) << 1;
+            keys = new String[capacity];
+            children = new Node[capacity];
+            mask = capacity - 1;
+
+            for (int i = 0; i < pendingKeys.size(); i++) {
+                String key = pendingKeys.get(i);
+                int slot = spread(key.hashCode()) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                children[slot] = pendingChildren.get(i);
+                children[slot].freeze();
+            }
+            if (wildcard != null) {
+                wildcard.freeze();
+            }
+            pendingKeys = null;
+            pendingChildren = null;
+        }
+
+        Node findLiteral(String path, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + path.charAt(i);
+            }
+            int length = end - start;
+            int slot = spread(hash) & mask;
+            String key;
+            while ((key = keys[slot]) != null) {
+                if (key.length() == length && path.regionMatches(start, key, 0, length)) {
+                    return children[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private static int spread(int hash) {
+            int h = hash * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.gateway.routing;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Outcome of applying a route set: the new version and the route ids it added, removed and changed
+ */
+@Value
+public class RouteUpdate {
+    long version;
+    String source;
+    Instant appliedAt;
+    List<String> added;
+    List<String> removed;
+    List<String> changed;
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+}
@@ -0,0 +1,203 @@
+package com.gateway.routing;
+
+import com.gateway.model.RouteDefinition;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks a route set before it replaces the live one; an empty result means it is valid
+ */
+public final class RouteValidator {
+
+    private RouteValidator() {
+    }
+
+    public static List<String> validate(List<RouteDefinition.Route> routes) {
+        List<String> errors = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+
+        for (int i = 0; i < routes.size(); i++) {
+            RouteDefinition.Route route = routes.get(i);
+            String name = route.getId() != null ? route.getId() : "routes[" + i + "]";
+
+            if (route.getId() == null || route.getId().isBlank()) {
+                errors.add(name + ": id is required");
+            } else if (!ids.add(route.getId())) {
+                errors.add(name + ": duplicate id");
+            }
+            if (route.getPath() == null || !route.getPath().startsWith("/")) {
+                errors.add(name + ": path must start with '/'");
+            }
+            if (route.getStripPrefix() < 0) {
+                errors.add(name + ": strip-prefix must not be negative");
+            }
+            for (String method : route.getMethods()) {
+                if (!isStandardMethod(method)) {
+                    errors.add(name + ": unknown method " + method);
+                }
+            }
+
+            List<String> uris = route.getInstances().isEmpty()
+                    ? (route.getUri() == null ? List.of() : List.of(route.getUri()))
+                    : route.getInstances();
+            if (uris.isEmpty()) {
+                errors.add(name + ": uri or instances is required");
+            }
+            for (String uri : uris) {
+                if (!isHttpUri(uri)) {
+                    errors.add(name + ": not an http(s) URI: " + uri);
+                }
+            }
+            if (route.getPool().getMaxConnections() <= 0) {
+                errors.add(name + ": pool.max-connections must be positive");
+            }
+            RouteDefinition.CompressionConfig compression = route.getCompression();
+            if (compression.getLevel() < 1 || compression.getLevel() > 9) {
+                errors.add(name + ": compression.level must be between 1 and 9");
+            }
+            for (String contentType : compression.getContentTypes()) {
+                if (!isMediaType(contentType)) {
+                    errors.add(name + ": not a media type: " + contentType);
+                }
+            }
+            RouteDefinition.ConcurrencyLimitConfig limit = route.getConcurrencyLimit();
+            if (limit.getMinLimit() < 1 || limit.getMinLimit() > limit.getInitialLimit()
+                    || limit.getInitialLimit() > limit.getMaxLimit()) {
+                errors.add(name + ": concurrency-limit needs 1 <= min-limit <= initial-limit <= max-limit");
+            }
+            if (limit.getPriorityReserve() < 0 || limit.getPriorityReserve() >= 1) {
+                errors.add(name + ": concurrency-limit.priority-reserve must be in [0, 1)");
+            }
+            if (limit.getBackoffRatio() <= 0 || limit.getBackoffRatio() >= 1) {
+                errors.add(name + ": concurrency-limit.backoff-ratio must be in (0, 1)");
+            }
+            checkBulkhead(name, route.getBulkhead(), errors);
+            checkCache(name, route.getCache(), errors);
+            checkCoalesce(name, route.getCoalesce(), errors);
+            checkCircuitBreaker(name, route.getCircuitBreaker(), errors);
+            checkRetry(name, route.getRetry(), errors);
+        }
+
+        if (errors.isEmpty()) {
+            try {
+                RouteTable.compile(routes);
+            } catch (IllegalArgumentException e) {
+                errors.add(e.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    private static void checkBulkhead(String name, RouteDefinition.BulkheadConfig bulkhead, List<String> errors) {
+        if (bulkhead.getMaxConcurrent() < 0 || bulkhead.getMaxQueued() < 0) {
+            errors.add(name + ": bulkhead.max-concurrent and max-queued must not be negative");
+        }
+        if (bulkhead.getMaxWait().isNegative()) {
+            errors.add(name + ": bulkhead.max-wait must not be negative");
+        }
+    }
+
+    private static void checkCache(String name, RouteDefinition.CacheConfig cache, List<String> errors) {
+        long maxSize = cache.getMaxSize().toBytes();
+        long maxEntrySize = cache.getMaxEntrySize().toBytes();
+        if (maxEntrySize <= 0 || maxEntrySize > maxSize) {
+            errors.add(name + ": cache needs 0 < max-entry-size <= max-size");
+        }
+        if (cache.getDefaultTtl().isNegative() || cache.getStaleWhileRevalidate().isNegative()) {
+            errors.add(name + ": cache.default-ttl and stale-while-revalidate must not be negative");
+        }
+    }
+
+    private static void checkCoalesce(String name, RouteDefinition.CoalesceConfig coalesce, List<String> errors) {
+        if (coalesce.getMaxWaiters() < 0) {
+            errors.add(name + ": coalesce.max-waiters must not be negative");
+        }
+        if (!isPositive(coalesce.getMaxWait())) {
+            errors.add(name + ": coalesce.max-wait must be positive");
+        }
+    }
+
+    private static void checkCircuitBreaker(String name, RouteDefinition.CircuitBreakerConfig breaker,
+                                            List<String> errors) {
+        // A zero threshold or minimum would open the breaker on an empty window
+        if (breaker.getFailureRateThreshold() < 1 || breaker.getFailureRateThreshold() > 100
+                || breaker.getSlowCallRateThreshold() < 1 || breaker.getSlowCallRateThreshold() > 100) {
+            errors.add(name + ": circuit-breaker rate thresholds must be between 1 and 100");
+        }
+        if (breaker.getMinimumCalls() < 1 || breaker.getHalfOpenCalls() < 1) {
+            errors.add(name + ": circuit-breaker.minimum-calls and half-open-calls must be positive");
+        }
+        if (!isPositive(breaker.getSlowCallDuration()) || !isPositive(breaker.getWindow())
+                || breaker.getWaitInOpen().isNegative()) {
+            errors.add(name + ": circuit-breaker needs positive slow-call-duration and window, "
+                    + "and a wait-in-open that is not negative");
+        }
+    }
+
+    private static void checkRetry(String name, RouteDefinition.RetryConfig retry, List<String> errors) {
+        if (retry.getMaxAttempts() < 1) {
+            errors.add(name + ": retry.max-attempts must be positive");
+        }
+        if (retry.getInitialBackoff().isNegative() || retry.getMaxBackoff().compareTo(retry.getInitialBackoff()) < 0) {
+            errors.add(name + ": retry needs 0 <= initial-backoff <= max-backoff");
+        }
+        if (retry.getBackoffMultiplier() < 1) {
+            errors.add(name + ": retry.backoff-multiplier must be at least 1");
+        }
+        if (retry.getHedgePercentile() <= 0 || retry.getHedgePercentile() > 100) {
+            errors.add(name + ": retry.hedge-percentile must be in (0, 100]");
+        }
+        if (retry.getMinHedgeDelay().isNegative() || !isPositive(retry.getLatencyWindow())) {
+            errors.add(name + ": retry needs a min-hedge-delay that is not negative and a positive latency-window");
+        }
+        if (retry.getBudgetRatio() < 0 || retry.getMinRetriesPerSecond() < 0) {
+            errors.add(name + ": retry.budget-ratio and min-retries-per-second must not be negative");
+        }
+        for (Integer status : retry.getRetryOn()) {
+            if (status == null || status < 100 || status > 599) {
+                errors.add(name + ": retry.retry-on is not an HTTP status: " + status);
+            }
+        }
+    }
+
+    private static boolean isPositive(Duration duration) {
+        return !duration.isNegative() && !duration.isZero();
+    }
+
+    private static boolean isStandardMethod(String method) {
+        for (HttpMethod known : HttpMethod.values()) {
+            if (known.name().equalsIgnoreCase(method)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isMediaType(String value) {
+        try {
+            MediaType.parseMediaType(value);
+            return true;
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    private static boolean isHttpUri(String uri) {
+        try {
+            URI parsed = new URI(uri);
+            return ("http".equalsIgnoreCase(parsed.getScheme()) || "https".equalsIgnoreCase(parsed.getScheme()))
+                    && parsed.getHost() != null;
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+}
@@ -1,168 +1,1046 @@
 package com.gateway.service;
 
+import com.gateway.balancer.UpstreamGroup;
+import com.gateway.balancer.UpstreamGroupRegistry;
+import com.gateway.balancer.UpstreamInstance;
+import com.gateway.cache.CaptureOutputStream;
+import com.gateway.cache.CachedResponse;
+import com.gateway.cache.ResponseCache;
+import com.gateway.cache.ResponseCacheRegistry;
+import com.gateway.exception.GatewayError;
+import com.gateway.filter.RateLimitFilter;
+import com.gateway.metrics.Phase;
+import com.gateway.metrics.RequestTimings;
+import com.gateway.model.ProxyMode;
 import com.gateway.model.RouteDefinition;
+import com.gateway.model.UserTier;
+import com.gateway.proxy.BufferPool;
+import com.gateway.proxy.Bulkhead;
+import com.gateway.proxy.BulkheadRegistry;
+import com.gateway.proxy.CircuitBreaker;
+import com.gateway.proxy.CircuitBreakerRegistry;
+import com.gateway.proxy.ConcurrencyLimiter;
+import com.gateway.proxy.ConcurrencyLimiterRegistry;
+import com.gateway.proxy.ProxyHeaders;
+import com.gateway.proxy.ResponseCompression;
+import com.gateway.proxy.ResponseEncoding;
+import com.gateway.proxy.RetryPolicy;
+import com.gateway.proxy.RetryPolicyRegistry;
+import com.gateway.proxy.SingleFlight;
+import com.gateway.proxy.SingleFlightRegistry;
+import com.gateway.proxy.UpstreamClientRegistry;
+import com.gateway.proxy.UpstreamOutcome;
+import com.gateway.routing.CompiledRoute;
+import com.gateway.routing.RouteLocator;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @Service
 public class ProxyService {
 
+    // Headers a 304 from the cache carries over from the stored response (RFC 9110 section 15.4.5)
+    private static final List<String> NOT_MODIFIED_HEADERS = List.of(
+            HttpHeaders.CACHE_CONTROL, HttpHeaders.CONTENT_LOCATION, HttpHeaders.DATE,
+            HttpHeaders.ETAG, HttpHeaders.EXPIRES, HttpHeaders.VARY, HttpHeaders.LAST_MODIFIED);
+
+    // Outcome of requests turned away before reaching the upstream; never written to
+    private static final UpstreamOutcome NO_OUTCOME = new UpstreamOutcome();
+
+    @Autowired
+    private UpstreamClientRegistry upstreamClients;
+
+    @Autowired
+    private BulkheadRegistry bulkheads;
+
+    @Autowired
+    private RouteLocator routeLocator;
+
+    @Autowired
+    private BufferPool bufferPool;
+
+    @Autowired
+    private ResponseCacheRegistry responseCaches;
+
+    @Autowired
+    private SingleFlightRegistry singleFlights;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakers;
+
     @Autowired
-    private RestTemplate restTemplate;
+    private ConcurrencyLimiterRegistry concurrencyLimiters;
 
     @Autowired
-    private RouteDefinition routeDefinition;
+    private UpstreamGroupRegistry upstreamGroups;
+
+    @Autowired
+    private RetryPolicyRegistry retryPolicies;
+
+    @Autowired
+    private ResponseCompression compression;
+
+    @Value("${gateway.metrics.server-timing:false}")
+    private boolean serverTiming;
+
+    @Value("${gateway.tracing.propagate:true}")
+    private boolean propagateTrace;
 
     /**
-     * Forward request to appropriate backend service
+     * Proxy request to the matching backend service and write the result to the response
      */
-    public ResponseEntity<String> forwardRequest(HttpServletRequest request, String body) {
+    public void proxy(HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        // Find matching route
+        RequestTimings timings = RequestTimings.of(request);
+        long routeStart = System.nanoTime();
+        CompiledRoute compiled = findRoute(request);
+        if (timings != null) {
+            timings.addSince(Phase.ROUTE, routeStart);
+        }
+
+        if (compiled == null) {
+            log.debug("No route found for path: {}", request.getRequestURI());
+            GatewayError.NO_ROUTE.write(response);
+            return;
+        }
+        RouteDefinition.Route route = compiled.getRoute();
+        if (timings != null) {
+            timings.setRoute(route.getId());
+        }
+
+        // Serve cacheable GETs from the route's response cache when possible
+        ResponseCache cache = responseCaches.getCache(route);
+        String cacheKey = null;
+        if (cache != null && cache.isCacheableRequest(request)) {
+            cacheKey = ResponseCache.key(request);
+            if (serveFromCache(compiled, cache, cacheKey, request, response)) {
+                return;
+            }
+        }
+
+        // Async routes hand the exchange to the non-blocking client and give the thread back
+        ProxyMode mode = routeLocator.getMode(route);
+        if (mode == ProxyMode.ASYNC && request.isAsyncSupported()) {
+            proxyAsync(compiled, request, response, cacheKey != null ? cache : null, cacheKey);
+            return;
+        }
 
+        // Let one upstream call answer identical concurrent GETs
+        SingleFlight<ResponseEntity<byte[]>> singleFlight = singleFlights.getSingleFlight(route);
+        if (singleFlight != null && isCoalescable(request)) {
+            String storeKey = cacheKey;
+            ResponseEntity<byte[]> entity;
+            try {
+                entity = singleFlight.execute(flightKey(compiled, request),
+                        () -> forwardWithinBulkhead(compiled, request, cache, storeKey));
+            } catch (Exception e) {
+                logForwardError(e);
+                GatewayError.FORWARD_FAILED.write(response);
+                return;
+            }
+            addServerTiming(request, response);
+            writeResponse(entity, response, negotiate(compiled, request, entity));
+            return;
+        }
+
+        // Fail fast while the route's circuit is open
+        CircuitBreaker breaker = circuitBreakers.getCircuitBreaker(route);
+        if (breaker != null && !breaker.tryAcquirePermission()) {
+            writeResponse(circuitOpen(route, breaker), response);
+            return;
+        }
+
+        // Shed what the route's learned concurrency limit can't take, low priority first
+        ConcurrencyLimiter limiter = concurrencyLimiters.getLimiter(route);
+        if (limiter != null && !acquireLimit(limiter, route, request)) {
+            recordOutcome(breaker, null, null, null, NO_OUTCOME);
+            writeResponse(overloaded(route), response);
+            return;
+        }
+
+        // Enter the route's bulkhead, rejecting fast when it is full
+        Bulkhead bulkhead = bulkheads.getBulkhead(route);
+        if (bulkhead != null && !bulkhead.tryAcquire()) {
+            recordOutcome(breaker, limiter, null, null, NO_OUTCOME);
+            writeResponse(bulkheadRejected(route), response);
+            return;
+        }
+
+        // Retried requests are buffered so they can be replayed, and pick an instance per attempt
+        RetryPolicy retryPolicy = retryPolicies.getPolicy(route);
+        boolean retried = retryPolicy != null && retryPolicy.appliesTo(request.getMethod());
+        UpstreamGroup group = retried ? null : upstreamGroups.getGroup(route);
+        UpstreamInstance instance = retried ? null : group.choose();
+
+        UpstreamOutcome outcome = new UpstreamOutcome();
         try {
-            // Find matching route
-            RouteDefinition.Route route = findRoute(request.getRequestURI());
+            if (mode == ProxyMode.STREAMING && !retried) {
+                streamRequest(compiled, instance.getUri(), request, response,
+                        cacheKey != null ? cache : null, cacheKey, outcome);
+            } else {
+                ResponseEntity<byte[]> entity = retried
+                        ? forwardWithRetries(compiled, retryPolicy, request, readBody(request), outcome)
+                        : forwardRequest(compiled, instance.getUri(), request, readBody(request), outcome);
+                if (cacheKey != null && entity.getBody() != null) {
+                    cache.store(cacheKey, request::getHeader, entity.getStatusCode().value(),
+                            entity.getHeaders(), entity.getBody());
+                }
+                addServerTiming(request, response);
+                writeResponse(entity, response, negotiate(compiled, request, entity));
+            }
+        } finally {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            recordOutcome(breaker, limiter, group, instance, outcome);
+        }
+    }
+
+    /**
+     * Forward without holding a thread while the client sends or the upstream works: the servlet
+     * request goes async, the body is read as the container delivers it and the client's
+     * completion writes the response. Bodies are buffered in both directions; retries and
+     * coalescing apply to blocking routes only.
+     */
+    private void proxyAsync(CompiledRoute compiled, HttpServletRequest request, HttpServletResponse response,
+                            ResponseCache cache, String cacheKey) throws IOException {
+        RouteDefinition.Route route = compiled.getRoute();
+        CircuitBreaker breaker = circuitBreakers.getCircuitBreaker(route);
+        if (breaker != null && !breaker.tryAcquirePermission()) {
+            writeResponse(circuitOpen(route, breaker), response);
+            return;
+        }
+
+        ConcurrencyLimiter limiter = concurrencyLimiters.getLimiter(route);
+        if (limiter != null && !acquireLimit(limiter, route, request)) {
+            recordOutcome(breaker, null, null, null, NO_OUTCOME);
+            writeResponse(overloaded(route), response);
+            return;
+        }
+
+        // Queueing for a slot would hold the very thread async mode gives back
+        Bulkhead bulkhead = bulkheads.getBulkhead(route);
+        if (bulkhead != null && !bulkhead.tryAcquireNow()) {
+            recordOutcome(breaker, limiter, null, null, NO_OUTCOME);
+            writeResponse(bulkheadRejected(route), response);
+            return;
+        }
+
+        UpstreamGroup group = upstreamGroups.getGroup(route);
+        UpstreamInstance instance = group.choose();
+        UpstreamOutcome outcome = new UpstreamOutcome();
 
-            if (route == null) {
-                log.warn("No route found for path: {}", request.getRequestURI());
-                return ResponseEntity
-                        .status(HttpStatus.NOT_FOUND)
-                        .body("{\"error\": \"No route found for: " + request.getRequestURI() + "\"}");
+        // The upstream request timeout bounds the wait, not the container
+        AsyncContext async = request.startAsync();
+        async.setTimeout(0);
+        Runnable done = () -> {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            recordOutcome(breaker, limiter, group, instance, outcome);
+            async.complete();
+        };
+
+        readBodyAsync(request).whenComplete((body, error) -> {
+            if (error == null) {
+                forwardAsync(compiled, instance, request, response, body, cache, cacheKey, outcome, done);
+                return;
+            }
+            // Never sent, so nothing the upstream did
+            log.debug("Reading the request body failed: {}", error.getMessage());
+            try {
+                if (!response.isCommitted()) {
+                    writeResponse(GatewayError.BAD_REQUEST.toResponseEntity(), response);
+                }
+            } catch (IOException e) {
+                log.debug("Client went away before the body was read: {}", e.getMessage());
+            } finally {
+                done.run();
+            }
+        });
+    }
+
+    /**
+     * Send a buffered request through the non-blocking client and write its response;
+     * done runs once the exchange is over, however it ended
+     */
+    private void forwardAsync(CompiledRoute compiled, UpstreamInstance instance, HttpServletRequest request,
+                              HttpServletResponse response, byte[] body, ResponseCache cache, String cacheKey,
+                              UpstreamOutcome outcome, Runnable done) {
+        RouteDefinition.Route route = compiled.getRoute();
+        HttpRequest upstreamRequest;
+        try {
+            upstreamRequest = buildAsyncRequest(compiled, instance.getUri(), request, body);
+        } catch (RuntimeException e) {
+            // Never sent, so nothing the upstream did
+            logForwardError(e);
+            try {
+                writeResponse(GatewayError.FORWARD_FAILED.toResponseEntity(), response);
+            } catch (IOException writeError) {
+                log.warn("Error writing async response: {}", writeError.getMessage());
+            } finally {
+                done.run();
             }
+            return;
+        }
+
+        RequestTimings timings = RequestTimings.of(request);
+        long sent = System.nanoTime();
+        upstreamClients.getAsyncClient(route)
+                .sendAsync(upstreamRequest, responseInfo -> {
+                    long firstByte = System.nanoTime() - sent;
+                    outcome.respond(responseInfo.statusCode(), firstByte);
+                    if (timings != null) {
+                        timings.add(Phase.FIRST_BYTE, firstByte);
+                    }
+                    return HttpResponse.BodySubscribers.ofByteArray();
+                })
+                .whenComplete((upstreamResponse, error) -> {
+                    if (timings != null && error == null) {
+                        timings.add(Phase.TRANSFER, System.nanoTime() - sent - timings.get(Phase.FIRST_BYTE));
+                    }
+                    try {
+                        ResponseEntity<byte[]> entity;
+                        if (error != null) {
+                            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                    ? error.getCause() : error;
+                            logForwardError(cause);
+                            outcome.fail(System.nanoTime() - sent);
+                            entity = GatewayError.FORWARD_FAILED.toResponseEntity();
+                        } else {
+                            int status = upstreamResponse.statusCode();
+                            HttpHeaders headers = new HttpHeaders();
+                            upstreamResponse.headers().map().forEach(headers::addAll);
+                            log.debug("Response: {} from {}", status, upstreamRequest.uri());
+                            if (cache != null && upstreamResponse.body() != null) {
+                                cache.store(cacheKey, request::getHeader, status, headers, upstreamResponse.body());
+                            }
+                            entity = ResponseEntity.status(status).headers(headers).body(upstreamResponse.body());
+                        }
+                        addServerTiming(request, response);
+                        writeResponse(entity, response, negotiate(compiled, request, entity));
+                    } catch (Exception e) {
+                        log.warn("Error writing async response: {}", e.getMessage());
+                    } finally {
+                        done.run();
+                    }
+                });
+    }
 
-            // Build target URL
-            String targetUrl = buildTargetUrl(route, request);
+    /**
+     * Build the non-blocking client's request; the client sets Content-Length itself
+     */
+    private HttpRequest buildAsyncRequest(CompiledRoute route, String baseUri, HttpServletRequest request,
+                                          byte[] body) {
+        String targetUrl = buildTargetUrl(route, baseUri, request);
 
-            // Build headers
-            HttpHeaders headers = buildHeaders(request);
+        log.debug("Forwarding async: {} {} -> {}",
+                request.getMethod(),
+                request.getRequestURI(),
+                targetUrl);
 
-            // Create request entity
-            HttpEntity<String> entity = new HttpEntity<>(body, headers);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(targetUrl))
+                .timeout(route.getRoute().getPool().getResponseTimeout())
+                .method(request.getMethod(), body.length > 0
+                        ? HttpRequest.BodyPublishers.ofByteArray(body)
+                        : HttpRequest.BodyPublishers.noBody());
+        buildHeaders(request).forEach((name, values) -> {
+            if (!name.equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)) {
+                values.forEach(value -> builder.header(name, value));
+            }
+        });
+        return builder.build();
+    }
 
-            // Log forwarding
-            log.info("Forwarding: {} {} -> {}",
-                    request.getMethod(),
-                    request.getRequestURI(),
-                    targetUrl);
+    /**
+     * Forward a buffered request inside the route's circuit breaker and bulkhead (used by coalesced leaders)
+     */
+    private ResponseEntity<byte[]> forwardWithinBulkhead(CompiledRoute compiled, HttpServletRequest request,
+                                                         ResponseCache cache, String cacheKey) {
+        RouteDefinition.Route route = compiled.getRoute();
+        CircuitBreaker breaker = circuitBreakers.getCircuitBreaker(route);
+        if (breaker != null && !breaker.tryAcquirePermission()) {
+            return circuitOpen(route, breaker);
+        }
 
-            // Forward request
-            ResponseEntity<String> response = restTemplate.exchange(
-                    targetUrl,
-                    HttpMethod.valueOf(request.getMethod()),
-                    entity,
-                    String.class
-            );
+        ConcurrencyLimiter limiter = concurrencyLimiters.getLimiter(route);
+        if (limiter != null && !acquireLimit(limiter, route, request)) {
+            recordOutcome(breaker, null, null, null, NO_OUTCOME);
+            return overloaded(route);
+        }
 
-            log.info("Response: {} from {}", response.getStatusCode(), targetUrl);
+        Bulkhead bulkhead = bulkheads.getBulkhead(route);
+        if (bulkhead != null && !bulkhead.tryAcquire()) {
+            recordOutcome(breaker, limiter, null, null, NO_OUTCOME);
+            return bulkheadRejected(route);
+        }
+
+        RetryPolicy retryPolicy = retryPolicies.getPolicy(route);
+        UpstreamGroup group = retryPolicy != null ? null : upstreamGroups.getGroup(route);
+        UpstreamInstance instance = retryPolicy != null ? null : group.choose();
 
-            return response;
+        UpstreamOutcome outcome = new UpstreamOutcome();
+        try {
+            ResponseEntity<byte[]> entity = retryPolicy != null
+                    ? forwardWithRetries(compiled, retryPolicy, request, null, outcome)
+                    : forwardRequest(compiled, instance.getUri(), request, null, outcome);
+            if (cacheKey != null && entity.getBody() != null) {
+                cache.store(cacheKey, request::getHeader, entity.getStatusCode().value(),
+                        entity.getHeaders(), entity.getBody());
+            }
+            return entity;
+        } finally {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            recordOutcome(breaker, limiter, group, instance, outcome);
+        }
+    }
 
-        } catch (HttpClientErrorException | HttpServerErrorException e) {
-            log.error("HTTP error: {} - {}", e.getStatusCode(), e.getMessage());
-            return ResponseEntity
-                    .status(e.getStatusCode())
-                    .body(e.getResponseBodyAsString());
+    /**
+     * Forward a buffered request under the route's retry policy, hedging GET/HEAD if enabled.
+     * Every attempt picks its own instance; the outcome is the final status and the time
+     * until the attempts settled.
+     */
+    private ResponseEntity<byte[]> forwardWithRetries(CompiledRoute route, RetryPolicy policy,
+                                                      HttpServletRequest request, byte[] body,
+                                                      UpstreamOutcome outcome) {
+        // Snapshot the request; hedged attempts run on other threads
+        HttpMethod method = HttpMethod.valueOf(request.getMethod());
+        String path = request.getRequestURI();
+        String query = request.getQueryString();
+        HttpHeaders headers = buildHeaders(request);
+        UpstreamGroup group = upstreamGroups.getGroup(route.getRoute());
 
+        long start = System.nanoTime();
+        try {
+            ResponseEntity<byte[]> entity = policy.execute(
+                    () -> attempt(route, group, method, path, query, headers, body),
+                    result -> policy.isRetryableStatus(result.getStatusCode().value()),
+                    policy.isHedged(request.getMethod()),
+                    retryPolicies.getHedgeExecutor());
+            outcome.respond(entity.getStatusCode().value(), System.nanoTime() - start);
+            return entity;
+        } catch (InterruptedException e) {
+            // The request is being abandoned: keep the flag for the container, no more attempts
+            Thread.currentThread().interrupt();
+            log.debug("Request interrupted while forwarding: {}", e.getMessage());
+            return GatewayError.FORWARD_FAILED.toResponseEntity();
         } catch (Exception e) {
-            log.error("Error forwarding request: {}", e.getMessage(), e);
-            return ResponseEntity
-                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("{\"error\": \"Internal server error: " + e.getMessage() + "\"}");
+            logForwardError(e);
+            outcome.fail(System.nanoTime() - start);
+            return GatewayError.FORWARD_FAILED.toResponseEntity();
         }
     }
 
     /**
-     * Find matching route for request path
+     * One attempt of a retried request against an instance of the route; I/O errors are thrown
      */
-    private RouteDefinition.Route findRoute(String path) {
-        return routeDefinition.getRoutes().stream()
-                .filter(route -> route.matches(path))
-                .findFirst()
-                .orElse(null);
+    private ResponseEntity<byte[]> attempt(CompiledRoute route, UpstreamGroup group, HttpMethod method,
+                                           String path, String query, HttpHeaders headers,
+                                           byte[] body) {
+        UpstreamInstance instance = group.choose();
+        UpstreamOutcome outcome = new UpstreamOutcome();
+        long start = System.nanoTime();
+        try {
+            return exchange(route, instance.getUri(), method, path, query, headers, body, outcome);
+        } catch (RuntimeException e) {
+            outcome.fail(System.nanoTime() - start);
+            throw e;
+        } finally {
+            // A cancelled hedge says nothing about the instance
+            if (outcome.getStatus() == UpstreamOutcome.NONE || Thread.currentThread().isInterrupted()) {
+                group.onAbandoned(instance);
+            } else {
+                group.onComplete(instance, outcome.getLatencyNanos(), outcome.getStatus() >= 500);
+            }
+        }
     }
 
     /**
-     * Build target URL from route and request
+     * Report a call to the route's circuit breaker, concurrency limiter and to the instance it went
+     * to: 5xx (including gateway I/O errors) count as failures, and with 429 as overload for the
+     * limiter; no status means no outcome and the breaker permission and limiter slot are handed
+     * back. All of them time the upstream's first byte, not the transfer to the client.
      */
-    private String buildTargetUrl(RouteDefinition.Route route, HttpServletRequest request) {
-        String path = request.getRequestURI();
+    private void recordOutcome(CircuitBreaker breaker, ConcurrencyLimiter limiter, UpstreamGroup group,
+                               UpstreamInstance instance, UpstreamOutcome outcome) {
+        int status = outcome.getStatus();
+        if (instance != null) {
+            if (status < 0) {
+                group.onAbandoned(instance);
+            } else {
+                group.onComplete(instance, outcome.getLatencyNanos(), status >= 500);
+            }
+        }
+        if (limiter != null) {
+            if (status < 0) {
+                limiter.ignore();
+            } else {
+                limiter.release(outcome.getLatencyNanos(),
+                        status >= 500 || status == HttpStatus.TOO_MANY_REQUESTS.value());
+            }
+        }
+        if (breaker == null) {
+            return;
+        }
+        if (status < 0) {
+            breaker.releasePermission();
+        } else {
+            breaker.onResult(status >= 500, outcome.getLatencyNanos());
+        }
+    }
+
+    /**
+     * 503 for a request turned away by an open circuit, retrying once trial calls are allowed
+     */
+    private ResponseEntity<byte[]> circuitOpen(RouteDefinition.Route route, CircuitBreaker breaker) {
+        // Counted per route; the state change itself is logged by the breaker's listener
+        log.debug("Circuit open for route: {}", route.getId());
+        circuitBreakers.recordRejection(route);
+        long retryAfterSeconds = Math.max(1, (breaker.getRetryAfterMillis() + 999) / 1000);
+        return GatewayError.CIRCUIT_OPEN.toResponseEntity(retryAfterSeconds);
+    }
+
+    /**
+     * Take a slot from the route's concurrency limiter, counting the request as shed if there is none
+     */
+    private boolean acquireLimit(ConcurrencyLimiter limiter, RouteDefinition.Route route,
+                                 HttpServletRequest request) {
+        ConcurrencyLimiter.Priority priority = priority(route.getConcurrencyLimit(), request);
+        if (limiter.tryAcquire(priority)) {
+            return true;
+        }
+        concurrencyLimiters.recordShed(route, priority);
+        return false;
+    }
 
-        // Strip prefix if configured
-        if (route.getStripPrefix() > 0) {
-            String[] parts = path.split("/");
-            if (parts.length > route.getStripPrefix()) {
-                StringBuilder newPath = new StringBuilder();
-                for (int i = route.getStripPrefix() + 1; i < parts.length; i++) {
-                    newPath.append("/").append(parts[i]);
+    /**
+     * Low priority: marked so by the client (it can only demote itself), or an API key of a low tier
+     */
+    private ConcurrencyLimiter.Priority priority(RouteDefinition.ConcurrencyLimitConfig config,
+                                                 HttpServletRequest request) {
+        String header = config.getPriorityHeader() != null ? request.getHeader(config.getPriorityHeader()) : null;
+        if ("low".equalsIgnoreCase(header)
+                || (request.getAttribute(RateLimitFilter.TIER_ATTRIBUTE) instanceof UserTier tier
+                && config.getLowPriorityTiers().contains(tier))) {
+            return ConcurrencyLimiter.Priority.LOW;
+        }
+        return ConcurrencyLimiter.Priority.NORMAL;
+    }
+
+    /**
+     * 503 for a request shed by the route's concurrency limiter
+     */
+    private ResponseEntity<byte[]> overloaded(RouteDefinition.Route route) {
+        log.debug("Concurrency limit reached for route: {}", route.getId());
+        return GatewayError.OVERLOADED.toResponseEntity(1);
+    }
+
+    /**
+     * 503 for a request turned away by a full bulkhead
+     */
+    private ResponseEntity<byte[]> bulkheadRejected(RouteDefinition.Route route) {
+        log.debug("Bulkhead full for route: {}", route.getId());
+        bulkheads.recordRejection(route);
+        return GatewayError.BULKHEAD_FULL.toResponseEntity(1);
+    }
+
+    /**
+     * Only body-less, idempotent requests can share one upstream call
+     */
+    private boolean isCoalescable(HttpServletRequest request) {
+        String method = request.getMethod();
+        return ("GET".equals(method) || "HEAD".equals(method)) && !hasBody(request);
+    }
+
+    /**
+     * Coalescing key: method, request URL and the values of the headers the response may depend on.
+     * The request URL stands for the target URL, which varies only by the instance picked.
+     */
+    private String flightKey(CompiledRoute route, HttpServletRequest request) {
+        StringBuilder key = new StringBuilder(128)
+                .append(request.getMethod()).append(' ')
+                .append(ResponseCache.key(request));
+        // Callers never share each other's responses
+        appendHeaderValues(key, ProxyHeaders.CREDENTIALS, request);
+        appendHeaderValues(key, route.getRoute().getCoalesce().getVaryHeaders(), request);
+        return key.toString();
+    }
+
+    private void appendHeaderValues(StringBuilder key, List<String> names, HttpServletRequest request) {
+        for (String name : names) {
+            Enumeration<String> values = request.getHeaders(name);
+            key.append('\n').append(name).append(':');
+            while (values != null && values.hasMoreElements()) {
+                key.append(values.nextElement()).append(',');
+            }
+        }
+    }
+
+    /**
+     * Forward request to backend service with fully buffered bodies
+     */
+    private ResponseEntity<byte[]> forwardRequest(CompiledRoute route, String baseUri,
+                                                  HttpServletRequest request, byte[] body,
+                                                  UpstreamOutcome outcome) {
+        long start = System.nanoTime();
+        try {
+            return exchange(route, baseUri, HttpMethod.valueOf(request.getMethod()),
+                    request.getRequestURI(), request.getQueryString(), buildHeaders(request), body, outcome);
+
+        } catch (Exception e) {
+            logForwardError(e);
+            outcome.fail(System.nanoTime() - start);
+            return GatewayError.FORWARD_FAILED.toResponseEntity();
+        }
+    }
+
+    /**
+     * Send one buffered request upstream. Every status comes back as a response with the
+     * upstream's headers and body, without an exception; I/O errors are thrown. The status
+     * and time to first byte go to the outcome, if given.
+     */
+    private ResponseEntity<byte[]> exchange(CompiledRoute route, String baseUri, HttpMethod method,
+                                            String path, String query, HttpHeaders headers, byte[] body,
+                                            UpstreamOutcome outcome) {
+
+        // Build target URL
+        String targetUrl = route.buildTargetUrl(baseUri, path, query);
+
+        // Create request entity
+        HttpEntity<byte[]> entity = new HttpEntity<>(body, headers);
+
+        // Log forwarding
+        log.debug("Forwarding: {} {} -> {}", method, path, targetUrl);
+
+        // Only the request's own thread times its attempts, not hedges
+        RequestTimings timings = RequestTimings.current();
+        RestTemplate restTemplate = upstreamClients.getClient(route.getRoute()).getRestTemplate();
+        ResponseExtractor<ResponseEntity<byte[]>> extractor = restTemplate.responseEntityExtractor(byte[].class);
+        long sent = System.nanoTime();
+
+        // Forward request, as exchange() would but timing the response headers and body
+        ResponseEntity<byte[]> response = restTemplate.execute(
+                targetUrl,
+                method,
+                restTemplate.httpEntityCallback(entity, byte[].class),
+                upstreamResponse -> {
+                    long received = System.nanoTime();
+                    if (outcome != null) {
+                        outcome.respond(upstreamResponse.getStatusCode().value(), received - sent);
+                    }
+                    if (timings == null) {
+                        return extractor.extractData(upstreamResponse);
+                    }
+                    timings.add(Phase.FIRST_BYTE, received - sent);
+                    try {
+                        return extractor.extractData(upstreamResponse);
+                    } finally {
+                        timings.addSince(Phase.TRANSFER, received);
+                    }
                 }
-                path = newPath.toString();
-                if (path.isEmpty()) {
-                    path = "/";
+        );
+
+        log.debug("Response: {} from {}", response.getStatusCode(), targetUrl);
+
+        return response;
+    }
+
+    /**
+     * Upstream I/O failures are expected during incidents and logged without a stack trace;
+     * anything else is a gateway bug and logged in full
+     */
+    private void logForwardError(Throwable e) {
+        if (e instanceof ResourceAccessException || e instanceof IOException) {
+            log.warn("Error forwarding request: {}", e.getMessage());
+        } else {
+            log.error("Error forwarding request: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Answer from the response cache: fresh entries directly, stale ones within
+     * stale-while-revalidate while refreshing in the background. Returns false on a miss.
+     */
+    private boolean serveFromCache(CompiledRoute route, ResponseCache cache, String key,
+                                   HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (cache.isReloadRequested(request)) {
+            responseCaches.recordResult(route.getRoute(), "bypass");
+            return false;
+        }
+
+        CachedResponse cached = cache.lookup(key, request::getHeader);
+        long now = System.currentTimeMillis();
+        if (cached == null || !cached.isServableStale(now)) {
+            responseCaches.recordResult(route.getRoute(), "miss");
+            return false;
+        }
+
+        boolean fresh = cached.isFresh(now);
+        if (!fresh) {
+            refreshInBackground(route, cache, key, request, cached);
+        }
+
+        response.setHeader(HttpHeaders.AGE, String.valueOf(cached.getAgeSeconds(now)));
+        response.setHeader("X-Cache", fresh ? "HIT" : "STALE");
+        addServerTiming(request, response);
+
+        if (cached.matchesEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            responseCaches.recordResult(route.getRoute(), "not_modified");
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            for (String name : NOT_MODIFIED_HEADERS) {
+                List<String> values = cached.getHeaders().get(name);
+                if (values != null) {
+                    values.forEach(value -> response.addHeader(name, value));
                 }
             }
+            response.flushBuffer();
+            return true;
+        }
+
+        responseCaches.recordResult(route.getRoute(), fresh ? "hit" : "stale");
+        ResponseEncoding encoding = compression.negotiate(route.getRoute(), request, cached.getStatus(),
+                cached.getHeaders());
+        response.setStatus(cached.getStatus());
+        copyResponseHeaders(cached.getHeaders(), response, encoding);
+        writeBody(cached.getBody(), cached.getHeaders(), response, encoding);
+        response.flushBuffer();
+        return true;
+    }
+
+    /**
+     * Revalidate a stale entry off the request thread, conditionally if it has an ETag.
+     * Only one refresh per entry runs at a time.
+     */
+    private void refreshInBackground(CompiledRoute route, ResponseCache cache, String key,
+                                     HttpServletRequest request, CachedResponse stale) {
+        if (!cache.startRefresh(key, stale)) {
+            return;
         }
 
-        // Add query string if present
-        String queryString = request.getQueryString();
-        if (queryString != null && !queryString.isEmpty()) {
-            path += "?" + queryString;
+        // Snapshot what is needed now; the servlet request is recycled after this one completes
+        UpstreamGroup group = upstreamGroups.getGroup(route.getRoute());
+        UpstreamInstance instance = group.choose();
+        String targetUrl = buildTargetUrl(route, instance.getUri(), request);
+        HttpHeaders headers = buildHeaders(request);
+        headers.remove(HttpHeaders.IF_NONE_MATCH);
+        headers.remove(HttpHeaders.IF_MODIFIED_SINCE);
+        if (stale.getEtag() != null) {
+            headers.setIfNoneMatch(stale.getEtag());
         }
 
-        return route.getUri() + path;
+        responseCaches.getRefreshExecutor().execute(() -> {
+            UpstreamOutcome outcome = new UpstreamOutcome();
+            long start = System.nanoTime();
+            try {
+                upstreamClients.getClient(route.getRoute()).getRestTemplate().execute(
+                        targetUrl,
+                        HttpMethod.GET,
+                        upstreamRequest -> upstreamRequest.getHeaders().putAll(headers),
+                        upstreamResponse -> {
+                            int status = upstreamResponse.getStatusCode().value();
+                            outcome.respond(status, System.nanoTime() - start);
+                            if (status == HttpStatus.NOT_MODIFIED.value()) {
+                                cache.refresh(key, stale, upstreamResponse.getHeaders());
+                            } else if (cache.isCacheable(status, upstreamResponse.getHeaders(), headers::getFirst)) {
+                                try (InputStream in = upstreamResponse.getBody()) {
+                                    byte[] body = in.readNBytes((int) Math.min(Integer.MAX_VALUE - 8,
+                                            cache.getMaxEntrySize() + 1));
+                                    cache.store(key, headers::getFirst, status, upstreamResponse.getHeaders(), body);
+                                }
+                            }
+                            return null;
+                        }
+                );
+                log.debug("Revalidated cached response for {}", key);
+            } catch (Exception e) {
+                log.warn("Background revalidation failed for {}: {}", key, e.getMessage());
+                outcome.fail(System.nanoTime() - start);
+            } finally {
+                group.onComplete(instance, outcome.getLatencyNanos(), outcome.getStatus() >= 500);
+                cache.finishRefresh(key, stale);
+            }
+        });
     }
 
     /**
-     * Build headers from original request
+     * Stream request to backend service and response back to the client,
+     * piping bodies through pooled buffers instead of materializing them.
+     * With a cache, cacheable responses are copied into it on the way through.
+     * The outcome gets the upstream's status, or a failure if it could not be reached or
+     * read; a client hanging up leaves it as the upstream left it.
      */
-    private HttpHeaders buildHeaders(HttpServletRequest request) {
-        HttpHeaders headers = new HttpHeaders();
+    private void streamRequest(CompiledRoute route, String baseUri, HttpServletRequest request,
+                               HttpServletResponse response, ResponseCache cache,
+                               String cacheKey, UpstreamOutcome outcome) throws IOException {
+
+        String targetUrl = buildTargetUrl(route, baseUri, request);
+        HttpHeaders headers = buildHeaders(request);
+
+        log.debug("Streaming: {} {} -> {}",
+                request.getMethod(),
+                request.getRequestURI(),
+                targetUrl);
+
+        RequestTimings timings = RequestTimings.of(request);
+        long sent = System.nanoTime();
+
+        try {
+            HttpStatusCode status = upstreamClients.getClient(route.getRoute()).getRestTemplate().execute(
+                    targetUrl,
+                    HttpMethod.valueOf(request.getMethod()),
+                    upstreamRequest -> writeUpstreamRequest(upstreamRequest, headers, request, outcome),
+                    upstreamResponse -> {
+                        long received = System.nanoTime();
+                        if (timings != null) {
+                            timings.add(Phase.FIRST_BYTE, received - sent);
+                        }
+                        int upstreamStatus = upstreamResponse.getStatusCode().value();
+                        outcome.respond(upstreamStatus, received - sent);
+                        ResponseEncoding encoding = compression.negotiate(route.getRoute(), request,
+                                upstreamStatus, upstreamResponse.getHeaders());
+                        response.setStatus(upstreamStatus);
+                        copyResponseHeaders(upstreamResponse.getHeaders(), response, encoding);
+                        encoding.addHeaders(upstreamResponse.getHeaders(), response);
+                        addServerTiming(request, response);
+
+                        // The cache keeps the upstream's representation; compression happens after the copy
+                        OutputStream client = outcome.toClient(response.getOutputStream());
+                        OutputStream out = encoding.encode(client);
+                        CaptureOutputStream capture = null;
+                        if (cache != null && !encoding.isDecoding() && cache.isCacheable(upstreamStatus,
+                                upstreamResponse.getHeaders(), request::getHeader)) {
+                            capture = new CaptureOutputStream(out, cache.getMaxEntrySize());
+                        }
 
-        // Copy headers from original request
-        Enumeration<String> headerNames = request.getHeaderNames();
-        if (headerNames != null) {
-            while (headerNames.hasMoreElements()) {
-                String headerName = headerNames.nextElement();
+                        try (InputStream in = encoding.decode(upstreamResponse.getBody())) {
+                            bufferPool.copy(in, capture != null ? capture : out);
+                        }
+                        encoding.finish(out);
+                        client.flush();
+                        if (timings != null) {
+                            timings.addSince(Phase.TRANSFER, received);
+                        }
 
-                // Skip hop-by-hop headers
-                if (isHopByHopHeader(headerName)) {
-                    continue;
+                        if (capture != null && capture.getCaptured() != null) {
+                            cache.store(cacheKey, request::getHeader, upstreamStatus,
+                                    upstreamResponse.getHeaders(), capture.getCaptured());
+                        }
+                        return upstreamResponse.getStatusCode();
+                    }
+            );
+
+            log.debug("Response: {} from {}", status, targetUrl);
+
+        } catch (Exception e) {
+            if (outcome.isClientFailed()) {
+                // The client went away; the upstream answered (or was never reached) all the same
+                log.debug("Client went away while streaming {}: {}", targetUrl, e.getMessage());
+                return;
+            }
+            logForwardError(e);
+            outcome.fail(System.nanoTime() - sent);
+            if (!response.isCommitted()) {
+                response.resetBuffer();
+                GatewayError.FORWARD_FAILED.write(response);
+            }
+        }
+    }
+
+    /**
+     * Copy headers and, if present, stream the client body to the upstream request
+     */
+    private void writeUpstreamRequest(ClientHttpRequest upstreamRequest, HttpHeaders headers,
+                                      HttpServletRequest request, UpstreamOutcome outcome) {
+        upstreamRequest.getHeaders().putAll(headers);
+
+        if (hasBody(request) && upstreamRequest instanceof StreamingHttpOutputMessage streaming) {
+            streaming.setBody(out -> bufferPool.copy(outcome.fromClient(request.getInputStream()), out));
+        }
+    }
+
+    /**
+     * Check if the client sent a request body
+     */
+    private boolean hasBody(HttpServletRequest request) {
+        return request.getContentLengthLong() > 0 || request.getHeader(HttpHeaders.TRANSFER_ENCODING) != null;
+    }
+
+    /**
+     * Read request body
+     */
+    private byte[] readBody(HttpServletRequest request) {
+        try {
+            return StreamUtils.copyToByteArray(request.getInputStream());
+        } catch (IOException e) {
+            log.error("Error reading request body: {}", e.getMessage());
+            return new byte[0];
+        }
+    }
+
+    /**
+     * Read the body of an async request as the container delivers it, through one pooled
+     * buffer per callback, so no thread waits on a slow client
+     */
+    private CompletableFuture<byte[]> readBodyAsync(HttpServletRequest request) {
+        if (!hasBody(request)) {
+            return CompletableFuture.completedFuture(new byte[0]);
+        }
+        CompletableFuture<byte[]> body = new CompletableFuture<>();
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        try {
+            ServletInputStream in = request.getInputStream();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    byte[] buffer = bufferPool.acquire();
+                    try {
+                        while (in.isReady()) {
+                            int read = in.read(buffer);
+                            if (read < 0) {
+                                return;
+                            }
+                            received.write(buffer, 0, read);
+                        }
+                    } finally {
+                        bufferPool.release(buffer);
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    body.complete(received.toByteArray());
                 }
 
-                Enumeration<String> headerValues = request.getHeaders(headerName);
-                while (headerValues.hasMoreElements()) {
-                    headers.add(headerName, headerValues.nextElement());
+                @Override
+                public void onError(Throwable t) {
+                    body.completeExceptionally(t);
                 }
+            });
+        } catch (IOException | RuntimeException e) {
+            body.completeExceptionally(e);
+        }
+        return body;
+    }
+
+    /**
+     * Write a response the gateway produced itself to the servlet response
+     */
+    private void writeResponse(ResponseEntity<byte[]> entity, HttpServletResponse response) throws IOException {
+        writeResponse(entity, response, ResponseEncoding.IDENTITY);
+    }
+
+    /**
+     * Write a buffered upstream response to the servlet response
+     */
+    private void writeResponse(ResponseEntity<byte[]> entity, HttpServletResponse response,
+                               ResponseEncoding encoding) throws IOException {
+        response.setStatus(entity.getStatusCode().value());
+        copyResponseHeaders(entity.getHeaders(), response, encoding);
+        writeBody(entity.getBody(), entity.getHeaders(), response, encoding);
+        response.flushBuffer();
+    }
+
+    /**
+     * Write a complete body, with a Content-Length unless it is re-encoded on the way
+     */
+    private void writeBody(byte[] body, HttpHeaders headers, HttpServletResponse response,
+                           ResponseEncoding encoding) throws IOException {
+        encoding.addHeaders(headers, response);
+        if (body == null) {
+            return;
+        }
+        if (encoding.isIdentity()) {
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+            return;
+        }
+        OutputStream out = encoding.encode(response.getOutputStream());
+        try (InputStream in = encoding.decode(new ByteArrayInputStream(body))) {
+            bufferPool.copy(in, out);
+        }
+        encoding.finish(out);
+    }
+
+    private ResponseEncoding negotiate(CompiledRoute route, HttpServletRequest request,
+                                       ResponseEntity<byte[]> entity) {
+        return compression.negotiate(route.getRoute(), request, entity.getStatusCode().value(), entity.getHeaders());
+    }
+
+    /**
+     * Report the gateway's phases so far to the client, when enabled. Set before the
+     * body, so the transfer and the total are not included.
+     */
+    private void addServerTiming(HttpServletRequest request, HttpServletResponse response) {
+        RequestTimings timings = serverTiming ? RequestTimings.of(request) : null;
+        if (timings != null) {
+            response.setHeader("Server-Timing", timings.toServerTiming());
+        }
+    }
+
+    /**
+     * Copy upstream response headers to the servlet response, skipping hop-by-hop headers
+     * and those that no longer describe the body once it is re-encoded
+     */
+    private void copyResponseHeaders(HttpHeaders upstreamHeaders, HttpServletResponse response,
+                                     ResponseEncoding encoding) {
+        for (Map.Entry<String, List<String>> header : upstreamHeaders.entrySet()) {
+            if (ProxyHeaders.isHopByHop(header.getKey()) || encoding.replacesHeader(header.getKey())) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                response.addHeader(header.getKey(), value);
             }
         }
+    }
 
-        // Add forwarding headers
-        headers.add("X-Forwarded-For", request.getRemoteAddr());
-        headers.add("X-Forwarded-Proto", request.getScheme());
-        headers.add("X-Forwarded-Host", request.getServerName());
+    /**
+     * Find matching route for request method and path
+     */
+    private CompiledRoute findRoute(HttpServletRequest request) {
+        return routeLocator.locate(request.getMethod(), request.getRequestURI());
+    }
 
-        return headers;
+    /**
+     * Build target URL from route, upstream instance and request
+     */
+    private String buildTargetUrl(CompiledRoute route, String baseUri, HttpServletRequest request) {
+        return route.buildTargetUrl(baseUri, request.getRequestURI(), request.getQueryString());
     }
 
     /**
-     * Check if header is hop-by-hop (should not be forwarded)
+     * Build headers from original request
      */
-    private boolean isHopByHopHeader(String headerName) {
-        String lower = headerName.toLowerCase();
-        return lower.equals("connection") ||
-                lower.equals("keep-alive") ||
-                lower.equals("proxy-authenticate") ||
-                lower.equals("proxy-authorization") ||
-                lower.equals("te") ||
-                lower.equals("trailers") ||
-                lower.equals("transfer-encoding") ||
-                lower.equals("upgrade");
+    private HttpHeaders buildHeaders(HttpServletRequest request) {
+        return ProxyHeaders.build(request, propagateTrace);
     }
-}
\ No newline at end of file
+}
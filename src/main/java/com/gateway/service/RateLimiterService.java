@@ -1,26 +1,80 @@
 package com.gateway.service;
 
+import com.gateway.model.RateLimitAlgorithm;
 import com.gateway.model.RateLimitResult;
+import com.gateway.model.RateLimitWindow;
+import com.gateway.model.UserTier;
+import com.gateway.proxy.CircuitBreaker;
+import com.gateway.ratelimit.ConsistentHashRing;
+import com.gateway.ratelimit.LeaseGrant;
+import com.gateway.ratelimit.LeasePolicy;
+import com.gateway.ratelimit.LeaseSource;
+import com.gateway.ratelimit.RateLimitBatcher;
+import com.gateway.ratelimit.RedisFallback;
+import com.gateway.ratelimit.RedisShard;
+import com.gateway.ratelimit.RedisShards;
+import com.gateway.ratelimit.TierResolver;
+import com.gateway.ratelimit.TierSource;
+import com.gateway.ratelimit.TokenLeaser;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.async.RedisScriptingAsyncCommands;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @Service
 public class RateLimiterService {
 
+    // Lettuce's own default, for a batch on a connection factory that does not say
+    private static final Duration DEFAULT_COMMAND_TIMEOUT = Duration.ofSeconds(60);
+
     @Autowired(required = false)
     private RedisTemplate<String, String> redisTemplate;
 
+    // Non-blocking client for the async pipeline
+    @Autowired(required = false)
+    private ReactiveStringRedisTemplate reactiveRedisTemplate;
+
     @Autowired(required = false)
-    private DefaultRedisScript<Long> rateLimitScript;
+    private DefaultRedisScript<List<Long>> rateLimitScript;
+
+    // Nodes the rate-limit keys are spread over; without it they all go to the Redis above
+    @Autowired(required = false)
+    private RedisShards redisShards;
+
+    @Value("${gateway.rate-limit.redis.virtual-nodes:160}")
+    private int virtualNodes;
 
     @Value("${gateway.rate-limit.default-limit:100}")
     private int defaultLimit;
@@ -31,20 +85,239 @@ public class RateLimiterService {
     @Value("${gateway.rate-limit.enabled:true}")
     private boolean rateLimitEnabled;
 
+    @Value("${gateway.rate-limit.algorithm:SLIDING_WINDOW}")
+    private RateLimitAlgorithm algorithm;
+
+    @Value("${gateway.rate-limit.window:60s}")
+    private Duration window;
+
+    @Value("${gateway.rate-limit.lease.enabled:false}")
+    private boolean leaseEnabled;
+
+    @Value("${gateway.rate-limit.lease.fraction:0.1}")
+    private double leaseFraction;
+
+    @Value("${gateway.rate-limit.lease.max-size:50}")
+    private int leaseMaxSize;
+
+    @Value("${gateway.rate-limit.lease.ttl:1s}")
+    private Duration leaseTtl;
+
+    @Value("${gateway.rate-limit.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${gateway.rate-limit.batch.max-size:64}")
+    private int batchMaxSize;
+
+    @Value("${gateway.rate-limit.batch.max-delay:200us}")
+    private Duration batchMaxDelay;
+
+    @Value("${gateway.rate-limit.batch.max-queued:10000}")
+    private int batchMaxQueued;
+
+    @Value("${gateway.rate-limit.fallback.enabled:false}")
+    private boolean fallbackEnabled;
+
+    @Value("${gateway.rate-limit.fallback.nodes:1}")
+    private int fallbackNodes;
+
+    @Value("${gateway.rate-limit.fallback.failure-rate-threshold:50}")
+    private int fallbackFailureRateThreshold;
+
+    @Value("${gateway.rate-limit.fallback.slow-call-rate-threshold:80}")
+    private int fallbackSlowCallRateThreshold;
+
+    @Value("${gateway.rate-limit.fallback.slow-call-duration:500ms}")
+    private Duration fallbackSlowCallDuration;
+
+    @Value("${gateway.rate-limit.fallback.minimum-calls:10}")
+    private int fallbackMinimumCalls;
+
+    @Value("${gateway.rate-limit.fallback.window:10s}")
+    private Duration fallbackWindow;
+
+    @Value("${gateway.rate-limit.fallback.wait-in-open:5s}")
+    private Duration fallbackWaitInOpen;
+
+    @Value("${gateway.rate-limit.fallback.half-open-calls:3}")
+    private int fallbackHalfOpenCalls;
+
+    @Value("${gateway.rate-limit.tiers.default-tier:FREE}")
+    private UserTier defaultTier;
+
+    @Value("${gateway.rate-limit.tiers.redis-key:gateway:apikey-tiers}")
+    private String tierKey;
+
+    @Value("${gateway.rate-limit.tiers.cache.max-size:100000}")
+    private long tierCacheMaxSize;
+
+    @Value("${gateway.rate-limit.tiers.cache.ttl:10m}")
+    private Duration tierCacheTtl;
+
+    @Value("${gateway.rate-limit.tiers.cache.refresh-after:1m}")
+    private Duration tierCacheRefreshAfter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private List<RateLimitWindow> anonymousWindows;
+    private TierResolver tierResolver;
+    private TokenLeaser tokenLeaser;
+    private ConsistentHashRing<Shard> ring;
+    private RedisFallback fallback;
+    private DistributionSummary batchSizes;
+    private final Map<String, Timer> batchTimers = new ConcurrentHashMap<>();
+
+    /**
+     * Set up the tier cache, the ring of Redis shards with batching of script calls and
+     * the local fallback for them, and local token leasing in front of Redis if enabled
+     */
+    @PostConstruct
+    public void initialize() {
+        anonymousWindows = List.of(RateLimitWindow.of(defaultLimit, window));
+
+        tierResolver = new TierResolver(new TierSource() {
+            @Override
+            public UserTier lookup(String apiKey) {
+                return lookupTier(apiKey);
+            }
+
+            @Override
+            public CompletableFuture<UserTier> lookupAsync(String apiKey) {
+                return reactiveRedisTemplate != null ? lookupTierAsync(apiKey) : TierSource.super.lookupAsync(apiKey);
+            }
+        }, defaultTier,
+                tierCacheMaxSize, tierCacheTtl, tierCacheRefreshAfter);
+        CaffeineCacheMetrics.monitor(meterRegistry, tierResolver.getCache(), "gateway.ratelimit.tiers");
+
+        if (rateLimitScript == null) {
+            return;
+        }
+        List<Shard> shards = new ArrayList<>();
+        if (redisShards != null && !redisShards.getShards().isEmpty()) {
+            redisShards.getShards().forEach(shard -> shards.add(new Shard(shard)));
+        } else if (redisTemplate != null) {
+            shards.add(new Shard(new RedisShard("default", redisTemplate, reactiveRedisTemplate)));
+        } else {
+            return;
+        }
+        ring = new ConsistentHashRing<>(shards, shard -> shard.redis.getName(), virtualNodes);
+
+        if (batchEnabled) {
+            batchSizes = DistributionSummary.builder("gateway.ratelimit.batch.size")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            // One sender per shard, so batches to different nodes are in flight at the same time
+            for (Shard shard : shards) {
+                preloadScript(shard);
+                shard.batcher = new RateLimitBatcher(calls -> executeBatch(shard, calls), this::recordBatch,
+                        batchMaxSize, batchMaxDelay, batchMaxQueued);
+                FunctionCounter.builder("gateway.ratelimit.batch.rejected", shard.batcher,
+                                RateLimitBatcher::getRejected)
+                        .tag("shard", shard.redis.getName())
+                        .register(meterRegistry);
+                Gauge.builder("gateway.ratelimit.batch.queued", shard.batcher, RateLimitBatcher::getQueued)
+                        .tag("shard", shard.redis.getName())
+                        .register(meterRegistry);
+            }
+            log.info("Rate limit script calls batched: max-size={}, max-delay={}", batchMaxSize, batchMaxDelay);
+        }
+
+        if (fallbackEnabled) {
+            fallback = new RedisFallback(shards.stream().map(shard -> shard.redis.getName()).toList(),
+                    () -> new CircuitBreaker(fallbackFailureRateThreshold, fallbackSlowCallRateThreshold,
+                            fallbackSlowCallDuration, fallbackMinimumCalls, fallbackWindow, fallbackWaitInOpen,
+                            fallbackHalfOpenCalls),
+                    fallbackNodes, new RedisFallback.Store() {
+                        @Override
+                        public String shardOf(String key) {
+                            return ring.get(key).redis.getName();
+                        }
+
+                        @Override
+                        public long charge(String key, RateLimitWindow limit, long tokens) {
+                            return takeTokensFromRedis(ring.get(key), key, List.of(limit), tokens, 0).getGranted();
+                        }
+                    }, meterRegistry);
+            log.info("Rate limit fallback enabled: each node admits 1/{} of the limit while Redis is unavailable",
+                    Math.max(1, fallbackNodes));
+        }
+
+        if (!leaseEnabled) {
+            return;
+        }
+
+        LeasePolicy policy = new LeasePolicy(leaseFraction, leaseMaxSize, leaseTtl);
+        tokenLeaser = new TokenLeaser(new LeaseSource() {
+            @Override
+            public LeaseGrant lease(String key, List<RateLimitWindow> windows, long requested, long returned) {
+                return takeTokens(key, windows, requested, returned);
+            }
+
+            @Override
+            public CompletableFuture<LeaseGrant> leaseAsync(String key, List<RateLimitWindow> windows,
+                                                            long requested, long returned) {
+                Shard shard = ring.get(key);
+                return shard.redis.getReactiveTemplate() != null || shard.batcher != null
+                        ? takeTokensAsync(key, windows, requested, returned)
+                        : LeaseSource.super.leaseAsync(key, windows, requested, returned);
+            }
+        }, policy);
+        log.info("Rate limit token leasing enabled: fraction={}, max-size={}, ttl={}",
+                leaseFraction, leaseMaxSize, leaseTtl);
+
+        FunctionCounter.builder("gateway.ratelimit.decisions", tokenLeaser, TokenLeaser::getLocalDecisions)
+                .tag("source", "local")
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.ratelimit.decisions", tokenLeaser, TokenLeaser::getRemoteDecisions)
+                .tag("source", "redis")
+                .register(meterRegistry);
+        Gauge.builder("gateway.ratelimit.leases", tokenLeaser, TokenLeaser::getLeaseCount)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ring == null) {
+            return;
+        }
+        for (Shard shard : ring.getNodes()) {
+            if (shard.batcher != null) {
+                shard.batcher.close();
+            }
+        }
+    }
+
     /**
      * Check if request is allowed based on rate limit
      */
     public RateLimitResult checkRateLimit(String identifier) {
-        return checkRateLimit(identifier, defaultLimit);
+        return checkRateLimit(identifier, anonymousWindows);
     }
 
     /**
      * Check if request is allowed with custom limit
      */
     public RateLimitResult checkRateLimit(String identifier, int limit) {
+        return checkRateLimit(identifier, List.of(RateLimitWindow.of(limit, window)));
+    }
+
+    /**
+     * Check if request is allowed under every window of the tier (null = anonymous)
+     */
+    public RateLimitResult checkRateLimit(String identifier, UserTier tier) {
+        RateLimitResult result = checkRateLimit(identifier, getWindows(tier));
+        result.setTier(tier);
+        return result;
+    }
+
+    /**
+     * Check if request is allowed under all of the windows at once
+     */
+    public RateLimitResult checkRateLimit(String identifier, List<RateLimitWindow> windows) {
 
         // If rate limiting is disabled or Redis is not available
-        if (!rateLimitEnabled || redisTemplate == null || rateLimitScript == null) {
+        if (!rateLimitEnabled || ring == null) {
             log.debug("Rate limiting disabled or Redis unavailable. Allowing request.");
             return RateLimitResult.failOpen();
         }
@@ -52,22 +325,13 @@ public class RateLimiterService {
         String key = buildKey(identifier);
 
         try {
-            Long remaining = redisTemplate.execute(
-                    rateLimitScript,
-                    Collections.singletonList(key),
-                    String.valueOf(limit),
-                    "60" // 60 seconds window
-            );
-
-            if (remaining != null && remaining >= 0) {
-                log.debug("Rate limit check PASSED for {}: {} requests remaining",
-                        identifier, remaining);
-                return RateLimitResult.allowed(remaining);
-            } else {
-                log.warn("Rate limit EXCEEDED for {}", identifier);
-                return RateLimitResult.exceeded("Rate limit exceeded");
+            // Serve from the local lease, going to Redis only to refill it
+            if (tokenLeaser != null) {
+                return tokenLeaser.acquire(key, windows);
             }
 
+            return toResult(identifier, windows, takeTokens(key, windows, 1, 0));
+
         } catch (Exception e) {
             log.error("Error checking rate limit for {}: {}. Failing open.",
                     identifier, e.getMessage());
@@ -77,37 +341,424 @@ public class RateLimiterService {
     }
 
     /**
-     * Get current usage for identifier
+     * Check the tier's windows (null = anonymous) without blocking on Redis, for the async pipeline
      */
-    public long getCurrentUsage(String identifier) {
+    public CompletableFuture<RateLimitResult> checkRateLimitAsync(String identifier, UserTier tier) {
+        List<RateLimitWindow> windows = getWindows(tier);
+
+        CompletableFuture<RateLimitResult> result;
+        if (!rateLimitEnabled || ring == null) {
+            result = CompletableFuture.completedFuture(RateLimitResult.failOpen());
+        } else {
+            String key = buildKey(identifier);
+            try {
+                result = tokenLeaser != null
+                        ? tokenLeaser.acquireAsync(key, windows)
+                        : takeTokensAsync(key, windows, 1, 0).thenApply(grant -> toResult(identifier, windows, grant));
+            } catch (Exception e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            result = result.exceptionally(e -> {
+                log.error("Error checking rate limit for {}: {}. Failing open.", identifier, e.getMessage());
+                return RateLimitResult.failOpen();
+            });
+        }
+
+        return result.thenApply(r -> {
+            r.setTier(tier);
+            return r;
+        });
+    }
+
+    private RateLimitResult toResult(String identifier, List<RateLimitWindow> windows, LeaseGrant grant) {
+        RateLimitWindow tightest = windows.get(grant.getWindow());
+
+        if (grant.getGranted() > 0) {
+            log.debug("Rate limit check PASSED for {}: {} requests remaining",
+                    identifier, grant.getRemaining());
+            return RateLimitResult.allowed(tightest, grant.getRemaining(), grant.getResetAt());
+        } else {
+            log.debug("Rate limit EXCEEDED for {}", identifier);
+            return RateLimitResult.exceeded(tightest, grant.getResetAt(), grant.getRetryAfter());
+        }
+    }
+
+    /**
+     * Take tokens from the key's Redis shard, through the fallback if it is enabled
+     */
+    private LeaseGrant takeTokens(String key, List<RateLimitWindow> windows, long requested, long returned) {
+        Shard shard = ring.get(key);
+        if (fallback == null) {
+            return takeTokensFromRedis(shard, key, windows, requested, returned);
+        }
+        return fallback.lease(shard.redis.getName(), key, windows, requested, returned,
+                () -> takeTokensFromRedis(shard, key, windows, requested, returned));
+    }
+
+    /**
+     * Same as takeTokens without blocking the caller
+     */
+    private CompletableFuture<LeaseGrant> takeTokensAsync(String key, List<RateLimitWindow> windows,
+                                                          long requested, long returned) {
+        Shard shard = ring.get(key);
+        if (fallback == null) {
+            return takeTokensFromRedisAsync(shard, key, windows, requested, returned);
+        }
+        return fallback.leaseAsync(shard.redis.getName(), key, windows, requested, returned,
+                () -> takeTokensFromRedisAsync(shard, key, windows, requested, returned));
+    }
+
+    /**
+     * Take up to the requested tokens from every window (returning leftovers) in one script call
+     */
+    private LeaseGrant takeTokensFromRedis(Shard shard, String key, List<RateLimitWindow> windows, long requested,
+                                           long returned) {
+        if (shard.batcher != null) {
+            return shard.batcher.lease(key, windows, requested, returned);
+        }
+        List<Long> result = shard.redis.getTemplate().execute(rateLimitScript, scriptKeys(key, windows),
+                scriptArgs(windows, requested, returned).toArray());
+        return toGrant(result);
+    }
+
+    /**
+     * Same script call over the reactive client (or in the next batch); no thread waits for the reply
+     */
+    private CompletableFuture<LeaseGrant> takeTokensFromRedisAsync(Shard shard, String key,
+                                                                   List<RateLimitWindow> windows,
+                                                                   long requested, long returned) {
+        if (shard.batcher != null) {
+            return shard.batcher.leaseAsync(key, windows, requested, returned);
+        }
+        return shard.redis.getReactiveTemplate().execute(rateLimitScript, scriptKeys(key, windows),
+                        scriptArgs(windows, requested, returned))
+                .next()
+                .toFuture()
+                .thenApply(RateLimiterService::toGrant);
+    }
+
+    /**
+     * Send a batch of script calls to the shard as EVALSHAs written back to back on its
+     * connection, each with its own reply. Redis answers NOSCRIPT (after a restart or SCRIPT
+     * FLUSH) without running the call, so only the calls that got it are sent again, as EVAL
+     * with the script itself; a call that ran is never repeated and never charged twice.
+     */
+    @SuppressWarnings("unchecked")
+    private void executeBatch(Shard shard, List<RateLimitBatcher.Call> calls) {
+        shard.redis.getTemplate().execute((RedisCallback<Void>) connection -> {
+            RedisScriptingAsyncCommands<byte[], byte[]> redis =
+                    (RedisScriptingAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+            long deadline = System.nanoTime() + shard.commandTimeout.toNanos();
+
+            String sha = rateLimitScript.getSha1();
+            List<RedisFuture<List<Long>>> replies = new ArrayList<>(calls.size());
+            for (RateLimitBatcher.Call call : calls) {
+                replies.add(redis.evalsha(sha, ScriptOutputType.MULTI, scriptKeys(call), scriptArgs(call)));
+            }
+            List<RateLimitBatcher.Call> notRun = complete(calls, replies, deadline);
+            if (notRun.isEmpty()) {
+                return null;
+            }
+
+            log.debug("Rate limit script missing on {}, sending {} calls with it", shard.redis.getName(),
+                    notRun.size());
+            byte[] script = rateLimitScript.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+            replies = new ArrayList<>(notRun.size());
+            for (RateLimitBatcher.Call call : notRun) {
+                replies.add(redis.eval(script, ScriptOutputType.MULTI, scriptKeys(call), scriptArgs(call)));
+            }
+            complete(notRun, replies, System.nanoTime() + shard.commandTimeout.toNanos());
+            return null;
+        });
+    }
+
+    /**
+     * Complete each call with its reply, failing those without one by the deadline;
+     * returns the calls answered NOSCRIPT, which Redis did not run
+     */
+    private static List<RateLimitBatcher.Call> complete(List<RateLimitBatcher.Call> calls,
+                                                        List<RedisFuture<List<Long>>> replies, long deadline) {
+        List<RateLimitBatcher.Call> notRun = new ArrayList<>();
+        for (int i = 0; i < calls.size(); i++) {
+            RateLimitBatcher.Call call = calls.get(i);
+            try {
+                List<Long> reply = replies.get(i).get(Math.max(0, deadline - System.nanoTime()),
+                        TimeUnit.NANOSECONDS);
+                call.complete(toGrant(reply));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RedisNoScriptException) {
+                    notRun.add(call);
+                } else {
+                    call.fail(e.getCause());
+                }
+            } catch (TimeoutException e) {
+                call.fail(new QueryTimeoutException("Redis command timed out"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                call.fail(e);
+            } catch (RuntimeException e) {
+                call.fail(e);
+            }
+        }
+        return notRun;
+    }
+
+    private static byte[][] scriptKeys(RateLimitBatcher.Call call) {
+        return toBytes(scriptKeys(call.getKey(), call.getWindows()));
+    }
+
+    private static byte[][] scriptArgs(RateLimitBatcher.Call call) {
+        return toBytes(scriptArgs(call.getWindows(), call.getRequested(), call.getReturned()));
+    }
+
+    private static byte[][] toBytes(List<String> values) {
+        byte[][] bytes = new byte[values.size()][];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = values.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+
+    /**
+     * Load the script before the first batch, so batches do not start with NOSCRIPT
+     */
+    private void preloadScript(Shard shard) {
+        try {
+            loadScript(shard.redis.getTemplate());
+        } catch (RuntimeException e) {
+            log.warn("Could not load the rate limit script on {}, loading on first use: {}",
+                    shard.redis.getName(), e.getMessage());
+        }
+    }
+
+    private void loadScript(RedisTemplate<String, String> template) {
+        template.execute((RedisCallback<String>) connection -> connection.scriptingCommands()
+                .scriptLoad(rateLimitScript.getScriptAsString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Breaker state of each Redis shard and local fallback usage for the health endpoint
+     * (empty if the fallback is off)
+     */
+    public Map<String, Object> getFallbackDetails() {
+        return fallback != null ? fallback.getDetails() : Map.of();
+    }
+
+    private void recordBatch(int size, long nanos) {
+        batchSizes.record(size);
+        batchTimers.computeIfAbsent(sizeBucket(size), bucket -> Timer.builder("gateway.ratelimit.batch.duration")
+                        .tag("size", bucket)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Batch size range for the round-trip timer: 1, 2-4, 5-16, 17-64 and so on
+     */
+    private static String sizeBucket(int size) {
+        if (size <= 1) {
+            return "1";
+        }
+        int upper = 4;
+        while (upper < size) {
+            upper *= 4;
+        }
+        return (upper / 4 + 1) + "-" + upper;
+    }
+
+    private static List<String> scriptKeys(String key, List<RateLimitWindow> windows) {
+        List<String> keys = new ArrayList<>(windows.size());
+        for (RateLimitWindow limit : windows) {
+            keys.add(windowKey(key, limit.getWindow()));
+        }
+        return keys;
+    }
+
+    private static List<String> scriptArgs(List<RateLimitWindow> windows, long requested, long returned) {
+        List<String> args = new ArrayList<>(2 + 2 * windows.size());
+        args.add(String.valueOf(requested));
+        args.add(String.valueOf(returned));
+        for (RateLimitWindow limit : windows) {
+            args.add(String.valueOf(limit.getLimit()));
+            args.add(String.valueOf(limit.getWindow().toMillis()));
+        }
+        return args;
+    }
+
+    private static LeaseGrant toGrant(List<Long> result) {
+        if (result == null || result.size() < 5) {
+            throw new IllegalStateException("Unexpected rate limit script result: " + result);
+        }
+        return new LeaseGrant(result.get(0), result.get(1), result.get(2), result.get(3),
+                result.get(4).intValue());
+    }
+
+    /**
+     * Resolve the tier for an API key from the local cache
+     */
+    public UserTier resolveTier(String apiKey) {
+        return tierResolver.resolve(apiKey);
+    }
+
+    /**
+     * Resolve the tier for an API key, reading misses from Redis without blocking
+     */
+    public CompletableFuture<UserTier> resolveTierAsync(String apiKey) {
+        return tierResolver.resolveAsync(apiKey);
+    }
+
+    /**
+     * Windows enforced for a tier; anonymous callers (null) get the default limit
+     */
+    public List<RateLimitWindow> getWindows(UserTier tier) {
+        return tier != null ? tier.getWindows() : anonymousWindows;
+    }
+
+    /**
+     * Read an API key's tier from Redis (only on cache misses and background refreshes)
+     */
+    private UserTier lookupTier(String apiKey) {
         if (redisTemplate == null) {
+            return null;
+        }
+        Object value = redisTemplate.opsForHash().get(tierKey, apiKey);
+        return value != null ? UserTier.valueOf(((String) value).toUpperCase()) : null;
+    }
+
+    private CompletableFuture<UserTier> lookupTierAsync(String apiKey) {
+        return reactiveRedisTemplate.<String, String>opsForHash().get(tierKey, apiKey)
+                .map(value -> UserTier.valueOf(value.toUpperCase()))
+                .toFuture();
+    }
+
+    /**
+     * Tokens of the identifier leased to this node and not spent yet (0 without leasing);
+     * Redis counts them in the usage of every window
+     */
+    public long getLeasedTokens(String identifier) {
+        return tokenLeaser != null ? tokenLeaser.getLeasedTokens(buildKey(identifier)) : 0;
+    }
+
+    /**
+     * Get current usage for identifier in the default window
+     */
+    public long getCurrentUsage(String identifier) {
+        return getCurrentUsage(identifier, anonymousWindows.get(0));
+    }
+
+    /**
+     * Get current usage for identifier in one window
+     */
+    public long getCurrentUsage(String identifier, RateLimitWindow limit) {
+        if (ring == null) {
             return 0;
         }
 
-        String key = buildKey(identifier);
-        String value = redisTemplate.opsForValue().get(key);
-        return value != null ? Long.parseLong(value) : 0;
+        String key = windowKey(buildKey(identifier), limit.getWindow());
+        RedisTemplate<String, String> redisTemplate = ring.get(key).redis.getTemplate();
+        long now = System.currentTimeMillis();
+        long windowMillis = limit.getWindow().toMillis();
+
+        switch (algorithm) {
+            case SLIDING_WINDOW: {
+                List<Object> state = redisTemplate.opsForHash().multiGet(key, List.of("w", "c", "p"));
+                if (state.get(0) == null) {
+                    return 0;
+                }
+                long index = now / windowMillis;
+                long stored = Long.parseLong((String) state.get(0));
+                long current = state.get(1) != null ? Long.parseLong((String) state.get(1)) : 0;
+                long previous = state.get(2) != null ? Long.parseLong((String) state.get(2)) : 0;
+                if (stored < index - 1) {
+                    return 0;
+                }
+                if (stored == index - 1) {
+                    previous = current;
+                    current = 0;
+                }
+                double weight = (double) ((index + 1) * windowMillis - now) / windowMillis;
+                return (long) Math.ceil(previous * weight + current);
+            }
+            case GCRA: {
+                String value = redisTemplate.opsForValue().get(key);
+                if (value == null) {
+                    return 0;
+                }
+                double interval = (double) windowMillis / limit.getLimit();
+                return Math.max(0, (long) Math.ceil((Double.parseDouble(value) - now) / interval));
+            }
+            default: {
+                List<Object> state = redisTemplate.opsForHash().multiGet(key, List.of("w", "c"));
+                if (state.get(0) == null || Long.parseLong((String) state.get(0)) != now / windowMillis) {
+                    return 0;
+                }
+                return state.get(1) != null ? Long.parseLong((String) state.get(1)) : 0;
+            }
+        }
     }
 
     /**
      * Reset rate limit for identifier
      */
     public void resetRateLimit(String identifier) {
-        if (redisTemplate == null) {
+        if (ring == null) {
             log.warn("Cannot reset rate limit - Redis unavailable");
             return;
         }
 
+        // The identifier may have been limited as anonymous or under any tier
+        Set<Duration> windows = new LinkedHashSet<>();
+        windows.add(window);
+        for (UserTier tier : UserTier.values()) {
+            tier.getWindows().forEach(limit -> windows.add(limit.getWindow()));
+        }
+
         String key = buildKey(identifier);
-        redisTemplate.delete(key);
+        List<String> keys = new ArrayList<>();
+        windows.forEach(w -> keys.add(windowKey(key, w)));
+        ring.get(key).redis.getTemplate().delete(keys);
         log.info("Rate limit reset for {}", identifier);
     }
 
+    public int getDefaultLimit() {
+        return defaultLimit;
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
     /**
-     * Build Redis key with current minute timestamp
+     * Build the Redis key prefix for an identifier under the configured algorithm. The
+     * identifier is the hash tag, so all of its window keys live on one shard (and in one
+     * Redis Cluster slot), as the multi-window scripts need.
      */
-    private String buildKey(String identifier) {
-        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
-        return keyPrefix + identifier + ":" + now;
+    public String buildKey(String identifier) {
+        return keyPrefix + algorithm.getKeyTag() + ":{" + identifier + "}";
+    }
+
+    /**
+     * Redis key for one window of an identifier, e.g. "gateway:ratelimit:sw:{ip:1.2.3.4}:60000"
+     */
+    private static String windowKey(String key, Duration window) {
+        return key + ":" + window.toMillis();
+    }
+
+    /**
+     * A Redis node on the ring with the batcher in front of it
+     */
+    private static final class Shard {
+
+        private final RedisShard redis;
+        private final Duration commandTimeout;
+        private RateLimitBatcher batcher;
+
+        private Shard(RedisShard redis) {
+            this.redis = redis;
+            this.commandTimeout = redis.getTemplate().getConnectionFactory()
+                    instanceof LettuceConnectionFactory lettuce
+                    ? lettuce.getClientConfiguration().getCommandTimeout() : DEFAULT_COMMAND_TIMEOUT;
+        }
     }
-}
\ No newline at end of file
+}
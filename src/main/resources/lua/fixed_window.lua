@@ -0,0 +1,72 @@
+-- Fixed window rate limiting Lua script for Redis
+-- Every window is checked and charged in the same call, so a request is only
+-- counted if all of them allow it.
+-- KEYS[i]: Redis hash for the identifier and window i (fields w = window index, c = count)
+-- ARGV[1]: Tokens requested (1 for a single request, more for a lease)
+-- ARGV[2]: Unused tokens returned from an expired lease in the same window
+-- ARGV[2i+1]: Rate limit for window i (e.g., 100)
+-- ARGV[2i+2]: Length of window i in milliseconds (e.g., 60000)
+-- Returns: {granted, remaining, reset at (epoch ms), retry after (ms), window index}
+--          describing the tightest window (0-based index)
+
+local requested = tonumber(ARGV[1])
+local returned = tonumber(ARGV[2])
+
+local time = redis.call('time')
+local now = time[1] * 1000 + math.floor(time[2] / 1000)
+
+local windows = {}
+local tightest = 1
+local blocked = nil
+
+for i = 1, #KEYS do
+    local limit = tonumber(ARGV[2 * i + 1])
+    local window = tonumber(ARGV[2 * i + 2])
+    local index = math.floor(now / window)
+
+    local state = redis.call('hmget', KEYS[i], 'w', 'c')
+    local used = 0
+    if tonumber(state[1]) == index then
+        -- Give back leftovers from an expired lease in the same window
+        used = math.max(0, (tonumber(state[2]) or 0) - returned)
+    end
+
+    local reset_at = (index + 1) * window
+    local available = limit - used
+
+    -- Window full: retry once it ends
+    local retry_after = 0
+    if available < 1 then
+        retry_after = math.max(1, reset_at - now)
+        if blocked == nil or retry_after > windows[blocked].retry_after then
+            blocked = i
+        end
+    end
+
+    windows[i] = {index = index, used = used, window = window,
+                  available = available, reset_at = reset_at, retry_after = retry_after}
+    if available < windows[tightest].available then
+        tightest = i
+    end
+end
+
+local granted = 0
+if blocked == nil then
+    granted = math.min(requested, windows[tightest].available)
+end
+
+if granted > 0 or returned > 0 then
+    for i = 1, #KEYS do
+        local w = windows[i]
+        redis.call('hset', KEYS[i], 'w', w.index, 'c', w.used + granted)
+        redis.call('pexpire', KEYS[i], w.reset_at - now)
+    end
+end
+
+if blocked ~= nil then
+    local w = windows[blocked]
+    return {0, 0, w.reset_at, w.retry_after, blocked - 1}
+end
+
+local w = windows[tightest]
+return {granted, w.available - granted, w.reset_at, 0, tightest - 1}
@@ -0,0 +1,73 @@
+-- GCRA (generic cell rate algorithm) rate limiting Lua script for Redis
+-- Stores only the theoretical arrival time (TAT) per window. Requests are
+-- spaced by window / limit, with a burst tolerance of one full window.
+-- Every window is checked and charged in the same call, so a request is only
+-- counted if all of them allow it.
+-- KEYS[i]: Redis key holding the TAT for the identifier and window i (epoch ms)
+-- ARGV[1]: Tokens requested (1 for a single request, more for a lease)
+-- ARGV[2]: Unused tokens returned from an expired lease
+-- ARGV[2i+1]: Rate limit for window i (e.g., 100)
+-- ARGV[2i+2]: Length of window i in milliseconds (e.g., 60000)
+-- Returns: {granted, remaining, reset at (epoch ms, fully replenished), retry after (ms), window index}
+--          describing the tightest window (0-based index)
+
+local requested = tonumber(ARGV[1])
+local returned = tonumber(ARGV[2])
+
+local time = redis.call('time')
+local now = time[1] * 1000 + math.floor(time[2] / 1000)
+
+local windows = {}
+local tightest = 1
+local blocked = nil
+
+for i = 1, #KEYS do
+    local limit = tonumber(ARGV[2 * i + 1])
+    local tolerance = tonumber(ARGV[2 * i + 2])
+    local interval = tolerance / limit
+
+    local tat = tonumber(redis.call('get', KEYS[i]))
+    if tat == nil or tat < now then
+        tat = now
+    end
+    if returned > 0 then
+        tat = math.max(now, tat - returned * interval)
+    end
+
+    -- Requests that fit before the TAT runs past now + tolerance
+    local available = math.floor((now + tolerance - tat) / interval)
+
+    local retry_after = 0
+    if available < 1 then
+        retry_after = math.max(1, math.ceil(tat + interval - tolerance - now))
+        if blocked == nil or retry_after > windows[blocked].retry_after then
+            blocked = i
+        end
+    end
+
+    windows[i] = {tat = tat, interval = interval, available = available, retry_after = retry_after}
+    if available < windows[tightest].available then
+        tightest = i
+    end
+end
+
+local granted = 0
+if blocked == nil then
+    granted = math.min(requested, windows[tightest].available)
+end
+
+if granted > 0 or returned > 0 then
+    for i = 1, #KEYS do
+        local w = windows[i]
+        w.tat = w.tat + granted * w.interval
+        redis.call('set', KEYS[i], tostring(w.tat), 'px', math.max(1, math.ceil(w.tat - now)))
+    end
+end
+
+if blocked ~= nil then
+    local w = windows[blocked]
+    return {0, 0, math.ceil(w.tat), w.retry_after, blocked - 1}
+end
+
+local w = windows[tightest]
+return {granted, w.available - granted, math.ceil(w.tat), 0, tightest - 1}
@@ -0,0 +1,113 @@
+package com.gateway;
+
+import com.gateway.accesslog.AccessLogBuffer;
+import com.gateway.accesslog.AccessLogEntry;
+import com.gateway.accesslog.RequestIds;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessLogTest {
+
+    @Test
+    void testConcurrentProducersDeliverEveryRecordOnce() throws Exception {
+        int producers = 4;
+        int perProducer = 20_000;
+        AccessLogBuffer buffer = new AccessLogBuffer(1024);
+        Set<String> seen = new HashSet<>();
+        AtomicBoolean done = new AtomicBoolean();
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers + 1);
+        try {
+            Future<?> consumer = executor.submit(() -> {
+                StringBuilder line = new StringBuilder();
+                while (!done.get() || buffer.drain(entry -> collect(entry, line, seen), 256) > 0) {
+                    buffer.drain(entry -> collect(entry, line, seen), 256);
+                }
+            });
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        long position;
+                        // Spin until the consumer frees a slot so nothing is dropped
+                        while ((position = buffer.claim()) < 0) {
+                            Thread.onSpinWait();
+                        }
+                        buffer.entry(position).set(0, producer + "-" + i, "GET", "/", "client", null,
+                                200, 0, -1);
+                        buffer.publish(position);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            done.set(true);
+            consumer.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(producers * perProducer, seen.size());
+    }
+
+    @Test
+    void testFullBufferDropsInsteadOfBlocking() {
+        AccessLogBuffer buffer = new AccessLogBuffer(4);
+
+        for (int i = 0; i < 4; i++) {
+            long position = buffer.claim();
+            assertTrue(position >= 0);
+            buffer.publish(position);
+        }
+        assertEquals(-1, buffer.claim());
+        assertEquals(1, buffer.getDropped());
+
+        assertEquals(4, buffer.drain(entry -> { }, 100));
+        assertTrue(buffer.claim() >= 0);
+    }
+
+    @Test
+    void testJsonLine() {
+        AccessLogEntry entry = new AccessLogEntry();
+        entry.set(1700000000000L, "abc", "GET", "/api/users/\"1\"", "10.0.0.1", "user-service",
+                200, 12_345_678, 10_005_000);
+
+        StringBuilder out = new StringBuilder();
+        entry.appendJson(out);
+
+        assertEquals("{\"ts\":1700000000000,\"id\":\"abc\",\"method\":\"GET\",\"path\":\"/api/users/\\\"1\\\"\","
+                + "\"status\":200,\"route\":\"user-service\",\"client\":\"10.0.0.1\","
+                + "\"duration_ms\":12.345,\"upstream_ms\":10.005}\n", out.toString());
+    }
+
+    @Test
+    void testRequestIdsAreUniqueAndFixedLength() {
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            String id = RequestIds.next();
+            assertTrue(id.matches("[0-9a-f]{16}"), id);
+            ids.add(id);
+        }
+        assertEquals(10_000, ids.size());
+    }
+
+    private static void collect(AccessLogEntry entry, StringBuilder line, Set<String> seen) {
+        line.setLength(0);
+        entry.appendJson(line);
+        String id = line.substring(line.indexOf("\"id\":\"") + 6, line.indexOf("\",\"method\""));
+        assertTrue(seen.add(id), "duplicate " + id);
+    }
+}
@@ -0,0 +1,148 @@
+package com.gateway;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the async pipeline (servlet async, non-blocking upstream and Redis calls) on a real server,
+ * since the rate limit check continues through an async dispatch
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class AsyncProxyTest {
+
+    private static final TestUpstream upstream = startUpstream();
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void routes(DynamicPropertyRegistry registry) {
+        registry.add("gateway.routes[0].id", () -> "user-service");
+        registry.add("gateway.routes[0].path", () -> "/api/users/**");
+        registry.add("gateway.routes[0].strip-prefix", () -> "2");
+        registry.add("gateway.routes[0].uri", () -> upstream.uri());
+        registry.add("gateway.routes[0].mode", () -> "ASYNC");
+        registry.add("gateway.routes[1].id", () -> "order-service");
+        registry.add("gateway.routes[1].path", () -> "/api/orders/**");
+        registry.add("gateway.routes[1].strip-prefix", () -> "2");
+        registry.add("gateway.routes[1].uri", () -> "http://localhost:1");
+        registry.add("gateway.routes[1].mode", () -> "ASYNC");
+        registry.add("gateway.proxy.mode", () -> "STREAMING");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.stop();
+    }
+
+    @Test
+    void testBodyRoundTrip() throws Exception {
+        byte[] payload = new byte[256 * 1024];
+        new Random(42).nextBytes(payload);
+
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(gateway("/api/users/echo?x=1"))
+                        .header("Content-Type", "application/octet-stream")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(payload))
+                        .build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(200, response.statusCode());
+        assertEquals("/echo?x=1", response.headers().firstValue("X-Upstream-Path").orElse(null));
+        assertTrue(response.headers().firstValue("X-RateLimit-Limit").isPresent());
+        assertTrue(Arrays.equals(payload, response.body()));
+    }
+
+    @Test
+    void testChunkedBodyReadWithoutLength() throws Exception {
+        byte[] payload = new byte[64 * 1024];
+        new Random(7).nextBytes(payload);
+
+        // No Content-Length: the body arrives chunked and is read until the container reports its end
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(gateway("/api/users/echo"))
+                        .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream(payload)))
+                        .build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(200, response.statusCode());
+        assertTrue(Arrays.equals(payload, response.body()));
+    }
+
+    @Test
+    void testUpstreamErrorStatusRelayed() throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(gateway("/api/users/missing")).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(404, response.statusCode());
+        assertEquals("{\"error\":\"not found\"}", response.body());
+    }
+
+    @Test
+    void testPhasesRecordedOnAsyncCompletion() throws Exception {
+        client.send(HttpRequest.newBuilder(gateway("/api/users/echo")).build(), HttpResponse.BodyHandlers.ofString());
+
+        // Recorded by the async listener, possibly just after the response went out; the
+        // gateway phase comes last, once the request completes
+        for (int i = 0; i < 50 && phase("gateway") == null; i++) {
+            Thread.sleep(20);
+        }
+        for (String phase : new String[]{"rate_limit", "route", "first_byte", "transfer", "gateway"}) {
+            assertNotNull(phase(phase), phase);
+        }
+    }
+
+    @Test
+    void testUnreachableUpstreamAnswers500() throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(gateway("/api/orders/1")).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(500, response.statusCode());
+        assertTrue(response.body().contains("Internal server error"));
+    }
+
+    private Timer phase(String phase) {
+        return meterRegistry.find("gateway.request.phase")
+                .tags("route", "user-service", "phase", phase, "status", "2xx").timer();
+    }
+
+    private URI gateway(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static TestUpstream startUpstream() {
+        return TestUpstream.start()
+                .route("/echo", exchange -> {
+                    byte[] body;
+                    try (InputStream in = exchange.getRequestBody()) {
+                        body = in.readAllBytes();
+                    }
+                    exchange.getResponseHeaders().add("X-Upstream-Path",
+                            exchange.getRequestURI().getPath() + "?" + exchange.getRequestURI().getQuery());
+                    TestUpstream.send(exchange, 200, body);
+                })
+                .route("/missing", exchange ->
+                        TestUpstream.send(exchange, 404, "{\"error\":\"not found\"}".getBytes()));
+    }
+}
@@ -0,0 +1,69 @@
+package com.gateway;
+
+import com.gateway.proxy.Bulkhead;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadTest {
+
+    @Test
+    void testRejectsWhenFullAndNoQueue() {
+        Bulkhead bulkhead = new Bulkhead(2, 0, Duration.ofMillis(10));
+
+        assertTrue(bulkhead.tryAcquire());
+        assertTrue(bulkhead.tryAcquire());
+        assertFalse(bulkhead.tryAcquire(), "Third call should be rejected");
+        assertEquals(2, bulkhead.getInFlight());
+
+        bulkhead.release();
+        assertTrue(bulkhead.tryAcquire(), "Released slot should be reusable");
+    }
+
+    @Test
+    void testNonWaitingAcquireSkipsTheQueue() {
+        Bulkhead bulkhead = new Bulkhead(1, 1, Duration.ofSeconds(5));
+        assertTrue(bulkhead.tryAcquireNow());
+
+        // A queue slot is free, but taking it would mean waiting up to max-wait
+        long start = System.nanoTime();
+        assertFalse(bulkhead.tryAcquireNow());
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(1).toNanos());
+        assertEquals(0, bulkhead.getQueued());
+
+        bulkhead.release();
+        assertTrue(bulkhead.tryAcquireNow());
+    }
+
+    @Test
+    void testQueuedCallGetsReleasedSlot() throws Exception {
+        Bulkhead bulkhead = new Bulkhead(1, 1, Duration.ofSeconds(5));
+        assertTrue(bulkhead.tryAcquire());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            Future<Boolean> waiter = executor.submit(() -> {
+                started.countDown();
+                return bulkhead.tryAcquire();
+            });
+
+            started.await();
+            while (bulkhead.getQueued() == 0) {
+                Thread.onSpinWait();
+            }
+            assertFalse(bulkhead.tryAcquire(), "Queue is full, call should be rejected");
+
+            bulkhead.release();
+            assertTrue(waiter.get(), "Queued call should acquire the released slot");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.gateway;
+
+import com.gateway.proxy.CircuitBreaker;
+import com.gateway.proxy.CircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private static final long FAST = Duration.ofMillis(5).toNanos();
+    private static final long SLOW = Duration.ofSeconds(3).toNanos();
+
+    private static CircuitBreaker newBreaker(Duration waitInOpen) {
+        return new CircuitBreaker(50, 80, Duration.ofSeconds(2), 10,
+                Duration.ofSeconds(10), waitInOpen, 3);
+    }
+
+    @Test
+    void testOpensOnFailureRateAfterMinimumCalls() {
+        CircuitBreaker breaker = newBreaker(Duration.ofSeconds(30));
+
+        // Below minimum calls nothing trips, however bad
+        for (int i = 0; i < 9; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.onResult(true, FAST);
+        }
+        assertEquals(State.CLOSED, breaker.getState());
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onResult(true, FAST);
+
+        assertEquals(State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+        assertTrue(breaker.getRetryAfterMillis() > 29_000);
+    }
+
+    @Test
+    void testStaysClosedBelowThreshold() {
+        CircuitBreaker breaker = newBreaker(Duration.ofSeconds(30));
+
+        for (int i = 0; i < 100; i++) {
+            breaker.tryAcquirePermission();
+            breaker.onResult(i % 3 == 0, FAST);
+        }
+
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(34.0, breaker.getFailureRate(), 0.01);
+    }
+
+    @Test
+    void testOpensOnSlowCallRate() {
+        CircuitBreaker breaker = newBreaker(Duration.ofSeconds(30));
+
+        for (int i = 0; i < 10; i++) {
+            breaker.tryAcquirePermission();
+            breaker.onResult(false, SLOW);
+        }
+
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testHalfOpenClosesAfterSuccessfulTrials() throws Exception {
+        CircuitBreaker breaker = tripped(Duration.ofMillis(20));
+        Thread.sleep(30);
+
+        // Only the configured number of trial calls get through
+        for (int i = 0; i < 3; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+        }
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+
+        for (int i = 0; i < 3; i++) {
+            breaker.onResult(false, FAST);
+        }
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getCalls(), "Window should start empty after closing");
+    }
+
+    @Test
+    void testHalfOpenReopensOnFailedTrial() throws Exception {
+        CircuitBreaker breaker = tripped(Duration.ofMillis(20));
+        Thread.sleep(30);
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onResult(true, FAST);
+
+        assertEquals(State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void testReleasedTrialPermitsCanBeReused() throws Exception {
+        CircuitBreaker breaker = tripped(Duration.ofMillis(20));
+        Thread.sleep(30);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+        }
+        breaker.releasePermission();
+
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void testTransitionsAreReported() {
+        List<String> transitions = new ArrayList<>();
+        CircuitBreaker breaker = newBreaker(Duration.ofSeconds(30));
+        breaker.setListener((from, to) -> transitions.add(from + "->" + to));
+
+        for (int i = 0; i < 10; i++) {
+            breaker.tryAcquirePermission();
+            breaker.onResult(true, FAST);
+        }
+        breaker.reset();
+
+        assertEquals(List.of("CLOSED->OPEN", "OPEN->CLOSED"), transitions);
+    }
+
+    private static CircuitBreaker tripped(Duration waitInOpen) {
+        CircuitBreaker breaker = newBreaker(waitInOpen);
+        for (int i = 0; i < 10; i++) {
+            breaker.tryAcquirePermission();
+            breaker.onResult(true, FAST);
+        }
+        assertEquals(State.OPEN, breaker.getState());
+        return breaker;
+    }
+}
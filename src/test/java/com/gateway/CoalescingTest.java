@@ -0,0 +1,101 @@
+package com.gateway;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Identical concurrent GETs share one upstream call, but only between callers with the same credentials
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CoalescingTest {
+
+    private static final AtomicInteger upstreamCalls = new AtomicInteger();
+    private static final TestUpstream upstream = startUpstream();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void routes(DynamicPropertyRegistry registry) {
+        registry.add("gateway.rate-limit.enabled", () -> "false");
+        registry.add("gateway.routes[0].id", () -> "coalesced");
+        registry.add("gateway.routes[0].path", () -> "/api/coalesced/**");
+        registry.add("gateway.routes[0].strip-prefix", () -> "2");
+        registry.add("gateway.routes[0].uri", () -> upstream.uri());
+        registry.add("gateway.routes[0].mode", () -> "BUFFERED");
+        registry.add("gateway.routes[0].coalesce.enabled", () -> "true");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.stop();
+    }
+
+    @Test
+    void testSameApiKeyCoalesces() throws Exception {
+        upstreamCalls.set(0);
+        List<String> bodies = fetchConcurrently("shared-key", "shared-key", "shared-key", "shared-key");
+
+        bodies.forEach(body -> assertEquals("key=shared-key", body));
+        assertTrue(upstreamCalls.get() < 4, "upstream calls: " + upstreamCalls.get());
+    }
+
+    @Test
+    void testDifferentApiKeysDoNotCoalesce() throws Exception {
+        upstreamCalls.set(0);
+        List<String> bodies = fetchConcurrently("key-a", "key-b", "key-a", "key-b");
+
+        assertEquals(List.of("key=key-a", "key=key-b", "key=key-a", "key=key-b"), bodies);
+        assertTrue(upstreamCalls.get() >= 2, "upstream calls: " + upstreamCalls.get());
+    }
+
+    private List<String> fetchConcurrently(String... apiKeys) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(apiKeys.length);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (String apiKey : apiKeys) {
+                results.add(executor.submit(() -> mockMvc.perform(get("/api/coalesced/me").header("X-API-Key", apiKey))
+                        .andReturn().getResponse().getContentAsString()));
+            }
+            List<String> bodies = new ArrayList<>();
+            for (Future<String> result : results) {
+                bodies.add(result.get());
+            }
+            return bodies;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static TestUpstream startUpstream() {
+        return TestUpstream.start().route("/me", exchange -> {
+            upstreamCalls.incrementAndGet();
+            try {
+                // Hold the call so the other requests arrive while it is in flight
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            TestUpstream.send(exchange, 200, ("key=" + exchange.getRequestHeaders().getFirst("X-API-Key"))
+                    .getBytes(StandardCharsets.UTF_8));
+        });
+    }
+}
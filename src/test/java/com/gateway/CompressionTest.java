@@ -0,0 +1,175 @@
+package com.gateway;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Encoded upstream bodies relayed or decoded, and gateway-side compression per route
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CompressionTest {
+
+    private static final byte[] JSON = json(20_000);
+    private static final byte[] GZIPPED = gzip(JSON);
+
+    private static final TestUpstream upstream = startUpstream();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void routes(DynamicPropertyRegistry registry) {
+        String uri = upstream.uri();
+        registry.add("gateway.routes[0].id", () -> "streamed");
+        registry.add("gateway.routes[0].path", () -> "/api/streamed/**");
+        registry.add("gateway.routes[0].strip-prefix", () -> "2");
+        registry.add("gateway.routes[0].uri", () -> uri);
+        registry.add("gateway.routes[0].mode", () -> "STREAMING");
+        registry.add("gateway.routes[0].compression.enabled", () -> "true");
+        registry.add("gateway.routes[1].id", () -> "buffered");
+        registry.add("gateway.routes[1].path", () -> "/api/buffered/**");
+        registry.add("gateway.routes[1].strip-prefix", () -> "2");
+        registry.add("gateway.routes[1].uri", () -> uri);
+        registry.add("gateway.routes[1].mode", () -> "BUFFERED");
+        registry.add("gateway.routes[1].compression.enabled", () -> "true");
+        registry.add("gateway.routes[1].compression.level", () -> "1");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.stop();
+    }
+
+    @Test
+    void testLargeJsonIsGzippedWhileStreaming() throws Exception {
+        MockHttpServletResponse response = perform("/api/streamed/json", "gzip, deflate, br");
+
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertEquals("W/\"v1\"", response.getHeader("ETag"));
+        assertTrue(response.getContentAsByteArray().length < JSON.length / 5,
+                "compressed to " + response.getContentAsByteArray().length);
+        assertArrayEquals(JSON, gunzip(response.getContentAsByteArray()));
+    }
+
+    @Test
+    void testDeflateChosenByQualityOnBufferedRoute() throws Exception {
+        MockHttpServletResponse response = perform("/api/buffered/json", "gzip;q=0.5, deflate");
+
+        assertEquals("deflate", response.getHeader("Content-Encoding"));
+        assertArrayEquals(JSON, new InflaterInputStream(
+                new ByteArrayInputStream(response.getContentAsByteArray())).readAllBytes());
+    }
+
+    @Test
+    void testIneligibleResponsesAreRelayedAsIs() throws Exception {
+        MockHttpServletResponse plain = perform("/api/streamed/json", "identity");
+        assertNull(plain.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", plain.getHeader("Vary"));
+        assertArrayEquals(JSON, plain.getContentAsByteArray());
+
+        MockHttpServletResponse small = perform("/api/streamed/small", "gzip");
+        assertNull(small.getHeader("Content-Encoding"));
+        assertEquals("{\"ok\":true}", small.getContentAsString());
+
+        MockHttpServletResponse image = perform("/api/streamed/image", "gzip");
+        assertNull(image.getHeader("Content-Encoding"));
+        assertEquals(JSON.length, image.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testUpstreamEncodingPassedThroughOrDecoded() throws Exception {
+        for (String route : new String[]{"streamed", "buffered"}) {
+            MockHttpServletResponse relayed = perform("/api/" + route + "/gzipped", "gzip");
+            assertEquals("gzip", relayed.getHeader("Content-Encoding"));
+            assertEquals("\"v1\"", relayed.getHeader("ETag"));
+            assertArrayEquals(GZIPPED, relayed.getContentAsByteArray(), route);
+
+            MockHttpServletResponse decoded = perform("/api/" + route + "/gzipped", "br");
+            assertNull(decoded.getHeader("Content-Encoding"));
+            assertEquals("W/\"v1\"", decoded.getHeader("ETag"));
+            assertArrayEquals(JSON, decoded.getContentAsByteArray(), route);
+        }
+    }
+
+    private MockHttpServletResponse perform(String path, String acceptEncoding) throws Exception {
+        return mockMvc.perform(get(path).header("Accept-Encoding", acceptEncoding))
+                .andReturn()
+                .getResponse();
+    }
+
+    private static TestUpstream startUpstream() {
+        return TestUpstream.start()
+                .route("/json", exchange -> {
+                    exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                    send(exchange, "application/json; charset=utf-8", JSON, 0);
+                })
+                .route("/small", exchange ->
+                        send(exchange, "application/json", "{\"ok\":true}".getBytes(StandardCharsets.UTF_8), 11))
+                .route("/image", exchange -> send(exchange, "image/png", JSON, JSON.length))
+                .route("/gzipped", exchange -> {
+                    exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                    exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                    send(exchange, "application/json", GZIPPED, GZIPPED.length);
+                });
+    }
+
+    /**
+     * length 0 sends the body chunked, without Content-Length
+     */
+    private static void send(HttpExchange exchange, String contentType, byte[] body, long length) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] json(int size) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; json.length() < size; i++) {
+            json.append("{\"id\":").append(i).append(",\"name\":\"user-").append(i).append("\",\"active\":true},");
+        }
+        json.setCharAt(json.length() - 1, ']');
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.gateway;
+
+import com.gateway.model.ConcurrencyLimitAlgorithm;
+import com.gateway.model.RouteDefinition;
+import com.gateway.proxy.ConcurrencyLimiter;
+import com.gateway.proxy.ConcurrencyLimiter.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimiterTest {
+
+    private static final long FAST = Duration.ofMillis(10).toNanos();
+    private static final long SLOW = Duration.ofMillis(200).toNanos();
+
+    private static ConcurrencyLimiter newLimiter(ConcurrencyLimitAlgorithm algorithm, int initialLimit) {
+        RouteDefinition.ConcurrencyLimitConfig config = new RouteDefinition.ConcurrencyLimitConfig();
+        config.setEnabled(true);
+        config.setAlgorithm(algorithm);
+        config.setInitialLimit(initialLimit);
+        config.setMinLimit(5);
+        config.setMaxLimit(100);
+        config.setLatencyThreshold(Duration.ofMillis(100));
+        return new ConcurrencyLimiter(config);
+    }
+
+    /**
+     * Fill the limiter, then complete every call with the same latency and outcome
+     */
+    private static void saturate(ConcurrencyLimiter limiter, long rttNanos, boolean overloaded) {
+        int acquired = 0;
+        while (limiter.tryAcquire(Priority.NORMAL)) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limiter.release(rttNanos, overloaded);
+        }
+    }
+
+    @Test
+    void testAimdGrowsWhileUsedAndBacksOff() {
+        ConcurrencyLimiter limiter = newLimiter(ConcurrencyLimitAlgorithm.AIMD, 20);
+
+        saturate(limiter, FAST, false);
+        int grown = limiter.getLimit();
+        assertTrue(grown > 20, "limit " + grown);
+
+        // A lone call does not prove the backend can take more
+        assertTrue(limiter.tryAcquire(Priority.NORMAL));
+        limiter.release(FAST, false);
+        assertEquals(grown, limiter.getLimit());
+
+        assertTrue(limiter.tryAcquire(Priority.NORMAL));
+        limiter.release(FAST, true);
+        assertEquals((int) (grown * 0.9), limiter.getLimit());
+
+        assertTrue(limiter.tryAcquire(Priority.NORMAL));
+        limiter.release(SLOW, false);
+        assertTrue(limiter.getLimit() < grown * 0.9);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void testBurstOfErrorsBacksOffOnce() {
+        ConcurrencyLimiter limiter = newLimiter(ConcurrencyLimitAlgorithm.AIMD, 40);
+
+        // Every call in flight failing together is one overload signal, not forty
+        saturate(limiter, FAST, true);
+        assertEquals(36, limiter.getLimit());
+
+        // Calls sent under the reduced limit may back it off again
+        saturate(limiter, FAST, true);
+        assertEquals(32, limiter.getLimit());
+
+        ConcurrencyLimiter gradient = newLimiter(ConcurrencyLimitAlgorithm.GRADIENT, 40);
+        saturate(gradient, FAST, true);
+        assertEquals(36, gradient.getLimit());
+    }
+
+    @Test
+    void testGradientShrinksWhenLatencyRisesAndRecovers() {
+        ConcurrencyLimiter limiter = newLimiter(ConcurrencyLimitAlgorithm.GRADIENT, 20);
+
+        for (int i = 0; i < 10; i++) {
+            saturate(limiter, FAST, false);
+        }
+        int healthy = limiter.getLimit();
+        assertTrue(healthy > 20, "limit " + healthy);
+
+        for (int i = 0; i < 10; i++) {
+            saturate(limiter, SLOW, false);
+        }
+        int congested = limiter.getLimit();
+        assertTrue(congested < healthy, congested + " < " + healthy);
+
+        for (int i = 0; i < 20; i++) {
+            saturate(limiter, FAST, false);
+        }
+        assertTrue(limiter.getLimit() > congested);
+    }
+
+    @Test
+    void testLowPriorityShedFirst() {
+        ConcurrencyLimiter limiter = newLimiter(ConcurrencyLimitAlgorithm.AIMD, 10);
+
+        // The default reserve keeps 20% of the limit for normal traffic
+        for (int i = 0; i < 8; i++) {
+            assertTrue(limiter.tryAcquire(Priority.LOW));
+        }
+        assertFalse(limiter.tryAcquire(Priority.LOW));
+        assertTrue(limiter.tryAcquire(Priority.NORMAL));
+        assertTrue(limiter.tryAcquire(Priority.NORMAL));
+        assertFalse(limiter.tryAcquire(Priority.NORMAL));
+        assertEquals(10, limiter.getInFlight());
+
+        limiter.ignore();
+        assertEquals(10, limiter.getLimit());
+        assertTrue(limiter.tryAcquire(Priority.NORMAL));
+    }
+
+    @Test
+    void testLimitStaysWithinBounds() {
+        ConcurrencyLimiter limiter = newLimiter(ConcurrencyLimitAlgorithm.AIMD, 20);
+
+        for (int i = 0; i < 100; i++) {
+            saturate(limiter, FAST, true);
+        }
+        assertEquals(5, limiter.getLimit());
+
+        for (int i = 0; i < 200; i++) {
+            saturate(limiter, FAST, false);
+        }
+        assertEquals(100, limiter.getLimit());
+    }
+}
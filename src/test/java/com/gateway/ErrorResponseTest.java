@@ -0,0 +1,90 @@
+package com.gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.exception.GatewayError;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Upstream error statuses relayed whole, and the gateway's own error responses
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ErrorResponseTest {
+
+    private static final String UPSTREAM_ERROR = "{\"code\":\"UNAVAILABLE\",\"detail\":\"maintenance\"}";
+
+    private static final TestUpstream upstream = startUpstream();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void routes(DynamicPropertyRegistry registry) {
+        registry.add("gateway.routes[0].id", () -> "buffered");
+        registry.add("gateway.routes[0].path", () -> "/api/buffered/**");
+        registry.add("gateway.routes[0].strip-prefix", () -> "2");
+        registry.add("gateway.routes[0].uri", () -> upstream.uri());
+        registry.add("gateway.routes[0].mode", () -> "BUFFERED");
+        registry.add("gateway.routes[1].id", () -> "unreachable");
+        registry.add("gateway.routes[1].path", () -> "/api/unreachable/**");
+        registry.add("gateway.routes[1].uri", () -> "http://localhost:1");
+        registry.add("gateway.routes[1].mode", () -> "BUFFERED");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.stop();
+    }
+
+    @Test
+    void testUpstreamErrorRelayedWithHeaders() throws Exception {
+        mockMvc.perform(get("/api/buffered/maintenance"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "120"))
+                .andExpect(header().string("X-Upstream-Reason", "maintenance"))
+                .andExpect(header().string("Content-Type", "application/problem+json"))
+                .andExpect(content().string(UPSTREAM_ERROR));
+    }
+
+    @Test
+    void testGatewayErrorsAreStaticJson() throws Exception {
+        mockMvc.perform(get("/api/nowhere/<script>\"x"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType("application/json"))
+                .andExpect(jsonPath("$.message").value("No route found"));
+
+        mockMvc.perform(get("/api/unreachable/1"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.error").value("Internal server error"))
+                .andExpect(jsonPath("$.message").value("The upstream request failed"));
+
+        ObjectMapper mapper = new ObjectMapper();
+        for (GatewayError error : GatewayError.values()) {
+            JsonNode body = mapper.readTree(error.toResponseEntity().getBody());
+            assertTrue(body.hasNonNull("error") && body.hasNonNull("message"), error.name());
+        }
+    }
+
+    private static TestUpstream startUpstream() {
+        return TestUpstream.start().route("/maintenance", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/problem+json");
+            exchange.getResponseHeaders().add("Retry-After", "120");
+            exchange.getResponseHeaders().add("X-Upstream-Reason", "maintenance");
+            TestUpstream.send(exchange, 503, UPSTREAM_ERROR.getBytes(StandardCharsets.UTF_8));
+        });
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
@@ -38,4 +39,16 @@ class GatewayIntegrationTest {
                 .andExpect(header().exists("X-RateLimit-Remaining"))
                 .andExpect(header().exists("X-Request-ID"));
     }
+
+    @Test
+    void testRouteUpdatesDisabledByDefault() throws Exception {
+        mockMvc.perform(put("/admin/routes")
+                        .contentType("application/yaml")
+                        .content("routes:\n  - id: evil\n    path: /api/**\n    uri: http://evil.example.com\n"))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(get("/admin/routes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.routes[?(@.id == 'evil')]").isEmpty());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,128 @@
+package com.gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.ratelimit.HeavyHitters;
+import com.gateway.ratelimit.SpaceSaving;
+import com.github.fppt.jedismock.RedisServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * In-process top identifiers, and the rate-limit status read from the real limits
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class HeavyHittersTest {
+
+    private static final RedisServer redis = startRedis();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void redis(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", () -> "localhost");
+        registry.add("spring.data.redis.port", redis::getBindPort);
+        registry.add("gateway.rate-limit.lease.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        redis.stop();
+    }
+
+    @Test
+    void testSpaceSavingFindsHeavyHittersInFixedMemory() {
+        SpaceSaving sketch = new SpaceSaving(64);
+        Random random = new Random(42);
+
+        // Ten heavy identifiers make up half of the traffic, among 100,000 light ones
+        for (int i = 0; i < 200_000; i++) {
+            sketch.add(i % 2 == 0 ? "heavy-" + (i / 2 % 10) : "light-" + random.nextInt(100_000));
+        }
+
+        List<SpaceSaving.Entry> top = sketch.top(10);
+        assertEquals(10, top.size());
+        for (SpaceSaving.Entry entry : top) {
+            assertTrue(entry.getItem().startsWith("heavy-"), entry.toString());
+            assertTrue(entry.getCount() >= 10_000 && entry.getCount() - entry.getError() <= 10_000,
+                    entry.toString());
+        }
+        assertEquals(200_000, sketch.getTotal());
+        assertTrue(sketch.top(1000).size() <= 16 * 4, "capacity is fixed");
+    }
+
+    @Test
+    void testIntervalsRotate() throws Exception {
+        HeavyHitters heavyHitters = new HeavyHitters();
+        ReflectionTestUtils.setField(heavyHitters, "enabled", true);
+        ReflectionTestUtils.setField(heavyHitters, "capacity", 64);
+        ReflectionTestUtils.setField(heavyHitters, "interval", Duration.ofMillis(200));
+
+        HeavyHitters.Period first = heavyHitters.getCurrent();
+        heavyHitters.record("ip:10.0.0.1", false);
+        heavyHitters.record("ip:10.0.0.1", true);
+        Thread.sleep(first.getEnd() - System.currentTimeMillis() + 1);
+
+        heavyHitters.record("ip:10.0.0.2", false);
+        assertSame(first, heavyHitters.getPrevious());
+        assertEquals(2, heavyHitters.getPrevious().getRequests().estimate("ip:10.0.0.1"));
+        assertEquals(1, heavyHitters.getPrevious().getRejections().estimate("ip:10.0.0.1"));
+        assertEquals(0, heavyHitters.getCurrent().getRequests().estimate("ip:10.0.0.1"));
+    }
+
+    @Test
+    void testTopAndStatusEndpoints() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            mockMvc.perform(get("/health").header("X-API-Key", "heavy-key"));
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode top = mapper.readTree(mockMvc.perform(get("/admin/rate-limit/top").param("n", "5"))
+                .andReturn().getResponse().getContentAsString());
+        JsonNode busiest = top.path("current").path("by_requests").get(0);
+        assertEquals("apikey:heavy-key", busiest.path("identifier").asText());
+        assertEquals(8, busiest.path("count").asLong());
+        assertEquals("apikey:heavy-key", top.path("current").path("by_rejections").get(0).path("identifier").asText());
+
+        JsonNode status = mapper.readTree(mockMvc.perform(get("/admin/rate-limit/status")
+                        .param("identifier", "apikey:heavy-key"))
+                .andReturn().getResponse().getContentAsString());
+        assertEquals("FREE", status.path("tier").asText());
+        assertEquals(0, status.path("leased_tokens").asLong());
+        assertEquals(3, status.path("windows").size());
+        JsonNode hour = status.path("windows").get(2);
+        assertEquals(3600, hour.path("window_seconds").asLong());
+        assertEquals(100, hour.path("limit").asLong());
+
+        // What Redis admitted plus what the tracker saw rejected is every request sent
+        long rejections = status.path("recent_rejections").asLong();
+        assertTrue(rejections >= 1);
+        assertEquals(8, hour.path("current_usage").asLong() + rejections);
+        assertEquals(100 - hour.path("current_usage").asLong(), hour.path("remaining").asLong());
+    }
+
+    private static RedisServer startRedis() {
+        try {
+            return RedisServer.newRedisServer().start();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.gateway;
+
+import com.gateway.balancer.LeastOutstandingBalancer;
+import com.gateway.balancer.PowerOfTwoChoicesBalancer;
+import com.gateway.balancer.RoundRobinBalancer;
+import com.gateway.balancer.UpstreamGroup;
+import com.gateway.balancer.UpstreamInstance;
+import com.gateway.model.RouteDefinition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadBalancerTest {
+
+    private static final List<String> URIS = List.of("http://a", "http://b", "http://c", "http://d");
+    private static final long FAST = Duration.ofMillis(5).toNanos();
+    private static final long SLOW = Duration.ofMillis(500).toNanos();
+
+    private static RouteDefinition.LoadBalancerConfig config(int ejectAfterFailures, int maxEjectionPercent) {
+        RouteDefinition.LoadBalancerConfig config = new RouteDefinition.LoadBalancerConfig();
+        config.setEjectAfterFailures(ejectAfterFailures);
+        config.setEjectionTime(Duration.ofSeconds(30));
+        config.setMaxEjectionPercent(maxEjectionPercent);
+        return config;
+    }
+
+    @Test
+    void testRoundRobinSpreadsEvenly() {
+        UpstreamGroup group = new UpstreamGroup(URIS, new RoundRobinBalancer(), config(5, 50));
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 400; i++) {
+            UpstreamInstance instance = group.choose();
+            counts.merge(instance.getUri(), 1, Integer::sum);
+            group.onComplete(instance, FAST, false);
+        }
+
+        assertEquals(4, counts.size());
+        counts.values().forEach(count -> assertEquals(100, count));
+    }
+
+    @Test
+    void testLeastOutstandingAvoidsBusyInstance() {
+        UpstreamGroup group = new UpstreamGroup(URIS.subList(0, 2), new LeastOutstandingBalancer(), config(5, 50));
+
+        // Hold one request open on the first instance chosen
+        UpstreamInstance busy = group.choose();
+        for (int i = 0; i < 10; i++) {
+            UpstreamInstance instance = group.choose();
+            assertNotSame(busy, instance);
+            group.onComplete(instance, FAST, false);
+        }
+        group.onComplete(busy, FAST, false);
+        assertEquals(0, busy.getOutstanding());
+    }
+
+    @Test
+    void testPowerOfTwoChoicesPrefersFasterInstance() {
+        UpstreamGroup group = new UpstreamGroup(URIS.subList(0, 2), new PowerOfTwoChoicesBalancer(), config(5, 50));
+
+        // Teach the group that "http://a" is slow
+        for (UpstreamInstance instance : group.getInstances()) {
+            instance.onStart();
+            group.onComplete(instance, instance.getUri().equals("http://a") ? SLOW : FAST, false);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            UpstreamInstance instance = group.choose();
+            assertEquals("http://b", instance.getUri());
+            group.onComplete(instance, FAST, false);
+        }
+    }
+
+    @Test
+    void testEjectsAfterConsecutiveFailures() {
+        UpstreamGroup group = new UpstreamGroup(URIS, new RoundRobinBalancer(), config(3, 50));
+        UpstreamInstance bad = group.getInstances()[0];
+
+        // A success in between resets the streak
+        failOn(group, bad, 2);
+        bad.onStart();
+        group.onComplete(bad, FAST, false);
+        failOn(group, bad, 2);
+        assertFalse(group.isEjected(bad));
+
+        failOn(group, bad, 1);
+        assertTrue(group.isEjected(bad));
+
+        for (int i = 0; i < 100; i++) {
+            UpstreamInstance instance = group.choose();
+            assertNotSame(bad, instance);
+            group.onComplete(instance, FAST, false);
+        }
+    }
+
+    @Test
+    void testEjectionCappedByMaxEjectionPercent() {
+        UpstreamGroup group = new UpstreamGroup(URIS, new RoundRobinBalancer(), config(1, 50));
+
+        for (UpstreamInstance instance : group.getInstances()) {
+            failOn(group, instance, 1);
+        }
+
+        long ejected = List.of(group.getInstances()).stream().filter(group::isEjected).count();
+        assertEquals(2, ejected);
+    }
+
+    @Test
+    void testPanicsWhenNothingIsAvailable() {
+        UpstreamGroup group = new UpstreamGroup(URIS.subList(0, 2), new RoundRobinBalancer(), config(1, 100));
+        for (UpstreamInstance instance : group.getInstances()) {
+            failOn(group, instance, 1);
+        }
+        assertTrue(List.of(group.getInstances()).stream().allMatch(group::isEjected));
+
+        // Still balances over all instances rather than failing
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            UpstreamInstance instance = group.choose();
+            counts.merge(instance.getUri(), 1, Integer::sum);
+            group.onComplete(instance, FAST, false);
+        }
+        assertEquals(Map.of("http://a", 5, "http://b", 5), counts);
+    }
+
+    @Test
+    void testAbandonedRequestLeavesNoSample() {
+        UpstreamGroup group = new UpstreamGroup(URIS.subList(0, 1), new RoundRobinBalancer(), config(2, 100));
+        UpstreamInstance instance = group.choose();
+        group.onComplete(instance, FAST, false);
+
+        failOn(group, instance, 1);
+        group.choose();
+        group.onAbandoned(instance);
+
+        // Neither a latency sample nor a success that resets the failure streak
+        assertEquals(0, instance.getOutstanding());
+        assertEquals(FAST / 1_000_000.0, instance.getEwmaMillis());
+        failOn(group, instance, 1);
+        assertTrue(group.isEjected(instance));
+    }
+
+    private static void failOn(UpstreamGroup group, UpstreamInstance instance, int times) {
+        for (int i = 0; i < times; i++) {
+            instance.onStart();
+            group.onComplete(instance, FAST, true);
+        }
+    }
+}
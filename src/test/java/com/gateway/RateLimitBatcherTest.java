@@ -0,0 +1,244 @@
+package com.gateway;
+
+import com.gateway.model.RateLimitAlgorithm;
+import com.gateway.model.RateLimitResult;
+import com.gateway.model.RateLimitWindow;
+import com.gateway.ratelimit.LeaseGrant;
+import com.gateway.ratelimit.RateLimitBatcher;
+import com.gateway.service.RateLimiterService;
+import com.github.fppt.jedismock.RedisServer;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitBatcherTest {
+
+    private static final List<RateLimitWindow> WINDOWS = List.of(RateLimitWindow.of(100, Duration.ofMinutes(1)));
+
+    @Test
+    void testConcurrentCallsShareBatches() throws Exception {
+        AtomicInteger batches = new AtomicInteger();
+        AtomicInteger largest = new AtomicInteger();
+        RateLimitBatcher batcher = new RateLimitBatcher(calls -> {
+            sleep(2);
+            calls.forEach(call -> call.complete(new LeaseGrant(call.getRequested(), 0, 0, 0, 0)));
+        }, (size, nanos) -> {
+            batches.incrementAndGet();
+            largest.accumulateAndGet(size, Math::max);
+        }, 64, Duration.ofMillis(1), 10_000);
+
+        try {
+            List<CompletableFuture<LeaseGrant>> grants = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                grants.add(batcher.leaseAsync("key-" + i, WINDOWS, 1, 0));
+            }
+            for (CompletableFuture<LeaseGrant> grant : grants) {
+                assertEquals(1, grant.get(5, TimeUnit.SECONDS).getGranted());
+            }
+        } finally {
+            batcher.close();
+        }
+
+        assertTrue(batches.get() <= 1000 / 64 + 2, "Batches: " + batches);
+        assertEquals(64, largest.get());
+    }
+
+    @Test
+    void testFailedBatchFailsEveryCaller() {
+        RateLimitBatcher batcher = new RateLimitBatcher(calls -> {
+            throw new IllegalStateException("connection reset");
+        }, (size, nanos) -> { }, 64, Duration.ZERO, 10_000);
+
+        try {
+            ExecutionException error = assertThrows(ExecutionException.class,
+                    () -> batcher.leaseAsync("key", WINDOWS, 1, 0).get(5, TimeUnit.SECONDS));
+            assertEquals("connection reset", error.getCause().getMessage());
+            assertThrows(IllegalStateException.class, () -> batcher.lease("key", WINDOWS, 1, 0));
+        } finally {
+            batcher.close();
+        }
+    }
+
+    @Test
+    void testFullQueueRejectsWithoutWaiting() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RateLimitBatcher batcher = new RateLimitBatcher(calls -> {
+            await(release);
+            calls.forEach(call -> call.complete(new LeaseGrant(1, 0, 0, 0, 0)));
+        }, (size, nanos) -> { }, 1, Duration.ZERO, 2);
+
+        try {
+            // One call held by the executor, two queued, the fourth has no room
+            List<CompletableFuture<LeaseGrant>> held = new ArrayList<>();
+            held.add(batcher.leaseAsync("key", WINDOWS, 1, 0));
+            while (batcher.getQueued() > 0) {
+                Thread.onSpinWait();
+            }
+            held.add(batcher.leaseAsync("key", WINDOWS, 1, 0));
+            held.add(batcher.leaseAsync("key", WINDOWS, 1, 0));
+
+            CompletableFuture<LeaseGrant> rejected = batcher.leaseAsync("key", WINDOWS, 1, 0);
+            ExecutionException error = assertThrows(ExecutionException.class, rejected::get);
+            assertInstanceOf(RejectedExecutionException.class, error.getCause());
+            assertEquals(1, batcher.getRejected());
+
+            release.countDown();
+            for (CompletableFuture<LeaseGrant> grant : held) {
+                assertEquals(1, grant.get(5, TimeUnit.SECONDS).getGranted());
+            }
+        } finally {
+            batcher.close();
+        }
+    }
+
+    @Test
+    void testPipelinedChecksAgainstRedisAreExact() throws Exception {
+        RedisServer server = RedisServer.newRedisServer().start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory("localhost", server.getBindPort());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RateLimiterService service = batchingService(new StringRedisTemplate(connectionFactory), meterRegistry);
+
+        String identifier = "batch-" + UUID.randomUUID();
+        int allowed;
+        try {
+            allowed = checkConcurrently(service, identifier, 50);
+        } finally {
+            service.shutdown();
+            connectionFactory.destroy();
+            server.stop();
+        }
+
+        assertEquals(50, allowed);
+        DistributionSummary sizes = meterRegistry.find("gateway.ratelimit.batch.size").summary();
+        assertNotNull(sizes);
+        assertTrue(sizes.count() < 160, "Batches: " + sizes.count());
+        assertTrue(sizes.max() > 1);
+        assertNotNull(meterRegistry.find("gateway.ratelimit.batch.duration").timer());
+    }
+
+    @Test
+    void testFlushedScriptResendsOnlyCallsThatDidNotRun() throws Exception {
+        RedisServer server = RedisServer.newRedisServer().start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory("localhost", server.getBindPort());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        StringRedisTemplate redis = new StringRedisTemplate(connectionFactory);
+        RateLimiterService service = batchingService(redis, new SimpleMeterRegistry());
+
+        String identifier = "flushed-" + UUID.randomUUID();
+        try {
+            // As after a Redis restart: the EVALSHAs of the next batches get NOSCRIPT
+            redis.execute((RedisCallback<String>) connection -> {
+                connection.scriptingCommands().scriptFlush();
+                return null;
+            });
+
+            assertEquals(50, checkConcurrently(service, identifier, 50));
+            // Every call ran exactly once: 50 admitted, nothing charged twice
+            assertEquals(50, service.getCurrentUsage(identifier, RateLimitWindow.of(50, Duration.ofMinutes(1))));
+        } finally {
+            service.shutdown();
+            connectionFactory.destroy();
+            server.stop();
+        }
+    }
+
+    /**
+     * Sliding-window limiter on one Redis, with every script call batched
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static RateLimiterService batchingService(StringRedisTemplate redis, SimpleMeterRegistry meterRegistry) {
+        DefaultRedisScript<List<Long>> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(RateLimitAlgorithm.SLIDING_WINDOW.getScriptPath()));
+        script.setResultType((Class) List.class);
+
+        RateLimiterService service = new RateLimiterService();
+        ReflectionTestUtils.setField(service, "redisTemplate", redis);
+        ReflectionTestUtils.setField(service, "rateLimitScript", script);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "rateLimitEnabled", true);
+        ReflectionTestUtils.setField(service, "keyPrefix", "gateway:ratelimit:");
+        ReflectionTestUtils.setField(service, "algorithm", RateLimitAlgorithm.SLIDING_WINDOW);
+        ReflectionTestUtils.setField(service, "window", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(service, "defaultLimit", 100);
+        ReflectionTestUtils.setField(service, "tierCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(service, "tierCacheTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(service, "tierCacheRefreshAfter", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(service, "batchEnabled", true);
+        ReflectionTestUtils.setField(service, "batchMaxSize", 64);
+        ReflectionTestUtils.setField(service, "batchMaxDelay", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(service, "batchMaxQueued", 10_000);
+        service.initialize();
+        return service;
+    }
+
+    /**
+     * 160 checks of one identifier from 16 threads; returns how many were allowed
+     */
+    private static int checkConcurrently(RateLimiterService service, String identifier, int limit)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        AtomicInteger allowed = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10; i++) {
+                        RateLimitResult result = service.checkRateLimit(identifier, limit);
+                        assertNotEquals(-1, result.getRemaining(), "failed open");
+                        if (result.isAllowed()) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return allowed.get();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.gateway;
+
+import com.gateway.model.RateLimitAlgorithm;
+import com.github.fppt.jedismock.RedisServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the rate-limit Lua scripts against an in-process Redis stand-in
+ */
+class RateLimitScriptTest {
+
+    private static RedisServer server;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    @BeforeAll
+    static void startRedis() throws Exception {
+        server = RedisServer.newRedisServer().start();
+        connectionFactory = new LettuceConnectionFactory("localhost", server.getBindPort());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws Exception {
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    @ParameterizedTest
+    @EnumSource(RateLimitAlgorithm.class)
+    void testAllowsExactlyLimitThenReportsRetryAfter(RateLimitAlgorithm algorithm) {
+        String key = newKey();
+        long before = System.currentTimeMillis();
+
+        for (int i = 0; i < 5; i++) {
+            List<Long> result = run(algorithm, key, 1, 0, 5, 60_000);
+            assertEquals(1L, result.get(0), algorithm + " request " + (i + 1) + " should be granted");
+            assertEquals(4L - i, result.get(1), algorithm + " remaining");
+            assertTrue(result.get(2) > before, algorithm + " reset time should be in the future");
+        }
+
+        List<Long> blocked = run(algorithm, key, 1, 0, 5, 60_000);
+        assertEquals(0L, blocked.get(0), algorithm + " sixth request should be blocked");
+        assertEquals(0L, blocked.get(1));
+        // A full sliding window waits for its share to decay into the next one,
+        // so it can take up to (2 - (limit - 1) / limit) windows
+        long maxRetryAfter = algorithm == RateLimitAlgorithm.SLIDING_WINDOW ? 72_000 : 60_000;
+        assertTrue(blocked.get(3) > 0 && blocked.get(3) <= maxRetryAfter,
+                algorithm + " retry-after should be at most " + maxRetryAfter + " ms: " + blocked.get(3));
+    }
+
+    @ParameterizedTest
+    @EnumSource(RateLimitAlgorithm.class)
+    void testLeaseGrantsBatchAndAcceptsReturns(RateLimitAlgorithm algorithm) {
+        String key = newKey();
+
+        List<Long> lease = run(algorithm, key, 10, 0, 100, 60_000);
+        assertEquals(10L, lease.get(0));
+        assertEquals(90L, lease.get(1));
+
+        // Returning 5 unused tokens makes them available again
+        List<Long> next = run(algorithm, key, 1, 5, 100, 60_000);
+        assertEquals(1L, next.get(0));
+        assertEquals(94L, next.get(1));
+
+        // A request bigger than what is left is granted partially
+        List<Long> partial = run(algorithm, key, 500, 0, 100, 60_000);
+        assertEquals(94L, partial.get(0));
+        assertEquals(0L, partial.get(1));
+    }
+
+    @ParameterizedTest
+    @EnumSource(RateLimitAlgorithm.class)
+    void testAllWindowsAreChargedAndTightestBlocks(RateLimitAlgorithm algorithm) {
+        String key = newKey();
+
+        // 3 per minute inside 10 per hour: the minute window runs out first
+        for (int i = 0; i < 3; i++) {
+            List<Long> result = run(algorithm, key, 1, 0, 10, 3_600_000, 3, 60_000);
+            assertEquals(1L, result.get(0), algorithm + " request " + (i + 1) + " should be granted");
+            assertEquals(2L - i, result.get(1), algorithm + " remaining in the minute window");
+            assertEquals(1L, result.get(4), algorithm + " tightest window");
+        }
+
+        List<Long> blocked = run(algorithm, key, 1, 0, 10, 3_600_000, 3, 60_000);
+        assertEquals(0L, blocked.get(0), algorithm + " fourth request should be blocked");
+        assertEquals(1L, blocked.get(4), algorithm + " blocking window");
+
+        // The hourly window was charged for the granted requests only
+        List<Long> sameHour = run(algorithm, key, 0, 0, 10, 3_600_000);
+        assertEquals(7L, sameHour.get(1), algorithm + " hourly remaining after three requests");
+    }
+
+    @ParameterizedTest
+    @EnumSource(RateLimitAlgorithm.class)
+    void testReactiveClientGetsSameReply(RateLimitAlgorithm algorithm) {
+        ReactiveStringRedisTemplate reactive = new ReactiveStringRedisTemplate(connectionFactory);
+        String key = newKey();
+
+        run(algorithm, key, 1, 0, 5, 60_000);
+        List<Long> result = reactive.execute(script(algorithm), List.of(key + ":60000"), List.of("1", "0", "5", "60000"))
+                .next()
+                .block();
+
+        assertNotNull(result);
+        assertEquals(5, result.size());
+        assertEquals(1L, result.get(0));
+        assertEquals(3L, result.get(1));
+    }
+
+    /**
+     * Run the algorithm's script for one key per window; limits are (limit, window ms) pairs
+     */
+    private List<Long> run(RateLimitAlgorithm algorithm, String key, long requested, long returned, long... limits) {
+        List<String> keys = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(requested));
+        args.add(String.valueOf(returned));
+        for (int i = 0; i < limits.length; i += 2) {
+            keys.add(key + ":" + limits[i + 1]);
+            args.add(String.valueOf(limits[i]));
+            args.add(String.valueOf(limits[i + 1]));
+        }
+        return redisTemplate.execute(script(algorithm), keys, args.toArray());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static DefaultRedisScript<List<Long>> script(RateLimitAlgorithm algorithm) {
+        DefaultRedisScript<List<Long>> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(algorithm.getScriptPath()));
+        script.setResultType((Class) List.class);
+        return script;
+    }
+
+    private static String newKey() {
+        return "test:" + UUID.randomUUID();
+    }
+}
@@ -0,0 +1,196 @@
+package com.gateway;
+
+import com.gateway.model.RateLimitAlgorithm;
+import com.gateway.model.RateLimitResult;
+import com.gateway.model.RateLimitWindow;
+import com.gateway.proxy.CircuitBreaker;
+import com.gateway.ratelimit.LeaseGrant;
+import com.gateway.ratelimit.LocalRateLimiter;
+import com.gateway.ratelimit.RedisFallback;
+import com.gateway.service.RateLimiterService;
+import com.github.fppt.jedismock.RedisServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Rate limiting across a Redis outage: breaker, local share and reconciliation
+ */
+class RedisFallbackTest {
+
+    private static final RateLimitWindow PER_MINUTE = RateLimitWindow.of(100, Duration.ofMinutes(1));
+
+    @Test
+    void testLocalLimiterEnforcesNodeShare() {
+        LocalRateLimiter limiter = new LocalRateLimiter(0.25);
+
+        long granted = 0;
+        for (int i = 0; i < 100; i++) {
+            granted += limiter.lease("key", List.of(PER_MINUTE), 1, 0).getGranted();
+        }
+        LeaseGrant denied = limiter.lease("key", List.of(PER_MINUTE), 1, 0);
+
+        assertEquals(25, granted);
+        assertEquals(0, denied.getGranted());
+        assertTrue(denied.getRetryAfter() > 0 && denied.getRetryAfter() <= 60_000);
+    }
+
+    @Test
+    void testDrainHandsOverCurrentUsageOnce() {
+        LocalRateLimiter limiter = new LocalRateLimiter(1.0);
+        RateLimitWindow perSecond = RateLimitWindow.of(1000, Duration.ofDays(1));
+        limiter.lease("a", List.of(PER_MINUTE, perSecond), 10, 0);
+        limiter.lease("a", List.of(PER_MINUTE, perSecond), 5, 3);
+        limiter.lease("b", List.of(PER_MINUTE), 4, 0);
+
+        Map<String, Long> drained = new HashMap<>();
+        limiter.drain((key, window, admitted) -> drained.put(key + ":" + window.getWindow().toMillis(), admitted));
+
+        // The minute window may have rolled over between the calls; the day window has not
+        assertEquals(12L, drained.get("a:86400000"));
+        assertEquals(0, limiter.getKeyCount());
+        limiter.drain((key, window, admitted) -> fail("drained twice"));
+    }
+
+    @Test
+    void testRejectedCallsDoNotOpenTheBreaker() {
+        RedisFallback fallback = new RedisFallback(List.of("redis-a"),
+                () -> new CircuitBreaker(50, 100, Duration.ofSeconds(5), 3, Duration.ofSeconds(10),
+                        Duration.ofSeconds(5), 1),
+                1, new RedisFallback.Store() {
+                    @Override
+                    public String shardOf(String key) {
+                        return "redis-a";
+                    }
+
+                    @Override
+                    public long charge(String key, RateLimitWindow window, long tokens) {
+                        return tokens;
+                    }
+                }, new SimpleMeterRegistry());
+
+        // A full batch queue is the gateway's own back-pressure, not a Redis failure
+        for (int i = 0; i < 20; i++) {
+            assertEquals(1, fallback.lease("redis-a", "key", List.of(PER_MINUTE), 1, 0, () -> {
+                throw new RejectedExecutionException("Rate limit batch queue is full");
+            }).getGranted());
+            assertEquals(1, fallback.leaseAsync("redis-a", "key", List.of(PER_MINUTE), 1, 0,
+                    () -> CompletableFuture.<LeaseGrant>failedFuture(new RejectedExecutionException("full"))
+                            .thenApply(grant -> grant)).join().getGranted());
+        }
+        assertEquals("redis", fallback.getDetails().get("mode"));
+
+        for (int i = 0; i < 3; i++) {
+            fallback.lease("redis-a", "key", List.of(PER_MINUTE), 1, 0, () -> {
+                throw new IllegalStateException("connection refused");
+            });
+        }
+        assertEquals("local", fallback.getDetails().get("mode"));
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void testOutageFallsBackLocallyAndRecoveryReconciles() throws Exception {
+        RedisServer server = RedisServer.newRedisServer().start();
+        int port = server.getBindPort();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", port),
+                LettuceClientConfiguration.builder().commandTimeout(Duration.ofSeconds(1)).build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        DefaultRedisScript<List<Long>> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(RateLimitAlgorithm.FIXED_WINDOW.getScriptPath()));
+        script.setResultType((Class) List.class);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RateLimiterService service = new RateLimiterService();
+        ReflectionTestUtils.setField(service, "redisTemplate", new StringRedisTemplate(connectionFactory));
+        ReflectionTestUtils.setField(service, "rateLimitScript", script);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "rateLimitEnabled", true);
+        ReflectionTestUtils.setField(service, "keyPrefix", "gateway:ratelimit:");
+        ReflectionTestUtils.setField(service, "algorithm", RateLimitAlgorithm.FIXED_WINDOW);
+        ReflectionTestUtils.setField(service, "window", Duration.ofDays(1));
+        ReflectionTestUtils.setField(service, "defaultLimit", 100);
+        ReflectionTestUtils.setField(service, "tierCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(service, "tierCacheTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(service, "tierCacheRefreshAfter", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(service, "fallbackEnabled", true);
+        ReflectionTestUtils.setField(service, "fallbackNodes", 2);
+        ReflectionTestUtils.setField(service, "fallbackFailureRateThreshold", 50);
+        ReflectionTestUtils.setField(service, "fallbackSlowCallRateThreshold", 100);
+        ReflectionTestUtils.setField(service, "fallbackSlowCallDuration", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(service, "fallbackMinimumCalls", 3);
+        ReflectionTestUtils.setField(service, "fallbackWindow", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(service, "fallbackWaitInOpen", Duration.ofMillis(300));
+        ReflectionTestUtils.setField(service, "fallbackHalfOpenCalls", 1);
+        service.initialize();
+
+        String identifier = "fallback-" + UUID.randomUUID();
+        try {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(service.checkRateLimit(identifier).isAllowed());
+            }
+            assertEquals("redis", service.getFallbackDetails().get("mode"));
+
+            server.stop();
+            server = null;
+
+            // Failures past minimum-calls open the breaker; from then on Redis is not waited on
+            int allowed = 0;
+            for (int i = 0; i < 100; i++) {
+                RateLimitResult result = service.checkRateLimit(identifier);
+                assertNotEquals(-1, result.getRemaining(), "failed open");
+                if (result.isAllowed()) {
+                    allowed++;
+                }
+            }
+            assertEquals("local", service.getFallbackDetails().get("mode"));
+            assertEquals(50, allowed, "half of the limit on each of two nodes");
+            long start = System.nanoTime();
+            service.checkRateLimit(identifier);
+            assertTrue(System.nanoTime() - start < 100_000_000L, "open breaker should skip Redis");
+
+            server = RedisServer.newRedisServer(port).start();
+
+            // Once the client has reconnected a half-open trial succeeds and closes the breaker
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!"redis".equals(service.getFallbackDetails().get("mode")) && System.currentTimeMillis() < deadline) {
+                service.checkRateLimit("probe-" + identifier);
+                Thread.sleep(50);
+            }
+            assertEquals("redis", service.getFallbackDetails().get("mode"));
+            while (meterRegistry.counter("gateway.ratelimit.fallback.reconciled").count() == 0
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+
+            // Redis restarted empty, so it now holds just what was admitted locally
+            assertEquals(50, service.getCurrentUsage(identifier));
+            assertNotNull(meterRegistry.find("gateway.ratelimit.redis.transitions")
+                    .tags("from", "CLOSED", "to", "OPEN").counter());
+        } finally {
+            connectionFactory.destroy();
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+}
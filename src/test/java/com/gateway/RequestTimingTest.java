@@ -0,0 +1,134 @@
+package com.gateway;
+
+import com.gateway.metrics.TraceParent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Per-phase timers, Server-Timing and traceparent propagation through a real server
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class RequestTimingTest {
+
+    private static final String CALLER_TRACE = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+    private static final AtomicReference<String> receivedTraceParent = new AtomicReference<>();
+    private static final TestUpstream upstream = startUpstream();
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void routes(DynamicPropertyRegistry registry) {
+        registry.add("gateway.routes[0].id", () -> "user-service");
+        registry.add("gateway.routes[0].path", () -> "/api/users/**");
+        registry.add("gateway.routes[0].strip-prefix", () -> "2");
+        registry.add("gateway.routes[0].uri", () -> upstream.uri());
+        registry.add("gateway.routes[0].mode", () -> "STREAMING");
+        registry.add("gateway.routes[1].id", () -> "order-service");
+        registry.add("gateway.routes[1].path", () -> "/api/orders/**");
+        registry.add("gateway.routes[1].strip-prefix", () -> "2");
+        registry.add("gateway.routes[1].uri", () -> upstream.uri());
+        registry.add("gateway.routes[1].mode", () -> "BUFFERED");
+        registry.add("gateway.metrics.server-timing", () -> "true");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.stop();
+    }
+
+    @Test
+    void testPhasesRecordedByRouteAndStatusClass() throws Exception {
+        for (String path : new String[]{"/api/users/ok", "/api/orders/ok"}) {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(gateway(path)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+        }
+
+        for (String route : new String[]{"user-service", "order-service"}) {
+            Timer total = meterRegistry.find("gateway.request.duration")
+                    .tags("route", route, "status", "2xx").timer();
+            assertNotNull(total, route);
+            assertTrue(total.count() >= 1);
+            for (String phase : new String[]{"rate_limit", "route", "connect", "first_byte", "transfer", "gateway"}) {
+                Timer timer = meterRegistry.find("gateway.request.phase")
+                        .tags("route", route, "phase", phase, "status", "2xx").timer();
+                assertNotNull(timer, route + " " + phase);
+                assertTrue(timer.count() >= 1);
+            }
+        }
+    }
+
+    @Test
+    void testServerTimingHeader() throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(gateway("/api/users/ok")).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        String serverTiming = response.headers().firstValue("Server-Timing").orElse("");
+        assertTrue(serverTiming.contains("route;dur="), serverTiming);
+        assertTrue(serverTiming.contains("first_byte;dur="), serverTiming);
+        assertFalse(serverTiming.contains("transfer"), serverTiming);
+    }
+
+    @Test
+    void testTraceParentContinuesCallersTrace() throws Exception {
+        client.send(HttpRequest.newBuilder(gateway("/api/orders/ok")).header("traceparent", CALLER_TRACE).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        String sent = receivedTraceParent.get();
+        assertEquals(55, sent.length());
+        assertEquals(CALLER_TRACE.substring(0, 36), sent.substring(0, 36), "same version and trace id");
+        assertNotEquals(CALLER_TRACE.substring(36, 52), sent.substring(36, 52), "gateway span as parent");
+        assertTrue(sent.endsWith("-01"));
+    }
+
+    @Test
+    void testTraceParentStartedWithoutOne() throws Exception {
+        client.send(HttpRequest.newBuilder(gateway("/api/users/ok")).build(), HttpResponse.BodyHandlers.ofString());
+
+        assertTrue(receivedTraceParent.get().matches("00-[0-9a-f]{32}-[0-9a-f]{16}-01"), receivedTraceParent.get());
+    }
+
+    @Test
+    void testInvalidTraceParentIsReplaced() {
+        String invalid = "00-00000000000000000000000000000000-00f067aa0ba902b7-01";
+
+        String next = TraceParent.next(invalid);
+
+        assertNotEquals(invalid.substring(3, 35), next.substring(3, 35));
+        assertFalse(next.substring(3, 35).matches("0+"));
+    }
+
+    private URI gateway(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static TestUpstream startUpstream() {
+        return TestUpstream.start().route("/ok", exchange -> {
+            receivedTraceParent.set(exchange.getRequestHeaders().getFirst("traceparent"));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            TestUpstream.send(exchange, 200, "{\"ok\":true}".getBytes());
+        });
+    }
+}
@@ -0,0 +1,188 @@
+package com.gateway;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ResponseCacheTest {
+
+    private static final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private static final TestUpstream upstream = startUpstream();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void routes(DynamicPropertyRegistry registry) {
+        registry.add("gateway.routes[0].id", () -> "product-service");
+        registry.add("gateway.routes[0].path", () -> "/api/products/**");
+        registry.add("gateway.routes[0].strip-prefix", () -> "2");
+        registry.add("gateway.routes[0].uri", () -> upstream.uri());
+        registry.add("gateway.routes[0].cache.enabled", () -> "true");
+        registry.add("gateway.routes[0].cache.default-ttl", () -> "60s");
+        registry.add("gateway.proxy.mode", () -> "STREAMING");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.stop();
+    }
+
+    @Test
+    void testFreshResponseServedFromCache() throws Exception {
+        mockMvc.perform(get("/api/products/fresh"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("fresh 1"));
+
+        mockMvc.perform(get("/api/products/fresh"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Cache", "HIT"))
+                .andExpect(header().exists("Age"))
+                .andExpect(content().string("fresh 1"));
+
+        assertEquals(1, hits.get("/fresh").get());
+    }
+
+    @Test
+    void testIfNoneMatchAnsweredWith304() throws Exception {
+        mockMvc.perform(get("/api/products/etag")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/products/etag").header("If-None-Match", "\"v1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"v1\""))
+                .andExpect(content().string(""));
+
+        assertEquals(1, hits.get("/etag").get());
+    }
+
+    @Test
+    void testNoStoreAndQueryStringsAreRespected() throws Exception {
+        mockMvc.perform(get("/api/products/no-store"));
+        mockMvc.perform(get("/api/products/no-store"));
+        assertEquals(2, hits.get("/no-store").get());
+
+        mockMvc.perform(get("/api/products/fresh-query?page=1"));
+        mockMvc.perform(get("/api/products/fresh-query?page=2"));
+        mockMvc.perform(get("/api/products/fresh-query?page=1"))
+                .andExpect(header().string("X-Cache", "HIT"));
+        assertEquals(2, hits.get("/fresh-query").get());
+    }
+
+    @Test
+    void testVaryKeepsSeparateVariants() throws Exception {
+        mockMvc.perform(get("/api/products/vary").header("Accept-Language", "en"))
+                .andExpect(content().string("vary en"));
+        mockMvc.perform(get("/api/products/vary").header("Accept-Language", "de"))
+                .andExpect(content().string("vary de"));
+        mockMvc.perform(get("/api/products/vary").header("Accept-Language", "en"))
+                .andExpect(header().string("X-Cache", "HIT"))
+                .andExpect(content().string("vary en"));
+
+        assertEquals(2, hits.get("/vary").get());
+    }
+
+    @Test
+    void testStaleServedWhileRevalidatingInBackground() throws Exception {
+        mockMvc.perform(get("/api/products/stale"))
+                .andExpect(content().string("stale 1"));
+
+        mockMvc.perform(get("/api/products/stale"))
+                .andExpect(header().string("X-Cache", "STALE"))
+                .andExpect(content().string("stale 1"));
+
+        // The refresh happens off the request thread
+        long deadline = System.currentTimeMillis() + 5000;
+        while (hits.get("/stale").get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(hits.get("/stale").get() >= 2, "Stale entry should be revalidated");
+    }
+
+    @Test
+    void testCredentialedCallersDoNotShareResponses() throws Exception {
+        mockMvc.perform(get("/api/products/account").header("X-API-Key", "key-a"))
+                .andExpect(content().string("account 1"));
+        mockMvc.perform(get("/api/products/account").header("X-API-Key", "key-b"))
+                .andExpect(content().string("account 2"));
+        mockMvc.perform(get("/api/products/account").header("Cookie", "session=b"))
+                .andExpect(content().string("account 3"));
+
+        // Stored for an anonymous caller, but not served to one with credentials
+        mockMvc.perform(get("/api/products/account"));
+        mockMvc.perform(get("/api/products/account"))
+                .andExpect(header().string("X-Cache", "HIT"));
+        mockMvc.perform(get("/api/products/account").header("X-API-Key", "key-a"))
+                .andExpect(content().string("account 5"));
+        assertEquals(5, hits.get("/account").get());
+
+        // Unless the upstream marks the response as shared
+        mockMvc.perform(get("/api/products/catalog").header("X-API-Key", "key-a"));
+        mockMvc.perform(get("/api/products/catalog").header("X-API-Key", "key-b"))
+                .andExpect(header().string("X-Cache", "HIT"));
+        assertEquals(1, hits.get("/catalog").get());
+    }
+
+    @Test
+    void testDefaultTtlOnlyForPublicResponses() throws Exception {
+        mockMvc.perform(get("/api/products/bare"));
+        mockMvc.perform(get("/api/products/bare"));
+        assertEquals(2, hits.get("/bare").get());
+
+        mockMvc.perform(get("/api/products/bare-public"));
+        mockMvc.perform(get("/api/products/bare-public"))
+                .andExpect(header().string("X-Cache", "HIT"));
+        assertEquals(1, hits.get("/bare-public").get());
+    }
+
+    private static TestUpstream startUpstream() {
+        return TestUpstream.start()
+                .route("/fresh", exchange -> respond(exchange, "max-age=60", null))
+                .route("/fresh-query", exchange -> respond(exchange, "max-age=60", null))
+                .route("/no-store", exchange -> respond(exchange, "no-store", null))
+                .route("/account", exchange -> respond(exchange, "max-age=60", null))
+                .route("/catalog", exchange -> respond(exchange, "public, max-age=60", null))
+                .route("/bare", exchange -> respond(exchange, null, null))
+                .route("/bare-public", exchange -> respond(exchange, "public", null))
+                .route("/stale", exchange -> respond(exchange, "max-age=0, stale-while-revalidate=30", null))
+                .route("/etag", exchange -> {
+                    exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                    respond(exchange, "max-age=60", null);
+                })
+                .route("/vary", exchange -> respond(exchange, "max-age=60",
+                        exchange.getRequestHeaders().getFirst("Accept-Language")));
+    }
+
+    private static void respond(HttpExchange exchange, String cacheControl, String language) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        int count = hits.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+        String text = path.substring(1) + " " + (language != null ? language : String.valueOf(count));
+
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        if (cacheControl != null) {
+            exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+        }
+        if (language != null) {
+            exchange.getResponseHeaders().add("Vary", "Accept-Language");
+        }
+        TestUpstream.send(exchange, 200, body);
+    }
+}
@@ -0,0 +1,168 @@
+package com.gateway;
+
+import com.gateway.model.RouteDefinition;
+import com.gateway.proxy.RetryBudget;
+import com.gateway.proxy.RetryPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static RouteDefinition.RetryConfig config(int maxAttempts, double budgetRatio, int minRetriesPerSecond) {
+        RouteDefinition.RetryConfig config = new RouteDefinition.RetryConfig();
+        config.setEnabled(true);
+        config.setMaxAttempts(maxAttempts);
+        config.setInitialBackoff(Duration.ofMillis(1));
+        config.setMaxBackoff(Duration.ofMillis(5));
+        config.setHedge(true);
+        config.setMinHedgeDelay(Duration.ofMillis(1));
+        config.setBudgetRatio(budgetRatio);
+        config.setMinRetriesPerSecond(minRetriesPerSecond);
+        return config;
+    }
+
+    @Test
+    void testRetriesFailuresUntilSuccess() throws Exception {
+        RetryPolicy policy = new RetryPolicy(config(3, 0.1, 10));
+        AtomicInteger calls = new AtomicInteger();
+
+        int status = policy.execute(() -> calls.incrementAndGet() < 3 ? 503 : 200,
+                policy::isRetryableStatus, false, executor);
+
+        assertEquals(200, status);
+        assertEquals(3, calls.get());
+        assertEquals(2, policy.getRetries());
+    }
+
+    @Test
+    void testRetriesErrorsAndRethrowsTheLast() {
+        RetryPolicy policy = new RetryPolicy(config(2, 0.1, 10));
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(IOException.class, () -> policy.execute(() -> {
+            calls.incrementAndGet();
+            throw new IOException("connection refused");
+        }, s -> false, false, executor));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testInterruptAbortsInsteadOfRetrying() {
+        RetryPolicy policy = new RetryPolicy(config(3, 0.1, 10));
+        AtomicInteger calls = new AtomicInteger();
+
+        InterruptedException e = assertThrows(InterruptedException.class, () -> policy.execute(() -> {
+            calls.incrementAndGet();
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted read");
+        }, s -> false, false, executor));
+        assertEquals(1, calls.get());
+        assertEquals(0, policy.getRetries());
+        assertInstanceOf(IOException.class, e.getSuppressed()[0]);
+    }
+
+    @Test
+    void testBudgetCapsRetries() throws Exception {
+        // No allowance: only deposits pay for retries, one per ten requests
+        RetryPolicy policy = new RetryPolicy(config(3, 0.1, 0));
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 100; i++) {
+            policy.execute(() -> {
+                calls.incrementAndGet();
+                return 503;
+            }, policy::isRetryableStatus, false, executor);
+        }
+
+        // 100 first attempts plus at most 10% extra
+        assertTrue(calls.get() <= 110, "calls: " + calls.get());
+        assertTrue(policy.getRetries() >= 9);
+        assertTrue(policy.getRetriesDenied() > 0);
+    }
+
+    @Test
+    void testBudgetAllowancePerSecond() {
+        RetryBudget budget = new RetryBudget(0.1, 3);
+
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+
+        for (int i = 0; i < 10; i++) {
+            budget.deposit();
+        }
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    void testHedgeAnswersWhenPrimaryStalls() throws Exception {
+        RetryPolicy policy = new RetryPolicy(config(1, 1.0, 10));
+
+        // Not hedged until the route has a latency profile
+        assertEquals(-1, policy.getHedgeDelayNanos());
+        for (int i = 0; i < 50; i++) {
+            policy.execute(() -> "fast", s -> false, true, executor);
+        }
+        assertTrue(policy.getHedgeDelayNanos() > 0);
+        long hedges = policy.getHedges();
+        long hedgeWins = policy.getHedgeWins();
+
+        // The first attempt stalls until cancelled; the hedge answers
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch cancelled = new CountDownLatch(1);
+        String result = policy.execute(() -> {
+            if (calls.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    cancelled.countDown();
+                    throw e;
+                }
+                return "stalled";
+            }
+            return "hedge";
+        }, s -> false, true, executor);
+
+        assertEquals("hedge", result);
+        assertEquals(hedges + 1, policy.getHedges());
+        assertEquals(hedgeWins + 1, policy.getHedgeWins());
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS), "losing attempt should be cancelled");
+    }
+
+    @Test
+    void testHedgeDeniedWhenBudgetSpent() throws Exception {
+        RetryPolicy policy = new RetryPolicy(config(1, 0.0, 0));
+        for (int i = 0; i < 50; i++) {
+            policy.execute(() -> "fast", s -> false, true, executor);
+        }
+        long denied = policy.getHedgesDenied();
+
+        String result = policy.execute(() -> {
+            Thread.sleep(50);
+            return "slow";
+        }, s -> false, true, executor);
+
+        assertEquals("slow", result);
+        assertEquals(0, policy.getHedges());
+        assertEquals(denied + 1, policy.getHedgesDenied());
+    }
+}
@@ -0,0 +1,273 @@
+package com.gateway;
+
+import com.gateway.balancer.UpstreamGroupRegistry;
+import com.gateway.model.RouteDefinition;
+import com.gateway.proxy.HttpComponentsClientFactory;
+import com.gateway.proxy.UpstreamClient;
+import com.gateway.proxy.UpstreamClientRegistry;
+import com.gateway.routing.RouteFileWatcher;
+import com.gateway.routing.RouteLoader;
+import com.gateway.routing.RouteLocator;
+import com.gateway.routing.RouteUpdate;
+import com.gateway.routing.RouteValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Replacing the route set at runtime: validation, versions and diffs, and
+ * keeping per-route state of routes that did not change
+ */
+class RouteReloadTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RouteDefinition routeDefinition;
+    private UpstreamClientRegistry clients;
+    private RouteLocator routeLocator;
+
+    @BeforeEach
+    void setUp() {
+        routeDefinition = new RouteDefinition();
+        routeDefinition.setRoutes(new ArrayList<>(List.of(
+                route("users", "/api/users/**", 50),
+                route("orders", "/api/orders/**", 50),
+                route("legacy", "/api/legacy/**", 50))));
+
+        HttpComponentsClientFactory factory = new HttpComponentsClientFactory();
+        ReflectionTestUtils.setField(factory, "meterRegistry", meterRegistry);
+        clients = new UpstreamClientRegistry();
+        ReflectionTestUtils.setField(clients, "factories", List.of(factory));
+        ReflectionTestUtils.setField(clients, "routeDefinition", routeDefinition);
+        ReflectionTestUtils.setField(clients, "restTemplateBuilder", new RestTemplateBuilder());
+        ReflectionTestUtils.setField(clients, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(clients, "drainTime", Duration.ZERO);
+        clients.initialize();
+
+        routeLocator = new RouteLocator();
+        ReflectionTestUtils.setField(routeLocator, "routeDefinition", routeDefinition);
+        ReflectionTestUtils.setField(routeLocator, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(routeLocator, "listeners", List.of(clients));
+        routeLocator.compile();
+    }
+
+    @AfterEach
+    void tearDown() {
+        clients.close();
+    }
+
+    @Test
+    void testInvalidRouteSetIsRejected() {
+        RouteDefinition.Route noUpstream = route("broken", "/api/broken/**", 50);
+        noUpstream.setUri(null);
+
+        List<String> errors = routeLocator.update(List.of(
+                route("users", "/api/users/**", 50),
+                route("users", "api/other/**", 0),
+                noUpstream), "test");
+
+        assertEquals(4, errors.size(), errors.toString());
+        assertEquals(1, routeLocator.getVersion());
+        assertEquals("legacy", routeLocator.locate("GET", "/api/legacy/1").getId());
+        assertEquals(1.0, meterRegistry.counter("gateway.routes.updates", "result", "rejected").count());
+    }
+
+    @Test
+    void testOutOfRangeSettingsAreRejected() {
+        RouteDefinition.Route route = route("users", "/api/users/**", 50);
+        assertTrue(RouteValidator.validate(List.of(route)).isEmpty());
+
+        route.getBulkhead().setMaxQueued(-1);
+        route.getCache().setMaxEntrySize(DataSize.ofMegabytes(128));
+        route.getCoalesce().setMaxWait(Duration.ZERO);
+        route.getCircuitBreaker().setMinimumCalls(0);
+        route.getRetry().setMaxBackoff(Duration.ofMillis(1));
+        route.getRetry().setHedgePercentile(0);
+        route.getRetry().setRetryOn(List.of(503, 999));
+
+        List<String> errors = RouteValidator.validate(List.of(route));
+        assertEquals(7, errors.size(), errors.toString());
+        assertTrue(errors.contains("users: retry.retry-on is not an HTTP status: 999"), errors.toString());
+
+        // Nothing was built from the rejected set
+        assertFalse(routeLocator.update(List.of(route), "test").isEmpty());
+        assertEquals(1, routeLocator.getVersion());
+    }
+
+    @Test
+    void testUpdateReportsDiffAndKeepsUnchangedUpstreams() {
+        UpstreamClient users = clients.getClient(routeDefinition.getRoutes().get(0));
+        UpstreamClient orders = clients.getClient(routeDefinition.getRoutes().get(1));
+        assertNotNull(meterRegistry.find("httpcomponents.httpclient.pool.total.max").tag("route", "legacy").gauge());
+
+        // Freshly parsed objects: equal to the live ones is what counts
+        List<String> errors = routeLocator.update(List.of(
+                route("users", "/api/users/**", 50),
+                route("orders", "/api/orders/**", 200),
+                route("items", "/api/items/**", 50)), "test");
+
+        assertTrue(errors.isEmpty(), errors.toString());
+        RouteUpdate update = routeLocator.getLastUpdate();
+        assertEquals(2, update.getVersion());
+        assertEquals(List.of("items"), update.getAdded());
+        assertEquals(List.of("legacy"), update.getRemoved());
+        assertEquals(List.of("orders"), update.getChanged());
+
+        assertNull(routeLocator.locate("GET", "/api/legacy/1"));
+        RouteDefinition.Route liveUsers = routeLocator.locate("GET", "/api/users/1").getRoute();
+        RouteDefinition.Route liveOrders = routeLocator.locate("GET", "/api/orders/1").getRoute();
+        assertSame(users, clients.getClient(liveUsers));
+        assertNotSame(orders, clients.getClient(liveOrders));
+        assertEquals(200.0, meterRegistry.find("httpcomponents.httpclient.pool.total.max")
+                .tag("route", "orders").gauge().value());
+        assertNull(meterRegistry.find("httpcomponents.httpclient.pool.total.max").tag("route", "legacy").gauge());
+
+        // The same set again is not a new version
+        routeLocator.update(List.of(
+                route("users", "/api/users/**", 50),
+                route("orders", "/api/orders/**", 200),
+                route("items", "/api/items/**", 50)), "test");
+        assertEquals(2, routeLocator.getVersion());
+    }
+
+    @Test
+    void testStaleRouteDoesNotBringBackOldState() {
+        UpstreamGroupRegistry groups = new UpstreamGroupRegistry();
+        ReflectionTestUtils.setField(groups, "routeDefinition", routeDefinition);
+        ReflectionTestUtils.setField(groups, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(routeLocator, "listeners", List.of(clients, groups));
+        try {
+            routeLocator.update(List.of(
+                    route("users", "/api/users/**", 50),
+                    healthChecked(route("orders", "/api/orders/**", 50)),
+                    healthChecked(route("legacy", "/api/legacy/**", 50))), "test");
+            RouteDefinition.Route staleOrders = routeLocator.locate("GET", "/api/orders/1").getRoute();
+            RouteDefinition.Route staleLegacy = routeLocator.locate("GET", "/api/legacy/1").getRoute();
+            assertEquals(Set.of("orders", "legacy"), healthChecks(groups).keySet());
+
+            routeLocator.update(List.of(
+                    route("users", "/api/users/**", 50),
+                    healthChecked(route("orders", "/api/orders/**", 200))), "test");
+
+            // Requests matched before the reload look their state up after the listeners ran
+            UpstreamClient ordersClient = clients.getClient(staleOrders);
+            assertNotNull(clients.getClient(staleLegacy));
+            assertNotNull(groups.getGroup(staleLegacy));
+
+            RouteDefinition.Route liveOrders = routeLocator.locate("GET", "/api/orders/1").getRoute();
+            assertSame(ordersClient, clients.getClient(liveOrders));
+            assertEquals(200.0, meterRegistry.find("httpcomponents.httpclient.pool.total.max")
+                    .tag("route", "orders").gauge().value());
+            assertNull(meterRegistry.find("httpcomponents.httpclient.pool.total.max").tag("route", "legacy").gauge());
+            assertSame(groups.getGroup(liveOrders), groups.getGroup(staleOrders));
+            assertEquals(Set.of("orders"), healthChecks(groups).keySet());
+            assertNull(meterRegistry.find("gateway.upstream.available").tag("route", "legacy").gauge());
+        } finally {
+            groups.shutdown();
+        }
+    }
+
+    @Test
+    void testLoaderBindsLikeApplicationYml() throws Exception {
+        String yaml = """
+                routes:
+                  - id: users
+                    path: /api/users/**
+                    uri: http://users:8080
+                    strip-prefix: 1
+                    pool:
+                      max-connections: 10
+                      response-timeout: 750ms
+                """;
+        List<RouteDefinition.Route> routes = RouteLoader.load(
+                new ByteArrayResource(yaml.getBytes(StandardCharsets.UTF_8)));
+        String json = "{\"routes\": [{\"id\": \"users\", \"path\": \"/api/users/**\", \"uri\": \"http://users:8080\","
+                + " \"stripPrefix\": 1, \"pool\": {\"maxConnections\": 10, \"responseTimeout\": \"750ms\"}}]}";
+
+        assertEquals(1, routes.size());
+        assertEquals(1, routes.get(0).getStripPrefix());
+        assertEquals(Duration.ofMillis(750), routes.get(0).getPool().getResponseTimeout());
+        assertEquals(routes, RouteLoader.load(new ByteArrayResource(json.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void testWatchedFileIsReloaded(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("routes.yml");
+        Files.writeString(file, """
+                routes:
+                  - id: users
+                    path: /api/users/**
+                    uri: http://users:8080
+                """);
+
+        RouteFileWatcher watcher = new RouteFileWatcher();
+        ReflectionTestUtils.setField(watcher, "routeLocator", routeLocator);
+        ReflectionTestUtils.setField(watcher, "routeFile", file.toString());
+        ReflectionTestUtils.setField(watcher, "debounce", Duration.ofMillis(50));
+        try {
+            watcher.start();
+            assertEquals(2, routeLocator.getVersion());
+            assertNull(routeLocator.locate("GET", "/api/orders/1"));
+
+            // An invalid edit is ignored, the next valid one applies
+            Files.writeString(file, "routes:\n  - id: users\n    path: nope\n");
+            Thread.sleep(500);
+            assertEquals(2, routeLocator.getVersion());
+            Files.writeString(file, """
+                    routes:
+                      - id: users
+                        path: /api/users/**
+                        uri: http://users:8080
+                      - id: orders
+                        path: /api/orders/**
+                        uri: http://orders:8080
+                    """);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (routeLocator.getVersion() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(3, routeLocator.getVersion());
+            assertEquals("file:routes.yml", routeLocator.getLastUpdate().getSource());
+            assertEquals("orders", routeLocator.locate("GET", "/api/orders/1").getId());
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, ?> healthChecks(UpstreamGroupRegistry groups) {
+        return (Map<String, ?>) ReflectionTestUtils.getField(groups, "healthChecks");
+    }
+
+    private static RouteDefinition.Route healthChecked(RouteDefinition.Route route) {
+        route.getLoadBalancer().getHealthCheck().setEnabled(true);
+        return route;
+    }
+
+    private static RouteDefinition.Route route(String id, String path, int maxConnections) {
+        RouteDefinition.Route route = new RouteDefinition.Route();
+        route.setId(id);
+        route.setPath(path);
+        route.setUri("http://" + id + ":8080");
+        route.setStripPrefix(2);
+        route.getPool().setMaxConnections(maxConnections);
+        return route;
+    }
+}
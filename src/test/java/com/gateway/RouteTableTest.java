@@ -0,0 +1,77 @@
+package com.gateway;
+
+import com.gateway.model.RouteDefinition;
+import com.gateway.routing.CompiledRoute;
+import com.gateway.routing.RouteTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteTableTest {
+
+    @Test
+    void testLongestPrefixWins() {
+        RouteTable table = RouteTable.compile(List.of(
+                route("api", "/api/**", 0),
+                route("users", "/api/users/**", 1),
+                route("admins", "/api/users/admins/**", 1)));
+
+        assertEquals("users", table.lookup("GET", "/api/users/123").getId());
+        assertEquals("admins", table.lookup("GET", "/api/users/admins/7").getId());
+        assertEquals("api", table.lookup("GET", "/api/orders/1").getId());
+        assertEquals("users", table.lookup("GET", "/api/users").getId());
+        assertNull(table.lookup("GET", "/other/path"));
+    }
+
+    @Test
+    void testLiteralBeatsVariableAndExactBeatsPrefix() {
+        RouteTable table = RouteTable.compile(List.of(
+                route("user-by-id", "/api/users/{id}", 1),
+                route("user-me", "/api/users/me", 1),
+                route("users", "/api/users/**", 1)));
+
+        assertEquals("user-me", table.lookup("GET", "/api/users/me").getId());
+        assertEquals("user-by-id", table.lookup("GET", "/api/users/42").getId());
+        assertEquals("users", table.lookup("GET", "/api/users/42/orders").getId());
+
+        CompiledRoute byId = table.lookup("GET", "/api/users/42");
+        assertEquals(Map.of("id", "42"), byId.extractVariables("/api/users/42"));
+    }
+
+    @Test
+    void testMethodMatching() {
+        RouteDefinition.Route writes = route("writes", "/api/orders/**", 1);
+        writes.setMethods(List.of("post", "PUT"));
+        RouteTable table = RouteTable.compile(List.of(writes, route("reads", "/api/**", 1)));
+
+        assertEquals("writes", table.lookup("POST", "/api/orders/1").getId());
+        assertEquals("reads", table.lookup("GET", "/api/orders/1").getId());
+    }
+
+    @Test
+    void testBuildTargetUrl() {
+        RouteTable table = RouteTable.compile(List.of(
+                route("users", "/api/users/**", 1),
+                route("items", "/api/{tenant}/items/**", 2)));
+
+        CompiledRoute users = table.lookup("GET", "/api/users/123");
+        assertEquals("http://backend/users/123", users.buildTargetUrl("/api/users/123", null));
+        assertEquals("http://backend/users/123?x=1", users.buildTargetUrl("/api/users/123", "x=1"));
+
+        CompiledRoute items = table.lookup("GET", "/api/acme/items/9");
+        assertEquals("http://backend/items/9", items.buildTargetUrl("/api/acme/items/9", null));
+        assertEquals("http://backend/", items.buildTargetUrl("/api/acme", null));
+    }
+
+    private static RouteDefinition.Route route(String id, String path, int stripPrefix) {
+        RouteDefinition.Route route = new RouteDefinition.Route();
+        route.setId(id);
+        route.setPath(path);
+        route.setUri("http://backend");
+        route.setStripPrefix(stripPrefix);
+        return route;
+    }
+}
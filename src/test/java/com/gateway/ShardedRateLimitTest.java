@@ -0,0 +1,162 @@
+package com.gateway;
+
+import com.gateway.model.RateLimitAlgorithm;
+import com.gateway.model.RateLimitWindow;
+import com.gateway.ratelimit.ConsistentHashRing;
+import com.gateway.ratelimit.RedisShard;
+import com.gateway.ratelimit.RedisShards;
+import com.gateway.service.RateLimiterService;
+import com.github.fppt.jedismock.RedisServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Rate-limit keys spread over several Redis nodes by consistent hashing
+ */
+class ShardedRateLimitTest {
+
+    private static final int KEYS = 20_000;
+
+    @Test
+    void testAddingNodeMovesOnlyItsShare() {
+        ConsistentHashRing<String> three = new ConsistentHashRing<>(List.of("a:6379", "b:6379", "c:6379"),
+                name -> name, 160);
+        ConsistentHashRing<String> four = new ConsistentHashRing<>(List.of("a:6379", "b:6379", "c:6379", "d:6379"),
+                name -> name, 160);
+
+        int moved = 0;
+        Map<String, Integer> load = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            String key = "gateway:ratelimit:sw:{ip:10.0." + (i / 256) + "." + (i % 256) + "}:60000";
+            String before = three.get(key);
+            String after = four.get(key);
+            if (!before.equals(after)) {
+                assertEquals("d:6379", after, "keys only move to the new node");
+                moved++;
+            }
+            load.merge(after, 1, Integer::sum);
+        }
+
+        assertTrue(moved > KEYS * 0.15 && moved < KEYS * 0.35, "moved " + moved);
+        load.values().forEach(count -> assertTrue(count > KEYS * 0.15 && count < KEYS * 0.35, "load " + load));
+    }
+
+    @Test
+    void testHashTagKeepsWindowsOfIdentifierTogether() {
+        assertEquals("apikey:k1", ConsistentHashRing.hashTag("gateway:ratelimit:gcra:{apikey:k1}:1000"));
+        assertEquals("a{}b", ConsistentHashRing.hashTag("a{}b"));
+
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(List.of("a", "b", "c", "d", "e"), name -> name, 160);
+        for (int i = 0; i < 1000; i++) {
+            String tag = "{user-" + i + "}";
+            assertEquals(ring.get("sw:" + tag + ":1000"), ring.get("sw:" + tag + ":3600000"));
+        }
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void testLimitsAreExactAcrossShards() throws Exception {
+        List<RedisServer> servers = new ArrayList<>();
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            RedisServer server = RedisServer.newRedisServer().start();
+            servers.add(server);
+            nodes.add("localhost:" + server.getBindPort());
+        }
+        RedisShards shards = new RedisShards(nodes, Duration.ofSeconds(2));
+
+        DefaultRedisScript<List<Long>> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(RateLimitAlgorithm.GCRA.getScriptPath()));
+        script.setResultType((Class) List.class);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RateLimiterService service = new RateLimiterService();
+        ReflectionTestUtils.setField(service, "redisShards", shards);
+        ReflectionTestUtils.setField(service, "virtualNodes", 160);
+        ReflectionTestUtils.setField(service, "rateLimitScript", script);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "rateLimitEnabled", true);
+        ReflectionTestUtils.setField(service, "keyPrefix", "gateway:ratelimit:");
+        ReflectionTestUtils.setField(service, "algorithm", RateLimitAlgorithm.GCRA);
+        ReflectionTestUtils.setField(service, "window", Duration.ofDays(1));
+        ReflectionTestUtils.setField(service, "defaultLimit", 100);
+        ReflectionTestUtils.setField(service, "tierCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(service, "tierCacheTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(service, "tierCacheRefreshAfter", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(service, "batchEnabled", true);
+        ReflectionTestUtils.setField(service, "batchMaxSize", 64);
+        ReflectionTestUtils.setField(service, "batchMaxDelay", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(service, "batchMaxQueued", 10_000);
+        service.initialize();
+
+        // Two windows per identifier, so every check is a multi-key script on one shard. GCRA has no
+        // window boundary for the run to straddle, and refills one request per 12 minutes.
+        List<RateLimitWindow> windows = List.of(RateLimitWindow.of(5, Duration.ofHours(1)),
+                RateLimitWindow.of(50, Duration.ofDays(1)));
+        String run = UUID.randomUUID().toString();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        AtomicInteger allowed = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int id = 0; id < 60; id++) {
+                        if (service.checkRateLimit(run + "-" + id, windows).isAllowed()) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                    return thread;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            assertEquals(60 * 5, allowed.get());
+            assertEquals(5, service.getCurrentUsage(run + "-0", windows.get(0)));
+
+            // Every shard holds a share, and both windows of an identifier sit together
+            int total = 0;
+            for (RedisShard shard : shards.getShards()) {
+                Set<String> keys = shard.getTemplate().keys("gateway:ratelimit:*");
+                assertNotNull(keys);
+                assertTrue(keys.size() >= 20, shard.getName() + " holds " + keys.size());
+                for (String key : keys) {
+                    String day = key.substring(0, key.lastIndexOf(':') + 1) + Duration.ofDays(1).toMillis();
+                    assertTrue(keys.contains(day), key);
+                }
+                total += keys.size();
+            }
+            assertEquals(60 * 2, total);
+
+            service.resetRateLimit(run + "-0");
+            assertEquals(0, service.getCurrentUsage(run + "-0", windows.get(0)));
+            assertNotNull(meterRegistry.find("gateway.ratelimit.batch.queued").tag("shard", nodes.get(2)).gauge());
+        } finally {
+            executor.shutdownNow();
+            service.shutdown();
+            shards.close();
+            for (RedisServer server : servers) {
+                server.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.gateway;
+
+import com.gateway.proxy.SingleFlight;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private static final long WAIT = TimeUnit.SECONDS.toNanos(10);
+
+    @Test
+    void testConcurrentCallsShareOneExecution() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>(100, WAIT);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = runConcurrently(20, () -> singleFlight.execute("GET /products/1", () -> {
+            calls.incrementAndGet();
+            release.await();
+            return "product-1";
+        }), singleFlight, release);
+
+        for (Future<String> result : results) {
+            assertEquals("product-1", result.get());
+        }
+        assertEquals(1, calls.get());
+        assertEquals(1, singleFlight.getLeaders());
+        assertEquals(19, singleFlight.getFollowers());
+        assertEquals(0, singleFlight.getInFlight(), "Finished flights should be removed");
+    }
+
+    @Test
+    void testMaxWaitersCapsFollowers() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>(5, WAIT);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = runConcurrently(20, () -> singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            release.await();
+            return "value";
+        }), singleFlight, release);
+
+        for (Future<String> result : results) {
+            assertEquals("value", result.get());
+        }
+        assertEquals(5, singleFlight.getFollowers());
+        assertEquals(14, singleFlight.getOverflows());
+        assertEquals(15, calls.get());
+    }
+
+    @Test
+    void testFailureIsSharedAndNotRemembered() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>(100, WAIT);
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("key", () -> {
+            throw new IllegalStateException("upstream down");
+        }));
+
+        assertEquals("ok", singleFlight.execute("key", () -> "ok"));
+    }
+
+    @Test
+    void testDifferentKeysDoNotCollapse() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>(100, WAIT);
+
+        assertEquals("a", singleFlight.execute("GET /a", () -> "a"));
+        assertEquals("b", singleFlight.execute("GET /b", () -> "b"));
+        assertEquals(2, singleFlight.getLeaders());
+    }
+
+    /**
+     * Start the tasks, wait until all but the leader have joined or overflowed, then release the leader
+     */
+    private static List<Future<String>> runConcurrently(int threads, Callable<String> task,
+                                                        SingleFlight<String> singleFlight,
+                                                        CountDownLatch release) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(task));
+            while (singleFlight.getInFlight() == 0) {
+                Thread.sleep(1);
+            }
+            for (int i = 1; i < threads; i++) {
+                results.add(executor.submit(task));
+            }
+            // Let followers reach the flight before the leader finishes
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<String> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
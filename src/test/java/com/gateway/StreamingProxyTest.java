@@ -0,0 +1,177 @@
+package com.gateway;
+
+import com.gateway.balancer.UpstreamGroupRegistry;
+import com.gateway.balancer.UpstreamInstance;
+import com.gateway.model.RouteDefinition;
+import com.gateway.proxy.CircuitBreaker;
+import com.gateway.proxy.CircuitBreakerRegistry;
+import com.gateway.proxy.ConcurrencyLimiterRegistry;
+import com.gateway.routing.RouteLocator;
+import com.gateway.service.ProxyService;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class StreamingProxyTest {
+
+    private static final TestUpstream upstream = startUpstream();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProxyService proxyService;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakers;
+
+    @Autowired
+    private ConcurrencyLimiterRegistry concurrencyLimiters;
+
+    @Autowired
+    private UpstreamGroupRegistry upstreamGroups;
+
+    @Autowired
+    private RouteLocator routeLocator;
+
+    @DynamicPropertySource
+    static void routes(DynamicPropertyRegistry registry) {
+        registry.add("gateway.routes[0].id", () -> "user-service");
+        registry.add("gateway.routes[0].path", () -> "/api/users/**");
+        registry.add("gateway.routes[0].strip-prefix", () -> "2");
+        registry.add("gateway.routes[0].uri", () -> upstream.uri());
+        registry.add("gateway.routes[1].id", () -> "guarded");
+        registry.add("gateway.routes[1].path", () -> "/api/guarded/**");
+        registry.add("gateway.routes[1].strip-prefix", () -> "2");
+        registry.add("gateway.routes[1].uri", () -> upstream.uri());
+        registry.add("gateway.routes[1].circuit-breaker.enabled", () -> "true");
+        registry.add("gateway.routes[1].circuit-breaker.slow-call-duration", () -> "200ms");
+        registry.add("gateway.routes[1].concurrency-limit.enabled", () -> "true");
+        registry.add("gateway.routes[1].concurrency-limit.algorithm", () -> "AIMD");
+        registry.add("gateway.routes[1].concurrency-limit.latency-threshold", () -> "200ms");
+        registry.add("gateway.proxy.mode", () -> "STREAMING");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.stop();
+    }
+
+    @Test
+    void testBinaryBodyRoundTrip() throws Exception {
+        byte[] payload = new byte[1024 * 1024];
+        new Random(42).nextBytes(payload);
+
+        mockMvc.perform(post("/api/users/echo")
+                        .contentType("application/octet-stream")
+                        .content(payload))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Upstream-Path", "/echo"))
+                .andExpect(content().bytes(payload));
+    }
+
+    @Test
+    void testUpstreamErrorStatusRelayed() throws Exception {
+        mockMvc.perform(get("/api/users/missing"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string("{\"error\":\"not found\"}"));
+    }
+
+    @Test
+    void testClientFailuresAreNotUpstreamFailures() throws Exception {
+        // Warm up the proxy path on another route, so the first call is not slow by itself
+        mockMvc.perform(get("/api/users/large")).andExpect(status().isOk());
+
+        // One client hangs up mid-body, the other takes longer to read it than a slow call
+        proxyService.proxy(new MockHttpServletRequest("GET", "/api/guarded/large"), client(() -> {
+            throw new IOException("Broken pipe");
+        }));
+        proxyService.proxy(new MockHttpServletRequest("GET", "/api/guarded/large"), client(() -> Thread.sleep(100)));
+
+        CircuitBreaker breaker = circuitBreakers.getCircuitBreakers().get("guarded");
+        assertEquals(2, breaker.getCalls());
+        assertEquals(0.0, breaker.getFailureRate());
+        assertEquals(0.0, breaker.getSlowCallRate());
+        RouteDefinition.Route route = routeLocator.locate("GET", "/api/guarded/large").getRoute();
+        assertEquals(20, concurrencyLimiters.getLimiter(route).getLimit());
+        UpstreamInstance instance = upstreamGroups.getGroup(route).getInstances()[0];
+        assertTrue(instance.getEwmaMillis() < 200, "latency " + instance.getEwmaMillis());
+        assertEquals(0, instance.getOutstanding());
+    }
+
+    /**
+     * A response whose client runs the action on every write
+     */
+    private static MockHttpServletResponse client(ClientAction action) {
+        return new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        write(new byte[]{(byte) b}, 0, 1);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        try {
+                            action.run();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                    }
+                };
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface ClientAction {
+        void run() throws IOException, InterruptedException;
+    }
+
+    private static TestUpstream startUpstream() {
+        return TestUpstream.start()
+                .route("/echo", exchange -> {
+                    byte[] body;
+                    try (InputStream in = exchange.getRequestBody()) {
+                        body = in.readAllBytes();
+                    }
+                    exchange.getResponseHeaders().add("X-Upstream-Path", exchange.getRequestURI().getPath());
+                    TestUpstream.send(exchange, 200, body);
+                })
+                .route("/large", exchange -> TestUpstream.send(exchange, 200, new byte[64 * 1024]))
+                .route("/missing", exchange ->
+                        TestUpstream.send(exchange, 404, "{\"error\":\"not found\"}".getBytes()));
+    }
+}
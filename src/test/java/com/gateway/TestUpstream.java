@@ -0,0 +1,69 @@
+package com.gateway;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process HTTP server standing in for a backend in tests. Handlers are matched by path
+ * prefix, and every exchange runs on its own virtual thread, so a handler that sleeps
+ * holds up nothing else.
+ */
+public final class TestUpstream {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private TestUpstream() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Start a server on a free local port; add handlers with route()
+     */
+    public static TestUpstream start() {
+        try {
+            return new TestUpstream();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Handle requests whose path starts with path
+     */
+    public TestUpstream route(String path, HttpHandler handler) {
+        server.createContext(path, handler);
+        return this;
+    }
+
+    /**
+     * Base URI to configure as a route's upstream
+     */
+    public String uri() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Answer with a status and a body of known length; an empty body is sent as none
+     */
+    public static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
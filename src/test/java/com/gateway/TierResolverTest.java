@@ -0,0 +1,60 @@
+package com.gateway;
+
+import com.gateway.model.UserTier;
+import com.gateway.ratelimit.TierResolver;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TierResolverTest {
+
+    private static final Map<String, UserTier> TIERS = Map.of(
+            "enterprise-key", UserTier.ENTERPRISE,
+            "pro-key", UserTier.PRO);
+
+    @Test
+    void testTierIsCachedAfterFirstLookup() {
+        AtomicInteger lookups = new AtomicInteger();
+        TierResolver resolver = new TierResolver(apiKey -> {
+            lookups.incrementAndGet();
+            return TIERS.get(apiKey);
+        }, UserTier.FREE, 100, Duration.ofMinutes(10), Duration.ofMinutes(1));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(UserTier.ENTERPRISE, resolver.resolve("enterprise-key"));
+        }
+        assertEquals(UserTier.PRO, resolver.resolve("pro-key"));
+
+        assertEquals(2, lookups.get(), "Each key should be read from the source once");
+    }
+
+    @Test
+    void testUnknownKeyGetsDefaultTier() {
+        TierResolver resolver = new TierResolver(TIERS::get, UserTier.BASIC,
+                100, Duration.ofMinutes(10), Duration.ofMinutes(1));
+
+        assertEquals(UserTier.BASIC, resolver.resolve("unknown-key"));
+    }
+
+    @Test
+    void testFailingSourceFallsBackToDefaultTier() {
+        TierResolver resolver = new TierResolver(apiKey -> {
+            throw new IllegalStateException("Redis down");
+        }, UserTier.FREE, 100, Duration.ofMinutes(10), Duration.ofMinutes(1));
+
+        assertEquals(UserTier.FREE, resolver.resolve("enterprise-key"));
+    }
+
+    @Test
+    void testTiersEnforceSeveralWindows() {
+        for (UserTier tier : UserTier.values()) {
+            assertEquals(3, tier.getWindows().size());
+            assertEquals(tier.getRequestsPerHour(), tier.getWindows().get(2).getLimit());
+            assertEquals(Duration.ofHours(1), tier.getWindows().get(2).getWindow());
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.gateway;
+
+import com.gateway.model.RateLimitResult;
+import com.gateway.model.RateLimitWindow;
+import com.gateway.ratelimit.LeaseGrant;
+import com.gateway.ratelimit.LeasePolicy;
+import com.gateway.ratelimit.LeaseSource;
+import com.gateway.ratelimit.TokenLeaser;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenLeaserTest {
+
+    private static final LeasePolicy POLICY = new LeasePolicy(0.1, 20, Duration.ofSeconds(10));
+
+    private static List<RateLimitWindow> perMinute(int limit) {
+        return List.of(RateLimitWindow.of(limit, Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void testSingleNodeIsExact() {
+        InMemoryLeaseSource redis = new InMemoryLeaseSource();
+        TokenLeaser leaser = new TokenLeaser(redis, POLICY);
+
+        int allowed = 0;
+        for (int i = 0; i < 150; i++) {
+            if (leaser.acquire("key", perMinute(100)).isAllowed()) {
+                allowed++;
+            }
+        }
+
+        assertEquals(100, allowed);
+        assertTrue(redis.calls.get() < 50, "Most decisions should be served locally, Redis calls: " + redis.calls);
+    }
+
+    @Test
+    void testNodesNeverOverAdmitAndStrandAtMostMaxLeasePerNode() throws Exception {
+        int nodes = 4;
+        int limit = 1000;
+        InMemoryLeaseSource redis = new InMemoryLeaseSource();
+        List<TokenLeaser> leasers = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            leasers.add(new TokenLeaser(redis, POLICY));
+        }
+
+        // Every node keeps hammering the same key from several threads
+        ExecutorService executor = Executors.newFixedThreadPool(nodes * 4);
+        AtomicInteger admitted = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < nodes * 4; t++) {
+                TokenLeaser leaser = leasers.get(t % nodes);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2 * limit / nodes; i++) {
+                        if (leaser.acquire("key", perMinute(limit)).isAllowed()) {
+                            admitted.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Leased tokens are counted in Redis first, so the limit holds exactly;
+        // the only loss is tokens still sitting in other nodes' leases
+        assertTrue(admitted.get() <= limit, "Admitted " + admitted + " > limit");
+        assertTrue(admitted.get() >= limit - (nodes - 1) * POLICY.getMaxSize(),
+                "Admitted " + admitted + " below bound");
+    }
+
+    @Test
+    void testDenialIsCachedLocally() {
+        InMemoryLeaseSource redis = new InMemoryLeaseSource();
+        TokenLeaser leaser = new TokenLeaser(redis, POLICY);
+
+        for (int i = 0; i < 5; i++) {
+            leaser.acquire("key", perMinute(5));
+        }
+        int callsAtLimit = redis.calls.get();
+
+        RateLimitResult result = null;
+        for (int i = 0; i < 100; i++) {
+            result = leaser.acquire("key", perMinute(5));
+        }
+
+        assertFalse(result.isAllowed());
+        assertEquals(callsAtLimit + 1, redis.calls.get(), "Only the first denial should reach Redis");
+    }
+
+    @Test
+    void testAsyncAcquiresAreExactAndShareRefills() throws Exception {
+        InMemoryLeaseSource redis = new InMemoryLeaseSource();
+        TokenLeaser leaser = new TokenLeaser(redis, POLICY);
+
+        List<CompletableFuture<RateLimitResult>> results = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            results.add(leaser.acquireAsync("key", perMinute(100)));
+        }
+
+        int allowed = 0;
+        for (CompletableFuture<RateLimitResult> result : results) {
+            if (result.get(5, TimeUnit.SECONDS).isAllowed()) {
+                allowed++;
+            }
+        }
+        assertEquals(100, allowed);
+        assertTrue(redis.calls.get() < 50, "Most decisions should be served locally, Redis calls: " + redis.calls);
+    }
+
+    @Test
+    void testTightestWindowIsReported() {
+        InMemoryLeaseSource redis = new InMemoryLeaseSource();
+        TokenLeaser leaser = new TokenLeaser(redis, POLICY);
+        List<RateLimitWindow> windows = List.of(
+                RateLimitWindow.of(3, Duration.ofSeconds(1)),
+                RateLimitWindow.of(100, Duration.ofMinutes(1)));
+
+        int allowed = 0;
+        RateLimitResult result = null;
+        for (int i = 0; i < 10; i++) {
+            result = leaser.acquire("key", windows);
+            if (result.isAllowed()) {
+                allowed++;
+            }
+        }
+
+        assertEquals(3, allowed);
+        assertFalse(result.isAllowed());
+        assertEquals(3, result.getLimit());
+        assertEquals(1000, result.getWindow());
+    }
+
+    @Test
+    void testLeasedTokensAreChargedButNotSpent() {
+        InMemoryLeaseSource redis = new InMemoryLeaseSource();
+        TokenLeaser leaser = new TokenLeaser(redis, POLICY);
+        assertEquals(0, leaser.getLeasedTokens("key"));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(leaser.acquire("key", perMinute(100)).isAllowed());
+        }
+
+        // The store counts the whole lease as used; what was really spent is the rest
+        long charged = redis.counters.get("key:60000");
+        assertTrue(charged > 3, "charged " + charged);
+        assertEquals(charged - 3, leaser.getLeasedTokens("key"));
+        assertEquals(0, leaser.getLeasedTokens("other"));
+    }
+
+    /**
+     * Mirrors lua/fixed_window.lua within a single window of each length
+     */
+    private static class InMemoryLeaseSource implements LeaseSource {
+
+        private final Map<String, Long> counters = new HashMap<>();
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public synchronized LeaseGrant lease(String key, List<RateLimitWindow> windows,
+                                             long requested, long returned) {
+            calls.incrementAndGet();
+            int tightest = 0;
+            long[] available = new long[windows.size()];
+            for (int i = 0; i < windows.size(); i++) {
+                String windowKey = key + ":" + windows.get(i).getWindow().toMillis();
+                long used = Math.max(0, counters.getOrDefault(windowKey, 0L) - returned);
+                counters.put(windowKey, used);
+                available[i] = windows.get(i).getLimit() - used;
+                if (available[i] < available[tightest]) {
+                    tightest = i;
+                }
+            }
+
+            long windowMillis = windows.get(tightest).getWindow().toMillis();
+            long resetAt = System.currentTimeMillis() + windowMillis;
+            if (available[tightest] <= 0) {
+                return new LeaseGrant(0, 0, resetAt, windowMillis, tightest);
+            }
+            long granted = Math.min(requested, available[tightest]);
+            for (RateLimitWindow window : windows) {
+                counters.merge(key + ":" + window.getWindow().toMillis(), granted, Long::sum);
+            }
+            return new LeaseGrant(granted, available[tightest] - granted, resetAt, 0, tightest);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.gateway;
+
+import com.gateway.metrics.TraceParent;
+import com.gateway.model.RouteDefinition;
+import com.gateway.model.UpstreamProtocol;
+import com.gateway.proxy.HttpComponentsClientFactory;
+import com.gateway.proxy.JdkHttp2ClientFactory;
+import com.gateway.proxy.ProxyHeaders;
+import com.gateway.proxy.UpstreamClient;
+import com.gateway.proxy.UpstreamClientRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Per-route upstream clients (protocol, pool reuse) and the headers sent to them
+ */
+class UpstreamClientTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RouteDefinition routeDefinition;
+    private UpstreamClientRegistry clients;
+
+    @BeforeEach
+    void setUp() {
+        routeDefinition = new RouteDefinition();
+        routeDefinition.setRoutes(new ArrayList<>(List.of(
+                route("users", UpstreamProtocol.HTTP_1_1),
+                route("orders", UpstreamProtocol.HTTP_2))));
+
+        HttpComponentsClientFactory http1 = new HttpComponentsClientFactory();
+        ReflectionTestUtils.setField(http1, "meterRegistry", meterRegistry);
+        clients = new UpstreamClientRegistry();
+        ReflectionTestUtils.setField(clients, "factories", List.of(http1, new JdkHttp2ClientFactory()));
+        ReflectionTestUtils.setField(clients, "routeDefinition", routeDefinition);
+        ReflectionTestUtils.setField(clients, "restTemplateBuilder", new RestTemplateBuilder());
+        ReflectionTestUtils.setField(clients, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(clients, "drainTime", Duration.ZERO);
+        clients.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        clients.close();
+    }
+
+    @Test
+    void testClientChosenByRouteProtocol() {
+        UpstreamClient users = clients.getClient(routeDefinition.getRoutes().get(0));
+        UpstreamClient orders = clients.getClient(routeDefinition.getRoutes().get(1));
+
+        assertInstanceOf(HttpComponentsClientHttpRequestFactory.class, users.getRequestFactory());
+        assertInstanceOf(JdkClientHttpRequestFactory.class, orders.getRequestFactory());
+        assertEquals("orders", orders.getRouteId());
+
+        // Only the pooled HTTP/1.1 client has a connection limit to report
+        assertEquals(20.0, meterRegistry.find("httpcomponents.httpclient.pool.total.max")
+                .tag("route", "users").gauge().value());
+        assertNull(meterRegistry.find("httpcomponents.httpclient.pool.total.max").tag("route", "orders").gauge());
+    }
+
+    @Test
+    void testPoolIsReusedPerRoute() {
+        RouteDefinition.Route users = routeDefinition.getRoutes().get(0);
+        UpstreamClient client = clients.getClient(users);
+
+        // Same instance for the same route and for an equal copy of it, never shared across routes
+        assertSame(client, clients.getClient(users));
+        assertSame(client, clients.getClient(route("users", UpstreamProtocol.HTTP_1_1)));
+        assertNotSame(client, clients.getClient(routeDefinition.getRoutes().get(1)));
+        assertSame(clients.getAsyncClient(users), clients.getAsyncClient(users));
+        assertEquals(1, meterRegistry.find("httpcomponents.httpclient.pool.total.max").gauges().size());
+    }
+
+    @Test
+    void testHopByHopAndClientManagedHeadersAreStripped() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/1");
+        request.setRemoteAddr("10.0.0.7");
+        request.setServerName("gateway.example.com");
+        request.addHeader("Connection", "keep-alive, X-Trace");
+        request.addHeader("Keep-Alive", "timeout=5");
+        request.addHeader("TE", "trailers");
+        request.addHeader("Transfer-Encoding", "chunked");
+        request.addHeader("Upgrade", "h2c");
+        request.addHeader("Proxy-Authorization", "Basic Zm9v");
+        request.addHeader("Host", "gateway.example.com");
+        request.addHeader("Expect", "100-continue");
+        request.addHeader("Accept", "application/json");
+        request.addHeader("X-Tag", "a");
+        request.addHeader("X-Tag", "b");
+        request.addHeader("Authorization", "Bearer token");
+
+        HttpHeaders headers = ProxyHeaders.build(request, false);
+
+        for (String name : List.of("Connection", "Keep-Alive", "TE", "Transfer-Encoding", "Upgrade",
+                "Proxy-Authorization", "Host", "Expect")) {
+            assertFalse(headers.containsKey(name), name);
+        }
+        assertEquals("application/json", headers.getFirst("Accept"));
+        assertEquals(List.of("a", "b"), headers.get("X-Tag"));
+        assertEquals("Bearer token", headers.getFirst("Authorization"));
+        assertEquals("10.0.0.7", headers.getFirst("X-Forwarded-For"));
+        assertEquals("http", headers.getFirst("X-Forwarded-Proto"));
+        assertEquals("gateway.example.com", headers.getFirst("X-Forwarded-Host"));
+    }
+
+    @Test
+    void testTraceParentReplacedOnlyWhenPropagating() {
+        String incoming = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/1");
+        request.addHeader(TraceParent.HEADER, incoming);
+
+        assertEquals(List.of(incoming), ProxyHeaders.build(request, false).get(TraceParent.HEADER));
+
+        List<String> propagated = ProxyHeaders.build(request, true).get(TraceParent.HEADER);
+        assertEquals(1, propagated.size());
+        assertNotEquals(incoming, propagated.get(0));
+        assertTrue(propagated.get(0).startsWith("00-4bf92f3577b34da6a3ce929d0e0e4736-"));
+    }
+
+    private static RouteDefinition.Route route(String id, UpstreamProtocol protocol) {
+        RouteDefinition.Route route = new RouteDefinition.Route();
+        route.setId(id);
+        route.setPath("/api/" + id + "/**");
+        route.setUri("http://" + id + ":8080");
+        route.getPool().setProtocol(protocol);
+        route.getPool().setMaxConnections(20);
+        return route;
+    }
+}
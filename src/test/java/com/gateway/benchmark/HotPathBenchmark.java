@@ -0,0 +1,168 @@
+package com.gateway.benchmark;
+
+import com.gateway.filter.RateLimitFilter;
+import com.gateway.model.RateLimitAlgorithm;
+import com.gateway.model.RateLimitResult;
+import com.gateway.model.RateLimitWindow;
+import com.gateway.model.RouteDefinition;
+import com.gateway.proxy.ProxyHeaders;
+import com.gateway.routing.CompiledRoute;
+import com.gateway.routing.RouteLocator;
+import com.gateway.service.RateLimiterService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request work the gateway does before and around the upstream call: route
+ * lookup, target URL, upstream headers, rate limit identifier, key and result.
+ * Route count scales the lookup, header count the header copy.
+ *
+ * Run with: ./mvnw -P benchmark test-compile exec:exec -Djmh.args="HotPathBenchmark -prof gc"
+ * (gc.alloc.rate.norm is the allocation per call)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+
+    @Param({"10", "1000"})
+    private int routeCount;
+
+    @Param({"8", "32"})
+    private int headerCount;
+
+    private RouteLocator routeLocator;
+    private RateLimiterService rateLimiterService;
+    private MockHttpServletRequest[] requests;
+    private String[] headerNames;
+    private String[] identifiers;
+    private CompiledRoute route;
+    private RateLimitWindow window;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<RouteDefinition.Route> routes = new ArrayList<>(routeCount);
+        for (int i = 0; i < routeCount; i++) {
+            RouteDefinition.Route route = new RouteDefinition.Route();
+            route.setId(serviceName(i));
+            route.setPath("/api/" + serviceName(i) + "/**");
+            route.setUri("http://backend-" + i + ":8080");
+            route.setStripPrefix(1);
+            routes.add(route);
+        }
+        RouteDefinition definition = new RouteDefinition();
+        definition.setRoutes(routes);
+        routeLocator = new RouteLocator();
+        ReflectionTestUtils.setField(routeLocator, "routeDefinition", definition);
+        routeLocator.compile();
+
+        rateLimiterService = new RateLimiterService();
+        ReflectionTestUtils.setField(rateLimiterService, "keyPrefix", "gateway:ratelimit:");
+        ReflectionTestUtils.setField(rateLimiterService, "algorithm", RateLimitAlgorithm.SLIDING_WINDOW);
+
+        // A browser-like request: a few well-known headers, then custom ones up to headerCount
+        requests = new MockHttpServletRequest[64];
+        for (int i = 0; i < requests.length; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET",
+                    "/api/" + serviceName(i * 7919 % routeCount) + "/items/" + i);
+            request.setQueryString("page=" + i + "&size=20");
+            request.setRemoteAddr("10.0.0." + i);
+            request.addHeader(HttpHeaders.HOST, "gateway.example.com");
+            request.addHeader(HttpHeaders.ACCEPT, "application/json");
+            request.addHeader(HttpHeaders.CONNECTION, "keep-alive");
+            request.addHeader(HttpHeaders.USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64)");
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br");
+            request.addHeader("X-API-Key", "key-" + i);
+            request.addHeader("X-Forwarded-For", "203.0.113." + i);
+            request.addHeader("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+            for (int h = 8; h < headerCount; h++) {
+                request.addHeader("X-Custom-Header-" + h, "value-" + h);
+            }
+            requests[i] = request;
+        }
+        identifiers = new String[requests.length];
+        for (int i = 0; i < identifiers.length; i++) {
+            identifiers[i] = "ip:10.0.0." + i;
+        }
+        headerNames = Collections.list(requests[0].getHeaderNames()).toArray(new String[0]);
+
+        route = routeLocator.locate("GET", requests[0].getRequestURI());
+        window = RateLimitWindow.of(100, Duration.ofMinutes(1));
+    }
+
+    @Benchmark
+    public CompiledRoute findRoute() {
+        MockHttpServletRequest request = nextRequest();
+        return routeLocator.locate(request.getMethod(), request.getRequestURI());
+    }
+
+    @Benchmark
+    public String buildTargetUrl() {
+        MockHttpServletRequest request = nextRequest();
+        return route.buildTargetUrl(request.getRequestURI(), request.getQueryString());
+    }
+
+    @Benchmark
+    public HttpHeaders buildHeaders() {
+        return ProxyHeaders.build(nextRequest(), true);
+    }
+
+    @Benchmark
+    public HttpHeaders buildHeadersWithoutTrace() {
+        return ProxyHeaders.build(nextRequest(), false);
+    }
+
+    @Benchmark
+    public void isHopByHopHeader(Blackhole blackhole) {
+        for (String name : headerNames) {
+            blackhole.consume(ProxyHeaders.isHopByHop(name));
+        }
+    }
+
+    @Benchmark
+    public String getIdentifierApiKey() {
+        MockHttpServletRequest request = nextRequest();
+        return RateLimitFilter.getIdentifier(request, request.getHeader("X-API-Key"));
+    }
+
+    @Benchmark
+    public String getIdentifierIp() {
+        return RateLimitFilter.getIdentifier(nextRequest(), null);
+    }
+
+    @Benchmark
+    public RateLimitResult rateLimitResultAllowed() {
+        return RateLimitResult.allowed(window, next++, 1_700_000_000_000L);
+    }
+
+    @Benchmark
+    public RateLimitResult rateLimitResultExceeded() {
+        return RateLimitResult.exceeded(window, 1_700_000_000_000L, next++);
+    }
+
+    @Benchmark
+    public String buildKey() {
+        return rateLimiterService.buildKey(identifiers[next++ & (identifiers.length - 1)]);
+    }
+
+    private static String serviceName(int i) {
+        return String.format("service-%05d", i);
+    }
+
+    private MockHttpServletRequest nextRequest() {
+        return requests[next++ & (requests.length - 1)];
+    }
+}
@@ -0,0 +1,93 @@
+package com.gateway.benchmark;
+
+import com.gateway.ApiGatewayApplication;
+import com.gateway.TestUpstream;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency distribution of the blocking (STREAMING) and
+ * ASYNC pipelines at high concurrency against a slow upstream.
+ *
+ * 400 client threads call a gateway with 50 request threads in front of a
+ * backend that takes upstreamDelayMs per request. Blocking mode tops out
+ * near threads / delay, with requests queueing for a thread behind that;
+ * async mode is bounded by the backend and CPU. The sample-time run reports
+ * p50/p99/p999. Needs a few cores: client, gateway and backend share the box.
+ *
+ * Run with: ./mvnw -P benchmark test-compile exec:exec -Djmh.args="ProxyModeBenchmark -p upstreamDelayMs=50,500"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(400)
+@Fork(1)
+public class ProxyModeBenchmark {
+
+    private static final int GATEWAY_THREADS = 50;
+
+    @Param({"STREAMING", "ASYNC"})
+    private String mode;
+
+    @Param({"50"})
+    private int upstreamDelayMs;
+
+    private TestUpstream upstream;
+    private ConfigurableApplicationContext gateway;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup
+    public void setup() {
+        // The slow backend sleeps on virtual threads so it never limits concurrency itself
+        upstream = TestUpstream.start().route("/", exchange -> {
+            try {
+                Thread.sleep(upstreamDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            TestUpstream.send(exchange, 200, "{\"id\":1,\"name\":\"product\"}".getBytes());
+        });
+
+        // Command-line arguments, so the route list replaces the one in application.yml
+        gateway = new SpringApplicationBuilder(ApiGatewayApplication.class).run(
+                "--server.port=0",
+                "--server.tomcat.threads.max=" + GATEWAY_THREADS,
+                "--spring.threads.virtual.enabled=false",
+                "--gateway.rate-limit.enabled=false",
+                "--gateway.proxy.mode=" + mode,
+                "--gateway.routes[0].id=product-service",
+                "--gateway.routes[0].path=/api/products/**",
+                "--gateway.routes[0].strip-prefix=1",
+                "--gateway.routes[0].uri=" + upstream.uri(),
+                "--gateway.routes[0].pool.max-connections=1000",
+                "--gateway.routes[0].bulkhead.max-concurrent=0",
+                "--logging.level.com.gateway=WARN");
+
+        int port = Integer.parseInt(gateway.getEnvironment().getProperty("local.server.port"));
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/products/1")).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        gateway.close();
+        upstream.stop();
+        client.close();
+    }
+
+    @Benchmark
+    public int proxy() throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,81 @@
+package com.gateway.benchmark;
+
+import com.gateway.model.RouteDefinition;
+import com.gateway.routing.CompiledRoute;
+import com.gateway.routing.RouteTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-lookup cost of the compiled route trie versus the old linear
+ * first-match scan, for growing route counts.
+ *
+ * Run with: ./mvnw -P benchmark test-compile exec:exec -Djmh.args="RouteTableBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteTableBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    private int routeCount;
+
+    private List<RouteDefinition.Route> routes;
+    private RouteTable table;
+    private String[] paths;
+    private int next;
+
+    @Setup
+    public void setup() {
+        routes = new ArrayList<>(routeCount);
+        for (int i = 0; i < routeCount; i++) {
+            RouteDefinition.Route route = new RouteDefinition.Route();
+            // Zero-padded so no route path is a string prefix of another
+            route.setId(serviceName(i));
+            route.setPath("/api/" + serviceName(i) + "/**");
+            route.setUri("http://backend-" + i + ":8080");
+            route.setStripPrefix(1);
+            routes.add(route);
+        }
+        table = RouteTable.compile(routes);
+
+        paths = new String[1024];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = "/api/" + serviceName(i * 7919 % routeCount) + "/items/" + i;
+        }
+    }
+
+    @Benchmark
+    public CompiledRoute trieLookup() {
+        return table.lookup("GET", nextPath());
+    }
+
+    @Benchmark
+    public String trieLookupAndTargetUrl() {
+        String path = nextPath();
+        return table.lookup("GET", path).buildTargetUrl(path, null);
+    }
+
+    @Benchmark
+    public RouteDefinition.Route linearScan() {
+        String path = nextPath();
+        return routes.stream()
+                .filter(route -> path.startsWith(route.getPath().replace("/**", "")))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static String serviceName(int i) {
+        return String.format("service-%05d", i);
+    }
+
+    private String nextPath() {
+        return paths[next++ & (paths.length - 1)];
+    }
+}
@@ -0,0 +1,59 @@
+package com.gateway.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.util.unit.DataSize;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToLongFunction;
+
+/**
+ * A random quantity given as "5ms" (constant), "uniform:1ms-10ms" or "exp:5ms"
+ * (exponential with that mean). Durations sample as nanoseconds, sizes ("512B",
+ * "uniform:1KB-64KB") as bytes.
+ */
+final class Distribution {
+
+    private enum Kind { CONSTANT, UNIFORM, EXPONENTIAL }
+
+    private final Kind kind;
+    private final long a;
+    private final long b;
+
+    private Distribution(Kind kind, long a, long b) {
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+    }
+
+    static Distribution ofDuration(String spec) {
+        return parse(spec, value -> DurationStyle.detectAndParse(value).toNanos());
+    }
+
+    static Distribution ofSize(String spec) {
+        return parse(spec, value -> DataSize.parse(value).toBytes());
+    }
+
+    private static Distribution parse(String spec, ToLongFunction<String> unit) {
+        int colon = spec.indexOf(':');
+        String kind = colon < 0 ? "constant" : spec.substring(0, colon);
+        String value = spec.substring(colon + 1);
+        return switch (kind) {
+            case "constant" -> new Distribution(Kind.CONSTANT, unit.applyAsLong(value), 0);
+            case "uniform" -> {
+                String[] range = value.split("-", 2);
+                yield new Distribution(Kind.UNIFORM, unit.applyAsLong(range[0]), unit.applyAsLong(range[1]));
+            }
+            case "exp" -> new Distribution(Kind.EXPONENTIAL, unit.applyAsLong(value), 0);
+            default -> throw new IllegalArgumentException("Unknown distribution: " + spec);
+        };
+    }
+
+    long sample() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return switch (kind) {
+            case CONSTANT -> a;
+            case UNIFORM -> a + (b > a ? random.nextLong(b - a + 1) : 0);
+            case EXPONENTIAL -> (long) (-a * Math.log(1 - random.nextDouble()));
+        };
+    }
+}
@@ -0,0 +1,189 @@
+package com.gateway.loadtest;
+
+import com.gateway.ApiGatewayApplication;
+import com.github.fppt.jedismock.RedisServer;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Offline end-to-end load test. Starts a stub upstream per mock-services/*.json file
+ * (user-service-mock.json answers for USER_SERVICE_URL, and so on), an in-process
+ * Redis stand-in (jedis-mock) and the gateway with its application.yml, then replays
+ * a workload at a fixed rate and reports throughput and latency percentiles. With
+ * --target the stubs and gateway are skipped and an already running gateway is hit.
+ * The embedded gateway's anonymous limit is raised so the single client address is
+ * checked against Redis on every request but not rejected; pass
+ * --gateway.rate-limit.default-limit to test limiting itself.
+ *
+ * Options (--name=value): rate (req/s, 500), duration (30s), warmup (5s),
+ * workload (src/test/resources/loadtest/workload.jsonl), mocks (mock-services),
+ * latency (upstream, "exp:2ms"), payload (extra response bytes, "0B"), timeout (10s),
+ * max-in-flight (10000), histogram (target/loadtest.hgrm), target. Other --gateway.*,
+ * --server.*, --spring.* and --logging.* options go to the gateway.
+ *
+ * Generator, stubs and gateway share the machine, so compare runs on the same box.
+ *
+ * Run with: ./mvnw -P loadtest test-compile exec:exec -Dloadtest.args="--rate=2000 --duration=60s"
+ */
+public class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("rate", "500"),
+            Map.entry("duration", "30s"),
+            Map.entry("warmup", "5s"),
+            Map.entry("workload", "src/test/resources/loadtest/workload.jsonl"),
+            Map.entry("mocks", "mock-services"),
+            Map.entry("latency", "exp:2ms"),
+            Map.entry("payload", "0B"),
+            Map.entry("timeout", "10s"),
+            Map.entry("max-in-flight", "10000"),
+            Map.entry("histogram", "target/loadtest.hgrm"));
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        Map<String, String> gatewayArgs = new LinkedHashMap<>();
+        gatewayArgs.put("server.port", "0");
+        gatewayArgs.put("logging.level.com.gateway", "WARN");
+        gatewayArgs.put("gateway.access-log.output", "target/loadtest-access.log");
+        // Every check still goes to Redis, but one client IP must not be rejected
+        gatewayArgs.put("gateway.rate-limit.default-limit", "1000000000");
+        for (String arg : args) {
+            String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+            if (pair[0].matches("(gateway|server|spring|logging)\\..*")) {
+                // Repeated command-line properties are joined with commas, so overrides replace defaults here
+                gatewayArgs.put(pair[0], pair.length > 1 ? pair[1] : "");
+            } else {
+                options.put(pair[0], pair.length > 1 ? pair[1] : "true");
+            }
+        }
+
+        List<StubUpstream> stubs = new ArrayList<>();
+        RedisServer redis = null;
+        ConfigurableApplicationContext gateway = null;
+        try {
+            String target = options.get("target");
+            if (target == null) {
+                Distribution latency = Distribution.ofDuration(options.get("latency"));
+                Distribution payload = Distribution.ofSize(options.get("payload"));
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(Path.of(options.get("mocks")),
+                        "*-mock.json")) {
+                    for (Path file : files) {
+                        StubUpstream stub = new StubUpstream(file, latency, payload);
+                        stub.start();
+                        stubs.add(stub);
+                        String service = file.getFileName().toString().replace("-mock.json", "");
+                        gatewayArgs.putIfAbsent(service.toUpperCase(Locale.ROOT).replace('-', '_') + "_URL",
+                                stub.getUrl());
+                    }
+                }
+
+                redis = RedisServer.newRedisServer().start();
+                gatewayArgs.putIfAbsent("spring.data.redis.host", "localhost");
+                gatewayArgs.putIfAbsent("spring.data.redis.port", String.valueOf(redis.getBindPort()));
+
+                // The devtools restarter would run main again in a new class loader
+                System.setProperty("spring.devtools.restart.enabled", "false");
+                gateway = new SpringApplicationBuilder(ApiGatewayApplication.class)
+                        .run(gatewayArgs.entrySet().stream()
+                                .map(arg -> "--" + arg.getKey() + "=" + arg.getValue())
+                                .toArray(String[]::new));
+                target = "http://localhost:" + gateway.getEnvironment().getProperty("local.server.port");
+            }
+
+            Workload workload = Workload.load(Path.of(options.get("workload")), target,
+                    duration(options.get("timeout")));
+            double rate = Double.parseDouble(options.get("rate"));
+            Duration warmup = duration(options.get("warmup"));
+            Duration measured = duration(options.get("duration"));
+
+            System.out.printf("Load test: %s, %.0f req/s for %s after %s warmup, %d workload requests%n",
+                    target, rate, measured, warmup, workload.size());
+
+            OpenLoopGenerator generator;
+            try (HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(duration(options.get("timeout")))
+                    .build()) {
+                generator = new OpenLoopGenerator(client, workload, rate,
+                        Integer.parseInt(options.get("max-in-flight")));
+                generator.run(warmup.toNanos(), measured.toNanos(), duration(options.get("timeout")).toNanos());
+            }
+
+            report(System.out, generator, rate, measured);
+            writeHistogram(Path.of(options.get("histogram")), generator.getCorrected());
+        } finally {
+            if (gateway != null) {
+                gateway.close();
+            }
+            if (redis != null) {
+                redis.stop();
+            }
+            stubs.forEach(StubUpstream::stop);
+        }
+        // jedis-mock leaves non-daemon worker threads behind
+        System.exit(0);
+    }
+
+    private static void report(PrintStream out, OpenLoopGenerator generator, double rate, Duration measured) {
+        out.println();
+        out.printf("Throughput: %.1f req/s completed (target %.0f)%n",
+                generator.getCompleted() / (measured.toNanos() / 1e9), rate);
+        out.print("Outcomes:  ");
+        new TreeMap<>(generator.getOutcomes()).forEach((outcome, count) -> out.print(" " + outcome + "=" + count));
+        out.println();
+        out.println();
+        out.printf("%-28s %10s%n", "Latency (ms)", "");
+        printPercentiles(out, "corrected (from due time)", generator.getCorrected());
+        printPercentiles(out, "uncorrected (from send)", generator.getUncorrected());
+    }
+
+    private static void printPercentiles(PrintStream out, String label, Histogram histogram) {
+        StringBuilder line = new StringBuilder(String.format("%-28s", label));
+        for (double percentile : PERCENTILES) {
+            line.append(String.format("  p%-5s %8.2f", trim(percentile),
+                    histogram.getValueAtPercentile(percentile) / 1000.0));
+        }
+        line.append(String.format("  max %8.2f", histogram.getMaxValue() / 1000.0));
+        out.println(line);
+    }
+
+    /**
+     * Full percentile distribution in milliseconds, for plotting or comparing runs
+     */
+    private static void writeHistogram(Path file, Histogram histogram) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+        System.out.println("Corrected latency distribution written to " + file);
+    }
+
+    private static String trim(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    private static Duration duration(String value) {
+        return DurationStyle.detectAndParse(value);
+    }
+}
@@ -0,0 +1,131 @@
+package com.gateway.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests on a fixed schedule whatever the responses do, each on its own
+ * virtual thread, so a slow gateway cannot hold the load back. Latency is recorded
+ * twice, in microseconds: from the moment the request was due (corrected for
+ * coordinated omission) and from when it was actually sent. Requests due during
+ * warmup are sent but not recorded.
+ */
+final class OpenLoopGenerator {
+
+    // Up to ten minutes at three significant digits
+    private static final long MAX_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final HttpClient client;
+    private final Workload workload;
+    private final double rate;
+    private final int maxInFlight;
+
+    private final Histogram corrected = new ConcurrentHistogram(MAX_MICROS, 3);
+    private final Histogram uncorrected = new ConcurrentHistogram(MAX_MICROS, 3);
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+
+    OpenLoopGenerator(HttpClient client, Workload workload, double rate, int maxInFlight) {
+        this.client = client;
+        this.workload = workload;
+        this.rate = rate;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Run for warmup plus duration, then wait up to drainTimeout for outstanding requests
+     */
+    void run(long warmupNanos, long durationNanos, long drainTimeoutNanos) throws InterruptedException {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; ; i++) {
+                long due = start + i * interval;
+                if (due >= end) {
+                    break;
+                }
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+
+                boolean recorded = due >= measureFrom;
+                if (inFlight.incrementAndGet() > maxInFlight) {
+                    // The client gave up on this one: an error at the time it was due
+                    inFlight.decrementAndGet();
+                    if (recorded) {
+                        count("dropped (max in flight)");
+                    }
+                    continue;
+                }
+                long index = i;
+                executor.execute(() -> send(index, due, recorded));
+            }
+
+            executor.shutdown();
+            if (!executor.awaitTermination(drainTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private void send(long index, long due, boolean recorded) {
+        long sentAt = System.nanoTime();
+        String outcome;
+        try {
+            HttpResponse<Void> response = client.send(workload.get(index), HttpResponse.BodyHandlers.discarding());
+            outcome = String.valueOf(response.statusCode());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome = "interrupted";
+        } catch (Exception e) {
+            outcome = e.getClass().getSimpleName();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+
+        long done = System.nanoTime();
+        if (recorded) {
+            completed.incrementAndGet();
+            corrected.recordValue(Math.min(MAX_MICROS, (done - due) / 1000));
+            uncorrected.recordValue(Math.min(MAX_MICROS, (done - sentAt) / 1000));
+            count(outcome);
+        }
+    }
+
+    private void count(String outcome) {
+        outcomes.computeIfAbsent(outcome, o -> new LongAdder()).increment();
+    }
+
+    Histogram getCorrected() {
+        return corrected;
+    }
+
+    Histogram getUncorrected() {
+        return uncorrected;
+    }
+
+    Map<String, LongAdder> getOutcomes() {
+        return outcomes;
+    }
+
+    long getCompleted() {
+        return completed.get();
+    }
+}
@@ -0,0 +1,142 @@
+package com.gateway.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for a MockServer container: serves the expectations of a
+ * mock-services/*.json file (method, path regex, status, headers, body) after a
+ * sampled latency, padding JSON bodies by a sampled number of bytes. Unmatched
+ * requests get a 404.
+ */
+final class StubUpstream {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final List<Expectation> expectations;
+    private final Distribution latency;
+    private final Distribution padding;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private record Expectation(String method, Pattern path, int status, Map<String, List<String>> headers,
+                               byte[] body) {
+    }
+
+    StubUpstream(Path expectationsFile, Distribution latency, Distribution padding) throws IOException {
+        this.expectations = load(expectationsFile);
+        this.latency = latency;
+        this.padding = padding;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        Expectation match = null;
+        for (Expectation expectation : expectations) {
+            if ((expectation.method() == null || expectation.method().equals(exchange.getRequestMethod()))
+                    && expectation.path().matcher(exchange.getRequestURI().getPath()).matches()) {
+                match = expectation;
+                break;
+            }
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(latency.sample());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (match == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = pad(match.body(), (int) padding.sample());
+        match.headers().forEach((name, values) -> exchange.getResponseHeaders().put(name, values));
+        exchange.sendResponseHeaders(match.status(), body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Add a "padding" field of the given size to a JSON object body
+     */
+    private static byte[] pad(byte[] body, int bytes) {
+        if (bytes <= 0 || body.length == 0 || body[body.length - 1] != '}') {
+            return body;
+        }
+        byte[] field = ",\"padding\":\"".getBytes(StandardCharsets.US_ASCII);
+        byte[] padded = new byte[body.length + field.length + bytes + 1];
+        System.arraycopy(body, 0, padded, 0, body.length - 1);
+        System.arraycopy(field, 0, padded, body.length - 1, field.length);
+        Arrays.fill(padded, body.length - 1 + field.length, padded.length - 2, (byte) 'x');
+        padded[padded.length - 2] = '"';
+        padded[padded.length - 1] = '}';
+        return padded;
+    }
+
+    private static List<Expectation> load(Path file) throws IOException {
+        List<Expectation> expectations = new ArrayList<>();
+        for (JsonNode node : mapper.readTree(file.toFile())) {
+            JsonNode request = node.path("httpRequest");
+            JsonNode response = node.path("httpResponse");
+
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            response.path("headers").fields().forEachRemaining(header -> {
+                List<String> values = new ArrayList<>();
+                header.getValue().forEach(value -> values.add(value.asText()));
+                headers.put(header.getKey(), values);
+            });
+
+            JsonNode body = response.get("body");
+            byte[] bytes = body == null ? new byte[0]
+                    : body.isTextual() ? body.asText().getBytes(StandardCharsets.UTF_8)
+                    : mapper.writeValueAsBytes(body);
+
+            expectations.add(new Expectation(
+                    request.hasNonNull("method") ? request.get("method").asText() : null,
+                    Pattern.compile(request.path("path").asText(".*")),
+                    response.path("statusCode").asInt(200),
+                    headers,
+                    bytes));
+        }
+        return expectations;
+    }
+}
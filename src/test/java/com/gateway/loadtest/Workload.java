@@ -0,0 +1,60 @@
+package com.gateway.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Requests to replay, one JSON object per line:
+ * {"method": "GET", "path": "/api/users/1", "headers": {"X-API-Key": "k"}, "body": "..."}.
+ * Only path is required. Lines are replayed in order, wrapping around.
+ */
+final class Workload {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final List<HttpRequest> requests;
+
+    private Workload(List<HttpRequest> requests) {
+        this.requests = requests;
+    }
+
+    static Workload load(Path file, String baseUrl, Duration timeout) throws IOException {
+        List<HttpRequest> requests = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode node = mapper.readTree(line);
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + node.get("path").asText()))
+                    .timeout(timeout);
+            node.path("headers").fields().forEachRemaining(header ->
+                    builder.header(header.getKey(), header.getValue().asText()));
+            String body = node.hasNonNull("body") ? node.get("body").asText() : null;
+            builder.method(node.path("method").asText("GET"), body != null
+                    ? HttpRequest.BodyPublishers.ofString(body)
+                    : HttpRequest.BodyPublishers.noBody());
+            requests.add(builder.build());
+        }
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("No requests in " + file);
+        }
+        return new Workload(requests);
+    }
+
+    HttpRequest get(long index) {
+        return requests.get((int) (index % requests.size()));
+    }
+
+    int size() {
+        return requests.size();
+    }
+}